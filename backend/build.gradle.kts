@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "4.0.3"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.oddsalchemist"
@@ -22,6 +23,9 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-webmvc")
 	implementation("org.jsoup:jsoup:1.17.2")
 	implementation("org.springframework.boot:spring-boot-starter-validation")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
+	// スクレイピング応答のbrotli（Content-Encoding: br）展開用
+	implementation("org.brotli:dec:0.1.2")
 
 	// Google Sheets API
     implementation("com.google.api-client:google-api-client:2.4.0")
@@ -35,3 +39,26 @@ dependencies {
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
+
+// スクレイピング用のJDK HttpClientの接続プール設定。
+// JVM全体で共有され最初のクライアント生成時に一度だけ読み込まれるため、アプリケーションからではなく起動オプションで指定する。
+// jarから起動する場合も同じオプションを指定すること（java -Djdk.httpclient.connectionPoolSize=8 ... -jar）。
+//   connectionPoolSize: 保持するKeep-Alive接続数の上限
+//   keepalive.timeout: アイドル接続を保持する秒数
+val httpClientJvmArgs = listOf(
+	"-Djdk.httpclient.connectionPoolSize=8",
+	"-Djdk.httpclient.keepalive.timeout=300",
+)
+
+tasks.named<org.springframework.boot.gradle.tasks.run.BootRun>("bootRun") {
+	jvmArgs(httpClientJvmArgs)
+}
+
+// JMHベンチマーク（src/jmh）: ./gradlew jmh
+// 結果はコミット間で比較できるよう、JSON形式で build/results/jmh/results.json に出力する
+jmh {
+	jmhVersion = "1.37"
+	profilers = listOf("gc")
+	resultFormat = "JSON"
+	resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+}
@@ -0,0 +1,35 @@
+package com.oddsalchemist.backend.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * ベンチマーク用に記録したスポナビのオッズページ（単勝・複勝）を読み込むユーティリティ。
+ * 出走頭数ごとに src/jmh/resources/fixtures/sportsnavi-odds-{頭数}.html を用意している。
+ */
+public final class OddsFixtures {
+
+    /** フィクスチャの取得元URL（パーサーのbaseUriに使用） */
+    public static final String BASE_URI = "https://sports.yahoo.co.jp/keiba/race/odds/tfw/2405040911";
+
+    private OddsFixtures() {
+    }
+
+    /**
+     * 指定頭数のフィクスチャをUTF-8のバイト列として読み込みます。
+     *
+     * @param runners 出走頭数（8, 12, 18）
+     */
+    public static byte[] load(int runners) {
+        String path = "/fixtures/sportsnavi-odds-" + runners + ".html";
+        try (InputStream in = OddsFixtures.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalArgumentException("フィクスチャが見つかりません: " + path);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
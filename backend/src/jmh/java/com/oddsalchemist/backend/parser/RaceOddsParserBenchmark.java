@@ -0,0 +1,73 @@
+package com.oddsalchemist.backend.parser;
+
+import com.oddsalchemist.backend.benchmark.OddsFixtures;
+import com.oddsalchemist.backend.dto.OddsData;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RaceOddsParserのスループット計測。
+ * 割り当て量はGCプロファイラー（gc.alloc.rate.norm）で1回のパースあたりのバイト数として確認する。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RaceOddsParserBenchmark {
+
+    @Param({"8", "12", "18"})
+    int runners;
+
+    private RaceOddsParser parser;
+    private byte[] body;
+    private String html;
+
+    @Setup
+    public void setUp() {
+        parser = new RaceOddsParser();
+        body = OddsFixtures.load(runners);
+        html = new String(body, StandardCharsets.UTF_8);
+    }
+
+    /** 本番経路: レスポンスボディのバイト列からのパース */
+    @Benchmark
+    public OddsSnapshot parseBody() throws IOException {
+        return parser.parseSnapshot(new ByteArrayInputStream(body), "UTF-8", OddsFixtures.BASE_URI);
+    }
+
+    /** 文字列からのパース（高速パス→必要時のみDOM）。従来形式の {@code List<OddsData>} へのビュー生成を含む */
+    @Benchmark
+    public List<OddsData> parseString() {
+        return parser.parse(html);
+    }
+
+    /** 高速パスのみ */
+    @Benchmark
+    public OddsSnapshot parseStreaming() {
+        return parser.parseStreaming(html);
+    }
+
+    /** DOMパスのみ（比較用） */
+    @Benchmark
+    public OddsSnapshot parseDom() {
+        return parser.parseDom(html);
+    }
+}
@@ -0,0 +1,111 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.benchmark.OddsFixtures;
+import com.oddsalchemist.backend.config.DetectorProperties;
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.parser.RaceOddsParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OddsAnomalyDetector.detect のレイテンシ計測。
+ * 同時に監視するレース数を変えて、前回オッズを保持した状態での1サイクル分（全レース）と、
+ * 複数スレッドから別々のレースを同時に検知する場合の1レースあたりの時間を計測する。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OddsAnomalyDetectorBenchmark {
+
+    /** 同時に監視するレース数（1レース / 1開催日3場36レース / 土日+月曜の3日分） */
+    @Param({"1", "36", "108"})
+    int races;
+
+    /** 1レースあたりの出走頭数 */
+    @Param({"8", "18"})
+    int runners;
+
+    private OddsAnomalyDetector detector;
+    /** 前回サイクルのオッズ（レースごと） */
+    private List<OddsSnapshot> previousCycle;
+    /** 中穴の馬に資金が流入した今回サイクルのオッズ（レースごと） */
+    private List<OddsSnapshot> currentCycle;
+    private boolean flip;
+
+    private final AtomicInteger nextRace = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OddsSnapshot base = new RaceOddsParser().parseSnapshot(
+                new String(OddsFixtures.load(runners), StandardCharsets.UTF_8));
+
+        previousCycle = new ArrayList<>(races);
+        currentCycle = new ArrayList<>(races);
+        for (int r = 0; r < races; r++) {
+            String raceName = base.raceName() + "#" + r;
+            OddsSnapshot.Builder previous = OddsSnapshot.builder(raceName, base.size());
+            OddsSnapshot.Builder current = OddsSnapshot.builder(raceName, base.size());
+            for (int i = 0; i < base.size(); i++) {
+                int win = base.winOddsFixed(i);
+                previous.add(base.horseNumber(i), base.horseName(i),
+                        win, base.placeOddsMinFixed(i), base.placeOddsMaxFixed(i));
+                // 3頭に1頭は単勝オッズを4割下げ、支持率急増の判定が走るようにする
+                current.add(base.horseNumber(i), base.horseName(i),
+                        i % 3 == 0 ? Math.max(11, win * 6 / 10) : win, base.placeOddsMinFixed(i), base.placeOddsMaxFixed(i));
+            }
+            previousCycle.add(previous.build());
+            currentCycle.add(current.build());
+        }
+
+        // 本番相当の時間窓（15分）で、履歴バッファの走査を含めて計測する
+        detector = new OddsAnomalyDetector(new RaceRegistry(),
+                new DetectorProperties(Duration.ofMinutes(15), 16, null, null, null, null, null), Clock.systemUTC(),
+                new SimpleMeterRegistry());
+        previousCycle.forEach(detector::detect);
+    }
+
+    /** 1サイクル分（全レース）を順に検知する。前回/今回を交互に入れ替えて毎回差分が出るようにする。 */
+    @Benchmark
+    public void detectCycle(Blackhole bh) {
+        List<OddsSnapshot> cycle = flip ? previousCycle : currentCycle;
+        flip = !flip;
+        for (OddsSnapshot race : cycle) {
+            bh.consume(detector.detect(race));
+        }
+    }
+
+    /** 4スレッドから別々のレースを同時に検知する（1回=1レース）。 */
+    @Benchmark
+    @Threads(4)
+    public List<AnomalyAlertDto> detectConcurrentRaces() {
+        int n = nextRace.getAndIncrement() & Integer.MAX_VALUE;
+        int race = n % races;
+        boolean current = (n / races) % 2 == 0;
+        return detector.detect((current ? currentCycle : previousCycle).get(race));
+    }
+}
@@ -0,0 +1,120 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.benchmark.OddsFixtures;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.parser.RaceOddsParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OddsArchiveReader の走査スループット計測。
+ * 1開催日36レースを1分ごとに取得した履歴をアーカイブに書き出し、1秒あたりに走査できる取得結果の件数を計測する
+ * （1回の走査を取得結果の件数分の操作として数える）。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(OddsArchiveReaderBenchmark.RACES * OddsArchiveReaderBenchmark.CYCLES)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OddsArchiveReaderBenchmark {
+
+    /** 1開催日3場のレース数 */
+    static final int RACES = 36;
+    /** 1レースあたりの取得回数（発売開始から発走までを1分ごとに取得した場合の目安） */
+    static final int CYCLES = 300;
+
+    /** 1レースあたりの出走頭数 */
+    @Param({"8", "18"})
+    int runners;
+
+    private Path file;
+    private OddsArchiveReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        OddsSnapshot base = new RaceOddsParser().parseSnapshot(
+                new String(OddsFixtures.load(runners), StandardCharsets.UTF_8));
+        file = Files.createTempFile("odds-archive-benchmark", ".oaa");
+        Random random = new Random(42);
+        Instant start = Instant.parse("2026-10-17T00:00:00Z");
+        try (OddsArchiveWriter writer = new OddsArchiveWriter(Files.newOutputStream(file))) {
+            for (int r = 0; r < RACES; r++) {
+                int[] win = new int[base.size()];
+                for (int i = 0; i < win.length; i++) {
+                    win[i] = base.winOddsFixed(i);
+                }
+                for (int c = 0; c < CYCLES; c++) {
+                    // 取得ごとに4頭に1頭程度の単勝オッズが小さく動く
+                    OddsSnapshot.Builder builder = OddsSnapshot.builder(base.raceName() + "#" + r,
+                            OddsFixtures.BASE_URI + "#" + r, base.size());
+                    for (int i = 0; i < win.length; i++) {
+                        if (random.nextInt(4) == 0) {
+                            win[i] = Math.max(11, win[i] + random.nextInt(5) - 2);
+                        }
+                        builder.add(base.horseNumber(i), base.horseName(i),
+                                win[i], base.placeOddsMinFixed(i), base.placeOddsMaxFixed(i));
+                    }
+                    writer.write(builder.build(), start.plusSeconds(60L * c));
+                }
+            }
+        }
+        reader = new OddsArchiveReader(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        Files.deleteIfExists(file);
+    }
+
+    /** 全件の走査（各取得結果の単勝オッズを参照する） */
+    @Benchmark
+    public long scan(Blackhole blackhole) throws IOException {
+        long count = 0;
+        try (OddsArchiveReader.Cursor cursor = reader.cursor()) {
+            while (cursor.next()) {
+                for (int i = 0; i < cursor.size(); i++) {
+                    blackhole.consume(cursor.winOddsFixed(i));
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** 全件の走査とオッズのオブジェクトへの変換（従来の形式が必要な場合） */
+    @Benchmark
+    public long scanSnapshots(Blackhole blackhole) throws IOException {
+        long count = 0;
+        try (OddsArchiveReader.Cursor cursor = reader.cursor()) {
+            while (cursor.next()) {
+                blackhole.consume(cursor.snapshot());
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -1,6 +1,13 @@
 package com.oddsalchemist.backend;
 
+import com.oddsalchemist.backend.config.DetectorProperties;
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
+import com.oddsalchemist.backend.config.OddsStoreProperties;
+import com.oddsalchemist.backend.config.OddsStreamProperties;
 import com.oddsalchemist.backend.config.ScrapingProperties;
+import com.oddsalchemist.backend.config.SheetsShardProperties;
+import com.oddsalchemist.backend.config.SheetsWriteProperties;
+import com.oddsalchemist.backend.config.SnapshotCacheProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -8,7 +15,9 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableScheduling
-@EnableConfigurationProperties(ScrapingProperties.class)
+@EnableConfigurationProperties({ScrapingProperties.class, DetectorProperties.class, SheetsWriteProperties.class,
+		SheetsShardProperties.class, OddsStoreProperties.class, OddsDeltaProperties.class,
+		OddsStreamProperties.class, SnapshotCacheProperties.class})
 public class BackendApplication {
 
 	public static void main(String[] args) {
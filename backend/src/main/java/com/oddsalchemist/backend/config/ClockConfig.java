@@ -0,0 +1,19 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * 現在時刻の取得元を提供する設定クラス。
+ * 時刻に依存する処理（時間窓での異常検知など）はこのClockを注入して使い、テストでは固定・可変のClockに差し替える。
+ */
+@Configuration
+public class ClockConfig {
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
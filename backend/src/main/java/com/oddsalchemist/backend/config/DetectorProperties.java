@@ -0,0 +1,87 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * application.yaml の odds.detector 設定をバインドするプロパティクラス。
+ *
+ * @param window          支持率急増を判定する時間窓。窓内で最もオッズが高かった時点と比較する。
+ *                        0の場合は前回取得時のオッズと比較する
+ * @param historySize     馬1頭あたりに保持するオッズ履歴のサンプル数。時間窓 ÷ 取得間隔 未満の場合は起動時にエラーとする
+ * @param pollInterval    オッズの取得間隔（odds.scraping.cron の実行間隔に合わせる）。履歴が時間窓を覆えるかの検証に使う
+ * @param idleTtl         検知が行われないまま経過するとレースを終了扱いにする時間（発走時刻が不明な場合の終了判定）
+ * @param closedRetention 終了したレースの確定オッズを保持する時間。経過後にレースの状態をすべて破棄する
+ * @param sweepInterval   レースの終了・破棄を判定する間隔
+ * @param checkpoint      再起動時に検知状態を引き継ぐためのチェックポイントファイルの設定
+ */
+@ConfigurationProperties(prefix = "odds.detector")
+public record DetectorProperties(
+        Duration window,
+        int historySize,
+        Duration pollInterval,
+        Duration idleTtl,
+        Duration closedRetention,
+        Duration sweepInterval,
+        Checkpoint checkpoint
+) {
+
+    public DetectorProperties {
+        if (window == null || window.isNegative()) {
+            window = Duration.ZERO;
+        }
+        if (historySize <= 0) {
+            historySize = 16;
+        }
+        if (pollInterval == null || !pollInterval.isPositive()) {
+            pollInterval = Duration.ofMinutes(5);
+        }
+        // 履歴が時間窓に満たないと、窓が黙って短くなり緩やかな資金流入を検知できなくなる
+        long samplesInWindow = Math.ceilDiv(window.toMillis(), pollInterval.toMillis());
+        if (historySize < samplesInWindow) {
+            throw new IllegalArgumentException("odds.detector.history-size (" + historySize
+                    + ") が時間窓 " + window + " を取得間隔 " + pollInterval + " で覆うのに必要な "
+                    + samplesInWindow + " 件に足りません");
+        }
+        if (idleTtl == null || !idleTtl.isPositive()) {
+            idleTtl = Duration.ofHours(1);
+        }
+        if (closedRetention == null || closedRetention.isNegative()) {
+            closedRetention = Duration.ofHours(12);
+        }
+        if (sweepInterval == null || !sweepInterval.isPositive()) {
+            sweepInterval = Duration.ofMinutes(1);
+        }
+        if (checkpoint == null) {
+            checkpoint = new Checkpoint(false, null, null);
+        }
+    }
+
+    /** すべて既定値の設定（前回取得時との比較） */
+    public static DetectorProperties defaults() {
+        return new DetectorProperties(null, 0, null, null, null, null, null);
+    }
+
+    /**
+     * 検知状態のチェックポイントの設定。
+     *
+     * @param enabled  trueの場合、定期的および終了時に検知状態をファイルへ書き出し、起動時に読み込む
+     * @param path     チェックポイントファイルのパス
+     * @param interval 定期的に書き出す間隔
+     */
+    public record Checkpoint(
+            boolean enabled,
+            String path,
+            Duration interval
+    ) {
+        public Checkpoint {
+            if (path == null || path.isBlank()) {
+                path = "data/detector-checkpoint.bin";
+            }
+            if (interval == null || !interval.isPositive()) {
+                interval = Duration.ofMinutes(1);
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.google.api.services.sheets.v4.Sheets;
 import com.google.api.services.sheets.v4.SheetsScopes;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
@@ -17,6 +18,7 @@ import java.security.GeneralSecurityException;
 import java.util.Collections;
 
 @Configuration
+@ConditionalOnProperty(prefix = "odds.sheets", name = "enabled", havingValue = "true", matchIfMissing = true)
 public class GoogleSheetsConfig {
 
     private static final String APPLICATION_NAME = "Odds Alchemist";
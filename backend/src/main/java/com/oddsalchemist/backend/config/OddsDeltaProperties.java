@@ -0,0 +1,35 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * application.yaml の odds.delta 設定をバインドするプロパティクラス。
+ * オッズストアとスプレッドシートへの保存で、前回保存時からオッズが変化した馬のみを書き込む差分モードを設定する。
+ *
+ * @param enabled          trueの場合、差分モードで保存する。falseの場合は毎回全馬を保存する
+ * @param keyframeInterval 全馬を保存する（キーフレーム）間隔。前回のキーフレームからこの回数の差分を保存すると次はキーフレームにする
+ * @param keyframeMaxAge   前回のキーフレームからこの時間が経過すると、次の保存をキーフレームにする
+ */
+@ConfigurationProperties(prefix = "odds.delta")
+public record OddsDeltaProperties(
+        boolean enabled,
+        int keyframeInterval,
+        Duration keyframeMaxAge
+) {
+
+    public OddsDeltaProperties {
+        if (keyframeInterval <= 0) {
+            keyframeInterval = 12;
+        }
+        if (keyframeMaxAge == null || !keyframeMaxAge.isPositive()) {
+            keyframeMaxAge = Duration.ofMinutes(30);
+        }
+    }
+
+    /** 差分モードを使用しない設定（毎回全馬を保存する） */
+    public static OddsDeltaProperties disabled() {
+        return new OddsDeltaProperties(false, 0, null);
+    }
+}
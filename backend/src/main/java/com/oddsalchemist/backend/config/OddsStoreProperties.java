@@ -0,0 +1,34 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * application.yaml の odds.store 設定をバインドするプロパティクラス。
+ *
+ * @param path        オッズ履歴のセグメントファイルを置くディレクトリ
+ * @param segmentSize 1セグメントファイルの大きさ。ファイルはこの大きさで確保してメモリマップする
+ * @param retention   履歴の保持期間。最も新しい取得時刻からこの期間より前の取得結果のみを含むセグメントは削除する。
+ *                    0の場合は削除しない（ディスク使用量は取得結果の件数に比例して増え続ける）
+ */
+@ConfigurationProperties(prefix = "odds.store")
+public record OddsStoreProperties(
+        String path,
+        DataSize segmentSize,
+        Duration retention
+) {
+
+    public OddsStoreProperties {
+        if (path == null || path.isBlank()) {
+            path = "data/odds-store";
+        }
+        if (segmentSize == null || segmentSize.toBytes() <= 0) {
+            segmentSize = DataSize.ofMegabytes(64);
+        }
+        if (retention == null || retention.isNegative()) {
+            retention = Duration.ZERO;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * application.yaml の odds.stream 設定をバインドするプロパティクラス。
+ * オッズの差分と異常検知の結果を Server-Sent Events で配信する際の設定。
+ *
+ * @param subscriberBufferSize 購読者1人あたりの未送信イベントの上限。超えた場合は未送信分を破棄し、再開用の履歴から送り直す
+ * @param replaySize           Last-Event-ID による再開に備えて保持する直近のイベント数
+ * @param heartbeatInterval    イベントがない間に接続確認のコメントを送る間隔
+ * @param timeout              1接続の最大時間。経過後に切断し、クライアントは Last-Event-ID を付けて再接続する
+ * @param maxSubscribers       同時に接続できる購読者数の上限
+ */
+@ConfigurationProperties(prefix = "odds.stream")
+public record OddsStreamProperties(
+        int subscriberBufferSize,
+        int replaySize,
+        Duration heartbeatInterval,
+        Duration timeout,
+        int maxSubscribers
+) {
+
+    public OddsStreamProperties {
+        if (subscriberBufferSize <= 0) {
+            subscriberBufferSize = 256;
+        }
+        if (replaySize <= 0) {
+            replaySize = 4096;
+        }
+        if (heartbeatInterval == null || !heartbeatInterval.isPositive()) {
+            heartbeatInterval = Duration.ofSeconds(15);
+        }
+        if (timeout == null || !timeout.isPositive()) {
+            timeout = Duration.ofMinutes(30);
+        }
+        if (maxSubscribers <= 0) {
+            maxSubscribers = 1000;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+
+/**
+ * スクレイピング用の共有HTTPクライアントを構築する設定クラス。
+ * リクエストごとに接続を作り直さず、Keep-Alive接続（HTTP/2が使える場合は多重化）を再利用することで、
+ * 同一ホストへのTCP/TLSハンドシェイクを初回のみに抑える。
+ * <p>
+ * JDK HttpClientの接続プールの大きさとアイドル接続の保持時間は、JVM全体で共有され、最初のクライアントの生成時に
+ * 一度だけ読み込まれるシステムプロパティ（jdk.httpclient.connectionPoolSize / jdk.httpclient.keepalive.timeout）
+ * でのみ設定できる。そのためアプリケーションからは設定せず、JVMの起動オプションで指定する（build.gradle.kts を参照）。
+ */
+@Configuration
+public class ScrapingHttpClientConfig {
+
+    @Bean
+    public HttpClient scrapingHttpClient(ScrapingProperties properties) {
+        ScrapingProperties.Http http = properties.http();
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(http.connectTimeout())
+                .build();
+    }
+}
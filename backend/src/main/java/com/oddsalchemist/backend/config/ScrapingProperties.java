@@ -2,6 +2,7 @@ package com.oddsalchemist.backend.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -11,5 +12,73 @@ import java.util.List;
 public record ScrapingProperties(
         String cron,
         String sheetRange,
-        List<String> targetUrls
-) {}
+        List<String> targetUrls,
+        Concurrency concurrency,
+        Http http
+) {
+
+    public ScrapingProperties {
+        if (targetUrls == null) {
+            targetUrls = List.of();
+        }
+        if (concurrency == null) {
+            concurrency = new Concurrency(false, 0, 0, 0);
+        }
+        if (http == null) {
+            http = new Http(null, null, null);
+        }
+    }
+
+    /**
+     * 並列スクレイピングとホスト単位の流量制御の設定。
+     * 上限とレートは定期実行と手動取得（/fetch）で共有される。
+     *
+     * @param enabled           trueの場合、対象URLを仮想スレッドで並列に取得する
+     * @param maxPerHost        同一ホストへの同時リクエスト数の上限
+     * @param requestsPerSecond 同一ホストへの1秒あたりのリクエスト数（トークンバケットの補充レート）
+     * @param burst             トークンバケットに貯められる最大トークン数
+     */
+    public record Concurrency(
+            boolean enabled,
+            int maxPerHost,
+            double requestsPerSecond,
+            int burst
+    ) {
+        public Concurrency {
+            if (maxPerHost <= 0) {
+                maxPerHost = 4;
+            }
+            if (requestsPerSecond <= 0) {
+                requestsPerSecond = 2.0;
+            }
+            if (burst <= 0) {
+                burst = maxPerHost;
+            }
+        }
+    }
+
+    /**
+     * スクレイピング用の共有HTTPクライアントの設定。
+     *
+     * @param connectTimeout 接続確立（TCP/TLSハンドシェイク）のタイムアウト
+     * @param requestTimeout 1リクエストあたりの応答待ちタイムアウト
+     * @param userAgent      送信するUser-Agentヘッダー
+     */
+    public record Http(
+            Duration connectTimeout,
+            Duration requestTimeout,
+            String userAgent
+    ) {
+        public Http {
+            if (connectTimeout == null) {
+                connectTimeout = Duration.ofSeconds(3);
+            }
+            if (requestTimeout == null) {
+                requestTimeout = Duration.ofSeconds(5);
+            }
+            if (userAgent == null || userAgent.isBlank()) {
+                userAgent = "Mozilla/5.0";
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * application.yaml の odds.sheets.shard 設定をバインドするプロパティクラス。
+ * スプレッドシートへの書き込み先を、開催日またはレースごとのシート（タブ）に振り分ける方法を設定する。
+ *
+ * @param strategy  書き込み先の振り分け方。未設定の場合は振り分けず、従来どおり指定されたレンジに書き込む
+ * @param tabPrefix 振り分け先のシート名の先頭に付ける文字列
+ */
+@ConfigurationProperties(prefix = "odds.sheets.shard")
+public record SheetsShardProperties(
+        Strategy strategy,
+        String tabPrefix
+) {
+
+    public SheetsShardProperties {
+        if (strategy == null) {
+            strategy = Strategy.NONE;
+        }
+        if (tabPrefix == null) {
+            tabPrefix = "";
+        }
+    }
+
+    /** 書き込み先の振り分け方 */
+    public enum Strategy {
+        /** 振り分けず、指定されたレンジ（1つのシート）に書き込む */
+        NONE,
+        /** 開催日（発走日）ごとのシートに書き込む */
+        DAY,
+        /** レースごとのシートに書き込む */
+        RACE
+    }
+}
@@ -0,0 +1,90 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * application.yaml の odds.sheets.write 設定をバインドするプロパティクラス。
+ *
+ * @param async              trueの場合、書き込みをローカルのスプールに追記してから非同期に送信する。falseの場合はその場で送信する
+ * @param flushWindow        最初の書き込みを受け付けてから送信するまでの待ち時間。この間の書き込みを1回の送信にまとめる
+ * @param requestsPerMinute  Sheets APIへの1分あたりの送信回数の上限（書き込みクォータ）
+ * @param maxRowsPerRequest  1回の送信にまとめる行数の上限（障害復旧後にスプールを送信する際の1リクエストの大きさ）
+ * @param maxConcurrentRequests 書き込み先のシートが異なる送信を同時に行う数の上限
+ * @param spool              送信前の書き込みを永続化するスプールの設定
+ */
+@ConfigurationProperties(prefix = "odds.sheets.write")
+public record SheetsWriteProperties(
+        boolean async,
+        Duration flushWindow,
+        double requestsPerMinute,
+        int maxRowsPerRequest,
+        int maxConcurrentRequests,
+        Spool spool
+) {
+
+    public SheetsWriteProperties {
+        if (flushWindow == null || flushWindow.isNegative()) {
+            flushWindow = Duration.ofSeconds(2);
+        }
+        if (requestsPerMinute <= 0) {
+            requestsPerMinute = 50;
+        }
+        if (maxRowsPerRequest <= 0) {
+            maxRowsPerRequest = 5000;
+        }
+        if (maxConcurrentRequests <= 0) {
+            maxConcurrentRequests = 4;
+        }
+        if (spool == null) {
+            spool = new Spool(null, null, null, null, null);
+        }
+    }
+
+    /**
+     * 送信前の書き込みを追記するスプール（先行書き込みログ）の設定。
+     *
+     * @param path          セグメントファイルと送信済み位置（カーソル）を置くディレクトリ
+     * @param segmentSize   1セグメントファイルの大きさの目安。超えると次のセグメントに切り替える
+     * @param maxSize       未送信の書き込みを保持する上限。超えた場合は書き込みを失敗として扱う
+     * @param fsync         追記をディスクへ同期するタイミング
+     * @param fsyncInterval fsync が INTERVAL の場合に同期する間隔
+     */
+    public record Spool(
+            String path,
+            DataSize segmentSize,
+            DataSize maxSize,
+            Fsync fsync,
+            Duration fsyncInterval
+    ) {
+        public Spool {
+            if (path == null || path.isBlank()) {
+                path = "data/sheets-spool";
+            }
+            if (segmentSize == null || segmentSize.toBytes() <= 0) {
+                segmentSize = DataSize.ofMegabytes(8);
+            }
+            if (maxSize == null || maxSize.toBytes() <= 0) {
+                maxSize = DataSize.ofMegabytes(512);
+            }
+            if (fsync == null) {
+                fsync = Fsync.INTERVAL;
+            }
+            if (fsyncInterval == null || !fsyncInterval.isPositive()) {
+                fsyncInterval = Duration.ofSeconds(1);
+            }
+        }
+    }
+
+    /** スプールへの追記をディスクへ同期するタイミング */
+    public enum Fsync {
+        /** 追記のたびに同期する（OSのクラッシュでも失われない） */
+        ALWAYS,
+        /** 一定間隔でまとめて同期する（直近の間隔分はOSのクラッシュで失われうる） */
+        INTERVAL,
+        /** 同期をOSに任せる（プロセスの異常終了では失われないが、OSのクラッシュで失われうる） */
+        NONE
+    }
+}
@@ -0,0 +1,33 @@
+package com.oddsalchemist.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * application.yaml の odds.snapshot-cache 設定をバインドするプロパティクラス。
+ * 直前に取得したオッズを保持し、有効期間内の同じURLの取得（定期実行と手動取得の重複など）でページの取得を省略する。
+ *
+ * @param ttl        取得したオッズを有効とする時間。0の場合はキャッシュしない
+ * @param maxEntries 保持するURLの数の上限。超えた場合は最も長く参照されていないURLから破棄する
+ */
+@ConfigurationProperties(prefix = "odds.snapshot-cache")
+public record SnapshotCacheProperties(
+        Duration ttl,
+        int maxEntries
+) {
+
+    public SnapshotCacheProperties {
+        if (ttl == null || ttl.isNegative()) {
+            ttl = Duration.ofSeconds(30);
+        }
+        if (maxEntries <= 0) {
+            maxEntries = 256;
+        }
+    }
+
+    /** キャッシュしない設定 */
+    public static SnapshotCacheProperties disabled() {
+        return new SnapshotCacheProperties(Duration.ZERO, 0);
+    }
+}
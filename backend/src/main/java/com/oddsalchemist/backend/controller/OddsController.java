@@ -1,26 +1,70 @@
 // backend/src/main/java/com/oddsalchemist/backend/controller/OddsController.java
 package com.oddsalchemist.backend.controller;
 
-import com.oddsalchemist.backend.service.OddsSyncService;
+import com.oddsalchemist.backend.config.OddsStreamProperties;
+import com.oddsalchemist.backend.dto.BulkFetchRequest;
+import com.oddsalchemist.backend.dto.FetchJobStatus;
+import com.oddsalchemist.backend.dto.OddsHistoryEntry;
+import com.oddsalchemist.backend.dto.StoredOdds;
+import com.oddsalchemist.backend.service.LatestOddsCache;
+import com.oddsalchemist.backend.service.OddsArchiveExporter;
+import com.oddsalchemist.backend.service.OddsBulkFetchService;
+import com.oddsalchemist.backend.service.OddsFetchJobService;
+import com.oddsalchemist.backend.service.OddsStore;
+import com.oddsalchemist.backend.service.OddsStreamHub;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/odds")
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = HttpHeaders.LOCATION)
 public class OddsController {
 
     private static final Logger logger = LoggerFactory.getLogger(OddsController.class);
-    private final OddsSyncService oddsSyncService;
+    private static final String SHEET_RANGE = "シート1!A:H";
+    /** 一括取得で1回に指定できるURLの数の上限 */
+    private static final int MAX_BULK_URLS = 100;
+    private final OddsFetchJobService fetchJobService;
+    private final OddsBulkFetchService bulkFetchService;
+    private final OddsStore oddsStore;
+    private final OddsArchiveExporter archiveExporter;
+    private final LatestOddsCache latestOddsCache;
+    private final OddsStreamHub streamHub;
+    private final OddsStreamProperties streamProperties;
 
-    public OddsController(OddsSyncService oddsSyncService) {
-        this.oddsSyncService = oddsSyncService;
+    public OddsController(OddsFetchJobService fetchJobService, OddsBulkFetchService bulkFetchService,
+                          OddsStore oddsStore, OddsArchiveExporter archiveExporter, LatestOddsCache latestOddsCache,
+                          OddsStreamHub streamHub, OddsStreamProperties streamProperties) {
+        this.fetchJobService = fetchJobService;
+        this.bulkFetchService = bulkFetchService;
+        this.oddsStore = oddsStore;
+        this.archiveExporter = archiveExporter;
+        this.latestOddsCache = latestOddsCache;
+        this.streamHub = streamHub;
+        this.streamProperties = streamProperties;
     }
 
+    /**
+     * オッズの取得・保存をジョブとして開始し、完了を待たずに 202 Accepted とジョブの状態を返します。
+     * 同じURLの取得（手動・定期実行）が実行中の場合は、新たに取得せずそのジョブを返します。
+     * 処理結果はLocationヘッダーのURL（GET /fetch/{jobId}）で確認できます。
+     */
     @PostMapping("/fetch")
     public ResponseEntity<?> fetchOdds(@RequestBody Map<String, String> request) {
         String url = request.get("url");
@@ -28,21 +72,219 @@ public class OddsController {
             return ResponseEntity.badRequest().body(Map.of("message", "URLが指定されていません"));
         }
 
-        try {
-            logger.info("フロントエンドからリクエストを受信。対象URL: {}", url);
-            String range = "シート1!A:F"; 
-            
-            int savedCount = oddsSyncService.fetchAndSaveOdds(url, range);
-            
-            // 取得件数が0件の場合はエラーとして扱う
-            if (savedCount == 0) {
-                return ResponseEntity.badRequest().body(Map.of("message", "オッズデータを抽出できませんでした。対象ページの構造、またはURLを確認してください。"));
+        logger.info("フロントエンドからリクエストを受信。対象URL: {}", url);
+        FetchJobStatus job = fetchJobService.submit(url, SHEET_RANGE);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/odds/fetch/" + job.jobId()))
+                .body(job);
+    }
+
+    /**
+     * 取得ジョブの状態を返します。
+     *
+     * @param jobId POST /fetch で返したジョブID
+     */
+    @GetMapping("/fetch/{jobId}")
+    public ResponseEntity<FetchJobStatus> getFetchJob(@PathVariable String jobId) {
+        FetchJobStatus job = fetchJobService.find(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * 複数レースのオッズを並列に取得・保存し、1レースの処理が完了するたびに結果を NDJSON（1行1レース）で返します。
+     * 各行には保存件数・検知した異常・受付からの経過時間が含まれ、完了した順に返ります。
+     * 同じURLは1回だけ取得し、取得が実行中のURLはそのジョブの完了を待ちます。
+     * 応答の上限時間はサーブレットコンテナの既定値ではなく、URLの件数とホストあたりのレートから決めます。
+     */
+    @PostMapping("/fetch/bulk")
+    public ResponseEntity<?> fetchBulk(@RequestBody BulkFetchRequest request) {
+        LinkedHashSet<String> urls = new LinkedHashSet<>();
+        if (request.urls() != null) {
+            request.urls().stream()
+                    .filter(url -> url != null && !url.isBlank())
+                    .map(String::strip)
+                    .forEach(urls::add);
+        }
+        if (urls.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "URLが指定されていません"));
+        }
+        if (urls.size() > MAX_BULK_URLS) {
+            return ResponseEntity.badRequest().body(Map.of("message", "一度に指定できるURLは" + MAX_BULK_URLS + "件までです"));
+        }
+
+        logger.info("フロントエンドから一括取得のリクエストを受信。対象URL数: {}", urls.size());
+        List<String> targets = List.copyOf(urls);
+        Duration timeout = bulkFetchService.timeoutFor(targets.size());
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeout.toMillis());
+        emitter.onTimeout(() -> logger.warn("一括取得の応答が上限時間を超えました。対象URL数: {}, 上限: {}秒",
+                targets.size(), timeout.toSeconds()));
+        Thread.ofVirtual().name("bulk-fetch").start(() -> {
+            try {
+                bulkFetchService.fetchAll(targets, SHEET_RANGE, new EmitterSink(emitter));
+                emitter.complete();
+            } catch (IOException | RuntimeException e) {
+                logger.warn("一括取得の結果の送信を中断しました: {}", e.getMessage());
+                emitter.completeWithError(e);
             }
-            
-            return ResponseEntity.ok(Map.of("message", savedCount + "件のオッズデータを保存しました。"));
-        } catch (Exception e) {
-            logger.error("処理中にエラーが発生しました", e);
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(emitter);
+    }
+
+    /**
+     * 最新のオッズを保持しているレースの一覧（取得時刻の新しい順）を返します。
+     * スケジューラーが更新したキャッシュから応答し、スクレイピングは行いません。
+     * If-None-Match が現在のETagと一致する場合は 304 Not Modified を返します。
+     */
+    @GetMapping("/latest")
+    public ResponseEntity<byte[]> getLatestRaces(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return cachedResponse(latestOddsCache.index(), ifNoneMatch);
+    }
+
+    /**
+     * レースの最新のオッズと、その取得で検知した異常を返します。
+     * スケジューラーが更新したキャッシュから応答し、スクレイピングは行いません。
+     *
+     * @param race レースのキー（取得元URL）
+     */
+    @GetMapping("/latest/race")
+    public ResponseEntity<byte[]> getLatestRace(
+            @RequestParam String race,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        LatestOddsCache.Entry entry = latestOddsCache.race(race);
+        if (entry == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return cachedResponse(entry, ifNoneMatch);
+    }
+
+    /**
+     * オッズの差分と新たに検知した異常を Server-Sent Events で配信します。
+     * <ul>
+     *   <li>odds: レースのオッズの差分（OddsStreamDelta）</li>
+     *   <li>alerts: 新たに検知した異常（OddsStreamAlerts）</li>
+     *   <li>reset: 続きから再開できないため、最新のオッズ（/latest）を取得し直す</li>
+     * </ul>
+     * 再接続時は Last-Event-ID ヘッダー（EventSourceが自動で付与する）または lastEventId パラメーターで
+     * 続きのイベントから受信できます。
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId) {
+        SseEmitter emitter = new SseEmitter(streamProperties.timeout().toMillis());
+        OddsStreamHub.Subscriber subscriber = streamHub.subscribe(
+                lastEventIdHeader != null ? lastEventIdHeader : lastEventId, new SseSink(emitter));
+        if (subscriber == null) {
+            logger.warn("オッズ配信の購読者数が上限に達しています。上限: {}", streamProperties.maxSubscribers());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static ResponseEntity<byte[]> cachedResponse(LatestOddsCache.Entry entry, String ifNoneMatch) {
+        // ブラウザ・プロキシには保存させても、利用のたびにETagで再検証させる
+        if (entry.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(entry.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(entry.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(entry.body());
+    }
+
+    /**
+     * オッズストアに保存されたレースのオッズ履歴を取得時刻の昇順で返します。
+     *
+     * @param race  レースのキー（取得元URL）
+     * @param horse 馬番（省略時は全馬）
+     * @param from  取得時刻の下限（エポックミリ秒、この時刻を含む。省略時は制限なし）
+     * @param to    取得時刻の上限（エポックミリ秒、この時刻を含まない。省略時は制限なし）
+     */
+    @GetMapping("/history")
+    public ResponseEntity<?> getHistory(@RequestParam String race,
+                                        @RequestParam(required = false) String horse,
+                                        @RequestParam(required = false) Long from,
+                                        @RequestParam(required = false) Long to) {
+        long fromMillis = from != null ? from : Long.MIN_VALUE;
+        long toMillis = to != null ? to : Long.MAX_VALUE;
+        try {
+            List<StoredOdds> history = horse == null || horse.isEmpty()
+                    ? oddsStore.query(race, fromMillis, toMillis)
+                    : oddsStore.queryHorse(race, horse, fromMillis, toMillis);
+            return ResponseEntity.ok(history.stream()
+                    .map(stored -> new OddsHistoryEntry(stored.fetchedAt(), stored.snapshot().raceName(),
+                            stored.snapshot().toOddsDataList()))
+                    .toList());
+        } catch (IOException e) {
+            logger.error("オッズ履歴の取得中にエラーが発生しました。レース: {}", race, e);
             return ResponseEntity.internalServerError().body(Map.of("message", "エラーが発生しました: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * オッズストアに保存されたオッズ履歴を、バックテスト向けのアーカイブ形式（OddsArchiveReaderで読み出す）で返します。
+     *
+     * @param from 取得時刻の下限（エポックミリ秒、この時刻を含む。省略時は制限なし）
+     * @param to   取得時刻の上限（エポックミリ秒、この時刻を含まない。省略時は制限なし）
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<StreamingResponseBody> getArchive(@RequestParam(required = false) Long from,
+                                                            @RequestParam(required = false) Long to) {
+        long fromMillis = from != null ? from : Long.MIN_VALUE;
+        long toMillis = to != null ? to : Long.MAX_VALUE;
+        StreamingResponseBody body = out -> {
+            long count = archiveExporter.export(out, fromMillis, toMillis);
+            logger.info("オッズ履歴のアーカイブを送信しました: 件数={}", count);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"odds.oaa\"")
+                .body(body);
+    }
+
+    /** 一括取得の結果を NDJSON の1行ずつ応答へ送信する（送信のたびにフラッシュされる） */
+    private record EmitterSink(ResponseBodyEmitter emitter) implements OddsBulkFetchService.Sink {
+
+        @Override
+        public void send(byte[] line) throws IOException {
+            try {
+                emitter.send(line, MediaType.APPLICATION_NDJSON);
+            } catch (IllegalStateException e) {
+                // 上限時間の経過などで応答が既に完了している
+                throw new IOException("応答は既に完了しています", e);
+            }
+        }
+    }
+
+    /** SSEの接続へイベントを送信する */
+    private record SseSink(SseEmitter emitter) implements OddsStreamHub.Sink {
+
+        @Override
+        public void send(String id, String name, String data) throws IOException {
+            emitter.send(SseEmitter.event().id(id).name(name).data(data));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("keep-alive"));
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+}
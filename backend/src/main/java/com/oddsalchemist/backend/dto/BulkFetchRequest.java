@@ -0,0 +1,12 @@
+package com.oddsalchemist.backend.dto;
+
+import java.util.List;
+
+/**
+ * 複数レースの一括取得のリクエストを保持するRecordクラス。
+ *
+ * @param urls 取得対象のレースのURL
+ */
+public record BulkFetchRequest(
+        List<String> urls
+) {}
@@ -0,0 +1,30 @@
+package com.oddsalchemist.backend.dto;
+
+import java.util.List;
+
+/**
+ * 複数レースの一括取得で、1レースの処理が完了するたびに返す結果（NDJSONの1行）を保持するRecordクラス。
+ *
+ * @param url           取得対象のURL
+ * @param jobId         取得ジョブID（同じURLの取得が実行中だった場合は合流したジョブ）
+ * @param status        状態（SUCCEEDED: 完了 / FAILED: 失敗）
+ * @param savedCount    保存したデータ件数（失敗の場合はnull）
+ * @param alerts        検知した異常
+ * @param elapsedMillis 一括取得の受付からこのレースの処理が完了するまでの時間（ミリ秒）
+ * @param message       処理結果のメッセージ
+ */
+public record BulkFetchResult(
+        String url,
+        String jobId,
+        String status,
+        Integer savedCount,
+        List<AnomalyAlertDto> alerts,
+        long elapsedMillis,
+        String message
+) {
+
+    public static BulkFetchResult of(FetchJobStatus job, long elapsedMillis) {
+        return new BulkFetchResult(job.url(), job.jobId(), job.status(), job.savedCount(), job.alerts(),
+                elapsedMillis, job.message());
+    }
+}
@@ -0,0 +1,29 @@
+package com.oddsalchemist.backend.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * オッズ取得ジョブの状態を保持するRecordクラス。
+ *
+ * @param jobId      ジョブID
+ * @param url        取得対象のURL
+ * @param trigger    ジョブを開始した契機（MANUAL: 手動取得 / SCHEDULED: 定期実行）
+ * @param status     状態（RUNNING: 実行中 / SUCCEEDED: 完了 / FAILED: 失敗）
+ * @param startedAt  開始時刻
+ * @param finishedAt 終了時刻（実行中の場合はnull）
+ * @param savedCount 保存したデータ件数（実行中・失敗の場合はnull）
+ * @param alerts     検知した異常（実行中・失敗・スキップした場合は空）
+ * @param message    処理結果のメッセージ
+ */
+public record FetchJobStatus(
+        String jobId,
+        String url,
+        String trigger,
+        String status,
+        Instant startedAt,
+        Instant finishedAt,
+        Integer savedCount,
+        List<AnomalyAlertDto> alerts,
+        String message
+) {}
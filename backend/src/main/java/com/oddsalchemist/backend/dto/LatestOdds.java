@@ -0,0 +1,25 @@
+package com.oddsalchemist.backend.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * レースの最新のオッズと、その取得で検知した異常を保持するRecordクラス。
+ *
+ * @param raceKey   レースのキー（取得元URL）
+ * @param raceName  レース名
+ * @param postTime  発走時刻（不明な場合はnull）
+ * @param fetchedAt 取得時刻
+ * @param version   更新ごとに増加するバージョン（ETagに使用）
+ * @param odds      全馬のオッズ
+ * @param alerts    検知した異常
+ */
+public record LatestOdds(
+        String raceKey,
+        String raceName,
+        Instant postTime,
+        Instant fetchedAt,
+        long version,
+        List<OddsData> odds,
+        List<AnomalyAlertDto> alerts
+) {}
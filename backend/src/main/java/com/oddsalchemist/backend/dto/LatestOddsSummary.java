@@ -0,0 +1,22 @@
+package com.oddsalchemist.backend.dto;
+
+import java.time.Instant;
+
+/**
+ * 最新のオッズを保持しているレースの一覧の1件を保持するRecordクラス。
+ *
+ * @param raceKey    レースのキー（取得元URL）
+ * @param raceName   レース名
+ * @param postTime   発走時刻（不明な場合はnull）
+ * @param fetchedAt  取得時刻
+ * @param version    レースのオッズのバージョン
+ * @param alertCount 最新の取得で検知した異常の件数
+ */
+public record LatestOddsSummary(
+        String raceKey,
+        String raceName,
+        Instant postTime,
+        Instant fetchedAt,
+        long version,
+        int alertCount
+) {}
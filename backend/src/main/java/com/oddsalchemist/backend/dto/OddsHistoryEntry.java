@@ -0,0 +1,17 @@
+package com.oddsalchemist.backend.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * オッズ履歴APIで返す、1回分の取得結果を保持するRecordクラス。
+ *
+ * @param fetchedAt 取得時刻
+ * @param raceName  レース名
+ * @param odds      馬ごとのオッズ（馬番を指定した場合はその馬のみ）
+ */
+public record OddsHistoryEntry(
+        Instant fetchedAt,
+        String raceName,
+        List<OddsData> odds
+) {}
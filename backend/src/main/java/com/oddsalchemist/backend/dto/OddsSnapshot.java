@@ -0,0 +1,357 @@
+package com.oddsalchemist.backend.dto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 1レース分のオッズを列指向で保持する不変クラス。
+ * 馬ごとにオブジェクトやボクシングされたDoubleを持たず、列ごとのプリミティブ配列と
+ * 未設定（null）を表すビットマップで保持することで、多数のレースをメモリ上に保持する際のフットプリントを抑える。
+ * <p>
+ * オッズは固定小数点整数（オッズ×10）で保持する。REST層など従来の形式が必要な箇所では
+ * {@link #toOddsData(int)} / {@link #toOddsDataList()} でOddsDataのビューを生成する。
+ */
+public final class OddsSnapshot {
+
+    /** オッズの固定小数点の倍率（オッズ×10） */
+    public static final int SCALE = 10;
+
+    private static final int WIN = 0;
+    private static final int PLACE_MIN = 1;
+    private static final int PLACE_MAX = 2;
+    private static final int COLUMNS = 3;
+
+    /** 馬番の文字列キャッシュ（1〜99）。同じ馬番の文字列をレース間で共有する。 */
+    private static final String[] HORSE_NUMBERS = new String[100];
+
+    static {
+        for (int i = 1; i < HORSE_NUMBERS.length; i++) {
+            HORSE_NUMBERS[i] = Integer.toString(i);
+        }
+    }
+
+    private final String raceName;
+    private final String sourceUrl;
+    private final Instant postTime;
+    private final int size;
+    private final String[] horseNumbers;
+    private final String[] horseNames;
+    private final int[] winOdds;
+    private final int[] placeOddsMin;
+    private final int[] placeOddsMax;
+    /** 未設定ビット（馬のインデックス×3 + 列） */
+    private final long[] nullBits;
+
+    private OddsSnapshot(String raceName, String sourceUrl, Instant postTime, int size,
+                         String[] horseNumbers, String[] horseNames,
+                         int[] winOdds, int[] placeOddsMin, int[] placeOddsMax, long[] nullBits) {
+        this.raceName = raceName;
+        this.sourceUrl = sourceUrl;
+        this.postTime = postTime;
+        this.size = size;
+        this.horseNumbers = horseNumbers;
+        this.horseNames = horseNames;
+        this.winOdds = winOdds;
+        this.placeOddsMin = placeOddsMin;
+        this.placeOddsMax = placeOddsMax;
+        this.nullBits = nullBits;
+    }
+
+    /**
+     * スナップショットのビルダーを生成します。
+     *
+     * @param raceName     レース名（全馬で共有）
+     * @param expectedSize 想定する頭数（配列の初期容量）
+     */
+    public static Builder builder(String raceName, int expectedSize) {
+        return new Builder(raceName, null, expectedSize);
+    }
+
+    /**
+     * 取得元URLを指定してスナップショットのビルダーを生成します。
+     *
+     * @param raceName     レース名（全馬で共有）
+     * @param sourceUrl    取得元URL（レースの識別に使用）
+     * @param expectedSize 想定する頭数（配列の初期容量）
+     */
+    public static Builder builder(String raceName, String sourceUrl, int expectedSize) {
+        return new Builder(raceName, sourceUrl, expectedSize);
+    }
+
+    /** 馬が1頭もいない空のスナップショットを返します。 */
+    public static OddsSnapshot empty(String raceName) {
+        return builder(raceName, 0).build();
+    }
+
+    /**
+     * 従来のOddsDataリストからスナップショットを生成します（1レース分のリストを前提とし、レース名は先頭要素から取得）。
+     * オッズは小数第1位に丸めて固定小数点に変換します。
+     */
+    public static OddsSnapshot of(List<OddsData> oddsList) {
+        String raceName = oddsList.isEmpty() ? "" : oddsList.get(0).raceName();
+        Builder builder = builder(raceName, oddsList.size());
+        for (OddsData d : oddsList) {
+            builder.add(d.horseNumber(), d.horseName(),
+                    toFixed(d.winOdds()), toFixed(d.placeOddsMin()), toFixed(d.placeOddsMax()));
+        }
+        return builder.build();
+    }
+
+    public String raceName() {
+        return raceName;
+    }
+
+    /** 取得元URL（不明な場合はnull） */
+    public String sourceUrl() {
+        return sourceUrl;
+    }
+
+    /** 発走時刻（不明な場合はnull） */
+    public Instant postTime() {
+        return postTime;
+    }
+
+    /**
+     * レースを一意に識別するキーを返します。
+     * 開催場が異なる同名レースを区別するため、取得元URLがあればそれを使い、なければレース名を使います。
+     */
+    public String raceKey() {
+        return sourceUrl != null ? sourceUrl : raceName;
+    }
+
+    /** 頭数 */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String horseNumber(int i) {
+        return horseNumbers[checkIndex(i)];
+    }
+
+    public String horseName(int i) {
+        return horseNames[checkIndex(i)];
+    }
+
+    public boolean hasWinOdds(int i) {
+        return !isNull(i, WIN);
+    }
+
+    public boolean hasPlaceOdds(int i) {
+        return !isNull(i, PLACE_MIN);
+    }
+
+    /** 単勝オッズ（オッズ×10）。未設定の場合の値は未定義のため、{@link #hasWinOdds(int)} で確認すること。 */
+    public int winOddsFixed(int i) {
+        return winOdds[checkIndex(i)];
+    }
+
+    /** 複勝オッズ下限（オッズ×10） */
+    public int placeOddsMinFixed(int i) {
+        return placeOddsMin[checkIndex(i)];
+    }
+
+    /** 複勝オッズ上限（オッズ×10） */
+    public int placeOddsMaxFixed(int i) {
+        return placeOddsMax[checkIndex(i)];
+    }
+
+    /** 単勝オッズ（未設定の場合はnull） */
+    public Double winOdds(int i) {
+        return isNull(i, WIN) ? null : toDouble(winOdds[i]);
+    }
+
+    /** 複勝オッズ下限（未設定の場合はnull） */
+    public Double placeOddsMin(int i) {
+        return isNull(i, PLACE_MIN) ? null : toDouble(placeOddsMin[i]);
+    }
+
+    /** 複勝オッズ上限（未設定の場合はnull） */
+    public Double placeOddsMax(int i) {
+        return isNull(i, PLACE_MAX) ? null : toDouble(placeOddsMax[i]);
+    }
+
+    /** 指定した馬のOddsDataビューを生成します。 */
+    public OddsData toOddsData(int i) {
+        return new OddsData(raceName, horseNumber(i), horseNames[i], winOdds(i), placeOddsMin(i), placeOddsMax(i));
+    }
+
+    /** 全馬のOddsDataビューを生成します（REST層など従来の形式が必要な箇所向け）。 */
+    public List<OddsData> toOddsDataList() {
+        List<OddsData> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(toOddsData(i));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /** 固定小数点値をオッズの実数値へ戻します（"d.d" 表記をparseDoubleした値と一致する）。 */
+    public static double toDouble(int fixed) {
+        return (double) fixed / SCALE;
+    }
+
+    private static int toFixed(Double value) {
+        return value == null ? -1 : (int) Math.round(value * SCALE);
+    }
+
+    private boolean isNull(int i, int column) {
+        int bit = checkIndex(i) * COLUMNS + column;
+        return (nullBits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private int checkIndex(int i) {
+        return Objects.checkIndex(i, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OddsSnapshot other)) return false;
+        return size == other.size
+                && raceName.equals(other.raceName)
+                && Objects.equals(sourceUrl, other.sourceUrl)
+                && Objects.equals(postTime, other.postTime)
+                && Arrays.equals(horseNumbers, 0, size, other.horseNumbers, 0, size)
+                && Arrays.equals(horseNames, 0, size, other.horseNames, 0, size)
+                && Arrays.equals(winOdds, 0, size, other.winOdds, 0, size)
+                && Arrays.equals(placeOddsMin, 0, size, other.placeOddsMin, 0, size)
+                && Arrays.equals(placeOddsMax, 0, size, other.placeOddsMax, 0, size)
+                && Arrays.equals(nullBits, other.nullBits);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = raceName.hashCode();
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + horseNumbers[i].hashCode();
+            result = 31 * result + winOdds[i];
+        }
+        return result;
+    }
+
+    /**
+     * このスナップショットが保持する配列のおおよそのバイト数を返します（メモリ使用量のメトリクス用）。
+     * 馬名などの文字列本体は含みません。
+     */
+    public long estimatedBytes() {
+        long perHorse = 2L * Integer.BYTES + 3L * Integer.BYTES; // 文字列の参照（圧縮参照を想定）＋オッズ3列
+        return perHorse * size + (long) nullBits.length * Long.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return "OddsSnapshot[raceName=" + raceName + ", size=" + size + "]";
+    }
+
+    /**
+     * スナップショットを1頭ずつ組み立てるビルダー。
+     * オッズは固定小数点（オッズ×10）で渡し、未設定は負の値で表す。
+     */
+    public static final class Builder {
+
+        private final String raceName;
+        private final String sourceUrl;
+        private Instant postTime;
+        private int size;
+        private String[] horseNumbers;
+        private String[] horseNames;
+        private int[] winOdds;
+        private int[] placeOddsMin;
+        private int[] placeOddsMax;
+        private long[] nullBits;
+
+        private Builder(String raceName, String sourceUrl, int expectedSize) {
+            this.raceName = raceName;
+            this.sourceUrl = sourceUrl;
+            int capacity = Math.max(expectedSize, 1);
+            this.horseNumbers = new String[capacity];
+            this.horseNames = new String[capacity];
+            this.winOdds = new int[capacity];
+            this.placeOddsMin = new int[capacity];
+            this.placeOddsMax = new int[capacity];
+            this.nullBits = new long[bitWords(capacity)];
+        }
+
+        /**
+         * 1頭分のオッズを追加します。
+         *
+         * @param winOdds      単勝オッズ×10（未設定は負の値）
+         * @param placeOddsMin 複勝オッズ下限×10（未設定は負の値）
+         * @param placeOddsMax 複勝オッズ上限×10（未設定は負の値）
+         */
+        public Builder add(String horseNumber, String horseName, int winOdds, int placeOddsMin, int placeOddsMax) {
+            if (size == horseNumbers.length) {
+                grow();
+            }
+            int i = size++;
+            this.horseNumbers[i] = canonicalHorseNumber(horseNumber);
+            this.horseNames[i] = horseName;
+            this.winOdds[i] = Math.max(winOdds, 0);
+            this.placeOddsMin[i] = Math.max(placeOddsMin, 0);
+            this.placeOddsMax[i] = Math.max(placeOddsMax, 0);
+            if (winOdds < 0) setNull(i, WIN);
+            if (placeOddsMin < 0) setNull(i, PLACE_MIN);
+            if (placeOddsMax < 0) setNull(i, PLACE_MAX);
+            return this;
+        }
+
+        /** 発走時刻を設定します（不明な場合は設定しない）。 */
+        public Builder postTime(Instant postTime) {
+            this.postTime = postTime;
+            return this;
+        }
+
+        public OddsSnapshot build() {
+            // 余分な容量を切り詰めて保持する
+            return new OddsSnapshot(raceName, sourceUrl, postTime, size,
+                    Arrays.copyOf(horseNumbers, size), Arrays.copyOf(horseNames, size),
+                    Arrays.copyOf(winOdds, size), Arrays.copyOf(placeOddsMin, size), Arrays.copyOf(placeOddsMax, size),
+                    Arrays.copyOf(nullBits, bitWords(size)));
+        }
+
+        private void setNull(int i, int column) {
+            int bit = i * COLUMNS + column;
+            nullBits[bit >>> 6] |= 1L << bit;
+        }
+
+        private void grow() {
+            int capacity = horseNumbers.length * 2;
+            horseNumbers = Arrays.copyOf(horseNumbers, capacity);
+            horseNames = Arrays.copyOf(horseNames, capacity);
+            winOdds = Arrays.copyOf(winOdds, capacity);
+            placeOddsMin = Arrays.copyOf(placeOddsMin, capacity);
+            placeOddsMax = Arrays.copyOf(placeOddsMax, capacity);
+            nullBits = Arrays.copyOf(nullBits, bitWords(capacity));
+        }
+
+        private static int bitWords(int capacity) {
+            return (capacity * COLUMNS + 63) >>> 6;
+        }
+
+        /** 1〜99の馬番はキャッシュ済みの文字列を共有する。 */
+        private static String canonicalHorseNumber(String horseNumber) {
+            int len = horseNumber.length();
+            if (len == 1 || len == 2) {
+                int n = 0;
+                for (int k = 0; k < len; k++) {
+                    char c = horseNumber.charAt(k);
+                    if (c < '0' || c > '9') {
+                        return horseNumber;
+                    }
+                    n = n * 10 + (c - '0');
+                }
+                if (n > 0 && horseNumber.charAt(0) != '0') {
+                    return HORSE_NUMBERS[n];
+                }
+            }
+            return horseNumber;
+        }
+    }
+}
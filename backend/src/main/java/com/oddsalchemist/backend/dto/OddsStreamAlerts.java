@@ -0,0 +1,19 @@
+package com.oddsalchemist.backend.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * SSEで配信する、1回の取得で新たに検知した異常を保持するRecordクラス。
+ *
+ * @param raceKey   レースのキー（取得元URL）
+ * @param raceName  レース名
+ * @param fetchedAt 取得時刻
+ * @param alerts    検知した異常
+ */
+public record OddsStreamAlerts(
+        String raceKey,
+        String raceName,
+        Instant fetchedAt,
+        List<AnomalyAlertDto> alerts
+) {}
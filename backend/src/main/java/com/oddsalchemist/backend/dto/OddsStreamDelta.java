@@ -0,0 +1,25 @@
+package com.oddsalchemist.backend.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * SSEで配信するレースのオッズの差分を保持するRecordクラス。
+ * keyframe が true の場合は全馬のオッズを含み、クライアントはレースの状態をこの内容で置き換える
+ * （取消などで馬が減った場合もキーフレームになる）。false の場合は前回から変化した馬のみを含む。
+ *
+ * @param raceKey   レースのキー（取得元URL）
+ * @param raceName  レース名
+ * @param postTime  発走時刻（不明な場合はnull）
+ * @param fetchedAt 取得時刻
+ * @param keyframe  trueの場合、全馬のオッズ
+ * @param odds      変化した馬（キーフレームの場合は全馬）のオッズ
+ */
+public record OddsStreamDelta(
+        String raceKey,
+        String raceName,
+        Instant postTime,
+        Instant fetchedAt,
+        boolean keyframe,
+        List<OddsData> odds
+) {}
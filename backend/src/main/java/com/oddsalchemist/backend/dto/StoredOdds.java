@@ -0,0 +1,14 @@
+package com.oddsalchemist.backend.dto;
+
+import java.time.Instant;
+
+/**
+ * オッズストアに保存された1回分の取得結果を保持するRecordクラス。
+ *
+ * @param fetchedAt 取得時刻
+ * @param snapshot  取得したオッズ
+ */
+public record StoredOdds(
+        Instant fetchedAt,
+        OddsSnapshot snapshot
+) {}
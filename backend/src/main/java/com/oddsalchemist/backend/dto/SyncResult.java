@@ -0,0 +1,33 @@
+package com.oddsalchemist.backend.dto;
+
+import java.util.List;
+
+/**
+ * 1回のオッズ取得・保存処理の結果を保持するRecordクラス。
+ *
+ * @param savedCount 保存したデータ件数（頭数）
+ * @param unchanged  前回処理時からオッズに変化がなく、処理をスキップした場合true
+ * @param alerts     今回の取得で検知した異常（スキップした場合は空）
+ */
+public record SyncResult(
+        int savedCount,
+        boolean unchanged,
+        List<AnomalyAlertDto> alerts
+) {
+
+    public SyncResult {
+        alerts = alerts == null ? List.of() : List.copyOf(alerts);
+    }
+
+    public static SyncResult saved(int savedCount) {
+        return new SyncResult(savedCount, false, List.of());
+    }
+
+    public static SyncResult saved(int savedCount, List<AnomalyAlertDto> alerts) {
+        return new SyncResult(savedCount, false, alerts);
+    }
+
+    public static SyncResult skippedUnchanged() {
+        return new SyncResult(0, true, List.of());
+    }
+}
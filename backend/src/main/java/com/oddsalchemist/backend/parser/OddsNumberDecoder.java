@@ -0,0 +1,174 @@
+package com.oddsalchemist.backend.parser;
+
+/**
+ * オッズの数値を文字列から固定小数点整数（オッズ×10）へ直接変換するデコーダー。
+ * 正規表現・部分文字列・ボクシングを使わず、文字を1つずつ走査して値を組み立てる。
+ * <p>
+ * オッズは小数第1位までの表記を前提とし、第2位以降がある場合は第1位へ四捨五入する。
+ */
+final class OddsNumberDecoder {
+
+    /** 数値として解釈できなかったことを表す値 */
+    static final int INVALID = -1;
+    /** 範囲として解釈できなかったことを表す値 */
+    static final long INVALID_RANGE = -1L;
+
+    /** 整数部の最大桁数（これを超える値はオッズとして扱わない） */
+    private static final int MAX_INTEGER_DIGITS = 8;
+
+    private OddsNumberDecoder() {
+    }
+
+    /**
+     * 単勝オッズ形式（例: "2.5", "10"）の値を解釈します。前後の空白は無視します。
+     * 以前の {@link Double#parseDouble} による解釈と同様に、整数部または小数部の省略（"2."、".5"）も受け付けます。
+     *
+     * @return オッズ×10の値。解釈できない場合は {@link #INVALID}
+     */
+    static int parseOdds(CharSequence s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return INVALID;
+        }
+
+        long value = 0;
+        int i = start;
+        int integerDigits = 0;
+        while (i < end && isDigit(s.charAt(i))) {
+            if (++integerDigits > MAX_INTEGER_DIGITS) {
+                return INVALID;
+            }
+            value = value * 10 + (s.charAt(i) - '0');
+            i++;
+        }
+        value *= 10;
+        if (i == end) {
+            return (int) value;
+        }
+        if (s.charAt(i) != '.') {
+            return INVALID;
+        }
+        i++;
+        int fractionStart = i;
+        while (i < end && isDigit(s.charAt(i))) {
+            i++;
+        }
+        if (i != end) {
+            return INVALID;
+        }
+        if (i == fractionStart) {
+            // "2." は整数部のみ、"." のみは数値ではない
+            return integerDigits == 0 ? INVALID : (int) value;
+        }
+        return (int) (value + roundedTenths(s, fractionStart, end));
+    }
+
+    /**
+     * 複勝オッズ形式（例: "1.7 - 2.4"）の範囲を文字列中から探して解釈します。
+     * 下限・上限はそれぞれ「数字.数字」の形式で、ハイフンの前後の空白は任意です。
+     *
+     * @return 上位32ビットに下限、下位32ビットに上限（いずれもオッズ×10）を詰めた値。
+     *         見つからない場合は {@link #INVALID_RANGE}
+     */
+    static long parseRange(CharSequence s) {
+        int length = s.length();
+        for (int start = 0; start < length; start++) {
+            if (!isDigit(s.charAt(start))) {
+                continue;
+            }
+            long range = matchRangeAt(s, start, length);
+            if (range != INVALID_RANGE) {
+                return range;
+            }
+        }
+        return INVALID_RANGE;
+    }
+
+    /** パック済みの範囲から下限を取り出します。 */
+    static int rangeMin(long range) {
+        return (int) (range >>> 32);
+    }
+
+    /** パック済みの範囲から上限を取り出します。 */
+    static int rangeMax(long range) {
+        return (int) range;
+    }
+
+    private static long matchRangeAt(CharSequence s, int start, int length) {
+        long min = matchDecimalAt(s, start, length);
+        if (min == INVALID_RANGE) {
+            return INVALID_RANGE;
+        }
+        int i = (int) (min >>> 32);
+        while (i < length && isRegexWhitespace(s.charAt(i))) {
+            i++;
+        }
+        if (i >= length || s.charAt(i) != '-') {
+            return INVALID_RANGE;
+        }
+        i++;
+        while (i < length && isRegexWhitespace(s.charAt(i))) {
+            i++;
+        }
+        long max = matchDecimalAt(s, i, length);
+        if (max == INVALID_RANGE) {
+            return INVALID_RANGE;
+        }
+        return ((long) (int) min << 32) | ((int) max & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 指定位置から「数字.数字」を読み取ります。
+     *
+     * @return 上位32ビットに読み終えた位置、下位32ビットに値（オッズ×10）。一致しない場合は {@link #INVALID_RANGE}
+     */
+    private static long matchDecimalAt(CharSequence s, int start, int length) {
+        int i = start;
+        long value = 0;
+        while (i < length && isDigit(s.charAt(i))) {
+            if (i - start >= MAX_INTEGER_DIGITS) {
+                return INVALID_RANGE;
+            }
+            value = value * 10 + (s.charAt(i) - '0');
+            i++;
+        }
+        if (i == start || i >= length || s.charAt(i) != '.') {
+            return INVALID_RANGE;
+        }
+        i++;
+        int fractionStart = i;
+        while (i < length && isDigit(s.charAt(i))) {
+            i++;
+        }
+        if (i == fractionStart) {
+            return INVALID_RANGE;
+        }
+        long fixed = value * 10 + roundedTenths(s, fractionStart, i);
+        return ((long) i << 32) | fixed;
+    }
+
+    /** 小数部（fractionStart〜end）を小数第1位に四捨五入した値を返します（繰り上がりで10になり得る）。 */
+    private static int roundedTenths(CharSequence s, int fractionStart, int end) {
+        int tenths = s.charAt(fractionStart) - '0';
+        if (fractionStart + 1 < end && s.charAt(fractionStart + 1) >= '5') {
+            tenths++;
+        }
+        return tenths;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** 正規表現の \s と同じ空白文字の判定 */
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -1,6 +1,7 @@
 package com.oddsalchemist.backend.parser;
 
 import com.oddsalchemist.backend.dto.OddsData;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -9,7 +10,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -19,34 +31,161 @@ public class RaceOddsParser {
 
     private static final Logger logger = LoggerFactory.getLogger(RaceOddsParser.class);
 
-    // 複勝オッズ: "1.7 - 2.4" 形式（キャプチャグループで値を取得）
-    private static final Pattern PLACE_ODDS_PATTERN = Pattern.compile("(\\d+\\.\\d+)\\s*-\\s*(\\d+\\.\\d+)");
     // titleタグからのレース名抽出: "競馬 - {レース名} オッズ - スポーツナビ"
     private static final Pattern RACE_NAME_FROM_TITLE_PATTERN = Pattern.compile("競馬 - (.+?) オッズ");
 
+    // 開催情報からの発走時刻抽出: "2024年10月27日（日） 4回東京9日 11R 15:40発走"
+    private static final Pattern POST_TIME_PATTERN =
+            Pattern.compile("(\\d{4})年(\\d{1,2})月(\\d{1,2})日[^<]*?(\\d{1,2}):(\\d{2})発走");
+    private static final String POST_TIME_MARKER = "発走";
+    /** 発走時刻の目印から遡って開催情報を探す最大文字数 */
+    private static final int POST_TIME_LOOKBEHIND = 120;
+    /** 発走時刻は日本時間で表記される */
+    private static final ZoneId RACE_ZONE = ZoneId.of("Asia/Tokyo");
+
     public List<OddsData> parse(String html) {
-        List<OddsData> oddsList = new ArrayList<>();
-        Document doc = Jsoup.parse(html);
+        return parseSnapshot(html).toOddsDataList();
+    }
+
+    /**
+     * レスポンスボディのストリームから直接パースします。
+     *
+     * @see #parseSnapshot(InputStream, String, String)
+     */
+    public List<OddsData> parse(InputStream in, String charsetName, String baseUri) throws IOException {
+        return parseSnapshot(in, charsetName, baseUri).toOddsDataList();
+    }
+
+    /** HTML文字列から1レース分のオッズを列指向のスナップショットとして抽出します。 */
+    public OddsSnapshot parseSnapshot(String html) {
+        OddsSnapshot fast = parseStreaming(html);
+        return fast != null ? fast : parseDom(Jsoup.parse(html));
+    }
 
+    /**
+     * レスポンスボディのストリームから直接、1レース分のオッズを列指向のスナップショットとして抽出します。
+     * 文字コードが確定できる場合はDOMを構築しない高速パスで抽出し、
+     * 想定外の構造だった場合のみ、デコード済みの文字列からDOMを1回だけ構築します。
+     *
+     * @param in          レスポンスボディ
+     * @param charsetName 文字コード（nullの場合はUTF-8として解釈を試み、不正ならBOMやmetaタグから判定）
+     * @param baseUri     取得元URL
+     */
+    public OddsSnapshot parseSnapshot(InputStream in, String charsetName, String baseUri) throws IOException {
+        byte[] body = in.readAllBytes();
+        String html = decode(body, charsetName);
+        if (html == null) {
+            return parseDom(Jsoup.parse(new ByteArrayInputStream(body), null, baseUri));
+        }
+        OddsSnapshot fast = parseStreaming(html, baseUri);
+        return fast != null ? fast : parseDom(Jsoup.parse(html, baseUri));
+    }
+
+    /**
+     * DOMを構築せずにタグ列を1回走査してオッズを抽出します（高速パス）。
+     *
+     * @return 抽出結果。想定外の構造を検出した場合はnull（DOMパーサーで処理すること）
+     */
+    OddsSnapshot parseStreaming(String html) {
+        return parseStreaming(html, null);
+    }
+
+    private OddsSnapshot parseStreaming(String html, String baseUri) {
+        StreamingOddsExtractor.Result extracted = StreamingOddsExtractor.extract(html);
+        if (extracted == null) {
+            logger.info("想定外のHTML構造のため、DOMパーサーにフォールバックします");
+            return null;
+        }
+
+        String raceName = resolveRaceName(extracted.raceTitle(), extracted.pageTitle());
+        OddsSnapshot.Builder builder = OddsSnapshot.builder(raceName, baseUri, extracted.rows().size())
+                .postTime(findPostTime(html));
+        for (StreamingOddsExtractor.Row row : extracted.rows()) {
+            try {
+                addRow(builder, row.horseNumber(), row.horseName(), row.winText(), row.placeText());
+            } catch (Exception e) {
+                logger.warn("行のパースに失敗しました。スキップします: {}", e.getMessage());
+            }
+        }
+
+        OddsSnapshot snapshot = builder.build();
+        logger.info("パース完了: レース名='{}' 有効な馬データ {}件", raceName, snapshot.size());
+        return snapshot;
+    }
+
+    /** DOMを構築してオッズを抽出します（高速パスで扱えない構造のためのフォールバック）。 */
+    OddsSnapshot parseDom(String html) {
+        return parseDom(Jsoup.parse(html));
+    }
+
+    private OddsSnapshot parseDom(Document doc) {
         // レース名を抽出
         String raceName = extractRaceName(doc);
 
         // スポナビのオッズテーブル行を選択
         Elements rows = doc.select("tr.hr-tableValue__row");
+        String baseUri = doc.location().isEmpty() ? null : doc.location();
+        Element raceDate = doc.selectFirst("p.hr-predictRaceInfo__date");
+        OddsSnapshot.Builder builder = OddsSnapshot.builder(raceName, baseUri, rows.size())
+                .postTime(raceDate != null ? findPostTime(raceDate.text()) : null);
 
         for (Element row : rows) {
             try {
-                OddsData data = parseRow(row, raceName);
-                if (data != null) {
-                    oddsList.add(data);
-                }
+                parseRow(row, builder);
             } catch (Exception e) {
                 logger.warn("行のパースに失敗しました。スキップします: {}", e.getMessage());
             }
         }
 
-        logger.info("パース完了: レース名='{}' 有効な馬データ {}件", raceName, oddsList.size());
-        return oddsList;
+        OddsSnapshot snapshot = builder.build();
+        logger.info("パース完了: レース名='{}' 有効な馬データ {}件", raceName, snapshot.size());
+        return snapshot;
+    }
+
+    /**
+     * 開催情報（例: "2024年10月27日（日） 4回東京9日 11R 15:40発走"）から発走時刻を抽出します。
+     * ページ全体を正規表現で走査しないよう、「発走」の位置から遡った範囲だけを照合します。
+     *
+     * @return 発走時刻。見つからない、または日時として不正な場合はnull
+     */
+    static Instant findPostTime(String text) {
+        int marker = text.indexOf(POST_TIME_MARKER);
+        while (marker >= 0) {
+            Matcher matcher = POST_TIME_PATTERN.matcher(text)
+                    .region(Math.max(0, marker - POST_TIME_LOOKBEHIND), marker + POST_TIME_MARKER.length());
+            if (matcher.find()) {
+                try {
+                    return LocalDateTime.of(
+                            Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                            Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(4)),
+                            Integer.parseInt(matcher.group(5))).atZone(RACE_ZONE).toInstant();
+                } catch (DateTimeException e) {
+                    logger.warn("発走時刻を解釈できませんでした: {}", matcher.group());
+                    return null;
+                }
+            }
+            marker = text.indexOf(POST_TIME_MARKER, marker + POST_TIME_MARKER.length());
+        }
+        return null;
+    }
+
+    /**
+     * レスポンスボディを文字列にデコードします。
+     * 文字コードの指定がない場合はUTF-8として厳密にデコードし、不正なバイト列があればnullを返します。
+     */
+    private static String decode(byte[] body, String charsetName) {
+        if (charsetName != null) {
+            return new String(body, Charset.forName(charsetName));
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(body))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
     }
 
     /**
@@ -57,17 +196,27 @@ public class RaceOddsParser {
     private String extractRaceName(Document doc) {
         // h2.hr-predictRaceInfo__title のownText（GII等のspanを除く直接テキスト）
         Element titleEl = doc.selectFirst("h2.hr-predictRaceInfo__title");
-        if (titleEl != null) {
-            String name = titleEl.ownText().trim();
+        Element titleTag = doc.selectFirst("title");
+        return resolveRaceName(
+                titleEl != null ? titleEl.ownText() : null,
+                titleTag != null ? titleTag.text() : null);
+    }
+
+    /**
+     * h2のテキストを優先し、空の場合は &lt;title&gt; のテキストから
+     * "競馬 - {レース名} オッズ" パターンでレース名を決定します。
+     */
+    private String resolveRaceName(String raceTitle, String pageTitle) {
+        if (raceTitle != null) {
+            String name = raceTitle.trim();
             if (!name.isEmpty()) {
                 return name;
             }
         }
 
         // フォールバック: <title>タグから "競馬 - {レース名} オッズ" パターンで抽出
-        Element titleTag = doc.selectFirst("title");
-        if (titleTag != null) {
-            Matcher m = RACE_NAME_FROM_TITLE_PATTERN.matcher(titleTag.text());
+        if (pageTitle != null) {
+            Matcher m = RACE_NAME_FROM_TITLE_PATTERN.matcher(pageTitle);
             if (m.find()) {
                 return m.group(1).trim();
             }
@@ -77,51 +226,63 @@ public class RaceOddsParser {
         return "";
     }
 
-    private OddsData parseRow(Element row, String raceName) {
+    private void parseRow(Element row, OddsSnapshot.Builder builder) {
         // 馬番: --number クラスのtdのうち、枠番span（hr-icon__bracketNum）を含まないもの
         Elements numberCells = row.select("td.hr-tableValue__data--number");
         String horseNumber = null;
         for (Element cell : numberCells) {
             if (cell.selectFirst("span.hr-icon__bracketNum") == null) {
-                horseNumber = cell.text().trim();
+                horseNumber = cell.text();
                 break;
             }
         }
-        if (horseNumber == null || horseNumber.isEmpty()) return null;
 
         // 馬名: --horse クラスのtd（リンクがあればそのテキストを優先）
         Element horseCell = row.selectFirst("td.hr-tableValue__data--horse");
-        if (horseCell == null) return null;
-        Element horseLink = horseCell.selectFirst("a");
-        String horseName = (horseLink != null ? horseLink.text() : horseCell.text()).trim();
-        if (horseName.isEmpty()) return null;
+        String horseName = null;
+        if (horseCell != null) {
+            Element horseLink = horseCell.selectFirst("a");
+            horseName = horseLink != null ? horseLink.text() : horseCell.text();
+        }
 
         // オッズ: --odds クラスのtd（1番目=単勝、2番目=複勝）
         Elements oddsCells = row.select("td.hr-tableValue__data--odds");
-        Double winOdds = null;
-        Double placeMin = null;
-        Double placeMax = null;
+        String winText = oddsCells.size() >= 1 ? oddsCells.get(0).text() : null;
+        String placeText = oddsCells.size() >= 2 ? oddsCells.get(1).text() : null;
 
-        if (oddsCells.size() >= 1) {
-            winOdds = parseDouble(oddsCells.get(0).text().trim());
-        }
-        if (oddsCells.size() >= 2) {
-            Matcher m = PLACE_ODDS_PATTERN.matcher(oddsCells.get(1).text().trim());
-            if (m.find()) {
-                placeMin = parseDouble(m.group(1));
-                placeMax = parseDouble(m.group(2));
+        addRow(builder, horseNumber, horseName, winText, placeText);
+    }
+
+    /**
+     * セルのテキストから1頭分のオッズをスナップショットに追加します（DOMパス・高速パス共通）。
+     * 馬番または馬名が取得できない行は追加しません。
+     */
+    private void addRow(OddsSnapshot.Builder builder, String horseNumber, String horseName,
+                        String winText, String placeText) {
+        if (horseNumber == null || horseNumber.trim().isEmpty()) return;
+        if (horseName == null || horseName.trim().isEmpty()) return;
+
+        int winOdds = winText != null ? parseWinOdds(winText) : OddsNumberDecoder.INVALID;
+        int placeMin = OddsNumberDecoder.INVALID;
+        int placeMax = OddsNumberDecoder.INVALID;
+        if (placeText != null) {
+            // 複勝オッズ: "1.7 - 2.4" 形式
+            long range = OddsNumberDecoder.parseRange(placeText);
+            if (range != OddsNumberDecoder.INVALID_RANGE) {
+                placeMin = OddsNumberDecoder.rangeMin(range);
+                placeMax = OddsNumberDecoder.rangeMax(range);
             }
         }
 
-        return new OddsData(raceName, horseNumber, horseName, winOdds, placeMin, placeMax);
+        builder.add(horseNumber.trim(), horseName.trim(), winOdds, placeMin, placeMax);
     }
 
-    private Double parseDouble(String s) {
-        try {
-            return Double.parseDouble(s.trim());
-        } catch (NumberFormatException e) {
+    /** 単勝オッズを固定小数点で返します。変換できない場合は警告を出力し、INVALIDを返します。 */
+    private int parseWinOdds(String s) {
+        int fixed = OddsNumberDecoder.parseOdds(s);
+        if (fixed == OddsNumberDecoder.INVALID) {
             logger.warn("数値変換に失敗しました: '{}'", s);
-            return null;
         }
+        return fixed;
     }
 }
@@ -0,0 +1,475 @@
+package com.oddsalchemist.backend.parser;
+
+import org.jsoup.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * DOMを構築せずにHTMLのタグ列を1回だけ走査し、オッズ表の抽出に必要なテキストだけを取り出すクラス。
+ * RaceOddsParserの高速パスとして使用する。
+ * <p>
+ * 想定外の構造（閉じられていない行・セル、行内の入れ子テーブル、セル内のブロック要素など）を検出した場合は
+ * {@code null} を返し、呼び出し元でDOMパーサーにフォールバックさせる。
+ * テキストの正規化はjsoupの {@code text()} / {@code ownText()} と同じ規則（空白の連続を1つに畳み、前後を除去）に揃えている。
+ */
+final class StreamingOddsExtractor {
+
+    static final String ROW_CLASS = "hr-tableValue__row";
+    static final String NUMBER_CELL_CLASS = "hr-tableValue__data--number";
+    static final String HORSE_CELL_CLASS = "hr-tableValue__data--horse";
+    static final String ODDS_CELL_CLASS = "hr-tableValue__data--odds";
+    static final String BRACKET_NUM_CLASS = "hr-icon__bracketNum";
+    static final String RACE_TITLE_CLASS = "hr-predictRaceInfo__title";
+
+    /** セル内で許容するインライン要素。これ以外の要素がセル内に現れた場合はフォールバックする。 */
+    private static final Set<String> CELL_INLINE_TAGS = Set.of(
+            "span", "a", "b", "strong", "em", "i", "small", "sup", "sub", "br", "wbr", "img");
+    /** 終了タグを持たない要素 */
+    private static final Set<String> VOID_TAGS = Set.of("br", "wbr", "img", "hr", "input", "meta", "link");
+
+    /** 1行分の抽出結果（各値はjsoupのtext()相当に正規化済み。該当セルがない場合はnull） */
+    record Row(String horseNumber, String horseName, String winText, String placeText) {}
+
+    /** ページ全体の抽出結果 */
+    record Result(String raceTitle, String pageTitle, List<Row> rows) {}
+
+    private final String html;
+    private final int length;
+    private int pos;
+
+    private int tableDepth;
+    private String pageTitle;
+
+    // レース名（h2.hr-predictRaceInfo__title の直下テキスト）
+    private boolean inRaceTitle;
+    private int raceTitleChildDepth;
+    private StringBuilder raceTitleText;
+    private String raceTitle;
+
+    private RowState row;
+    private CellState cell;
+    private final List<Row> rows = new ArrayList<>();
+
+    private StreamingOddsExtractor(String html) {
+        this.html = html;
+        this.length = html.length();
+    }
+
+    /**
+     * HTMLからレース名候補とオッズ表の各行を抽出します。
+     *
+     * @return 抽出結果。想定外の構造を検出した場合はnull
+     */
+    static Result extract(String html) {
+        return new StreamingOddsExtractor(html).run();
+    }
+
+    private Result run() {
+        while (pos < length) {
+            int lt = html.indexOf('<', pos);
+            if (lt < 0) {
+                text(pos, length);
+                break;
+            }
+            if (lt > pos) {
+                text(pos, lt);
+            }
+            pos = lt;
+
+            if (html.startsWith("<!--", pos)) {
+                int end = html.indexOf("-->", pos + 4);
+                pos = end < 0 ? length : end + 3;
+            } else if (html.startsWith("<!", pos) || html.startsWith("<?", pos)) {
+                int end = html.indexOf('>', pos);
+                pos = end < 0 ? length : end + 1;
+            } else if (pos + 2 < length && html.charAt(pos + 1) == '/' && isAsciiLetter(html.charAt(pos + 2))) {
+                if (!endTag()) {
+                    return null;
+                }
+            } else if (pos + 1 < length && isAsciiLetter(html.charAt(pos + 1))) {
+                if (!startTag()) {
+                    return null;
+                }
+            } else {
+                // タグとして解釈できない '<' は文字として扱う
+                text(pos, pos + 1);
+                pos++;
+            }
+        }
+
+        if (row != null || inRaceTitle) {
+            return null; // 閉じられていない行・見出しがある
+        }
+        if (rows.isEmpty() && html.contains(ROW_CLASS)) {
+            return null; // 行のマーカーがあるのに1行も認識できなかった
+        }
+        return new Result(raceTitle, pageTitle, rows);
+    }
+
+    /** 開始タグを読み取ります。解釈できない構造の場合はfalseを返します。 */
+    private boolean startTag() {
+        int nameStart = pos + 1;
+        int i = nameStart;
+        while (i < length && !isTagNameEnd(html.charAt(i))) {
+            i++;
+        }
+        String name = html.substring(nameStart, i).toLowerCase(Locale.ROOT);
+
+        // 属性（classのみ保持）
+        String classValue = null;
+        while (true) {
+            while (i < length && isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                return false;
+            }
+            char c = html.charAt(i);
+            if (c == '>') {
+                i++;
+                break;
+            }
+            if (c == '/') {
+                i++;
+                continue;
+            }
+            int attrStart = i;
+            while (i < length && !isWhitespace(html.charAt(i)) && html.charAt(i) != '=' && html.charAt(i) != '>') {
+                i++;
+            }
+            String attrName = html.substring(attrStart, i);
+            while (i < length && isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            String value = "";
+            if (i < length && html.charAt(i) == '=') {
+                i++;
+                while (i < length && isWhitespace(html.charAt(i))) {
+                    i++;
+                }
+                if (i >= length) {
+                    return false;
+                }
+                char quote = html.charAt(i);
+                if (quote == '"' || quote == '\'') {
+                    int end = html.indexOf(quote, i + 1);
+                    if (end < 0) {
+                        return false;
+                    }
+                    value = html.substring(i + 1, end);
+                    i = end + 1;
+                } else {
+                    int valueStart = i;
+                    while (i < length && !isWhitespace(html.charAt(i)) && html.charAt(i) != '>') {
+                        i++;
+                    }
+                    value = html.substring(valueStart, i);
+                }
+            }
+            if (classValue == null && attrName.equalsIgnoreCase("class")) {
+                classValue = value;
+            }
+        }
+        pos = i;
+
+        switch (name) {
+            case "script", "style" -> {
+                if (cell != null) {
+                    return false;
+                }
+                pos = skipRawText(name);
+                return true;
+            }
+            case "title" -> {
+                int end = indexOfIgnoreCase("</title", pos);
+                int contentEnd = end < 0 ? length : end;
+                if (pageTitle == null) {
+                    pageTitle = normalize(html.substring(pos, contentEnd));
+                }
+                pos = skipRawText(name);
+                return true;
+            }
+            case "table" -> {
+                if (row != null) {
+                    return false; // 行内の入れ子テーブル
+                }
+                tableDepth++;
+                return true;
+            }
+            case "tr" -> {
+                if (row != null) {
+                    return false; // 閉じられていない行
+                }
+                if (hasClass(classValue, ROW_CLASS)) {
+                    if (tableDepth == 0) {
+                        return false; // テーブル外の行（DOMでは破棄される）
+                    }
+                    row = new RowState();
+                }
+                return true;
+            }
+            case "td", "th" -> {
+                if (row == null) {
+                    return true;
+                }
+                if (cell != null) {
+                    return false; // 閉じられていないセル
+                }
+                cell = new CellState(name.equals("td"), classValue);
+                return true;
+            }
+            case "h2" -> {
+                if (inRaceTitle) {
+                    raceTitleChildDepth++;
+                } else if (raceTitle == null && row == null && hasClass(classValue, RACE_TITLE_CLASS)) {
+                    inRaceTitle = true;
+                    raceTitleChildDepth = 0;
+                    raceTitleText = new StringBuilder();
+                }
+                return true;
+            }
+            default -> {
+                boolean isVoid = VOID_TAGS.contains(name);
+                if (cell != null) {
+                    if (!CELL_INLINE_TAGS.contains(name)) {
+                        return false; // セル内のブロック要素など
+                    }
+                    if (name.equals("br")) {
+                        cell.appendText(" ");
+                    } else if (name.equals("a") && cell.anchorText == null) {
+                        cell.anchorText = new StringBuilder();
+                        cell.inAnchor = true;
+                    } else if (name.equals("span") && hasClass(classValue, BRACKET_NUM_CLASS)) {
+                        cell.hasBracketNum = true;
+                    }
+                }
+                if (inRaceTitle) {
+                    if (name.equals("br")) {
+                        raceTitleText.append(' ');
+                    } else if (!isVoid) {
+                        raceTitleChildDepth++;
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    /** 終了タグを読み取ります。解釈できない構造の場合はfalseを返します。 */
+    private boolean endTag() {
+        int nameStart = pos + 2;
+        int i = nameStart;
+        while (i < length && !isTagNameEnd(html.charAt(i))) {
+            i++;
+        }
+        String name = html.substring(nameStart, i).toLowerCase(Locale.ROOT);
+        int end = html.indexOf('>', i);
+        if (end < 0) {
+            return false;
+        }
+        pos = end + 1;
+
+        switch (name) {
+            case "table" -> {
+                if (row != null) {
+                    return false;
+                }
+                tableDepth = Math.max(0, tableDepth - 1);
+            }
+            case "tr" -> {
+                if (row != null) {
+                    if (cell != null) {
+                        return false; // セルが閉じられないまま行が終わった
+                    }
+                    rows.add(row.toRow());
+                    row = null;
+                }
+            }
+            case "td", "th" -> {
+                if (cell != null) {
+                    row.cells.add(cell);
+                    cell = null;
+                }
+            }
+            case "a" -> {
+                if (cell != null) {
+                    cell.inAnchor = false;
+                }
+                closeRaceTitleChild();
+            }
+            case "h2" -> {
+                if (inRaceTitle) {
+                    if (raceTitleChildDepth == 0) {
+                        raceTitle = normalize(raceTitleText.toString());
+                        inRaceTitle = false;
+                        raceTitleText = null;
+                    } else {
+                        raceTitleChildDepth--;
+                    }
+                }
+            }
+            default -> closeRaceTitleChild();
+        }
+        return true;
+    }
+
+    private void closeRaceTitleChild() {
+        if (inRaceTitle && raceTitleChildDepth > 0) {
+            raceTitleChildDepth--;
+        }
+    }
+
+    private void text(int start, int end) {
+        if (cell != null) {
+            cell.appendText(html, start, end);
+        }
+        if (inRaceTitle && raceTitleChildDepth == 0) {
+            raceTitleText.append(html, start, end);
+        }
+    }
+
+    /** script/style/title などの生テキスト要素を終了タグの直後まで読み飛ばします。 */
+    private int skipRawText(String name) {
+        int end = indexOfIgnoreCase("</" + name, pos);
+        if (end < 0) {
+            return length;
+        }
+        int close = html.indexOf('>', end);
+        return close < 0 ? length : close + 1;
+    }
+
+    private int indexOfIgnoreCase(String target, int from) {
+        for (int i = from; i <= length - target.length(); i++) {
+            if (html.regionMatches(true, i, target, 0, target.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** class属性にトークンとして指定クラスが含まれるか（jsoupのhasClassと同様に大文字小文字を区別しない） */
+    static boolean hasClass(String classValue, String className) {
+        if (classValue == null) {
+            return false;
+        }
+        int len = classValue.length();
+        int i = 0;
+        while (i < len) {
+            while (i < len && isWhitespace(classValue.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < len && !isWhitespace(classValue.charAt(i))) {
+                i++;
+            }
+            if (i - start == className.length() && classValue.regionMatches(true, start, className, 0, i - start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 文字参照を展開し、空白の連続を1つに畳んで前後の空白を除去します（jsoupのtext()相当）。 */
+    static String normalize(CharSequence raw) {
+        String text = raw.toString();
+        if (text.indexOf('&') >= 0) {
+            text = Parser.unescapeEntities(text, false);
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean lastWasWhitespace = true; // 先頭の空白を除去する
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c) || c == '\u00A0') {
+                if (!lastWasWhitespace) {
+                    sb.append(' ');
+                    lastWasWhitespace = true;
+                }
+            } else {
+                sb.append(c);
+                lastWasWhitespace = false;
+            }
+        }
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == ' ') {
+            sb.setLength(end - 1);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isTagNameEnd(char c) {
+        return isWhitespace(c) || c == '>' || c == '/';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static final class RowState {
+        private final List<CellState> cells = new ArrayList<>();
+
+        /** DOMパーサーと同じ規則で、馬番・馬名・単勝・複勝のセルを特定します。 */
+        private Row toRow() {
+            String horseNumber = null;
+            String horseName = null;
+            String winText = null;
+            String placeText = null;
+            boolean horseCellFound = false;
+            int oddsCells = 0;
+            for (CellState c : cells) {
+                if (c.number && horseNumber == null && !c.hasBracketNum) {
+                    horseNumber = normalize(c.text);
+                }
+                if (c.horse && !horseCellFound) {
+                    horseCellFound = true;
+                    horseName = normalize(c.anchorText != null ? c.anchorText : c.text);
+                }
+                if (c.odds) {
+                    if (oddsCells == 0) {
+                        winText = normalize(c.text);
+                    } else if (oddsCells == 1) {
+                        placeText = normalize(c.text);
+                    }
+                    oddsCells++;
+                }
+            }
+            return new Row(horseNumber, horseName, winText, placeText);
+        }
+    }
+
+    private static final class CellState {
+        private final boolean number;
+        private final boolean horse;
+        private final boolean odds;
+        private final StringBuilder text = new StringBuilder();
+        private StringBuilder anchorText;
+        private boolean inAnchor;
+        private boolean hasBracketNum;
+
+        private CellState(boolean isTd, String classValue) {
+            this.number = isTd && hasClass(classValue, NUMBER_CELL_CLASS);
+            this.horse = isTd && hasClass(classValue, HORSE_CELL_CLASS);
+            this.odds = isTd && hasClass(classValue, ODDS_CELL_CLASS);
+        }
+
+        private void appendText(String s) {
+            text.append(s);
+            if (inAnchor) {
+                anchorText.append(s);
+            }
+        }
+
+        private void appendText(String html, int start, int end) {
+            text.append(html, start, end);
+            if (inAnchor) {
+                anchorText.append(html, start, end);
+            }
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.oddsalchemist.backend.scheduler;
 
 import com.oddsalchemist.backend.config.ScrapingProperties;
-import com.oddsalchemist.backend.service.OddsSyncService;
+import com.oddsalchemist.backend.dto.SyncResult;
+import com.oddsalchemist.backend.service.OddsFetchJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * 定期的にオッズ情報を取得してスプレッドシートに保存するスケジューラー。
  * 実行間隔と対象URLはapplication.yamlのodds.scraping設定から読み込む。
@@ -16,32 +20,52 @@ public class OddsScrapingScheduler {
 
     private static final Logger logger = LoggerFactory.getLogger(OddsScrapingScheduler.class);
 
-    private final OddsSyncService oddsSyncService;
+    private final OddsFetchJobService fetchJobService;
     private final ScrapingProperties properties;
 
-    public OddsScrapingScheduler(OddsSyncService oddsSyncService, ScrapingProperties properties) {
-        this.oddsSyncService = oddsSyncService;
+    public OddsScrapingScheduler(OddsFetchJobService fetchJobService, ScrapingProperties properties) {
+        this.fetchJobService = fetchJobService;
         this.properties = properties;
     }
 
     /**
      * application.yamlのodds.scraping.cronに従って定期実行します。
-     * 各URLに対して順番にスクレイピングを行い、失敗してもシステムを止めません。
+     * 並列モードが有効な場合は各URLを仮想スレッドで同時に、無効な場合は順番にスクレイピングします。
+     * いずれのモードでも、1件が失敗してもシステムを止めません。
+     * 手動取得で同じURLの取得が実行中の場合は、重複してスクレイピングせずにその結果を待ちます。
      */
     @Scheduled(cron = "${odds.scraping.cron}")
     public void scrapeAllTargets() {
         int urlCount = properties.targetUrls().size();
-        logger.info("定期スクレイピング開始: 対象URL数={}", urlCount);
-
-        for (String url : properties.targetUrls()) {
-            try {
-                int saved = oddsSyncService.fetchAndSaveOdds(url, properties.sheetRange());
-                logger.info("スクレイピング完了: URL={}, 保存件数={}", url, saved);
-            } catch (Exception e) {
-                logger.error("スクレイピング失敗: URL={}", url, e);
+        boolean concurrent = properties.concurrency().enabled();
+        logger.info("定期スクレイピング開始: 対象URL数={}, 並列モード={}", urlCount, concurrent);
+
+        if (concurrent) {
+            // ホスト単位の同時実行数・レートはOddsScrapingService側のHostThrottleで制御される
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (String url : properties.targetUrls()) {
+                    executor.submit(() -> scrapeTarget(url));
+                }
+            }
+        } else {
+            for (String url : properties.targetUrls()) {
+                scrapeTarget(url);
             }
         }
 
         logger.info("定期スクレイピング全完了: 対象URL数={}", urlCount);
     }
+
+    private void scrapeTarget(String url) {
+        try {
+            SyncResult result = fetchJobService.fetch(url, properties.sheetRange());
+            if (result.unchanged()) {
+                logger.info("スクレイピング完了（変化なし）: URL={}", url);
+            } else {
+                logger.info("スクレイピング完了: URL={}, 保存件数={}", url, result.savedCount());
+            }
+        } catch (Exception e) {
+            logger.error("スクレイピング失敗: URL={}", url, e);
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.oddsalchemist.backend.scheduler;
+
+import com.oddsalchemist.backend.service.LatestOddsCache;
+import com.oddsalchemist.backend.service.OddsAnomalyDetector;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+
+/**
+ * 異常検知の状態と最新オッズのキャッシュを保持しているレースの終了・破棄を定期的に判定するスケジューラー。
+ * 実行間隔はapplication.yamlのodds.detector.sweep-interval設定から読み込む。
+ */
+@Component
+public class RaceLifecycleScheduler {
+
+    private final OddsAnomalyDetector anomalyDetector;
+    private final LatestOddsCache latestOddsCache;
+    private final Clock clock;
+
+    public RaceLifecycleScheduler(OddsAnomalyDetector anomalyDetector, LatestOddsCache latestOddsCache, Clock clock) {
+        this.anomalyDetector = anomalyDetector;
+        this.latestOddsCache = latestOddsCache;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${odds.detector.sweep-interval:PT1M}")
+    public void expireRaces() {
+        anomalyDetector.expireRaces();
+        latestOddsCache.expire(clock.instant());
+    }
+}
@@ -0,0 +1,166 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.DetectorProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 異常検知の状態（開催中レースのオッズ履歴）をローカルのバイナリファイルへ書き出し、再起動時に読み込むストア。
+ * 再デプロイ直後の1サイクル目から前回までの履歴と比較して検知できるようにする。
+ * <p>
+ * 書き出しは一時ファイルに書いてディスクへ同期してから置き換えるため、書き出し中に停止しても前回のファイルは壊れない。
+ * 読み込みはファイルをメモリマップして直接デコードする。末尾の長さとCRC32が一致しないファイルや、
+ * 途中で壊れているファイルは読み込まず、空の状態で起動する。
+ * 書き出しから idle-ttl 以上経過したファイルは、全レースが終了扱いとなるため読み込まない。
+ * <p>
+ * ファイル形式（ビッグエンディアン）: マジック(int)・バージョン(int)・書き出し時刻(long)・レースごとの状態
+ * （{@link OddsAnomalyDetector#writeCheckpoint}）・トレーラー（ここまでのバイト数(int)・ここまでのCRC32(int)）
+ */
+@Component
+public class DetectorCheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorCheckpointStore.class);
+
+    /** ファイル先頭の識別子（"OACP"） */
+    static final int MAGIC = 0x4F414350;
+    static final int VERSION = 2;
+    /** ヘッダー（マジック・バージョン・書き出し時刻）のバイト数 */
+    private static final int HEADER_BYTES = 16;
+    /** トレーラー（バイト数・CRC32）のバイト数 */
+    private static final int TRAILER_BYTES = 8;
+
+    private final OddsAnomalyDetector anomalyDetector;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Path path;
+    private final Duration maxAge;
+
+    public DetectorCheckpointStore(OddsAnomalyDetector anomalyDetector, DetectorProperties properties, Clock clock) {
+        this.anomalyDetector = anomalyDetector;
+        this.clock = clock;
+        this.enabled = properties.checkpoint().enabled();
+        this.path = Path.of(properties.checkpoint().path());
+        this.maxAge = properties.idleTtl();
+    }
+
+    /**
+     * 起動時にチェックポイントファイルから検知状態を復元します。
+     * ファイルがない・古い・壊れている場合は、空の状態のまま起動します。
+     */
+    @PostConstruct
+    public void restore() {
+        if (!enabled || !Files.isRegularFile(path)) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+                logger.warn("チェックポイントのサイズが不正なため読み込みをスキップします: {}バイト, {}", size, path);
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int length = (int) size - TRAILER_BYTES;
+            if (buffer.getInt(length) != length || buffer.getInt(length + Integer.BYTES) != crc32(buffer, length)) {
+                logger.warn("チェックポイントが途中で切れているか壊れているため読み込みをスキップします: {}", path);
+                return;
+            }
+            buffer.limit(length);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                logger.warn("チェックポイントの形式が異なるため読み込みをスキップします: {}", path);
+                return;
+            }
+            long writtenAtMillis = buffer.getLong();
+            long ageMillis = clock.millis() - writtenAtMillis;
+            if (ageMillis >= maxAge.toMillis()) {
+                logger.info("チェックポイントが古いため読み込みをスキップします: 経過={}秒", ageMillis / 1000);
+                return;
+            }
+            int restored = anomalyDetector.restoreCheckpoint(buffer);
+            logger.info("チェックポイントから検知状態を復元しました: レース数={}, 所要時間={}ms",
+                    restored, (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("チェックポイントの読み込みに失敗しました。空の状態で起動します: {}", path, e);
+        }
+    }
+
+    private static int crc32(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, length));
+        return (int) crc.getValue();
+    }
+
+    /** 検知状態を定期的に書き出します。 */
+    @Scheduled(fixedDelayString = "${odds.detector.checkpoint.interval:PT1M}")
+    public void checkpoint() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            save();
+        } catch (IOException e) {
+            logger.error("チェックポイントの書き出しに失敗しました: {}", path, e);
+        }
+    }
+
+    /** 終了時に最新の検知状態を書き出します。 */
+    @PreDestroy
+    public void checkpointOnShutdown() {
+        checkpoint();
+    }
+
+    /** 検知状態をチェックポイントファイルへ書き出します。 */
+    void save() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            int races;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel)), crc));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(clock.millis());
+                races = anomalyDetector.writeCheckpoint(out);
+                int length = out.size();
+                int checksum = (int) crc.getValue();
+                out.writeInt(length);
+                out.writeInt(checksum);
+                out.flush();
+                // 置き換え後に停止しても内容が残るよう、移動の前にディスクへ同期する
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.debug("チェックポイントを書き出しました: レース数={}, パス={}", races, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
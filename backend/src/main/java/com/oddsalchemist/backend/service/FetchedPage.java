@@ -0,0 +1,38 @@
+package com.oddsalchemist.backend.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * オッズページの取得結果を保持するRecordクラス。
+ * レスポンスボディは文字列化せず、展開済みの生バイト列のまま保持する。
+ * 前回の処理済み内容から変化がない場合は changed=false となり、body は null になる。
+ *
+ * @param url          取得元URL
+ * @param body         展開済みのレスポンスボディ（未変更の場合はnull）
+ * @param charset      Content-Typeで指定された文字コード（指定がない場合はnullとし、パーサー側で判定する）
+ * @param changed      前回処理した内容から変化があるかどうか
+ * @param etag         レスポンスのETagヘッダー（次回の条件付きリクエストに使用）
+ * @param lastModified レスポンスのLast-Modifiedヘッダー（次回の条件付きリクエストに使用）
+ * @param contentHash  オッズテーブル部分のハッシュ値
+ */
+public record FetchedPage(
+        String url,
+        byte[] body,
+        String charset,
+        boolean changed,
+        String etag,
+        String lastModified,
+        String contentHash
+) {
+
+    /** 前回から変化がなかったことを表す取得結果を生成します。 */
+    static FetchedPage unchanged(String url) {
+        return new FetchedPage(url, null, null, false, null, null, null);
+    }
+
+    /** レスポンスボディを読み出すストリームを返します（コピーは作成しません）。 */
+    public InputStream openStream() {
+        return new ByteArrayInputStream(body);
+    }
+}
@@ -1,45 +1,138 @@
 package com.oddsalchemist.backend.service;
 
 import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.AddSheetRequest;
 import com.google.api.services.sheets.v4.model.AppendValuesResponse;
+import com.google.api.services.sheets.v4.model.BatchUpdateSpreadsheetRequest;
+import com.google.api.services.sheets.v4.model.BatchUpdateSpreadsheetResponse;
+import com.google.api.services.sheets.v4.model.Request;
+import com.google.api.services.sheets.v4.model.Sheet;
+import com.google.api.services.sheets.v4.model.SheetProperties;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
 import com.google.api.services.sheets.v4.model.ValueRange;
+import com.oddsalchemist.backend.config.SheetsWriteProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Google Sheets API の呼び出しをまとめるサービス。
+ * 追記だけでなくシートの一覧の取得・作成もクォータを消費するため、すべてのリクエストを1つのトークンバケットで
+ * odds.sheets.write.requests-per-minute 以下に抑える。
+ */
 @Service
+@ConditionalOnProperty(prefix = "odds.sheets", name = "enabled", havingValue = "true", matchIfMissing = true)
 public class GoogleSheetsService {
 
     private static final Logger logger = LoggerFactory.getLogger(GoogleSheetsService.class);
     private static final String VALUE_INPUT_OPTION = "USER_ENTERED";
     private final Sheets sheetsService;
     private final String spreadsheetId;
+    /** シート名ごとのシートID（書き込み先のシートが存在するかの確認に使う） */
+    private final ConcurrentHashMap<String, Integer> sheetIds = new ConcurrentHashMap<>();
+    private volatile boolean sheetIdsLoaded;
+    /** Sheets APIへの全リクエストの送信回数の上限 */
+    private final TokenBucket rate;
 
     public GoogleSheetsService(
             Sheets sheetsService,
-            @Value("${google.sheets.spreadsheet-id}") String spreadsheetId) {
+            @Value("${google.sheets.spreadsheet-id}") String spreadsheetId,
+            SheetsWriteProperties writeProperties) {
         this.sheetsService = sheetsService;
         this.spreadsheetId = spreadsheetId;
+        this.rate = new TokenBucket(writeProperties.requestsPerMinute() / 60.0, 1);
     }
 
     /**
-     * スプレッドシートの指定レンジにデータを追記します。
+     * スプレッドシートの指定レンジにデータを追記します。レンジのシートが存在しない場合は作成してから追記します。
      */
     public void appendData(String range, List<List<Object>> values) throws IOException {
+        String title = SheetsShardRouter.sheetTitleOf(range);
+        ensureSheet(title);
         ValueRange body = new ValueRange().setValues(values);
 
-        AppendValuesResponse result = sheetsService.spreadsheets().values()
-                .append(spreadsheetId, range, body)
-                .setValueInputOption(VALUE_INPUT_OPTION)
-                .execute();
+        AppendValuesResponse result;
+        try {
+            acquire();
+            result = sheetsService.spreadsheets().values()
+                    .append(spreadsheetId, range, body)
+                    .setValueInputOption(VALUE_INPUT_OPTION)
+                    .execute();
+        } catch (IOException e) {
+            // シートが手動で削除された場合などに備え、次回はシートの一覧を取得し直す
+            sheetIds.remove(title);
+            sheetIdsLoaded = false;
+            throw e;
+        }
 
         if (result != null && result.getUpdates() != null) {
             logger.info("スプレッドシートへの書き込み完了。更新されたセル数: {}",
                     result.getUpdates().getUpdatedCells());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * シートが存在しない場合は作成し、シートIDを返します。
+     * シートIDはキャッシュし、既知のシートへの書き込みではAPIを呼び出しません。
+     */
+    int ensureSheet(String title) throws IOException {
+        Integer sheetId = sheetIds.get(title);
+        if (sheetId != null) {
+            return sheetId;
+        }
+        synchronized (this) {
+            if (!sheetIdsLoaded) {
+                loadSheetIds();
+            }
+            sheetId = sheetIds.get(title);
+            if (sheetId != null) {
+                return sheetId;
+            }
+            sheetId = addSheet(title);
+            sheetIds.put(title, sheetId);
+            return sheetId;
+        }
+    }
+
+    private void loadSheetIds() throws IOException {
+        acquire();
+        Spreadsheet spreadsheet = sheetsService.spreadsheets().get(spreadsheetId)
+                .setFields("sheets.properties(sheetId,title)")
+                .execute();
+        sheetIds.clear();
+        if (spreadsheet.getSheets() != null) {
+            for (Sheet sheet : spreadsheet.getSheets()) {
+                sheetIds.put(sheet.getProperties().getTitle(), sheet.getProperties().getSheetId());
+            }
+        }
+        sheetIdsLoaded = true;
+    }
+
+    private int addSheet(String title) throws IOException {
+        BatchUpdateSpreadsheetRequest request = new BatchUpdateSpreadsheetRequest().setRequests(List.of(
+                new Request().setAddSheet(new AddSheetRequest().setProperties(new SheetProperties().setTitle(title)))));
+        acquire();
+        BatchUpdateSpreadsheetResponse response = sheetsService.spreadsheets().batchUpdate(spreadsheetId, request)
+                .execute();
+        int sheetId = response.getReplies().get(0).getAddSheet().getProperties().getSheetId();
+        logger.info("スプレッドシートにシートを作成しました: シート名={}, シートID={}", title, sheetId);
+        return sheetId;
+    }
+
+    /** 送信回数の上限に収まるまで待機します。 */
+    private void acquire() throws InterruptedIOException {
+        try {
+            rate.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Sheets APIへの送信待ちが中断されました");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.ScrapingProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 取得先ホストごとの同時接続数とリクエストレートを制限するスロットル。
+ * 定期実行と手動取得（/fetch）の両方がOddsScrapingService経由でこのインスタンスを共有するため、
+ * 取得元に関係なく同一ホストへの負荷の合計が上限内に収まる。
+ */
+@Component
+public class HostThrottle {
+
+    private final ScrapingProperties.Concurrency settings;
+    private final ConcurrentHashMap<String, HostGate> gates = new ConcurrentHashMap<>();
+
+    public HostThrottle(ScrapingProperties properties) {
+        this.settings = properties.concurrency();
+    }
+
+    /**
+     * 指定URLのホストに対する実行許可を取得します。
+     * 同時実行数の空きとトークンの補充を待ってから返ります。
+     *
+     * @return 処理完了時にcloseする許可（try-with-resourcesで使用する）
+     */
+    public Permit acquire(String url) throws InterruptedException {
+        HostGate gate = gates.computeIfAbsent(hostOf(url), host -> new HostGate(settings));
+        gate.slots.acquire();
+        try {
+            gate.rate.acquire();
+        } catch (InterruptedException e) {
+            gate.slots.release();
+            throw e;
+        }
+        return gate.slots::release;
+    }
+
+    /** URLからホスト名を取り出します。解釈できない場合はURL全体をキーとして扱います。 */
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    /** ホストへの実行許可。closeで同時実行枠を返却する。 */
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class HostGate {
+        private final Semaphore slots;
+        private final TokenBucket rate;
+
+        private HostGate(ScrapingProperties.Concurrency settings) {
+            this.slots = new Semaphore(settings.maxPerHost(), true);
+            this.rate = new TokenBucket(settings.requestsPerSecond(), settings.burst());
+        }
+    }
+}
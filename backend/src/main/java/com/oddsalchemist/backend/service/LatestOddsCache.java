@@ -0,0 +1,131 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.LatestOdds;
+import com.oddsalchemist.backend.dto.LatestOddsSummary;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * レースごとの最新のオッズと異常検知の結果を、シリアライズ済みのJSONとして保持するキャッシュ。
+ * スケジューラーによる取得（{@link OddsUpdatedEvent}）のたびに更新し、参照APIはスクレイピングや
+ * スプレッドシートを経由せずにこのキャッシュから応答する。
+ * <p>
+ * JSONは更新時に1回だけシリアライズし、参照ごとにはシリアライズしない。
+ * 各エントリーにはバージョン付きのETagを付け、クライアントは If-None-Match で未更新（304）を確認できる。
+ * ETagには起動時刻を含め、再起動後に同じバージョン番号の別の内容と一致しないようにする。
+ */
+@Component
+public class LatestOddsCache {
+
+    /** 最後の更新からこの時間が経過したレースは破棄する */
+    static final Duration RETENTION = Duration.ofHours(24);
+
+    private final JsonMapper jsonMapper;
+    private final String etagPrefix;
+
+    // 更新は this で排他制御する（レース一覧をバージョンの順に再構築するため）
+    private final ConcurrentHashMap<String, Race> races = new ConcurrentHashMap<>();
+    private long version;
+    private volatile Entry index;
+
+    public LatestOddsCache(JsonMapper jsonMapper, Clock clock) {
+        this.jsonMapper = jsonMapper;
+        this.etagPrefix = Long.toString(clock.millis(), 36) + "-";
+        this.index = new Entry(etag(0), jsonMapper.writeValueAsBytes(List.of()));
+    }
+
+    /** レースの最新のオッズを更新し、レース一覧を再構築します。 */
+    @EventListener
+    public synchronized void onOddsUpdated(OddsUpdatedEvent event) {
+        OddsSnapshot snapshot = event.snapshot();
+        long next = ++version;
+        LatestOdds latest = new LatestOdds(snapshot.raceKey(), snapshot.raceName(), snapshot.postTime(),
+                event.fetchedAt(), next, snapshot.toOddsDataList(), List.copyOf(event.alerts()));
+        LatestOddsSummary summary = new LatestOddsSummary(latest.raceKey(), latest.raceName(), latest.postTime(),
+                latest.fetchedAt(), next, latest.alerts().size());
+        races.put(snapshot.raceKey(), new Race(summary, new Entry(etag(next), jsonMapper.writeValueAsBytes(latest))));
+        rebuildIndex();
+    }
+
+    /**
+     * 最後の更新から保持期間が経過したレースを破棄します。
+     *
+     * @return 破棄したレースの数
+     */
+    public synchronized int expire(Instant now) {
+        Instant threshold = now.minus(RETENTION);
+        int before = races.size();
+        races.values().removeIf(race -> race.summary().fetchedAt().isBefore(threshold));
+        int removed = before - races.size();
+        if (removed > 0) {
+            version++;
+            rebuildIndex();
+        }
+        return removed;
+    }
+
+    /** レース一覧（取得時刻の新しい順）のJSON */
+    public Entry index() {
+        return index;
+    }
+
+    /**
+     * レースの最新のオッズのJSONを返します。
+     *
+     * @return 保持していない場合はnull
+     */
+    public Entry race(String raceKey) {
+        Race race = races.get(raceKey);
+        return race != null ? race.entry() : null;
+    }
+
+    private void rebuildIndex() {
+        List<LatestOddsSummary> summaries = races.values().stream()
+                .map(Race::summary)
+                .sorted(Comparator.comparing(LatestOddsSummary::fetchedAt).reversed()
+                        .thenComparing(LatestOddsSummary::raceKey))
+                .toList();
+        index = new Entry(etag(version), jsonMapper.writeValueAsBytes(summaries));
+    }
+
+    private String etag(long version) {
+        return "\"" + etagPrefix + version + "\"";
+    }
+
+    /**
+     * シリアライズ済みの応答。
+     *
+     * @param etag ETag（引用符を含む）
+     * @param body JSON（UTF-8）
+     */
+    public record Entry(String etag, byte[] body) {
+
+        /**
+         * If-None-Match ヘッダーの値がこのETagに一致するかを判定します（弱いETag・複数指定・* に対応）。
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.strip();
+                if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Race(LatestOddsSummary summary, Entry entry) {
+    }
+}
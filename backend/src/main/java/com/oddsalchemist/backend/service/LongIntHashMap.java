@@ -0,0 +1,112 @@
+package com.oddsalchemist.backend.service;
+
+/**
+ * long型のキーからint型の値を引く、オープンアドレス法（線形探索）のハッシュマップ。
+ * キー・値をプリミティブ配列で保持し、エントリごとのオブジェクトやボクシングを発生させない。
+ * <p>
+ * キー 0 は空きスロットを表すため使用できない（{@link RaceRegistry#horseKey} は0を返さない）。
+ * 馬の履歴のスロットは破棄しない（レースの終了時は履歴ごと破棄する）ため、削除には対応しない。
+ * スレッドセーフではないため、呼び出し側で排他制御すること。
+ */
+final class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(expectedSize * 2, MIN_CAPACITY));
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * キーに対応する値を返します。
+     *
+     * @return 値。キーが存在しない場合は defaultValue
+     */
+    int get(long key, int defaultValue) {
+        int slot = indexOf(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    /** キーに値を関連付けます（既存の値は上書き）。 */
+    void put(long key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("キー 0 は使用できません");
+        }
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** テーブルとして確保している配列のバイト数 */
+    long retainedBytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    private int indexOf(long key) {
+        if (key == 0) {
+            return -1;
+        }
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = mix(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /** 上位ビット（レースID）と下位ビット（馬番）の両方をハッシュに反映させる。 */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int n) {
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -1,202 +1,649 @@
 package com.oddsalchemist.backend.service;
 
+import com.oddsalchemist.backend.config.DetectorProperties;
 import com.oddsalchemist.backend.dto.AnomalyAlertDto;
 import com.oddsalchemist.backend.dto.OddsData;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.math.RoundingMode;
+import java.time.Clock;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntUnaryOperator;
 
 /**
  * オッズデータの異常を検知するサービス。
  * 以下の2種類の異常を検知する:
  * <ul>
- *   <li>ロジックA: 支持率の急増（+2.0%以上）</li>
+ *   <li>ロジックA: 支持率の急増（+2.0%以上。設定した時間窓内、または前回取得時との比較）</li>
  *   <li>ロジックB: 単複オッズの順位乖離（ギャップ3以上）</li>
  * </ul>
  * 上位3番人気（単勝1〜3位）はノイズが大きいため検知対象から除外する。
+ * <p>
+ * 検知の状態（オッズ履歴）はレースごとに分割して保持し、ロックもレース単位で取るため、
+ * 異なるレースの検知は互いに待たずに並列で実行できる。
+ * 最新のアラートはレースごとの不変マップとしてまとめて差し替えるため、参照側はロックなしで
+ * 全レースについて一貫したスナップショットを読める。
+ * <p>
+ * レースは初回の検知で「開催中」となり、発走時刻を過ぎるか、検知が行われないまま一定時間（idle-ttl）が
+ * 経過すると「終了」となる。終了したレースは最終のオッズを確定オッズとして保持したまま検知用の履歴を破棄し、
+ * 保持期間（closed-retention）の経過後にレースの状態をすべて破棄する。
+ * これにより、長期間稼働してもメモリ使用量は監視中のレース数に比例した範囲に収まる。
  */
 @Service
 public class OddsAnomalyDetector {
 
     private static final Logger logger = LoggerFactory.getLogger(OddsAnomalyDetector.class);
 
-    /** 支持率急増の閾値（+2.0% = 0.02） */
-    static final BigDecimal SUPPORT_RATE_THRESHOLD = new BigDecimal("0.02");
+    /** 支持率急増の閾値（+2.0% = 0.02 = 1/50）の逆数 */
+    static final int SUPPORT_RATE_THRESHOLD_INVERSE = 50;
+
+    /** アラート値を算出する際のBigDecimal除算の小数点以下桁数 */
+    private static final int SUPPORT_RATE_SCALE = 10;
 
     /** 単複順位乖離の閾値 */
     static final int RANK_GAP_THRESHOLD = 3;
 
-    /** BigDecimal除算時の小数点以下桁数 */
-    private static final int SUPPORT_RATE_SCALE = 10;
+    /** 状態（開催中/終了）ごとのレース数のメトリクス名 */
+    static final String RACES_GAUGE = "odds.detector.races";
+    /** 検知状態として保持しているおおよそのバイト数のメトリクス名 */
+    static final String RETAINED_BYTES_GAUGE = "odds.detector.retained.bytes";
+
+    /** 発走時刻が不明なことを表す値 */
+    private static final long UNKNOWN_POST_TIME = Long.MAX_VALUE;
 
     /**
-     * 前回の単勝オッズを保持するインメモリキャッシュ。
-     * キー: "レース名:馬番"（一意な馬識別子）
+     * 1レースの想定最大頭数（JRAの平地競走のフルゲート）。オッズ履歴の配列を初めからこの頭数分確保し、
+     * 通常のレースでは再確保が起きないようにする（超えた場合は OddsHistory が配列を拡張する）。
      */
-    private final ConcurrentHashMap<String, Double> previousWinOdds = new ConcurrentHashMap<>();
+    private static final int EXPECTED_MAX_RUNNERS = 18;
 
-    /** 最新の異常検知アラートリスト（スレッドセーフ） */
-    private final List<AnomalyAlertDto> latestAlerts = new CopyOnWriteArrayList<>();
+    private final RaceRegistry raceRegistry;
+    private final Clock clock;
+    /** 支持率急増の判定に使う時間窓（ミリ秒）。0の場合は前回取得時と比較する */
+    private final long windowMillis;
+
+    private final int historySize;
+    private final long idleTtlMillis;
+    private final long closedRetentionMillis;
+
+    /** レースIDごとの検知状態 */
+    private final ConcurrentHashMap<Integer, RaceState> raceStates = new ConcurrentHashMap<>();
+
+    /**
+     * レースごとの最新の異常検知アラート（キー: {@link OddsSnapshot#raceKey()}）。
+     * 更新時は新しい不変マップを作ってアトミックに差し替える。
+     */
+    private final AtomicReference<Map<String, List<AnomalyAlertDto>>> latestAlerts =
+            new AtomicReference<>(Collections.emptyMap());
+
+    public OddsAnomalyDetector(RaceRegistry raceRegistry, DetectorProperties properties, Clock clock,
+                               MeterRegistry meterRegistry) {
+        this.raceRegistry = raceRegistry;
+        this.clock = clock;
+        this.windowMillis = properties.window().toMillis();
+        this.historySize = properties.historySize();
+        this.idleTtlMillis = properties.idleTtl().toMillis();
+        this.closedRetentionMillis = properties.closedRetention().toMillis();
+
+        Gauge.builder(RACES_GAUGE, this, d -> d.countRaces(RaceStatus.ACTIVE))
+                .description("異常検知の状態を保持しているレース数")
+                .tag("state", "active")
+                .register(meterRegistry);
+        Gauge.builder(RACES_GAUGE, this, d -> d.countRaces(RaceStatus.CLOSED))
+                .description("異常検知の状態を保持しているレース数")
+                .tag("state", "closed")
+                .register(meterRegistry);
+        Gauge.builder(RETAINED_BYTES_GAUGE, this, OddsAnomalyDetector::retainedBytes)
+                .description("異常検知の状態（オッズ履歴と確定オッズ）として保持しているおおよそのバイト数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
 
     /**
-     * オッズデータリストを解析し、異常を検知してアラートリストを返します。
-     * 検知結果は内部の最新アラートリストに保存されます。
+     * 1レース分のオッズを解析し、異常を検知してアラートリストを返します。
+     * 検知結果はこのレースの最新アラートとして保存されます（他のレースのアラートには影響しません）。
      *
-     * @param oddsList 最新のパース済みオッズデータ
+     * @param snapshot 最新のパース済みオッズ（列指向）
      * @return 検知されたアラートのリスト（変更不可）
      */
-    public List<AnomalyAlertDto> detect(List<OddsData> oddsList) {
-        List<AnomalyAlertDto> alerts = new ArrayList<>();
+    public List<AnomalyAlertDto> detect(OddsSnapshot snapshot) {
+        List<AnomalyAlertDto> alerts = detectRace(snapshot);
+        publishAlerts(Map.of(snapshot.raceKey(), alerts));
+        return alerts;
+    }
 
-        // 単勝オッズが有効なデータのみを対象とする
-        List<OddsData> validList = oddsList.stream()
-                .filter(d -> d.winOdds() != null && d.winOdds() > 0)
-                .collect(Collectors.toList());
+    /**
+     * 従来形式のオッズデータリストを解析します。
+     * レース名ごとにスナップショットへ変換してレース単位に検知し、全レースの検知結果を1回の差し替えで
+     * まとめて最新アラートに反映します。
+     *
+     * @param oddsList 最新のパース済みオッズデータ
+     * @return 検知されたアラートのリスト（レースの出現順、変更不可）
+     */
+    public List<AnomalyAlertDto> detect(List<OddsData> oddsList) {
+        Map<String, List<OddsData>> byRace = new LinkedHashMap<>();
+        for (OddsData d : oddsList) {
+            byRace.computeIfAbsent(d.raceName(), k -> new ArrayList<>()).add(d);
+        }
 
-        if (!validList.isEmpty()) {
-            // 単勝オッズ昇順でソート（値が小さいほど人気上位）
-            List<OddsData> sortedByWin = validList.stream()
-                    .sorted(Comparator.comparingDouble(OddsData::winOdds))
-                    .collect(Collectors.toList());
+        Map<String, List<AnomalyAlertDto>> alertsByRace = new LinkedHashMap<>();
+        List<AnomalyAlertDto> alerts = new ArrayList<>();
+        for (List<OddsData> race : byRace.values()) {
+            OddsSnapshot snapshot = OddsSnapshot.of(race);
+            List<AnomalyAlertDto> raceAlerts = detectRace(snapshot);
+            alertsByRace.put(snapshot.raceKey(), raceAlerts);
+            alerts.addAll(raceAlerts);
+        }
+        publishAlerts(alertsByRace);
+        return Collections.unmodifiableList(alerts);
+    }
 
-            // 上位3番人気の除外対象キーセット（単勝1〜3位）
-            Set<String> top3Keys = sortedByWin.stream()
-                    .limit(3)
-                    .map(d -> buildKey(d.raceName(), d.horseNumber()))
-                    .collect(Collectors.toSet());
+    /**
+     * 1レース分の検知を行います。同じレースの検知はレースの状態をロックして直列に実行し、
+     * 履歴の参照から今回分の追記までを他の呼び出しと混ざらないようにする。
+     */
+    private List<AnomalyAlertDto> detectRace(OddsSnapshot snapshot) {
+        String raceKey = snapshot.raceKey();
+        while (true) {
+            int raceId = raceRegistry.idOf(raceKey);
+            RaceState state = raceStates.computeIfAbsent(raceId, id -> new RaceState(raceKey, id, historySize));
+            synchronized (state) {
+                if (state.evicted) {
+                    continue; // 破棄と競合した場合は新しい状態を取り直す
+                }
+                long now = clock.millis();
+                state.lastSeenMillis = now;
+                if (snapshot.postTime() != null) {
+                    state.postTimeMillis = snapshot.postTime().toEpochMilli();
+                }
+
+                if (now >= state.postTimeMillis) {
+                    // 発走後の最初の取得を確定オッズとしてレースを終了し、検知は行わない
+                    // （終了後の取得で確定オッズを上書きしない）
+                    if (state.status == RaceStatus.ACTIVE) {
+                        state.latestOdds = snapshot;
+                        closeRace(state, now);
+                    }
+                    return List.of();
+                }
+                if (state.status == RaceStatus.CLOSED) {
+                    // 発走前に無通信で終了扱いとなったレースの取得が再開された
+                    state.reopen(historySize);
+                    logger.info("レースの監視を再開: レース={}", raceKey);
+                }
+                state.latestOdds = snapshot;
+
+                List<AnomalyAlertDto> alerts = new ArrayList<>();
+                detectRace(snapshot, raceId, state, now, alerts);
+                return List.copyOf(alerts);
+            }
+        }
+    }
 
-            // 単勝順位マップ（キー: "レース名:馬番", 値: 1始まりの順位）
-            Map<String, Integer> winRankMap = new HashMap<>();
-            for (int i = 0; i < sortedByWin.size(); i++) {
-                OddsData d = sortedByWin.get(i);
-                winRankMap.put(buildKey(d.raceName(), d.horseNumber()), i + 1);
+    private void detectRace(OddsSnapshot snapshot, int raceId, RaceState state, long now,
+                            List<AnomalyAlertDto> alerts) {
+        OddsHistory history = state.winOddsHistory;
+        // 単勝オッズが有効な馬のインデックスのみを対象とする
+        int[] valid = new int[snapshot.size()];
+        int validCount = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.hasWinOdds(i) && snapshot.winOddsFixed(i) > 0) {
+                valid[validCount++] = i;
             }
+        }
+        if (validCount == 0) {
+            return;
+        }
+        valid = Arrays.copyOf(valid, validCount);
 
-            // ロジックA: 支持率急増検知
-            detectSupportRateIncrease(validList, top3Keys, alerts);
+        // 馬ごとのキー（レースID＋馬番）を1回だけ算出する
+        long[] horseKeys = new long[snapshot.size()];
+        for (int i : valid) {
+            horseKeys[i] = RaceRegistry.horseKey(raceId, snapshot.horseNumber(i));
+        }
 
-            // ロジックB: 単複オッズ順位乖離検知
-            detectRankDivergence(validList, top3Keys, winRankMap, alerts);
+        // 単勝オッズ昇順でソート（値が小さいほど人気上位）
+        int[] sortedByWin = valid.clone();
+        sortByOdds(sortedByWin, snapshot::winOddsFixed);
 
-            // 前回データを更新（上位3番人気を含む全有効馬）
-            validList.forEach(d -> previousWinOdds.put(buildKey(d.raceName(), d.horseNumber()), d.winOdds()));
+        // 単勝順位（1始まり、インデックスは馬の位置）と上位3番人気の除外フラグ（単勝1〜3位）
+        int[] winRank = new int[snapshot.size()];
+        boolean[] top3 = new boolean[snapshot.size()];
+        for (int rank = 0; rank < sortedByWin.length; rank++) {
+            winRank[sortedByWin[rank]] = rank + 1;
+            top3[sortedByWin[rank]] = rank < 3;
         }
 
-        // 最新アラートリストを更新
-        latestAlerts.clear();
-        latestAlerts.addAll(alerts);
+        // ロジックA: 支持率急増検知
+        detectSupportRateIncrease(snapshot, valid, top3, horseKeys, history, state.surgeAlerted, now, alerts);
 
-        return Collections.unmodifiableList(alerts);
+        // ロジックB: 単複オッズ順位乖離検知
+        detectRankDivergence(snapshot, valid, top3, winRank, alerts);
+
+        // 履歴に今回のオッズを追記（上位3番人気を含む全有効馬）
+        for (int i : valid) {
+            if (horseKeys[i] != 0) {
+                history.record(horseKeys[i], now, snapshot.winOddsFixed(i));
+            }
+        }
     }
 
     /**
      * ロジックA: 支持率の急増を検知します。
      * 支持率 = 1 / 単勝オッズ（オッズの逆数）
      * 計算式: (1 / 直近オッズ) - (1 / 過去オッズ) >= 0.02
-     * Double型の精度問題を避けるため、BigDecimalで計算する。
+     * 過去オッズには、時間窓内で最も高かったオッズ（最も低かった支持率）を使う。
+     * 1回の取得では閾値に届かない緩やかな資金流入も、窓内の累積で検知できる。
+     * 窓内に履歴がない場合（時間窓が0、または取得間隔が窓より長い場合）は前回取得時のオッズと比較する。
+     * Double型の精度問題を避けるため、固定小数点のオッズのまま整数演算で判定する（{@link #isSupportRateSurge}）。
+     * <p>
+     * 窓内の最高オッズを基準とするため、一度オッズが下がると、その前の高いオッズが窓から外れるまで条件を満たし続ける。
+     * 同じ急増を取得のたびに通知しないよう、アラートは条件を満たし始めた取得でのみ発生させ、
+     * 条件を満たさなくなった時点で馬ごとの通知済みの状態を解除する。
      */
     private void detectSupportRateIncrease(
-            List<OddsData> validList,
-            Set<String> top3Keys,
+            OddsSnapshot snapshot,
+            int[] valid,
+            boolean[] top3,
+            long[] horseKeys,
+            OddsHistory history,
+            BitSet alerted,
+            long now,
             List<AnomalyAlertDto> alerts) {
 
-        for (OddsData current : validList) {
-            String key = buildKey(current.raceName(), current.horseNumber());
-            if (top3Keys.contains(key)) {
+        long windowStart = now - windowMillis;
+        for (int i : valid) {
+            int horseNumber = RaceRegistry.horseNumberOf(horseKeys[i]);
+            if (top3[i]) {
+                alerted.clear(horseNumber);
                 continue; // 上位3番人気は除外
             }
 
-            Double prevOdds = previousWinOdds.get(key);
-            if (prevOdds == null || prevOdds <= 0) {
-                continue; // 前回データなし（初回実行）はスキップ
+            int prevOdds = history.maxSince(horseKeys[i], windowStart);
+            if (prevOdds == OddsHistory.NO_VALUE) {
+                prevOdds = history.latest(horseKeys[i]);
+            }
+            if (prevOdds <= 0) {
+                continue; // 過去データなし（初回実行）はスキップ
             }
 
-            BigDecimal currentRate = BigDecimal.ONE.divide(
-                    BigDecimal.valueOf(current.winOdds()), SUPPORT_RATE_SCALE, RoundingMode.HALF_UP);
-            BigDecimal prevRate = BigDecimal.ONE.divide(
-                    BigDecimal.valueOf(prevOdds), SUPPORT_RATE_SCALE, RoundingMode.HALF_UP);
-            BigDecimal increase = currentRate.subtract(prevRate);
-
-            if (increase.compareTo(SUPPORT_RATE_THRESHOLD) >= 0) {
-                double increaseValue = increase.doubleValue();
+            int currentOdds = snapshot.winOddsFixed(i);
+            if (!isSupportRateSurge(currentOdds, prevOdds)) {
+                alerted.clear(horseNumber);
+            } else if (!alerted.get(horseNumber)) {
+                alerted.set(horseNumber);
+                double increaseValue = supportRateIncrease(currentOdds, prevOdds);
                 alerts.add(new AnomalyAlertDto(
-                        current.horseNumber(),
-                        current.horseName(),
+                        snapshot.horseNumber(i),
+                        snapshot.horseName(i),
                         "支持率急増",
                         increaseValue));
-                logger.info("【支持率急増検知】馬番={}, 馬名={}, 支持率増加={}, 前回オッズ={}, 現在オッズ={}",
-                        current.horseNumber(), current.horseName(), increase, prevOdds, current.winOdds());
+                logger.info("【支持率急増検知】馬番={}, 馬名={}, 支持率増加={}, 基準オッズ={}, 現在オッズ={}",
+                        snapshot.horseNumber(i), snapshot.horseName(i), increaseValue,
+                        OddsSnapshot.toDouble(prevOdds), OddsSnapshot.toDouble(currentOdds));
             }
         }
     }
 
+    /**
+     * 支持率の増加が閾値以上かを整数演算のみで判定します。
+     * 直近オッズ C = c/10、過去オッズ P = p/10 （c, p は固定小数点値で正）とすると、
+     * 1/C - 1/P >= 1/50 ⇔ 10/c - 10/p >= 1/50 ⇔ 500(p - c) >= c・p
+     * （両辺に正の 50・c・p を掛ける）となり、丸めを含まない厳密な判定になる。
+     * オッズが1.0〜9999.9の全範囲で、従来のBigDecimal（小数点以下10桁）による判定と同じ結果になる。
+     *
+     * @param current  直近の単勝オッズ（オッズ×10、正の値）
+     * @param previous 過去の単勝オッズ（オッズ×10、正の値）
+     */
+    static boolean isSupportRateSurge(int current, int previous) {
+        long factor = (long) SUPPORT_RATE_THRESHOLD_INVERSE * OddsSnapshot.SCALE;
+        return factor * (previous - current) >= (long) current * previous;
+    }
+
+    /**
+     * アラートの該当数値として支持率の増加量 (1/C - 1/P) を返します。
+     * 表示値を従来と変えないため、アラート発生時のみ従来どおりBigDecimal（小数点以下10桁）で計算する。
+     */
+    static double supportRateIncrease(int current, int previous) {
+        BigDecimal currentRate = BigDecimal.ONE.divide(
+                BigDecimal.valueOf(current, 1), SUPPORT_RATE_SCALE, RoundingMode.HALF_UP);
+        BigDecimal previousRate = BigDecimal.ONE.divide(
+                BigDecimal.valueOf(previous, 1), SUPPORT_RATE_SCALE, RoundingMode.HALF_UP);
+        return currentRate.subtract(previousRate).doubleValue();
+    }
+
     /**
      * ロジックB: 単複オッズの順位乖離（歪み）を検知します。
      * 計算式: 単勝人気の順位 - 複勝下限オッズの順位 >= 3
      * 単勝より複勝の方が相対的に有利な馬を抽出する。
      */
     private void detectRankDivergence(
-            List<OddsData> validList,
-            Set<String> top3Keys,
-            Map<String, Integer> winRankMap,
+            OddsSnapshot snapshot,
+            int[] valid,
+            boolean[] top3,
+            int[] winRank,
             List<AnomalyAlertDto> alerts) {
 
-        // 複勝下限オッズが有効なデータで昇順ソートし、順位マップを作成
-        List<OddsData> validPlaceList = validList.stream()
-                .filter(d -> d.placeOddsMin() != null && d.placeOddsMin() > 0)
-                .sorted(Comparator.comparingDouble(OddsData::placeOddsMin))
-                .collect(Collectors.toList());
+        // 複勝下限オッズが有効な馬で昇順ソートし、順位（1始まり、0は順位なし）を算出
+        int[] validPlace = new int[valid.length];
+        int placeCount = 0;
+        for (int i : valid) {
+            if (snapshot.hasPlaceOdds(i) && snapshot.placeOddsMinFixed(i) > 0) {
+                validPlace[placeCount++] = i;
+            }
+        }
+        validPlace = Arrays.copyOf(validPlace, placeCount);
+        sortByOdds(validPlace, snapshot::placeOddsMinFixed);
 
-        Map<String, Integer> placeRankMap = new HashMap<>();
-        for (int i = 0; i < validPlaceList.size(); i++) {
-            OddsData d = validPlaceList.get(i);
-            placeRankMap.put(buildKey(d.raceName(), d.horseNumber()), i + 1);
+        int[] placeRank = new int[snapshot.size()];
+        for (int rank = 0; rank < validPlace.length; rank++) {
+            placeRank[validPlace[rank]] = rank + 1;
         }
 
-        for (OddsData data : validList) {
-            String key = buildKey(data.raceName(), data.horseNumber());
-            if (top3Keys.contains(key)) {
+        for (int i : valid) {
+            if (top3[i]) {
                 continue; // 上位3番人気は除外
             }
 
-            Integer winRank = winRankMap.get(key);
-            Integer placeRank = placeRankMap.get(key);
-
-            if (winRank == null || placeRank == null) {
+            if (placeRank[i] == 0) {
                 continue; // 複勝オッズ未確定などで順位が算出できない場合はスキップ
             }
 
-            int gap = winRank - placeRank;
+            int gap = winRank[i] - placeRank[i];
             if (gap >= RANK_GAP_THRESHOLD) {
                 alerts.add(new AnomalyAlertDto(
-                        data.horseNumber(),
-                        data.horseName(),
+                        snapshot.horseNumber(i),
+                        snapshot.horseName(i),
                         "順位乖離",
                         (double) gap));
                 logger.info("【順位乖離検知】馬番={}, 馬名={}, 単勝順位={}, 複勝順位={}, ギャップ={}",
-                        data.horseNumber(), data.horseName(), winRank, placeRank, gap);
+                        snapshot.horseNumber(i), snapshot.horseName(i), winRank[i], placeRank[i], gap);
             }
         }
     }
 
     /**
-     * 最新の異常検知アラートリストを返します。
+     * 馬のインデックス配列をオッズの昇順に並べ替えます（同値の場合は元の順序を保つ安定ソート）。
+     * 1レースの頭数は高々数十のため、挿入ソートで十分。
+     */
+    private static void sortByOdds(int[] indices, IntUnaryOperator odds) {
+        for (int i = 1; i < indices.length; i++) {
+            int idx = indices[i];
+            int value = odds.applyAsInt(idx);
+            int j = i - 1;
+            while (j >= 0 && odds.applyAsInt(indices[j]) > value) {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = idx;
+        }
+    }
+
+    /**
+     * 発走時刻を過ぎたレース、または idle-ttl の間検知が行われていないレースを終了し、
+     * 終了から closed-retention が経過したレースの状態を破棄します。定期的に呼び出すこと。
+     */
+    public void expireRaces() {
+        long now = clock.millis();
+        for (RaceState state : raceStates.values()) {
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                if (state.status == RaceStatus.ACTIVE) {
+                    if (now >= state.postTimeMillis || now - state.lastSeenMillis >= idleTtlMillis) {
+                        closeRace(state, now);
+                    }
+                } else if (now - state.closedAtMillis >= closedRetentionMillis) {
+                    evictRace(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * 終了したレースの確定オッズ（終了時点で最後に取得したオッズ）を返します。
+     *
+     * @param raceKey レースの識別キー（{@link OddsSnapshot#raceKey()}）
+     * @return 確定オッズ。レースが開催中、または状態が破棄済み・未登録の場合はnull
+     */
+    public OddsSnapshot getFinalOdds(String raceKey) {
+        RaceState state = raceStates.get(raceRegistry.find(raceKey));
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            return state.status == RaceStatus.CLOSED ? state.latestOdds : null;
+        }
+    }
+
+    /** 呼び出し元でレースの状態をロックしていること。 */
+    private void closeRace(RaceState state, long now) {
+        state.close(now);
+        logger.info("レース終了: レース={}, 確定オッズの頭数={}", state.raceKey,
+                state.latestOdds != null ? state.latestOdds.size() : 0);
+    }
+
+    /** 呼び出し元でレースの状態をロックしていること。 */
+    private void evictRace(RaceState state) {
+        state.evicted = true;
+        raceStates.remove(state.raceId, state);
+        raceRegistry.remove(state.raceKey, state.raceId);
+        latestAlerts.updateAndGet(current -> {
+            if (!current.containsKey(state.raceKey)) {
+                return current;
+            }
+            Map<String, List<AnomalyAlertDto>> next = new LinkedHashMap<>(current);
+            next.remove(state.raceKey);
+            return Collections.unmodifiableMap(next);
+        });
+        logger.info("レースの状態を破棄: レース={}", state.raceKey);
+    }
+
+    /**
+     * 開催中の全レースの検知状態（発走時刻・最終検知時刻・オッズ履歴）を書き出します（チェックポイント用）。
+     * 形式: レース数(int)、レースごとに キー長(int)・キー(UTF-8)・発走時刻(long)・最終検知時刻(long)・オッズ履歴
+     *
+     * @return 書き出したレース数
+     */
+    int writeCheckpoint(DataOutput out) throws IOException {
+        List<RaceState> active = new ArrayList<>();
+        for (RaceState state : raceStates.values()) {
+            if (state.status == RaceStatus.ACTIVE) {
+                active.add(state);
+            }
+        }
+
+        out.writeInt(active.size());
+        for (RaceState state : active) {
+            synchronized (state) {
+                byte[] key = state.raceKey.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(state.postTimeMillis);
+                out.writeLong(state.lastSeenMillis);
+                if (state.winOddsHistory != null) {
+                    state.winOddsHistory.writeTo(out);
+                } else {
+                    out.writeInt(0); // 書き出し中に終了したレース
+                }
+            }
+        }
+        return active.size();
+    }
+
+    /**
+     * {@link #writeCheckpoint} で書き出した検知状態を読み込みます。
+     * 発走時刻を過ぎたレースと、idle-ttl の間検知されていなかったレースは読み捨てます。
+     * 既に状態を持っているレースは上書きしません（起動直後の呼び出しを想定）。
+     * <p>
+     * 全レース分の長さを残りのバイト数と照合してから反映するため、途中で壊れたデータの場合は
+     * 何も反映せずに IllegalArgumentException または BufferUnderflowException をスローします。
+     *
+     * @return 復元したレース数
+     */
+    int restoreCheckpoint(ByteBuffer in) {
+        int races = in.getInt();
+        // 1レースあたり最低でも キー長・発走時刻・最終検知時刻・馬の数 の24バイトを使う
+        if (races < 0 || races > in.remaining() / 24) {
+            throw new IllegalArgumentException("レース数が不正です: " + races);
+        }
+        Map<String, CheckpointedRace> decoded = new LinkedHashMap<>();
+        for (int r = 0; r < races; r++) {
+            int keyLength = in.getInt();
+            if (keyLength < 0 || keyLength > in.remaining()) {
+                throw new IllegalArgumentException("レースキーの長さが不正です: " + keyLength);
+            }
+            byte[] key = new byte[keyLength];
+            in.get(key);
+            String raceKey = new String(key, StandardCharsets.UTF_8);
+            long postTimeMillis = in.getLong();
+            long lastSeenMillis = in.getLong();
+            ByteBuffer history = OddsHistory.sliceCheckpoint(in);
+            decoded.put(raceKey, new CheckpointedRace(postTimeMillis, lastSeenMillis, history));
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("末尾に不明なデータがあります: " + in.remaining() + "バイト");
+        }
+
+        long now = clock.millis();
+        int restored = 0;
+        for (Map.Entry<String, CheckpointedRace> entry : decoded.entrySet()) {
+            CheckpointedRace race = entry.getValue();
+            if (now >= race.postTimeMillis() || now - race.lastSeenMillis() >= idleTtlMillis) {
+                continue;
+            }
+            String raceKey = entry.getKey();
+            int raceId = raceRegistry.idOf(raceKey);
+            RaceState state = new RaceState(raceKey, raceId, historySize);
+            state.winOddsHistory.readFrom(race.history(), raceId);
+            state.postTimeMillis = race.postTimeMillis();
+            state.lastSeenMillis = race.lastSeenMillis();
+            if (raceStates.putIfAbsent(raceId, state) == null) {
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /** チェックポイントから読み込んだ1レース分の状態（オッズ履歴は検証済みの範囲） */
+    private record CheckpointedRace(long postTimeMillis, long lastSeenMillis, ByteBuffer history) {
+    }
+
+    private int countRaces(RaceStatus status) {
+        int count = 0;
+        for (RaceState state : raceStates.values()) {
+            if (state.status == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** 全レースの検知状態（オッズ履歴と確定オッズ）のおおよそのバイト数 */
+    long retainedBytes() {
+        long bytes = 0;
+        for (RaceState state : raceStates.values()) {
+            synchronized (state) {
+                if (state.winOddsHistory != null) {
+                    bytes += state.winOddsHistory.retainedBytes();
+                }
+                if (state.latestOdds != null) {
+                    bytes += state.latestOdds.estimatedBytes();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /** 指定レースの最新アラートを差し替えた新しい不変マップをアトミックに公開します。 */
+    private void publishAlerts(Map<String, List<AnomalyAlertDto>> updates) {
+        latestAlerts.updateAndGet(current -> {
+            Map<String, List<AnomalyAlertDto>> next = new LinkedHashMap<>(current);
+            next.putAll(updates);
+            return Collections.unmodifiableMap(next);
+        });
+    }
+
+    /**
+     * 全レースの最新の異常検知アラートを1つのリストにまとめて返します。
      *
      * @return アラートリスト（変更不可）
      */
     public List<AnomalyAlertDto> getLatestAlerts() {
-        return Collections.unmodifiableList(new ArrayList<>(latestAlerts));
+        List<AnomalyAlertDto> all = new ArrayList<>();
+        latestAlerts.get().values().forEach(all::addAll);
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * レースごとの最新の異常検知アラートを返します。ロックを取らず、ある時点の全レース分を一貫して参照できます。
+     *
+     * @return レースの識別キーごとのアラート（変更不可）
+     */
+    public Map<String, List<AnomalyAlertDto>> getLatestAlertsByRace() {
+        return latestAlerts.get();
     }
 
-    /** 馬を一意に識別するキーを生成します。 */
-    private String buildKey(String raceName, String horseNumber) {
-        return raceName + ":" + horseNumber;
+    /** レースのライフサイクル上の状態 */
+    private enum RaceStatus {
+        /** 開催中（検知対象） */
+        ACTIVE,
+        /** 終了（確定オッズのみ保持） */
+        CLOSED
+    }
+
+    /** 1レース分の検知状態。ロックの単位を兼ね、フィールドはロックを取って更新する。 */
+    private static final class RaceState {
+        private final String raceKey;
+        private final int raceId;
+
+        /**
+         * 馬ごとの単勝オッズ（固定小数点: オッズ×10）の履歴を保持するインメモリのリングバッファ。
+         * キー: レースIDと馬番を詰めたlong値（{@link RaceRegistry#horseKey}）。終了後はnull。
+         */
+        private OddsHistory winOddsHistory;
+        /** 最後に取得したオッズ（終了後は確定オッズとし、以降の取得では更新しない） */
+        private OddsSnapshot latestOdds;
+        /** 支持率急増を通知済みで、まだ条件を満たし続けている馬の馬番 */
+        private final BitSet surgeAlerted = new BitSet();
+
+        /** 件数のメトリクスからロックなしで参照するためvolatileとする */
+        private volatile RaceStatus status = RaceStatus.ACTIVE;
+        private long lastSeenMillis;
+        private long postTimeMillis = UNKNOWN_POST_TIME;
+        private long closedAtMillis;
+        /** 状態が破棄済みであること（破棄と競合した検知は状態を取り直す） */
+        private boolean evicted;
+
+        private RaceState(String raceKey, int raceId, int historySize) {
+            this.raceKey = raceKey;
+            this.raceId = raceId;
+            this.winOddsHistory = new OddsHistory(historySize, EXPECTED_MAX_RUNNERS);
+        }
+
+        private void close(long now) {
+            status = RaceStatus.CLOSED;
+            closedAtMillis = now;
+            winOddsHistory = null;
+        }
+
+        private void reopen(int historySize) {
+            status = RaceStatus.ACTIVE;
+            surgeAlerted.clear();
+            winOddsHistory = new OddsHistory(historySize, EXPECTED_MAX_RUNNERS);
+        }
     }
 }
@@ -0,0 +1,39 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.StoredOdds;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * オッズストア（{@link OddsStore}）に保存したオッズ履歴を、バックテスト向けのアーカイブ形式で書き出すエクスポーター。
+ * 差分の圧縮が効くよう、レースごとに取得時刻の昇順で書き込む。
+ */
+@Component
+public class OddsArchiveExporter {
+
+    private final OddsStore oddsStore;
+
+    public OddsArchiveExporter(OddsStore oddsStore) {
+        this.oddsStore = oddsStore;
+    }
+
+    /**
+     * 取得時刻が範囲内のオッズ履歴をアーカイブ形式で出力先へ書き込みます。出力先は閉じません。
+     *
+     * @param fromMillis 取得時刻の下限（エポックミリ秒、この時刻を含む）
+     * @param toMillis   取得時刻の上限（エポックミリ秒、この時刻を含まない）
+     * @return 書き込んだ取得結果の件数
+     */
+    public long export(OutputStream out, long fromMillis, long toMillis) throws IOException {
+        OddsArchiveWriter writer = new OddsArchiveWriter(out);
+        for (String raceKey : oddsStore.raceKeys()) {
+            for (StoredOdds stored : oddsStore.query(raceKey, fromMillis, toMillis)) {
+                writer.write(stored);
+            }
+        }
+        writer.finish();
+        return writer.snapshotCount();
+    }
+}
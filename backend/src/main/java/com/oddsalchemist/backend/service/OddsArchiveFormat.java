@@ -0,0 +1,55 @@
+package com.oddsalchemist.backend.service;
+
+/**
+ * オッズアーカイブ（{@link OddsArchiveWriter} / {@link OddsArchiveReader}）のファイル形式の定数と、可変長整数の符号化。
+ * <pre>
+ * ファイル   = ヘッダー ブロック* 索引 フッター
+ * ヘッダー   = マジック(int) バージョン(int)
+ * ブロック   = 展開後のバイト数(int) 圧縮後のバイト数(int) CRC32(int、圧縮後のバイト列) 圧縮したブロック本体
+ * 索引       = ブロックごとに 位置(long) 最小取得時刻(long) 最大取得時刻(long) 取得結果の件数(int)
+ * フッター   = 索引の位置(long) ブロック数(int) マジック(int)
+ * </pre>
+ * ブロック本体は取得結果を1件ずつ並べたもので、Deflate（ヘッダーなし）で圧縮する。
+ * 文字列（取得元URL・レース名・馬番・馬名）はブロックごとの辞書の番号で表し、初出時のみ文字列本体を書き込む。
+ * 取得時刻は直前の取得結果との差分、オッズは同じレースの直前の取得結果の同じ位置の馬との差分を、
+ * ジグザグ符号化した可変長整数で書き込む。辞書と差分の基準はブロックごとに初期化するため、
+ * 索引で選んだブロックから単独で読み出せる。
+ * <pre>
+ * 取得結果   = 取得元URL(文字列) レース名(文字列) 取得時刻の差分(zigzag) 発走時刻(varint) 頭数(varint) 出走馬の変化(byte)
+ *             [出走馬が変化した場合: 馬ごとに 馬番(文字列) 馬名(文字列)]
+ *             馬ごとに 単勝・複勝下限・複勝上限の差分(zigzag、オッズ×10、未設定は-1)
+ * 文字列     = 辞書番号+1(varint、0はnull)。辞書にない番号の場合は続けて バイト数(varint) UTF-8のバイト列
+ * 発走時刻   = 0は不明。それ以外は 取得時刻との差分(zigzag)+1
+ * </pre>
+ */
+final class OddsArchiveFormat {
+
+    /** ファイル先頭・末尾の識別子（"OAAR"） */
+    static final int MAGIC = 0x4F414152;
+    static final int VERSION = 1;
+
+    /** ヘッダーのバイト数 */
+    static final int HEADER_BYTES = 8;
+    /** ブロックヘッダー（展開後のバイト数 + 圧縮後のバイト数 + CRC32）のバイト数 */
+    static final int BLOCK_HEADER_BYTES = 12;
+    /** 索引の1ブロック分のバイト数 */
+    static final int INDEX_ENTRY_BYTES = 28;
+    /** フッターのバイト数 */
+    static final int FOOTER_BYTES = 16;
+
+    /** 出走馬（馬番・馬名）が同じレースの直前の取得結果と同じであること */
+    static final byte SAME_RUNNERS = 0;
+    static final byte NEW_RUNNERS = 1;
+
+    private OddsArchiveFormat() {
+    }
+
+    /** 符号付き整数を、絶対値の小さい値ほど短い可変長整数になるよう符号なしの値へ写します。 */
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,411 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.dto.StoredOdds;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.oddsalchemist.backend.service.OddsArchiveFormat.unzigzag;
+
+/**
+ * アーカイブ形式（{@link OddsArchiveFormat}）のファイルを先頭から順に読み出すリーダー。
+ * 起動時に末尾の索引のみを読み込み、{@link #cursor(long, long)} では取得時刻の範囲に重なるブロックだけを展開する。
+ * <p>
+ * 読み出しはカーソルで1件ずつ進め、取得結果の各値はカーソルが内部で再利用する配列から直接参照する
+ * （取得結果ごとのオブジェクト生成を行わないため、大量の取得結果を高速に走査できる）。
+ * オッズのオブジェクトが必要な場合は {@link Cursor#snapshot()} で生成する。
+ */
+public final class OddsArchiveReader implements Closeable {
+
+    private final FileChannel channel;
+    private final long[] blockOffsets;
+    private final long[] blockMinFetchedAt;
+    private final long[] blockMaxFetchedAt;
+    private final int[] blockSnapshots;
+
+    public OddsArchiveReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < OddsArchiveFormat.HEADER_BYTES + OddsArchiveFormat.FOOTER_BYTES) {
+                throw new IOException("オッズアーカイブではありません: " + file);
+            }
+            ByteBuffer header = read(0, OddsArchiveFormat.HEADER_BYTES);
+            if (header.getInt() != OddsArchiveFormat.MAGIC) {
+                throw new IOException("オッズアーカイブではありません: " + file);
+            }
+            int version = header.getInt();
+            if (version != OddsArchiveFormat.VERSION) {
+                throw new IOException("未対応のオッズアーカイブのバージョンです: " + version);
+            }
+            ByteBuffer footer = read(size - OddsArchiveFormat.FOOTER_BYTES, OddsArchiveFormat.FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int blockCount = footer.getInt();
+            if (footer.getInt() != OddsArchiveFormat.MAGIC
+                    || indexOffset + (long) blockCount * OddsArchiveFormat.INDEX_ENTRY_BYTES
+                    != size - OddsArchiveFormat.FOOTER_BYTES) {
+                throw new IOException("オッズアーカイブの索引が壊れています（書き込みが完了していない可能性があります）: " + file);
+            }
+            ByteBuffer index = read(indexOffset, blockCount * OddsArchiveFormat.INDEX_ENTRY_BYTES);
+            blockOffsets = new long[blockCount];
+            blockMinFetchedAt = new long[blockCount];
+            blockMaxFetchedAt = new long[blockCount];
+            blockSnapshots = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = index.getLong();
+                blockMinFetchedAt[i] = index.getLong();
+                blockMaxFetchedAt[i] = index.getLong();
+                blockSnapshots[i] = index.getInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** ブロック数 */
+    public int blockCount() {
+        return blockOffsets.length;
+    }
+
+    /** 取得結果の件数 */
+    public long snapshotCount() {
+        long count = 0;
+        for (int snapshots : blockSnapshots) {
+            count += snapshots;
+        }
+        return count;
+    }
+
+    /** 全ての取得結果を書き込み順に読み出すカーソルを返します。 */
+    public Cursor cursor() {
+        return cursor(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * 取得時刻が範囲内の取得結果を書き込み順に読み出すカーソルを返します。
+     *
+     * @param fromMillis 取得時刻の下限（エポックミリ秒、この時刻を含む）
+     * @param toMillis   取得時刻の上限（エポックミリ秒、この時刻を含まない）
+     */
+    public Cursor cursor(long fromMillis, long toMillis) {
+        return new Cursor(fromMillis, toMillis);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("オッズアーカイブが途中で終わっています: 位置=" + position);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * 取得結果を1件ずつ読み出すカーソル。各値は次に {@link #next()} を呼び出すまで有効。
+     * ブロックの展開にネイティブメモリを使うため、読み出しを途中でやめる場合も {@link #close()} で閉じること。
+     * スレッドセーフではない。
+     */
+    public final class Cursor implements AutoCloseable {
+
+        private final long fromMillis;
+        private final long toMillis;
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+
+        private int nextBlock;
+        private int remainingInBlock;
+        private byte[] compressed = new byte[0];
+        private byte[] raw = new byte[0];
+        private int pos;
+
+        // ブロックごとに初期化する状態
+        private String[] dictionary = new String[256];
+        private int dictionarySize;
+        /** 差分の基準（辞書番号で表したレースのキーごと） */
+        private RaceState[] races = new RaceState[256];
+        private long previousFetchedAt;
+
+        // 現在の取得結果
+        private String sourceUrl;
+        private String raceName;
+        private long fetchedAtMillis;
+        private long postTimeMillis;
+        private RaceState race;
+        private boolean closed;
+
+        private Cursor(long fromMillis, long toMillis) {
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+        }
+
+        /**
+         * 次の取得結果へ進めます。
+         *
+         * @return 次の取得結果がない場合false
+         * @throws IOException ブロックが壊れている場合
+         */
+        public boolean next() throws IOException {
+            if (closed) {
+                throw new IllegalStateException("カーソルは閉じられています");
+            }
+            while (true) {
+                while (remainingInBlock == 0) {
+                    if (!openNextBlock()) {
+                        inflater.end();
+                        return false;
+                    }
+                }
+                remainingInBlock--;
+                decode();
+                if (fetchedAtMillis >= fromMillis && fetchedAtMillis < toMillis) {
+                    return true;
+                }
+            }
+        }
+
+        /** 展開用のネイティブメモリを解放します。複数回呼び出してもよい。 */
+        @Override
+        public void close() {
+            closed = true;
+            inflater.end();
+        }
+
+        public long fetchedAtMillis() {
+            return fetchedAtMillis;
+        }
+
+        /** 取得元URL（不明な場合はnull） */
+        public String sourceUrl() {
+            return sourceUrl;
+        }
+
+        public String raceName() {
+            return raceName;
+        }
+
+        /** レースのキー（{@link OddsSnapshot#raceKey()}） */
+        public String raceKey() {
+            return sourceUrl != null ? sourceUrl : raceName;
+        }
+
+        /** 発走時刻（エポックミリ秒、不明な場合は {@link Long#MIN_VALUE}） */
+        public long postTimeMillis() {
+            return postTimeMillis;
+        }
+
+        /** 頭数 */
+        public int size() {
+            return race.size;
+        }
+
+        public String horseNumber(int i) {
+            return race.horseNumbers[checkIndex(i)];
+        }
+
+        public String horseName(int i) {
+            return race.horseNames[checkIndex(i)];
+        }
+
+        /** 単勝オッズ（オッズ×10、未設定は-1） */
+        public int winOddsFixed(int i) {
+            return race.odds[checkIndex(i) * 3];
+        }
+
+        /** 複勝オッズ下限（オッズ×10、未設定は-1） */
+        public int placeOddsMinFixed(int i) {
+            return race.odds[checkIndex(i) * 3 + 1];
+        }
+
+        /** 複勝オッズ上限（オッズ×10、未設定は-1） */
+        public int placeOddsMaxFixed(int i) {
+            return race.odds[checkIndex(i) * 3 + 2];
+        }
+
+        /** 現在の取得結果からオッズのオブジェクトを生成します。 */
+        public OddsSnapshot snapshot() {
+            OddsSnapshot.Builder builder = OddsSnapshot.builder(raceName, sourceUrl, race.size)
+                    .postTime(postTimeMillis == Long.MIN_VALUE ? null : Instant.ofEpochMilli(postTimeMillis));
+            for (int i = 0; i < race.size; i++) {
+                builder.add(race.horseNumbers[i], race.horseNames[i],
+                        race.odds[i * 3], race.odds[i * 3 + 1], race.odds[i * 3 + 2]);
+            }
+            return builder.build();
+        }
+
+        /** 現在の取得結果を取得時刻とともに生成します。 */
+        public StoredOdds toStoredOdds() {
+            return new StoredOdds(Instant.ofEpochMilli(fetchedAtMillis), snapshot());
+        }
+
+        private int checkIndex(int i) {
+            if (i < 0 || i >= race.size) {
+                throw new IndexOutOfBoundsException(i);
+            }
+            return i;
+        }
+
+        private boolean openNextBlock() throws IOException {
+            // 範囲に重ならないブロックは展開しない
+            while (nextBlock < blockOffsets.length
+                    && (blockMaxFetchedAt[nextBlock] < fromMillis || blockMinFetchedAt[nextBlock] >= toMillis)) {
+                nextBlock++;
+            }
+            if (nextBlock >= blockOffsets.length) {
+                return false;
+            }
+            long offset = blockOffsets[nextBlock];
+            ByteBuffer header = read(offset, OddsArchiveFormat.BLOCK_HEADER_BYTES);
+            int rawSize = header.getInt();
+            int compressedSize = header.getInt();
+            int expectedCrc = header.getInt();
+            if (compressed.length < compressedSize) {
+                compressed = new byte[compressedSize];
+            }
+            ByteBuffer body = ByteBuffer.wrap(compressed, 0, compressedSize);
+            while (body.hasRemaining()) {
+                if (channel.read(body, offset + OddsArchiveFormat.BLOCK_HEADER_BYTES + body.position()) < 0) {
+                    throw new IOException("オッズアーカイブのブロックが途中で終わっています: ブロック=" + nextBlock);
+                }
+            }
+            crc.reset();
+            crc.update(compressed, 0, compressedSize);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("オッズアーカイブのブロックが壊れています: ブロック=" + nextBlock);
+            }
+            if (raw.length < rawSize) {
+                raw = new byte[rawSize];
+            }
+            inflater.reset();
+            inflater.setInput(compressed, 0, compressedSize);
+            try {
+                int inflated = 0;
+                while (inflated < rawSize && !inflater.finished()) {
+                    int n = inflater.inflate(raw, inflated, rawSize - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != rawSize) {
+                    throw new IOException("オッズアーカイブのブロックを展開できません: ブロック=" + nextBlock);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("オッズアーカイブのブロックを展開できません: ブロック=" + nextBlock, e);
+            }
+
+            pos = 0;
+            remainingInBlock = blockSnapshots[nextBlock];
+            nextBlock++;
+            Arrays.fill(dictionary, 0, dictionarySize, null);
+            dictionarySize = 0;
+            Arrays.fill(races, null);
+            previousFetchedAt = 0;
+            return true;
+        }
+
+        private void decode() {
+            int sourceUrlId = readStringId();
+            int raceNameId = readStringId();
+            sourceUrl = sourceUrlId < 0 ? null : dictionary[sourceUrlId];
+            raceName = raceNameId < 0 ? null : dictionary[raceNameId];
+            fetchedAtMillis = previousFetchedAt + unzigzag(readVarLong());
+            previousFetchedAt = fetchedAtMillis;
+            long postTime = readVarLong();
+            postTimeMillis = postTime == 0 ? Long.MIN_VALUE : fetchedAtMillis + unzigzag(postTime - 1);
+
+            int size = (int) readVarLong();
+            race = raceState(sourceUrlId >= 0 ? sourceUrlId : raceNameId);
+            if (raw[pos++] == OddsArchiveFormat.NEW_RUNNERS) {
+                race.size = size;
+                race.horseNumbers = new String[size];
+                race.horseNames = new String[size];
+                for (int i = 0; i < size; i++) {
+                    race.horseNumbers[i] = readString();
+                    race.horseNames[i] = readString();
+                }
+            }
+            int[] previous = race.odds;
+            int[] current = race.spare.length == size * 3 ? race.spare : new int[size * 3];
+            for (int j = 0; j < size * 3; j++) {
+                current[j] = (int) ((j < previous.length ? previous[j] : 0) + unzigzag(readVarLong()));
+            }
+            race.spare = previous;
+            race.odds = current;
+        }
+
+        private RaceState raceState(int keyId) {
+            if (keyId >= races.length) {
+                races = Arrays.copyOf(races, Math.max(races.length * 2, keyId + 1));
+            }
+            RaceState state = races[keyId];
+            if (state == null) {
+                state = new RaceState();
+                races[keyId] = state;
+            }
+            return state;
+        }
+
+        private String readString() {
+            int id = readStringId();
+            return id < 0 ? null : dictionary[id];
+        }
+
+        /** @return 辞書番号（nullの場合は-1）。初出の文字列は辞書に追加する */
+        private int readStringId() {
+            int id = (int) readVarLong() - 1;
+            if (id == dictionarySize) {
+                int length = (int) readVarLong();
+                if (dictionarySize == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+                }
+                dictionary[dictionarySize++] = new String(raw, pos, length, StandardCharsets.UTF_8);
+                pos += length;
+            }
+            return id;
+        }
+
+        private long readVarLong() {
+            byte b = raw[pos++];
+            if (b >= 0) {
+                return b;
+            }
+            long value = b & 0x7F;
+            int shift = 7;
+            while (true) {
+                b = raw[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+    }
+
+    /** ブロック内でのレースごとの差分の基準（直前の取得結果の出走馬とオッズ） */
+    private static final class RaceState {
+        private int size;
+        private String[] horseNumbers = new String[0];
+        private String[] horseNames = new String[0];
+        private int[] odds = new int[0];
+        private int[] spare = new int[0];
+    }
+}
@@ -0,0 +1,275 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.dto.StoredOdds;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static com.oddsalchemist.backend.service.OddsArchiveFormat.zigzag;
+
+/**
+ * オッズの取得結果を長期保存用のアーカイブ形式（{@link OddsArchiveFormat}）で書き出すライター。
+ * 取得結果をブロック単位でメモリ上に符号化し、ブロックの大きさが上限に達するたびに圧縮して書き出す。
+ * 出力先はシーク不要のストリームでよく、索引は {@link #finish()} で末尾にまとめて書き込む。
+ * <p>
+ * 差分の圧縮が効くよう、同じレースの取得結果は取得時刻の昇順で続けて書き込むこと。
+ * スレッドセーフではない。
+ */
+public final class OddsArchiveWriter implements Closeable {
+
+    /** ブロック（展開後）の大きさの既定値 */
+    public static final int DEFAULT_BLOCK_BYTES = 256 * 1024;
+
+    private final DataOutputStream out;
+    private final int blockBytes;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private final DataOutputStream indexOut = new DataOutputStream(index);
+
+    // ブロックごとに初期化する状態
+    private byte[] block;
+    private int blockSize;
+    private byte[] compressed = new byte[1024];
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final Map<String, RaceState> races = new HashMap<>();
+    private long previousFetchedAt;
+    private long minFetchedAt;
+    private long maxFetchedAt;
+    private int blockSnapshots;
+
+    private long position;
+    private int blockCount;
+    private long snapshotCount;
+    private boolean finished;
+
+    public OddsArchiveWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_BYTES);
+    }
+
+    /**
+     * @param blockBytes ブロック（展開後）の大きさの目安。超えたところでブロックを圧縮して書き出す
+     */
+    public OddsArchiveWriter(OutputStream out, int blockBytes) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.blockBytes = blockBytes;
+        this.block = new byte[Math.min(blockBytes, 64 * 1024) + 1024];
+        this.out.writeInt(OddsArchiveFormat.MAGIC);
+        this.out.writeInt(OddsArchiveFormat.VERSION);
+        this.position = OddsArchiveFormat.HEADER_BYTES;
+    }
+
+    public void write(StoredOdds stored) throws IOException {
+        write(stored.snapshot(), stored.fetchedAt());
+    }
+
+    /** 1回分の取得結果を書き込みます。 */
+    public void write(OddsSnapshot snapshot, Instant fetchedAt) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("アーカイブは書き込みを終了しています");
+        }
+        long fetchedAtMillis = fetchedAt.toEpochMilli();
+        writeString(snapshot.sourceUrl());
+        writeString(snapshot.raceName());
+        writeVarLong(zigzag(fetchedAtMillis - previousFetchedAt));
+        previousFetchedAt = fetchedAtMillis;
+        writeVarLong(snapshot.postTime() == null ? 0 : zigzag(snapshot.postTime().toEpochMilli() - fetchedAtMillis) + 1);
+
+        int size = snapshot.size();
+        writeVarLong(size);
+        RaceState race = races.computeIfAbsent(snapshot.raceKey(), key -> new RaceState());
+        if (race.sameRunners(snapshot)) {
+            writeByte(OddsArchiveFormat.SAME_RUNNERS);
+        } else {
+            writeByte(OddsArchiveFormat.NEW_RUNNERS);
+            for (int i = 0; i < size; i++) {
+                writeString(snapshot.horseNumber(i));
+                writeString(snapshot.horseName(i));
+            }
+            race.setRunners(snapshot);
+        }
+        int[] previous = race.odds;
+        int[] current = race.nextOdds(size);
+        for (int i = 0; i < size; i++) {
+            current[i * 3] = snapshot.winOdds(i) != null ? snapshot.winOddsFixed(i) : -1;
+            current[i * 3 + 1] = snapshot.placeOddsMin(i) != null ? snapshot.placeOddsMinFixed(i) : -1;
+            current[i * 3 + 2] = snapshot.placeOddsMax(i) != null ? snapshot.placeOddsMaxFixed(i) : -1;
+        }
+        for (int j = 0; j < size * 3; j++) {
+            writeVarLong(zigzag((long) current[j] - (j < previous.length ? previous[j] : 0)));
+        }
+
+        if (blockSnapshots == 0) {
+            minFetchedAt = fetchedAtMillis;
+            maxFetchedAt = fetchedAtMillis;
+        } else {
+            minFetchedAt = Math.min(minFetchedAt, fetchedAtMillis);
+            maxFetchedAt = Math.max(maxFetchedAt, fetchedAtMillis);
+        }
+        blockSnapshots++;
+        snapshotCount++;
+        if (blockSize >= blockBytes) {
+            flushBlock();
+        }
+    }
+
+    /** 書き込んだ取得結果の件数 */
+    public long snapshotCount() {
+        return snapshotCount;
+    }
+
+    /**
+     * 残りのブロックと索引を書き込み、出力先をフラッシュします。出力先は閉じません。
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        flushBlock();
+        long indexOffset = position;
+        index.writeTo(out);
+        out.writeLong(indexOffset);
+        out.writeInt(blockCount);
+        out.writeInt(OddsArchiveFormat.MAGIC);
+        out.flush();
+        deflater.end();
+        finished = true;
+    }
+
+    /** 書き込みを終了し、出力先を閉じます。 */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockSnapshots == 0) {
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(block, 0, blockSize);
+        deflater.finish();
+        int compressedSize = 0;
+        while (!deflater.finished()) {
+            if (compressedSize == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedSize += deflater.deflate(compressed, compressedSize, compressed.length - compressedSize);
+        }
+        crc.reset();
+        crc.update(compressed, 0, compressedSize);
+
+        out.writeInt(blockSize);
+        out.writeInt(compressedSize);
+        out.writeInt((int) crc.getValue());
+        out.write(compressed, 0, compressedSize);
+
+        indexOut.writeLong(position);
+        indexOut.writeLong(minFetchedAt);
+        indexOut.writeLong(maxFetchedAt);
+        indexOut.writeInt(blockSnapshots);
+
+        position += OddsArchiveFormat.BLOCK_HEADER_BYTES + compressedSize;
+        blockCount++;
+        blockSize = 0;
+        blockSnapshots = 0;
+        previousFetchedAt = 0;
+        dictionary.clear();
+        races.clear();
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        Integer id = dictionary.get(value);
+        if (id != null) {
+            writeVarLong(id + 1);
+            return;
+        }
+        id = dictionary.size();
+        dictionary.put(value, id);
+        writeVarLong(id + 1);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, block, blockSize, bytes.length);
+        blockSize += bytes.length;
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            block[blockSize++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block[blockSize++] = (byte) value;
+    }
+
+    private void writeByte(byte value) {
+        ensureCapacity(1);
+        block[blockSize++] = value;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (blockSize + bytes > block.length) {
+            block = Arrays.copyOf(block, Math.max(block.length * 2, blockSize + bytes));
+        }
+    }
+
+    /** ブロック内でのレースごとの差分の基準（直前の取得結果の出走馬とオッズ） */
+    private static final class RaceState {
+        private String[] horseNumbers = new String[0];
+        private String[] horseNames = new String[0];
+        private int[] odds = new int[0];
+        private int[] spare = new int[0];
+
+        boolean sameRunners(OddsSnapshot snapshot) {
+            if (horseNumbers.length != snapshot.size()) {
+                return false;
+            }
+            for (int i = 0; i < horseNumbers.length; i++) {
+                if (!Objects.equals(horseNumbers[i], snapshot.horseNumber(i))
+                        || !Objects.equals(horseNames[i], snapshot.horseName(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void setRunners(OddsSnapshot snapshot) {
+            horseNumbers = new String[snapshot.size()];
+            horseNames = new String[snapshot.size()];
+            for (int i = 0; i < horseNumbers.length; i++) {
+                horseNumbers[i] = snapshot.horseNumber(i);
+                horseNames[i] = snapshot.horseName(i);
+            }
+        }
+
+        /** 今回のオッズを書き込む配列を返し、次回の基準とします（前回の配列は次々回に再利用する）。 */
+        int[] nextOdds(int size) {
+            int[] next = spare.length == size * 3 ? spare : new int[size * 3];
+            spare = odds;
+            odds = next;
+            return next;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.ScrapingProperties;
+import com.oddsalchemist.backend.dto.BulkFetchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 複数レースのオッズを一括で取得し、1レースの処理が完了するたびに結果を NDJSON（1行1レース）で書き出すサービス。
+ * 各レースは仮想スレッドで並列に取得し（並列モードが無効の場合は順番に取得する）、完了した順に書き出すため、
+ * 最初の結果はおおむねページ1件の取得時間で返る。ホスト単位の同時実行数・レートは {@link HostThrottle} で、
+ * 同じURLの重複取得は {@link OddsFetchJobService} で抑える。
+ * <p>
+ * 全件の取得はホストあたりのレートに比例して時間がかかるため（例: 100件 ÷ 2件/秒 = 50秒以上）、
+ * 応答の上限時間はサーブレットコンテナの既定値ではなく {@link #timeoutFor} で件数から決めること。
+ */
+@Service
+public class OddsBulkFetchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OddsBulkFetchService.class);
+
+    private static final byte NEWLINE = '\n';
+    /** 応答の上限時間に加える余裕（パース・保存・書き込みの時間） */
+    private static final Duration TIMEOUT_MARGIN = Duration.ofSeconds(30);
+
+    private final OddsFetchJobService fetchJobService;
+    private final ScrapingProperties properties;
+    private final JsonMapper jsonMapper;
+
+    public OddsBulkFetchService(OddsFetchJobService fetchJobService, ScrapingProperties properties,
+                                JsonMapper jsonMapper) {
+        this.fetchJobService = fetchJobService;
+        this.properties = properties;
+        this.jsonMapper = jsonMapper;
+    }
+
+    /**
+     * 指定した件数の一括取得に許す応答の上限時間を返します。
+     * 全件をホストあたりのレート（requests-per-second）で送信する時間に、同時実行数ごとに1回分の
+     * 応答待ちタイムアウトと余裕を加える（全件が同じホストで、応答がすべてタイムアウトした場合の上限）。
+     */
+    public Duration timeoutFor(int urlCount) {
+        ScrapingProperties.Concurrency concurrency = properties.concurrency();
+        int parallelism = concurrency.enabled() ? concurrency.maxPerHost() : 1;
+        long rateMillis = (long) Math.ceil(urlCount * 1000 / concurrency.requestsPerSecond());
+        long waves = (urlCount + parallelism - 1) / parallelism;
+        return Duration.ofMillis(rateMillis)
+                .plus(properties.http().requestTimeout().multipliedBy(waves))
+                .plus(TIMEOUT_MARGIN);
+    }
+
+    /**
+     * 各URLのオッズを取得・保存し、完了した順に結果を1行ずつ送信先へ書き込みます。
+     * 送信先への書き込みに失敗した場合（クライアントの切断など）も、開始した取得は最後まで実行します。
+     *
+     * @param urls  取得対象のURL（重複を除いたもの）
+     * @param range 書き込み先のスプレッドシートの範囲
+     * @param sink  結果の送信先（1スレッドからのみ呼び出す）
+     * @return 書き込んだ結果の件数
+     */
+    public int fetchAll(List<String> urls, String range, Sink sink) throws IOException {
+        long startNanos = System.nanoTime();
+        logger.info("一括取得開始: 対象URL数={}, 並列モード={}", urls.size(), properties.concurrency().enabled());
+        int written = 0;
+        IOException writeFailure = null;
+
+        if (!properties.concurrency().enabled()) {
+            for (String url : urls) {
+                BulkFetchResult result = BulkFetchResult.of(fetchJobService.run(url, range), elapsedMillis(startNanos));
+                writeLine(sink, result);
+                written++;
+            }
+            logger.info("一括取得完了: 対象URL数={}", urls.size());
+            return written;
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<BulkFetchResult> completion = new ExecutorCompletionService<>(executor);
+            for (String url : urls) {
+                completion.submit(() -> BulkFetchResult.of(fetchJobService.run(url, range), elapsedMillis(startNanos)));
+            }
+            for (int i = 0; i < urls.size(); i++) {
+                BulkFetchResult result = completion.take().get();
+                if (writeFailure != null) {
+                    continue;
+                }
+                try {
+                    writeLine(sink, result);
+                    written++;
+                } catch (IOException e) {
+                    // 残りの取得の完了は待つが、結果は書き込まない
+                    writeFailure = e;
+                    logger.warn("一括取得の結果を書き込めませんでした。残りの取得は継続します: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("一括取得の完了待ちが中断されました");
+        } catch (ExecutionException e) {
+            // run は取得の失敗を結果として返すため、ここに到達するのは予期しない例外のみ
+            throw new IllegalStateException("一括取得中に予期しないエラーが発生しました", e.getCause());
+        }
+
+        logger.info("一括取得完了: 対象URL数={}, 所要時間={}ms", urls.size(), elapsedMillis(startNanos));
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+        return written;
+    }
+
+    private void writeLine(Sink sink, BulkFetchResult result) throws IOException {
+        byte[] json = jsonMapper.writeValueAsBytes(result);
+        byte[] line = Arrays.copyOf(json, json.length + 1);
+        line[json.length] = NEWLINE;
+        sink.send(line);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /** 一括取得の結果の送信先 */
+    public interface Sink {
+
+        /**
+         * 1レース分の結果（末尾の改行を含む NDJSON の1行）を送信し、すぐにクライアントへ届けます。
+         *
+         * @throws IOException 送信に失敗した場合（クライアントの切断・応答の上限時間の経過など）
+         */
+        void send(byte[] line) throws IOException;
+    }
+}
@@ -0,0 +1,181 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * レースごとに前回保存したオッズを保持し、次の保存で書き込むべき馬（差分）を判定するトラッカー。
+ * 前回保存時からオッズ・馬名が変化した馬のみを書き込み、一定回数・一定時間ごとに全馬を書き込む（キーフレーム）。
+ * 任意の時点のオッズは、その時点以前の直近のキーフレームに以降の差分を順に適用して復元できる。
+ * <p>
+ * 馬が取消などで前回から消えた場合、差分では表現できないため全馬を書き込む。
+ * スレッドセーフ（状態の更新はレースごとに排他される）。
+ */
+final class OddsDeltaTracker {
+
+    /** この回数の判定ごとに、キーフレームの期限を過ぎたレースの状態を破棄する */
+    private static final int SWEEP_EVERY = 256;
+
+    private final boolean enabled;
+    private final int keyframeInterval;
+    private final long keyframeMaxAgeMillis;
+    private final ConcurrentHashMap<String, RaceState> races = new ConcurrentHashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    OddsDeltaTracker(OddsDeltaProperties properties) {
+        this.enabled = properties.enabled();
+        this.keyframeInterval = properties.keyframeInterval();
+        this.keyframeMaxAgeMillis = properties.keyframeMaxAge().toMillis();
+    }
+
+    /**
+     * 書き込むべき馬を判定し、書き込んだものとして状態を更新します。
+     *
+     * @param at 保存時刻
+     * @return 書き込む馬（current のインデックス）。差分モードが無効の場合は常にキーフレーム
+     */
+    Delta next(OddsSnapshot current, Instant at) {
+        if (!enabled) {
+            return Delta.keyframe(current.size());
+        }
+        long atMillis = at.toEpochMilli();
+        Delta[] result = new Delta[1];
+        races.compute(current.raceKey(), (key, state) -> {
+            if (state == null || atMillis - state.keyframeAtMillis >= keyframeMaxAgeMillis
+                    || state.deltas >= keyframeInterval || hasRemovedRunner(state.last, current)) {
+                result[0] = Delta.keyframe(current.size());
+                return new RaceState(current, atMillis, 0);
+            }
+            int[] changed = changedRunners(state.last, current);
+            result[0] = new Delta(false, changed);
+            return new RaceState(current, state.keyframeAtMillis, state.deltas + (changed.length > 0 ? 1 : 0));
+        });
+        if (calls.incrementAndGet() % SWEEP_EVERY == 0) {
+            // 期限を過ぎたレースは次回必ずキーフレームになるため、前回の状態を保持する必要がない
+            races.values().removeIf(state -> atMillis - state.keyframeAtMillis >= keyframeMaxAgeMillis);
+        }
+        return result[0];
+    }
+
+    /**
+     * レースの状態を破棄し、次の保存をキーフレームにします（保存に失敗した場合など）。
+     */
+    void forget(String raceKey) {
+        races.remove(raceKey);
+    }
+
+    /** 状態を保持しているレースの数 */
+    int size() {
+        return races.size();
+    }
+
+    /**
+     * 基準のオッズに差分を適用したオッズを返します。差分に含まれる馬を置き換え、基準にない馬は末尾に追加します。
+     * レース名・発走時刻は差分のものを使います。
+     */
+    static OddsSnapshot apply(OddsSnapshot base, OddsSnapshot changes) {
+        OddsSnapshot.Builder builder = OddsSnapshot.builder(changes.raceName(), changes.sourceUrl(),
+                base.size() + changes.size()).postTime(changes.postTime());
+        for (int i = 0; i < base.size(); i++) {
+            int j = indexOf(changes, base.horseNumber(i), i);
+            if (j >= 0) {
+                copyRunner(changes, j, builder);
+            } else {
+                copyRunner(base, i, builder);
+            }
+        }
+        for (int j = 0; j < changes.size(); j++) {
+            if (indexOf(base, changes.horseNumber(j), j) < 0) {
+                copyRunner(changes, j, builder);
+            }
+        }
+        return builder.build();
+    }
+
+    /** 指定した馬のみを含むオッズを返します。 */
+    static OddsSnapshot select(OddsSnapshot snapshot, int[] runners) {
+        OddsSnapshot.Builder builder = OddsSnapshot.builder(snapshot.raceName(), snapshot.sourceUrl(), runners.length)
+                .postTime(snapshot.postTime());
+        for (int i : runners) {
+            copyRunner(snapshot, i, builder);
+        }
+        return builder.build();
+    }
+
+    /** 1頭分のオッズをビルダーへ写します（未設定のオッズは未設定のまま）。 */
+    static void copyRunner(OddsSnapshot from, int i, OddsSnapshot.Builder to) {
+        to.add(from.horseNumber(i), from.horseName(i),
+                from.winOdds(i) != null ? from.winOddsFixed(i) : -1,
+                from.placeOddsMin(i) != null ? from.placeOddsMinFixed(i) : -1,
+                from.placeOddsMax(i) != null ? from.placeOddsMaxFixed(i) : -1);
+    }
+
+    private static int[] changedRunners(OddsSnapshot previous, OddsSnapshot current) {
+        int[] changed = new int[current.size()];
+        int count = 0;
+        for (int i = 0; i < current.size(); i++) {
+            int j = indexOf(previous, current.horseNumber(i), i);
+            if (j < 0 || !sameRunner(previous, j, current, i)) {
+                changed[count++] = i;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    private static boolean hasRemovedRunner(OddsSnapshot previous, OddsSnapshot current) {
+        for (int j = 0; j < previous.size(); j++) {
+            if (indexOf(current, previous.horseNumber(j), j) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameRunner(OddsSnapshot a, int i, OddsSnapshot b, int j) {
+        return Objects.equals(a.horseName(i), b.horseName(j))
+                && Objects.equals(a.winOdds(i), b.winOdds(j))
+                && Objects.equals(a.placeOddsMin(i), b.placeOddsMin(j))
+                && Objects.equals(a.placeOddsMax(i), b.placeOddsMax(j));
+    }
+
+    /** 馬番の位置を返します。並び順は通常変わらないため、同じ位置から確認します。 */
+    private static int indexOf(OddsSnapshot snapshot, String horseNumber, int hint) {
+        if (hint < snapshot.size() && snapshot.horseNumber(hint).equals(horseNumber)) {
+            return hint;
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.horseNumber(i).equals(horseNumber)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 書き込む馬の判定結果。
+     *
+     * @param keyframe trueの場合、全馬を書き込むキーフレーム
+     * @param runners  書き込む馬のインデックス（昇順）
+     */
+    record Delta(boolean keyframe, int[] runners) {
+
+        static Delta keyframe(int size) {
+            int[] all = new int[size];
+            Arrays.setAll(all, i -> i);
+            return new Delta(true, all);
+        }
+
+        boolean isEmpty() {
+            return runners.length == 0;
+        }
+    }
+
+    private record RaceState(OddsSnapshot last, long keyframeAtMillis, int deltas) {
+    }
+}
@@ -0,0 +1,241 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.FetchJobStatus;
+import com.oddsalchemist.backend.dto.SyncResult;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * オッズの取得・保存（{@link OddsSyncService#fetchAndSaveOdds}）をジョブとして実行するサービス。
+ * 同じURLの取得が実行中の場合は新たに取得せず、実行中のジョブに合流する（single-flight）。
+ * 手動取得と定期実行のどちらから開始したジョブにも合流するため、同じレースを重複してスクレイピングしたり、
+ * スプレッドシートへ同じ行を重複して書き込んだりしない。
+ * <p>
+ * 終了したジョブの状態は {@link #RETENTION} の間保持し、ジョブIDで参照できる。
+ */
+@Service
+public class OddsFetchJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OddsFetchJobService.class);
+
+    /** 終了したジョブの状態を保持する時間 */
+    static final Duration RETENTION = Duration.ofHours(1);
+
+    private final OddsSyncService oddsSyncService;
+    private final Clock clock;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** 実行中のジョブ（URLごと） */
+    private final ConcurrentHashMap<String, Job> inFlight = new ConcurrentHashMap<>();
+    /** 実行中・終了したジョブ（ジョブIDごと） */
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public OddsFetchJobService(OddsSyncService oddsSyncService, Clock clock) {
+        this.oddsSyncService = oddsSyncService;
+        this.clock = clock;
+    }
+
+    /** ジョブを開始した契機 */
+    public enum Trigger {
+        /** フロントエンドからの手動取得 */
+        MANUAL,
+        /** スケジューラーによる定期実行 */
+        SCHEDULED
+    }
+
+    /**
+     * 取得ジョブを開始し、完了を待たずに返します。同じURLのジョブが実行中の場合はそのジョブを返します。
+     *
+     * @param url   取得対象のURL
+     * @param range 書き込み先のスプレッドシートの範囲
+     * @return 開始した、または合流したジョブの状態
+     */
+    public FetchJobStatus submit(String url, String range) {
+        Job job = new Job(url, Trigger.MANUAL, clock.instant());
+        Job current = inFlight.putIfAbsent(url, job);
+        if (current != null) {
+            logger.info("同じURLの取得が実行中のため合流します: URL={}, ジョブID={}", url, current.id);
+            return current.status();
+        }
+        register(job);
+        try {
+            executor.execute(() -> execute(job, range));
+        } catch (RejectedExecutionException e) {
+            // シャットダウン後は実行されないため、合流したジョブが完了を待ち続けないよう失敗として終える
+            inFlight.remove(url, job);
+            job.finishedAt = clock.instant();
+            job.result.completeExceptionally(
+                    new IllegalStateException("シャットダウン中のため取得ジョブを開始できません", e));
+        }
+        return job.status();
+    }
+
+    /**
+     * 取得を実行し、完了まで待ちます（定期実行用）。同じURLのジョブが実行中の場合は、そのジョブの完了を待って結果を返します。
+     *
+     * @param url   取得対象のURL
+     * @param range 書き込み先のスプレッドシートの範囲
+     * @throws IOException 取得・保存に失敗した場合
+     */
+    public SyncResult fetch(String url, String range) throws IOException {
+        return runInline(url, range, Trigger.SCHEDULED).await();
+    }
+
+    /**
+     * 手動取得を実行し、完了まで待ってジョブの状態を返します（複数レースの一括取得用）。
+     * 同じURLのジョブが実行中の場合は、そのジョブの完了を待って状態を返します。
+     * 取得に失敗した場合も例外はスローせず、失敗の状態を返します。
+     */
+    public FetchJobStatus run(String url, String range) {
+        Job job = runInline(url, range, Trigger.MANUAL);
+        try {
+            job.await();
+        } catch (IOException | RuntimeException e) {
+            // 失敗はジョブの状態に記録されている
+        }
+        return job.status();
+    }
+
+    /** 実行中のジョブに合流するか、呼び出し元のスレッドで新たなジョブを実行します。 */
+    private Job runInline(String url, String range, Trigger trigger) {
+        Job job = new Job(url, trigger, clock.instant());
+        Job current = inFlight.putIfAbsent(url, job);
+        if (current != null) {
+            logger.info("同じURLの取得が実行中のため合流します: URL={}, ジョブID={}", url, current.id);
+            return current;
+        }
+        register(job);
+        execute(job, range);
+        return job;
+    }
+
+    /**
+     * ジョブの状態を返します。
+     *
+     * @return 存在しない、または保持期間を過ぎたジョブの場合はnull
+     */
+    public FetchJobStatus find(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? job.status() : null;
+    }
+
+    /** ジョブの実行スレッドを停止します（実行中の手動取得は中断し、次回の取得で再処理される）。 */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void register(Job job) {
+        // 保持期間を過ぎた終了済みのジョブを破棄する（ジョブの開始時のみ行えば十分）
+        Instant threshold = job.startedAt.minus(RETENTION);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(threshold));
+        jobs.put(job.id, job);
+    }
+
+    private void execute(Job job, String range) {
+        SyncResult result = null;
+        Throwable failure = null;
+        try {
+            result = oddsSyncService.fetchAndSaveOdds(job.url, range);
+        } catch (Throwable e) {
+            // Error の場合も合流したジョブが完了を待ち続けないよう、ジョブを失敗として終えてから再スローする
+            failure = e;
+        } finally {
+            // 以降の取得は新しいジョブとして実行する
+            inFlight.remove(job.url, job);
+        }
+        job.finishedAt = clock.instant();
+        if (failure != null) {
+            // 定期実行の失敗は呼び出し元（スケジューラー）が記録する
+            if (job.trigger == Trigger.MANUAL) {
+                logger.error("取得ジョブが失敗しました: URL={}, ジョブID={}", job.url, job.id, failure);
+            }
+            job.result.completeExceptionally(failure);
+            if (failure instanceof Error error) {
+                throw error;
+            }
+        } else {
+            job.result.complete(result);
+        }
+    }
+
+    /** 取得ジョブ */
+    private static final class Job {
+
+        final String id = UUID.randomUUID().toString();
+        final String url;
+        final Trigger trigger;
+        final Instant startedAt;
+        final CompletableFuture<SyncResult> result = new CompletableFuture<>();
+        volatile Instant finishedAt;
+
+        Job(String url, Trigger trigger, Instant startedAt) {
+            this.url = url;
+            this.trigger = trigger;
+            this.startedAt = startedAt;
+        }
+
+        SyncResult await() throws IOException {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("取得ジョブの完了待ちが中断されました", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                if (cause instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        FetchJobStatus status() {
+            if (!result.isDone()) {
+                return new FetchJobStatus(id, url, trigger.name(), "RUNNING", startedAt, null, null,
+                        List.of(), "オッズを取得しています。");
+            }
+            SyncResult sync;
+            try {
+                sync = result.join();
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                return new FetchJobStatus(id, url, trigger.name(), "FAILED", startedAt, finishedAt, null,
+                        List.of(), "エラーが発生しました: " + cause.getMessage());
+            }
+            // 前回取得時からオッズに変化がない場合は保存をスキップしたことを伝える
+            if (sync.unchanged()) {
+                return new FetchJobStatus(id, url, trigger.name(), "SUCCEEDED", startedAt, finishedAt, 0,
+                        List.of(), "オッズに変化がないため、保存をスキップしました。");
+            }
+            // 取得件数が0件の場合はエラーとして扱う
+            if (sync.savedCount() == 0) {
+                return new FetchJobStatus(id, url, trigger.name(), "FAILED", startedAt, finishedAt, 0,
+                        List.of(), "オッズデータを抽出できませんでした。対象ページの構造、またはURLを確認してください。");
+            }
+            return new FetchJobStatus(id, url, trigger.name(), "SUCCEEDED", startedAt, finishedAt,
+                    sync.savedCount(), sync.alerts(), sync.savedCount() + "件のオッズデータを保存しました。");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.oddsalchemist.backend.service;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 馬ごとの単勝オッズの時系列（取得時刻とオッズ）を固定長のリングバッファで保持するストア。
+ * 全馬分のバッファを1組のプリミティブ配列上に並べ、馬ごとに「容量 × (時刻8バイト + オッズ4バイト)」の
+ * 領域を割り当てる。容量を超えた分は古いサンプルから上書きするため、保持する馬の数に比例した
+ * 予測可能なメモリ量で動作する。
+ * <p>
+ * スレッドセーフではないため、呼び出し側で排他制御すること。
+ */
+final class OddsHistory {
+
+    /** サンプルが存在しないことを表す値 */
+    static final int NO_VALUE = -1;
+    /** チェックポイント上のサンプル1件のバイト数（時刻8バイト + オッズ4バイト） */
+    private static final int SAMPLE_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final int capacity;
+    /** 馬のキー（{@link RaceRegistry#horseKey}）からバッファのスロット番号への対応 */
+    private final LongIntHashMap slots;
+
+    /** 取得時刻（エポックミリ秒）。スロット番号 × 容量 + 位置 で参照する */
+    private long[] timestamps;
+    /** 単勝オッズ（オッズ×10）。timestamps と同じ位置に格納する */
+    private int[] odds;
+    /** スロットごとの次の書き込み位置 */
+    private int[] heads;
+    /** スロットごとの格納済みサンプル数（最大で容量） */
+    private int[] counts;
+    /** スロットごとの馬のキー */
+    private long[] slotKeys;
+    private int slotCount;
+
+    /**
+     * @param capacity       馬1頭あたりに保持するサンプル数
+     * @param expectedHorses 想定する馬の数（配列の初期容量）
+     */
+    OddsHistory(int capacity, int expectedHorses) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        int initialSlots = Math.max(expectedHorses, 1);
+        this.slots = new LongIntHashMap(initialSlots);
+        this.timestamps = new long[initialSlots * capacity];
+        this.odds = new int[initialSlots * capacity];
+        this.heads = new int[initialSlots];
+        this.counts = new int[initialSlots];
+        this.slotKeys = new long[initialSlots];
+    }
+
+    /**
+     * サンプルを追記します。バッファが満杯の場合は最も古いサンプルを上書きします。
+     * 時刻は単調増加で渡すこと。
+     */
+    void record(long horseKey, long timestamp, int value) {
+        int slot = slots.get(horseKey, -1);
+        if (slot < 0) {
+            slot = allocate(horseKey);
+        }
+        int pos = slot * capacity + heads[slot];
+        timestamps[pos] = timestamp;
+        odds[pos] = value;
+        heads[slot] = (heads[slot] + 1) % capacity;
+        if (counts[slot] < capacity) {
+            counts[slot]++;
+        }
+    }
+
+    /**
+     * 直近のサンプルのオッズを返します。
+     *
+     * @return オッズ×10。サンプルがない場合は {@link #NO_VALUE}
+     */
+    int latest(long horseKey) {
+        int slot = slots.get(horseKey, -1);
+        if (slot < 0 || counts[slot] == 0) {
+            return NO_VALUE;
+        }
+        return odds[slot * capacity + (heads[slot] + capacity - 1) % capacity];
+    }
+
+    /**
+     * 指定時刻より後（since &lt; 時刻）に記録されたサンプルのうち、最も高いオッズ（最も低い支持率）を返します。
+     * 新しい順に走査し、時刻が範囲外になった時点で打ち切る。走査は高々容量分のため定数時間。
+     *
+     * @return オッズ×10。範囲内にサンプルがない場合は {@link #NO_VALUE}
+     */
+    int maxSince(long horseKey, long since) {
+        int slot = slots.get(horseKey, -1);
+        if (slot < 0) {
+            return NO_VALUE;
+        }
+        int base = slot * capacity;
+        int max = NO_VALUE;
+        int pos = heads[slot];
+        for (int n = counts[slot]; n > 0; n--) {
+            pos = (pos + capacity - 1) % capacity;
+            if (timestamps[base + pos] <= since) {
+                break;
+            }
+            max = Math.max(max, odds[base + pos]);
+        }
+        return max;
+    }
+
+    /** 履歴を保持している馬の数 */
+    int horseCount() {
+        return slotCount;
+    }
+
+    /** バッファとして確保している配列のおおよそのバイト数（メモリ使用量のメトリクス用） */
+    long retainedBytes() {
+        return (long) timestamps.length * Long.BYTES
+                + (long) odds.length * Integer.BYTES
+                + (long) (heads.length + counts.length) * Integer.BYTES
+                + (long) slotKeys.length * Long.BYTES
+                + slots.retainedBytes();
+    }
+
+    /** 馬1頭あたりに保持するサンプル数 */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 全馬の履歴を書き出します（チェックポイント用）。
+     * 形式: 馬の数(int)、馬ごとに 馬番(int)・サンプル数(int)・古い順のサンプル（時刻(long)・オッズ(int)）
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            out.writeInt(RaceRegistry.horseNumberOf(slotKeys[slot]));
+            int count = counts[slot];
+            out.writeInt(count);
+            int base = slot * capacity;
+            int pos = (heads[slot] + capacity - count) % capacity;
+            for (int n = 0; n < count; n++) {
+                out.writeLong(timestamps[base + pos]);
+                out.writeInt(odds[base + pos]);
+                pos = (pos + 1) % capacity;
+            }
+        }
+    }
+
+    /**
+     * {@link #writeTo} で書き出した1レース分の履歴について、馬の数とサンプル数が残りのバイト数に
+     * 収まることを検証し、その範囲を切り出して返します。読み込み位置は履歴の末尾まで進みます。
+     *
+     * @throws IllegalArgumentException 馬の数またはサンプル数が負、もしくは残りのバイト数を超える場合
+     */
+    static ByteBuffer sliceCheckpoint(ByteBuffer in) {
+        int start = in.position();
+        int horses = in.getInt();
+        // 1頭あたり最低でも 馬番・サンプル数 の8バイトを使う
+        if (horses < 0 || horses > in.remaining() / 8) {
+            throw new IllegalArgumentException("馬の数が不正です: " + horses);
+        }
+        for (int h = 0; h < horses; h++) {
+            in.getInt();
+            int count = in.getInt();
+            if (count < 0 || count > in.remaining() / SAMPLE_BYTES) {
+                throw new IllegalArgumentException("サンプル数が不正です: " + count);
+            }
+            in.position(in.position() + count * SAMPLE_BYTES);
+        }
+        return in.slice(start, in.position() - start);
+    }
+
+    /**
+     * {@link #writeTo} で書き出した履歴を読み込んで追記します。
+     * 馬のキーは読み込み先のレースIDで作り直すため、再起動でレースIDが変わっても引き継げる。
+     * 容量が書き出し時より小さい場合は新しいサンプルのみが残る。
+     */
+    void readFrom(ByteBuffer in, int raceId) {
+        int horses = in.getInt();
+        for (int h = 0; h < horses; h++) {
+            long horseKey = RaceRegistry.horseKey(raceId, in.getInt());
+            int count = in.getInt();
+            for (int n = 0; n < count; n++) {
+                long timestamp = in.getLong();
+                int value = in.getInt();
+                if (horseKey != 0) {
+                    record(horseKey, timestamp, value);
+                }
+            }
+        }
+    }
+
+    private int allocate(long horseKey) {
+        if (slotCount == heads.length) {
+            int newSlots = heads.length * 2;
+            timestamps = Arrays.copyOf(timestamps, newSlots * capacity);
+            odds = Arrays.copyOf(odds, newSlots * capacity);
+            heads = Arrays.copyOf(heads, newSlots);
+            counts = Arrays.copyOf(counts, newSlots);
+            slotKeys = Arrays.copyOf(slotKeys, newSlots);
+        }
+        int slot = slotCount++;
+        slotKeys[slot] = horseKey;
+        slots.put(horseKey, slot);
+        return slot;
+    }
+}
@@ -1,23 +1,288 @@
 package com.oddsalchemist.backend.service;
 
-import org.jsoup.Jsoup;
+import com.oddsalchemist.backend.config.ScrapingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.brotli.dec.BrotliInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 @Service
 public class OddsScrapingService {
 
     private static final Logger logger = LoggerFactory.getLogger(OddsScrapingService.class);
 
-    public String fetchHtml(String url) throws IOException {
-        logger.info("Fetching HTML from URL: {}", url);
-        return Jsoup.connect(url)
-                .userAgent("Mozilla/5.0")
-                .timeout(5000)
-                .get()
-                .html();
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final String ACCEPT_ENCODING = "gzip, deflate, br";
+    // オッズテーブルの範囲を特定するためのマーカー
+    private static final byte[] TABLE_ROW_MARKER = "hr-tableValue__row".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TABLE_START_MARKER = "<table".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TABLE_END_MARKER = "</table>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROW_TAG = "<tr".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TAG_END = {'>'};
+    private static final byte[] SCRIPT_START_MARKER = "<script".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SCRIPT_END_MARKER = "</script".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * 検証情報を保持するページ数の上限。監視対象は1日あたり数十レース程度のため、
+     * シーズンを通じて増え続けないよう、最も長く取得されていないページから破棄する。
+     */
+    private static final int MAX_PROCESSED_PAGES = 1024;
+    /** 取得1回あたりのレイテンシを記録するタイマー名 */
+    static final String FETCH_TIMER = "odds.scraping.fetch";
+
+    private final HostThrottle hostThrottle;
+    private final HttpClient httpClient;
+    private final ScrapingProperties.Http httpSettings;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 最後に処理が完了したページの検証情報（ETag/Last-Modified/テーブルのハッシュ）。
+     * キー: URL。参照順（accessOrder）で保持し、{@value #MAX_PROCESSED_PAGES} 件を超えたら最も長く取得されていないURLを破棄する。
+     */
+    private final Map<String, PageState> processedPages = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PageState> eldest) {
+                    return size() > MAX_PROCESSED_PAGES;
+                }
+            });
+
+    public OddsScrapingService(HostThrottle hostThrottle, HttpClient scrapingHttpClient,
+                               ScrapingProperties properties, MeterRegistry meterRegistry) {
+        this.hostThrottle = hostThrottle;
+        this.httpClient = scrapingHttpClient;
+        this.httpSettings = properties.http();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 対象URLのページを取得します。
+     * 前回処理済みのETag/Last-Modifiedで条件付きリクエストを送り、304が返った場合や
+     * オッズテーブル部分のハッシュが前回と一致する場合は changed=false の結果を返します。
+     */
+    public FetchedPage fetchPage(String url) throws IOException {
+        PageState previous = processedPages.get(url);
+
+        try (HostThrottle.Permit permit = hostThrottle.acquire(url)) {
+            logger.info("Fetching HTML from URL: {}", url);
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(httpSettings.requestTimeout())
+                    .header("User-Agent", httpSettings.userAgent())
+                    .header("Accept-Encoding", ACCEPT_ENCODING)
+                    .GET();
+            if (previous != null && previous.etag() != null) {
+                request.header("If-None-Match", previous.etag());
+            }
+            if (previous != null && previous.lastModified() != null) {
+                request.header("If-Modified-Since", previous.lastModified());
+            }
+
+            RawResponse response = send(url, request.build());
+            int status = response.statusCode();
+            if (status == HTTP_NOT_MODIFIED) {
+                logger.info("ページは前回から更新されていません（304）。URL: {}", url);
+                return FetchedPage.unchanged(url);
+            }
+            if (status < 200 || status >= 300) {
+                throw new IOException("HTTPエラー応答を受信しました: ステータス=" + status + ", URL=" + url);
+            }
+
+            byte[] body = response.body();
+            String contentHash = hashOddsTable(body);
+            if (previous != null && contentHash.equals(previous.contentHash())) {
+                logger.info("オッズテーブルに変化がありません。URL: {}", url);
+                return FetchedPage.unchanged(url);
+            }
+            return new FetchedPage(url, body, charsetOf(response.headers()), true,
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null),
+                    contentHash);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("取得待機中に割り込まれました: " + url);
+        }
     }
-}
\ No newline at end of file
+
+    /**
+     * 共有クライアントでリクエストを送信し、圧縮を解いたレスポンスボディを返します。
+     * ホスト・ステータス・プロトコル別にレイテンシを記録します（接続再利用によるハンドシェイク削減の確認用）。
+     */
+    private RawResponse send(String url, HttpRequest request) throws IOException, InterruptedException {
+        long startNanos = System.nanoTime();
+        String status = "error";
+        String protocol = "unknown";
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            status = String.valueOf(response.statusCode());
+            protocol = response.version().name();
+            byte[] body;
+            try (InputStream in = decode(response)) {
+                body = in.readAllBytes();
+            }
+            return new RawResponse(response.statusCode(), response.headers(), body);
+        } finally {
+            Timer.builder(FETCH_TIMER)
+                    .description("スクレイピング1回あたりのHTTP取得時間")
+                    .tag("host", HostThrottle.hostOf(url))
+                    .tag("status", status)
+                    .tag("protocol", protocol)
+                    .publishPercentiles(0.5, 0.95)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Content-Encodingに応じてレスポンスボディの圧縮を解きます。 */
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("")
+                .trim().toLowerCase(Locale.ROOT);
+        InputStream body = response.body();
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(body);
+            case "deflate" -> new InflaterInputStream(body);
+            case "br" -> new BrotliInputStream(body);
+            default -> body;
+        };
+    }
+
+    /**
+     * Content-Typeのcharsetを返します。
+     * 指定がない・不正な場合はnullを返し、パーサー側でmetaタグ等から判定させます。
+     */
+    private static String charsetOf(HttpHeaders headers) {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        int idx = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (idx < 0) {
+            return null;
+        }
+        String name = contentType.substring(idx + "charset=".length()).split(";")[0].trim().replace("\"", "");
+        if (!Charset.isSupported(name)) {
+            logger.warn("未対応の文字コードです。ページ内の指定から判定します: '{}'", name);
+            return null;
+        }
+        return name;
+    }
+
+    /**
+     * ページの処理（パース・異常検知・保存）が完了したことを記録します。
+     * 以降の取得では、このページの検証情報を使って未変更の判定を行います。
+     * 処理途中で失敗したページは記録しないため、次回の取得で再処理されます。
+     */
+    public void markProcessed(FetchedPage page) {
+        if (!page.changed()) {
+            return;
+        }
+        processedPages.put(page.url(), new PageState(page.etag(), page.lastModified(), page.contentHash()));
+    }
+
+    /**
+     * オッズテーブル部分（最初の行を含むtableタグから閉じタグまで）のハッシュ値を計算します。
+     * 広告やタイムスタンプなどテーブル外の変化で再処理が走らないよう、テーブル部分のみを対象とします。
+     * テーブルが見つからない場合はページ全体を対象とします。
+     * マーカーはASCIIのため、文字列へデコードせずバイト列のまま範囲を特定します。
+     */
+    static String hashOddsTable(byte[] body) {
+        int start = 0;
+        int end = body.length;
+        int firstRow = indexOfRowMarker(body);
+        if (firstRow >= 0) {
+            int tableStart = lastIndexOf(body, TABLE_START_MARKER, firstRow);
+            int tableEnd = indexOf(body, TABLE_END_MARKER, firstRow);
+            if (tableStart >= 0 && tableEnd >= 0) {
+                start = tableStart;
+                end = tableEnd;
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(body, start, end - start);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256が利用できません", e);
+        }
+    }
+
+    /**
+     * 行タグ（&lt;tr ...&gt;）の属性内に現れる行のマーカーの位置を返します。
+     * script内のセレクター（"tr.hr-tableValue__row" など）に現れるマーカーは対象外とします。
+     *
+     * @return マーカーの位置。見つからない場合は-1
+     */
+    private static int indexOfRowMarker(byte[] body) {
+        for (int marker = indexOf(body, TABLE_ROW_MARKER, 0); marker >= 0;
+             marker = indexOf(body, TABLE_ROW_MARKER, marker + 1)) {
+            int tagStart = lastIndexOf(body, ROW_TAG, marker - ROW_TAG.length);
+            if (tagStart < 0 || !isWhitespace(body[tagStart + ROW_TAG.length])
+                    || indexOf(body, TAG_END, tagStart) < marker) {
+                continue; // 行タグの属性内ではない
+            }
+            int scriptStart = lastIndexOf(body, SCRIPT_START_MARKER, marker);
+            if (scriptStart >= 0) {
+                int scriptEnd = indexOf(body, SCRIPT_END_MARKER, scriptStart);
+                if (scriptEnd < 0 || scriptEnd > marker) {
+                    continue; // script内の文字列
+                }
+            }
+            return marker;
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = Math.max(0, from); i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] data, byte[] pattern, int before) {
+        outer:
+        for (int i = Math.min(before, data.length - pattern.length); i >= 0; i--) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private record PageState(String etag, String lastModified, String contentHash) {}
+
+    /** 圧縮を解いたボディとステータス・ヘッダーを保持するレスポンス。 */
+    private record RawResponse(int statusCode, HttpHeaders headers, byte[] body) {}
+}
@@ -0,0 +1,138 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.SnapshotCacheProperties;
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * URLごとに直前に取得・パースしたオッズを保持するキャッシュ（{@link OddsScrapingService} の前段）。
+ * 取得から ttl 以内の同じURLの取得はページをダウンロードせず、保持しているオッズとその取得で検知した異常で応答する。
+ * 定期実行の直後の手動取得や、短時間に繰り返された手動取得でスクレイピング先へアクセスしない。
+ * <p>
+ * 保持するURLの数は max-entries で上限を設け、超えた場合は最も長く参照されていないURLから破棄する（LRU）。
+ * 参照・破棄の回数はメトリクス（{@value #REQUESTS_COUNTER}・{@value #EVICTIONS_COUNTER}）で確認できる。
+ */
+@Component
+public class OddsSnapshotCache {
+
+    static final String REQUESTS_COUNTER = "odds.snapshot.cache.requests";
+    static final String EVICTIONS_COUNTER = "odds.snapshot.cache.evictions";
+    static final String SIZE_GAUGE = "odds.snapshot.cache.size";
+
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter expiredEvictions;
+    private final Counter sizeEvictions;
+
+    // 参照順（accessOrder）で保持し、上限を超えたら最も長く参照されていないURLを破棄する。this で排他制御する
+    private final LinkedHashMap<String, Entry> entries;
+
+    public OddsSnapshotCache(SnapshotCacheProperties properties, MeterRegistry meterRegistry) {
+        this.ttlMillis = properties.ttl().toMillis();
+        this.maxEntries = properties.maxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder(REQUESTS_COUNTER).tag("result", "hit")
+                .description("有効期間内のオッズで応答し、ページの取得を省略した回数")
+                .register(meterRegistry);
+        this.misses = Counter.builder(REQUESTS_COUNTER).tag("result", "miss")
+                .description("有効なオッズを保持しておらず、ページを取得した回数")
+                .register(meterRegistry);
+        this.expiredEvictions = Counter.builder(EVICTIONS_COUNTER).tag("cause", "expired")
+                .register(meterRegistry);
+        this.sizeEvictions = Counter.builder(EVICTIONS_COUNTER).tag("cause", "size")
+                .register(meterRegistry);
+        Gauge.builder(SIZE_GAUGE, this, OddsSnapshotCache::size)
+                .description("オッズを保持しているURLの数")
+                .register(meterRegistry);
+    }
+
+    /** キャッシュが有効か（ttlが0の場合は無効） */
+    public boolean enabled() {
+        return ttlMillis > 0;
+    }
+
+    /**
+     * 有効期間内のオッズを返します。
+     *
+     * @param now 現在時刻
+     * @return 保持していない、または有効期間を過ぎている場合はnull
+     */
+    public synchronized Entry get(String url, Instant now) {
+        if (!enabled()) {
+            return null;
+        }
+        Entry entry = entries.get(url);
+        if (entry != null && now.toEpochMilli() - entry.checkedAt().toEpochMilli() >= ttlMillis) {
+            entries.remove(url);
+            expiredEvictions.increment();
+            entry = null;
+        }
+        (entry != null ? hits : misses).increment();
+        return entry;
+    }
+
+    /**
+     * 取得・パースしたオッズを保持します。
+     *
+     * @param alerts    そのオッズで検知した異常
+     * @param fetchedAt 取得時刻（有効期間の起点）
+     */
+    public synchronized void put(String url, OddsSnapshot snapshot, List<AnomalyAlertDto> alerts, Instant fetchedAt) {
+        if (enabled()) {
+            entries.put(url, new Entry(snapshot, alerts, fetchedAt, fetchedAt));
+        }
+    }
+
+    /**
+     * ページが前回から変化していないことを確認した時刻を記録し、保持しているオッズの有効期間を延長します。
+     * オッズを保持していない場合は何もしません。
+     */
+    public synchronized void refresh(String url, Instant checkedAt) {
+        Entry entry = entries.get(url);
+        if (entry != null) {
+            entries.put(url, new Entry(entry.snapshot(), entry.alerts(), entry.fetchedAt(), checkedAt));
+        }
+    }
+
+    /** 保持しているURLの数 */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 保持しているオッズ。
+     *
+     * @param snapshot  パース済みのオッズ
+     * @param alerts    オッズを取得した際に検知した異常
+     * @param fetchedAt オッズを取得した時刻
+     * @param checkedAt ページが最新であることを最後に確認した時刻（有効期間の起点）
+     */
+    public record Entry(OddsSnapshot snapshot, List<AnomalyAlertDto> alerts, Instant fetchedAt, Instant checkedAt) {
+
+        public Entry {
+            alerts = alerts == null ? List.of() : List.copyOf(alerts);
+        }
+    }
+}
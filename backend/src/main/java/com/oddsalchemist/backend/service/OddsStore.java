@@ -0,0 +1,593 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
+import com.oddsalchemist.backend.config.OddsStoreProperties;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.dto.StoredOdds;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 取得したオッズの全履歴をローカルディスクに保存する組み込みの時系列ストア。
+ * スプレッドシートに代わるオッズ履歴の保存先（システムオブレコード）として、レース・馬・時間範囲での参照に応える。
+ * <p>
+ * 履歴は固定長のセグメントファイルにメモリマップで追記する。レコードは「長さ(int)・CRC32(int)・本体」の形式で、
+ * 本体の先頭1バイトが種別（レースの登録 / 1回分の取得結果）を表す。長さは本体とCRCを書き終えてから書き込むため、
+ * 書き込み途中で停止したレコードは起動時の走査で末尾として扱われ、以降は上書きされる。
+ * <p>
+ * 差分モード（odds.delta）では、前回保存時からオッズが変化した馬のみを差分レコードとして書き込み、
+ * 一定間隔で全馬のキーフレームを書き込む（{@link OddsDeltaTracker}）。
+ * <p>
+ * レースごとの索引（取得時刻とレコードの位置）はメモリ上に保持し、起動時にセグメントを走査して再構築する。
+ * 時間範囲の参照は索引の二分探索で開始位置を求め、その直前のキーフレームから差分を適用して各時点のオッズを復元する。
+ * レース名は変更のたびにレースの登録を書き込み、各取得結果は保存した時点のレース名で返す。
+ * <p>
+ * 書き込み中のセグメント以外は読み取り専用でマップする。保持期間（odds.store.retention）を設定した場合、
+ * 最も新しい取得時刻から保持期間より前の取得結果のみを含むセグメントを古い順にファイルごと削除する。
+ * 削除したセグメントにあったレースの登録を失わないよう、保持期間を設定した場合は新しいセグメントの先頭に
+ * 保持中の全レースの登録を書き込む。保持期間を設定しない場合、ディスク使用量とマップする領域は
+ * 取得結果の件数に比例して増え続ける。
+ */
+@Component
+public class OddsStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(OddsStore.class);
+
+    /** セグメント先頭の識別子（"OAST"） */
+    static final int MAGIC = 0x4F415354;
+    static final int VERSION = 1;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    /** セグメントヘッダー（マジック + バージョン）のバイト数 */
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    /** レコードヘッダー（長さ + CRC32）のバイト数 */
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte RACE_RECORD = 1;
+    private static final byte SNAPSHOT_RECORD = 2;
+    private static final byte DELTA_RECORD = 3;
+    /** 発走時刻が不明であることを表す値 */
+    private static final long NO_POST_TIME = Long.MIN_VALUE;
+
+    private final Path dir;
+    private final int segmentBytes;
+    /** 履歴の保持期間（ミリ秒）。0の場合はセグメントを削除しない */
+    private final long retentionMillis;
+    private final OddsDeltaTracker deltaTracker;
+
+    // 以下は this で排他制御する
+    /** セグメント番号の昇順のセグメント */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<String, RaceIndex> racesByKey = new HashMap<>();
+    /** レースIDの昇順のレース（保持期間を過ぎて削除したレースのIDは欠番になる） */
+    private final Map<Integer, RaceIndex> racesById = new LinkedHashMap<>();
+    /** 書き込み中のセグメント */
+    private Segment current;
+    private int nextSegmentId;
+    private int nextRaceId;
+    private int writePos;
+    private long snapshotCount;
+    /** 保存した取得結果のうち最も新しい取得時刻（保持期間の基準） */
+    private long latestFetchedAt = Long.MIN_VALUE;
+    /** セグメントを切り替えた後、保持期間を過ぎたセグメントをまだ削除していないかどうか */
+    private boolean expirePending;
+
+    public OddsStore(OddsStoreProperties properties, OddsDeltaProperties deltaProperties) throws IOException {
+        this.dir = Path.of(properties.path());
+        this.segmentBytes = (int) Math.min(properties.segmentSize().toBytes(), Integer.MAX_VALUE);
+        this.retentionMillis = properties.retention().toMillis();
+        this.deltaTracker = new OddsDeltaTracker(deltaProperties);
+        open();
+    }
+
+    /**
+     * 1回分の取得結果を追記します。差分モードでは前回保存時から変化した馬のみを書き込みます
+     * （変化がない場合も、その時点の取得結果として参照できるよう空の差分を書き込む）。
+     *
+     * @param fetchedAt 取得時刻（レースごとに単調増加で渡すこと）
+     */
+    public synchronized void append(OddsSnapshot snapshot, Instant fetchedAt) throws IOException {
+        if (expirePending) {
+            // 書き込み中のレースを索引から取り除かないよう、書き込みを始める前に削除する
+            expire();
+        }
+        String raceKey = snapshot.raceKey();
+        RaceIndex race = racesByKey.get(raceKey);
+        if (race == null || !race.currentName().equals(snapshot.raceName())) {
+            int raceId = race != null ? race.id : nextRaceId;
+            writeRecord(encodeRace(raceId, raceKey, snapshot.raceName()));
+            race = register(raceId, raceKey, snapshot.raceName());
+        }
+        long fetchedAtMillis = fetchedAt.toEpochMilli();
+        OddsDeltaTracker.Delta delta = deltaTracker.next(snapshot, fetchedAt);
+        long location;
+        try {
+            location = delta.keyframe()
+                    ? writeRecord(encodeSnapshot(SNAPSHOT_RECORD, race.id, fetchedAtMillis, snapshot))
+                    : writeRecord(encodeSnapshot(DELTA_RECORD, race.id, fetchedAtMillis,
+                            OddsDeltaTracker.select(snapshot, delta.runners())));
+        } catch (IOException e) {
+            // 書き込めなかった差分の基準を残さないよう、次回はキーフレームにする
+            deltaTracker.forget(raceKey);
+            throw e;
+        }
+        race.add(fetchedAtMillis, location, delta.keyframe());
+        current.latestFetchedAt = Math.max(current.latestFetchedAt, fetchedAtMillis);
+        latestFetchedAt = Math.max(latestFetchedAt, fetchedAtMillis);
+        snapshotCount++;
+    }
+
+    /**
+     * レースのオッズ履歴を取得時刻の昇順で返します。
+     *
+     * @param raceKey    レースのキー（{@link OddsSnapshot#raceKey()}）
+     * @param fromMillis 取得時刻の下限（エポックミリ秒、この時刻を含む）
+     * @param toMillis   取得時刻の上限（エポックミリ秒、この時刻を含まない）
+     * @return オッズ履歴。レースが存在しない場合は空のリスト
+     */
+    public synchronized List<StoredOdds> query(String raceKey, long fromMillis, long toMillis) throws IOException {
+        RaceIndex race = racesByKey.get(raceKey);
+        if (race == null || fromMillis >= toMillis) {
+            return List.of();
+        }
+        int first = race.lowerBound(fromMillis);
+        // 差分から復元するため、開始位置の直前のキーフレームから読み出す
+        int start = first;
+        while (start > 0 && start < race.size && !race.keyframes[start]) {
+            start--;
+        }
+        List<StoredOdds> result = new ArrayList<>();
+        OddsSnapshot current = null;
+        for (int i = start; i < race.size && race.timestamps[i] < toMillis; i++) {
+            StoredOdds stored = readSnapshot(race.locations[i], race.nameAt(i));
+            current = race.keyframes[i] || current == null
+                    ? stored.snapshot()
+                    : OddsDeltaTracker.apply(current, stored.snapshot());
+            if (i >= first) {
+                result.add(new StoredOdds(stored.fetchedAt(), current));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 1頭分のオッズ履歴を取得時刻の昇順で返します。その馬を含まない取得結果は除きます。
+     *
+     * @see #query(String, long, long)
+     */
+    public List<StoredOdds> queryHorse(String raceKey, String horseNumber, long fromMillis, long toMillis)
+            throws IOException {
+        List<StoredOdds> result = new ArrayList<>();
+        for (StoredOdds stored : query(raceKey, fromMillis, toMillis)) {
+            OddsSnapshot snapshot = stored.snapshot();
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (snapshot.horseNumber(i).equals(horseNumber)) {
+                    result.add(new StoredOdds(stored.fetchedAt(), OddsDeltaTracker.select(snapshot, new int[]{i})));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** 保存しているレースのキー */
+    public synchronized List<String> raceKeys() {
+        return racesById.values().stream().map(race -> race.raceKey).toList();
+    }
+
+    /** 保存している取得結果の件数 */
+    public synchronized long snapshotCount() {
+        return snapshotCount;
+    }
+
+    /** 書き込み中のセグメントをディスクへ同期します。 */
+    @PreDestroy
+    public synchronized void flush() {
+        if (current != null) {
+            current.buffer.force();
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (int f = 0; f < files.size(); f++) {
+            Path file = files.get(f);
+            int segmentId = Integer.parseInt(file.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+            nextSegmentId = segmentId + 1;
+            // 最後のセグメントのみ続きを書き込むため読み書き可能でマップする
+            boolean last = f == files.size() - 1;
+            MappedByteBuffer buffer = map(file, Files.size(file),
+                    last ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                logger.warn("オッズストアのセグメントの形式が異なるため読み込みをスキップします: {}", file);
+                continue;
+            }
+            Segment segment = new Segment(segmentId, file, buffer);
+            segments.put(segmentId, segment);
+            int end = scan(segment);
+            if (last) {
+                current = segment;
+                writePos = end;
+                if (writePos < buffer.capacity() && buffer.getInt(writePos) != 0) {
+                    // 書き込み途中で停止したレコードの残骸を消し、以降の走査で誤って読まないようにする
+                    logger.warn("オッズストアの末尾に不完全なレコードがあるため切り捨てます: {}, 位置={}", file, writePos);
+                    for (int pos = writePos; pos < buffer.capacity(); pos++) {
+                        buffer.put(pos, (byte) 0);
+                    }
+                }
+            }
+        }
+        if (current == null) {
+            roll();
+        } else {
+            expire();
+        }
+        logger.info("オッズストアを開きました: レース数={}, 取得結果={}件, セグメント数={}",
+                racesById.size(), snapshotCount, segments.size());
+    }
+
+    /**
+     * セグメント内のレコードを走査して索引を再構築します。
+     *
+     * @return 有効な最後のレコードの直後の位置
+     */
+    private int scan(Segment segment) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        int pos = SEGMENT_HEADER_BYTES;
+        while (pos + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || length > buffer.capacity() - pos - RECORD_HEADER_BYTES) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(pos + RECORD_HEADER_BYTES, body);
+            if (crc(body, length) != buffer.getInt(pos + 4)) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            byte type = in.readByte();
+            int raceId = in.readInt();
+            if (type == RACE_RECORD) {
+                register(raceId, in.readUTF(), in.readUTF());
+            } else if ((type == SNAPSHOT_RECORD || type == DELTA_RECORD) && racesById.containsKey(raceId)) {
+                long fetchedAtMillis = in.readLong();
+                racesById.get(raceId).add(fetchedAtMillis, locationOf(segment.id, pos), type == SNAPSHOT_RECORD);
+                segment.latestFetchedAt = Math.max(segment.latestFetchedAt, fetchedAtMillis);
+                latestFetchedAt = Math.max(latestFetchedAt, fetchedAtMillis);
+                snapshotCount++;
+            }
+            pos += RECORD_HEADER_BYTES + length;
+        }
+        return pos;
+    }
+
+    private RaceIndex register(int raceId, String raceKey, String raceName) {
+        RaceIndex race = racesById.get(raceId);
+        if (race == null) {
+            race = new RaceIndex(raceId, raceKey);
+            racesById.put(raceId, race);
+            racesByKey.put(raceKey, race);
+            nextRaceId = Math.max(nextRaceId, raceId + 1);
+        }
+        race.rename(raceName);
+        return race;
+    }
+
+    /**
+     * レコードを追記します。本体とCRCを書き終えてから長さを書き込み、レコードを有効にします。
+     *
+     * @return レコードの位置
+     */
+    private long writeRecord(ByteArrayOutputStream body) throws IOException {
+        int needed = RECORD_HEADER_BYTES + body.size();
+        if (needed > segmentBytes - SEGMENT_HEADER_BYTES) {
+            throw new IOException("レコードがセグメントの大きさを超えています: " + needed + "バイト");
+        }
+        if (writePos + needed > current.buffer.capacity()) {
+            roll();
+        }
+        return put(body);
+    }
+
+    /** 書き込み中のセグメントの末尾へレコードを書き込みます。 */
+    private long put(ByteArrayOutputStream body) throws IOException {
+        int length = body.size();
+        int needed = RECORD_HEADER_BYTES + length;
+        MappedByteBuffer buffer = current.buffer;
+        if (writePos + needed > buffer.capacity()) {
+            throw new IOException("セグメントの空きが不足しています。odds.store.segment-size を大きくしてください: "
+                    + needed + "バイト");
+        }
+        byte[] bytes = body.toByteArray();
+        int pos = writePos;
+        buffer.put(pos + RECORD_HEADER_BYTES, bytes);
+        buffer.putInt(pos + 4, crc(bytes, length));
+        buffer.putInt(pos, length);
+        writePos = pos + needed;
+        return locationOf(current.id, pos);
+    }
+
+    /** 新しいセグメントファイルを確保して書き込み先を切り替えます。 */
+    private void roll() throws IOException {
+        if (current != null) {
+            current.buffer.force();
+            // 書き終えたセグメントは読み取り専用でマップし直す
+            current.buffer = map(current.file, current.buffer.capacity(), FileChannel.MapMode.READ_ONLY);
+            expirePending = true;
+        }
+        int segmentId = nextSegmentId++;
+        Path file = dir.resolve(String.format("%010d%s", segmentId, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer = map(file, segmentBytes, FileChannel.MapMode.READ_WRITE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        current = new Segment(segmentId, file, buffer);
+        segments.put(segmentId, current);
+        writePos = SEGMENT_HEADER_BYTES;
+        if (retentionMillis > 0) {
+            // 古いセグメントを削除した後の再起動でもレースを登録し直せるよう、保持中の全レースを書き込む
+            for (RaceIndex race : racesById.values()) {
+                put(encodeRace(race.id, race.raceKey, race.currentName()));
+            }
+        }
+    }
+
+    /**
+     * 保持期間を過ぎた取得結果のみを含むセグメントを古い順に削除し、索引から取り除きます。
+     * 各レースの索引は、残るセグメントにある最初のキーフレームから始まるよう先頭を詰める。
+     */
+    private void expire() throws IOException {
+        expirePending = false;
+        if (retentionMillis <= 0 || latestFetchedAt == Long.MIN_VALUE) {
+            return;
+        }
+        long cutoff = latestFetchedAt - retentionMillis;
+        int deleted = 0;
+        for (Iterator<Segment> it = segments.values().iterator(); it.hasNext(); ) {
+            Segment segment = it.next();
+            if (segment == current || segment.latestFetchedAt >= cutoff) {
+                break;
+            }
+            it.remove();
+            Files.deleteIfExists(segment.file);
+            deleted++;
+        }
+        long removed = 0;
+        for (Iterator<RaceIndex> it = racesById.values().iterator(); it.hasNext(); ) {
+            RaceIndex race = it.next();
+            int first = 0;
+            while (first < race.size && (!race.keyframes[first]
+                    || !segments.containsKey((int) (race.locations[first] >>> 32)))) {
+                first++;
+            }
+            if (first == 0) {
+                continue;
+            }
+            race.removeFirst(first);
+            removed += first;
+            if (race.size == 0) {
+                it.remove();
+                racesByKey.remove(race.raceKey);
+                deltaTracker.forget(race.raceKey);
+            }
+        }
+        snapshotCount -= removed;
+        if (deleted > 0 || removed > 0) {
+            logger.info("保持期間を過ぎたオッズ履歴を削除しました: セグメント数={}, 取得結果={}件", deleted, removed);
+        }
+    }
+
+    private StoredOdds readSnapshot(long location, String raceName) throws IOException {
+        MappedByteBuffer buffer = segments.get((int) (location >>> 32)).buffer;
+        int pos = (int) location;
+        byte[] body = new byte[buffer.getInt(pos)];
+        buffer.get(pos + RECORD_HEADER_BYTES, body);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        in.readByte();
+        RaceIndex race = racesById.get(in.readInt());
+        Instant fetchedAt = Instant.ofEpochMilli(in.readLong());
+        long postTime = in.readLong();
+        int size = in.readInt();
+        OddsSnapshot.Builder builder = OddsSnapshot.builder(raceName, race.raceKey, size)
+                .postTime(postTime == NO_POST_TIME ? null : Instant.ofEpochMilli(postTime));
+        for (int i = 0; i < size; i++) {
+            builder.add(in.readUTF(), in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+        }
+        return new StoredOdds(fetchedAt, builder.build());
+    }
+
+    /** 本体の形式: 種別(byte)・レースID(int)・レースのキー(UTF)・レース名(UTF) */
+    private static ByteArrayOutputStream encodeRace(int raceId, String raceKey, String raceName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + raceKey.length() * 3);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RACE_RECORD);
+        out.writeInt(raceId);
+        out.writeUTF(raceKey);
+        out.writeUTF(raceName);
+        return bytes;
+    }
+
+    /**
+     * 本体の形式: 種別(byte)・レースID(int)・取得時刻(long)・発走時刻(long)・頭数(int)・
+     * 馬ごとに 馬番(UTF)・馬名(UTF)・単勝・複勝下限・複勝上限（オッズ×10、未設定は-1）。
+     * キーフレームは全馬、差分は変化した馬のみを含む。
+     */
+    private static ByteArrayOutputStream encodeSnapshot(byte type, int raceId, long fetchedAtMillis,
+                                                        OddsSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + snapshot.size() * 40);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeInt(raceId);
+        out.writeLong(fetchedAtMillis);
+        out.writeLong(snapshot.postTime() != null ? snapshot.postTime().toEpochMilli() : NO_POST_TIME);
+        out.writeInt(snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            out.writeUTF(snapshot.horseNumber(i));
+            out.writeUTF(snapshot.horseName(i));
+            out.writeInt(fixedOrNull(snapshot.winOdds(i), snapshot.winOddsFixed(i)));
+            out.writeInt(fixedOrNull(snapshot.placeOddsMin(i), snapshot.placeOddsMinFixed(i)));
+            out.writeInt(fixedOrNull(snapshot.placeOddsMax(i), snapshot.placeOddsMaxFixed(i)));
+        }
+        return bytes;
+    }
+
+    /** 未設定のオッズを-1で表す */
+    private static int fixedOrNull(Double value, int fixed) {
+        return value == null ? -1 : fixed;
+    }
+
+    private MappedByteBuffer map(Path file, long size, FileChannel.MapMode mode) throws IOException {
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(mode, 0, size);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(mode, 0, size);
+        }
+    }
+
+    private static int crc(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /** セグメント番号（上位32ビット）とセグメント内の位置（下位32ビット）をまとめたレコードの位置 */
+    private static long locationOf(int segmentId, int pos) {
+        return (long) segmentId << 32 | pos;
+    }
+
+    /** セグメントファイルとそのマップ */
+    private static final class Segment {
+        private final int id;
+        private final Path file;
+        private MappedByteBuffer buffer;
+        /** セグメント内の取得結果のうち最も新しい取得時刻 */
+        private long latestFetchedAt = Long.MIN_VALUE;
+
+        private Segment(int id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /** レースごとの索引（取得時刻の昇順） */
+    private static final class RaceIndex {
+        private final int id;
+        private final String raceKey;
+        /** レース名。変更されるたびに追加する */
+        private final List<String> names = new ArrayList<>();
+        /** names と同じ位置のレース名で保存した最初の索引の位置 */
+        private final List<Integer> nameStarts = new ArrayList<>();
+        private long[] timestamps = new long[16];
+        private long[] locations = new long[16];
+        /** キーフレーム（全馬）のレコードかどうか */
+        private boolean[] keyframes = new boolean[16];
+        private int size;
+
+        private RaceIndex(int id, String raceKey) {
+            this.id = id;
+            this.raceKey = raceKey;
+        }
+
+        private void add(long timestamp, long location, boolean keyframe) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                locations = Arrays.copyOf(locations, size * 2);
+                keyframes = Arrays.copyOf(keyframes, size * 2);
+            }
+            timestamps[size] = timestamp;
+            locations[size] = location;
+            keyframes[size] = keyframe;
+            size++;
+        }
+
+        /** 以降に追加する取得結果のレース名を設定します。 */
+        private void rename(String raceName) {
+            int last = names.size() - 1;
+            if (last >= 0 && names.get(last).equals(raceName)) {
+                return;
+            }
+            if (last >= 0 && nameStarts.get(last) == size) {
+                // その名前で保存した取得結果がない場合は置き換える
+                names.set(last, raceName);
+            } else {
+                names.add(raceName);
+                nameStarts.add(size);
+            }
+        }
+
+        private String currentName() {
+            return names.get(names.size() - 1);
+        }
+
+        /** 指定位置の取得結果を保存した時点のレース名 */
+        private String nameAt(int index) {
+            int n = names.size() - 1;
+            while (n > 0 && nameStarts.get(n) > index) {
+                n--;
+            }
+            return names.get(n);
+        }
+
+        /** 先頭から指定した件数を取り除きます。 */
+        private void removeFirst(int count) {
+            System.arraycopy(timestamps, count, timestamps, 0, size - count);
+            System.arraycopy(locations, count, locations, 0, size - count);
+            System.arraycopy(keyframes, count, keyframes, 0, size - count);
+            size -= count;
+            // 取り除いた範囲で使われなくなったレース名を捨て、残りの開始位置を詰める
+            while (names.size() > 1 && nameStarts.get(1) <= count) {
+                names.remove(0);
+                nameStarts.remove(0);
+            }
+            for (int n = 0; n < nameStarts.size(); n++) {
+                nameStarts.set(n, Math.max(nameStarts.get(n) - count, 0));
+            }
+        }
+
+        /** 指定時刻以降の最初の位置 */
+        private int lowerBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
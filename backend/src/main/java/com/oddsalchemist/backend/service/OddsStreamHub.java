@@ -0,0 +1,424 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
+import com.oddsalchemist.backend.config.OddsStreamProperties;
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.dto.OddsStreamAlerts;
+import com.oddsalchemist.backend.dto.OddsStreamDelta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * オッズの差分と異常検知の結果を購読者へ配信するハブ（Server-Sent Events の送信元）。
+ * 取得（{@link OddsUpdatedEvent}）のたびにレースの差分（{@value #ODDS_EVENT}）と新たな異常（{@value #ALERTS_EVENT}）を
+ * 1回だけJSONへシリアライズし、連番のイベントIDを付けて全購読者のキューへ入れる。
+ * 順位乖離のように条件を満たしている間は毎回検知される異常もあるため、レースごとに前回配信した異常
+ * （馬番・検知タイプ）を保持し、前回の取得では検知されていなかった異常のみを配信する。
+ * <p>
+ * 購読者ごとに仮想スレッドがキューを待ち受けて送信するため、待機中の購読者はスレッドを占有しない。
+ * キューは subscriber-buffer-size で上限を設け、送信が遅い購読者が他の購読者や取得処理を遅らせないようにする。
+ * <ul>
+ *   <li>レースのキーフレームが届いた場合、同じレースの未送信の差分はキーフレームに含まれるため破棄する（集約）</li>
+ *   <li>それでも上限を超えた場合は未送信分をすべて破棄し、最後に送信したイベントの次から再開用の履歴を送り直す</li>
+ * </ul>
+ * 再開用の履歴には直近 replay-size 件のイベントを保持し、再接続したクライアントは Last-Event-ID で続きから受信できる。
+ * 履歴に残っていない、または再起動前のイベントIDの場合は {@value #RESET_EVENT} を送り、
+ * クライアントは最新のオッズ（/api/odds/latest）を取得し直す。
+ */
+@Component
+public class OddsStreamHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(OddsStreamHub.class);
+
+    static final String ODDS_EVENT = "odds";
+    static final String ALERTS_EVENT = "alerts";
+    static final String RESET_EVENT = "reset";
+
+    static final String SUBSCRIBERS_GAUGE = "odds.stream.subscribers";
+    static final String OVERFLOW_COUNTER = "odds.stream.overflow";
+
+    /** この時間更新がないレースの配信済みの異常は破棄する（終了したレース） */
+    private static final long ALERT_RETENTION_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final OddsStreamProperties properties;
+    private final JsonMapper jsonMapper;
+    private final OddsDeltaTracker deltaTracker;
+    private final String idPrefix;
+    private final Counter overflows;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong subscriberIds = new AtomicLong();
+    /** レースごとの前回の取得で検知されていた異常（キー: レースの識別キー） */
+    private final ConcurrentHashMap<String, FiringAlerts> firingAlerts = new ConcurrentHashMap<>();
+
+    // 以下は this で排他制御する（イベントIDの採番と履歴・購読者のキューへの追加の順序を揃えるため）
+    private final ArrayDeque<Message> replay = new ArrayDeque<>();
+    private long sequence;
+
+    private volatile boolean running = true;
+
+    public OddsStreamHub(OddsStreamProperties properties, OddsDeltaProperties deltaProperties,
+                         JsonMapper jsonMapper, MeterRegistry meterRegistry, Clock clock) {
+        this.properties = properties;
+        this.jsonMapper = jsonMapper;
+        // 配信は常に差分とし、キーフレームの間隔は保存と揃える（途中から受信したクライアントも定期的に全馬を受け取れる）
+        this.deltaTracker = new OddsDeltaTracker(
+                new OddsDeltaProperties(true, deltaProperties.keyframeInterval(), deltaProperties.keyframeMaxAge()));
+        // 再起動前のイベントIDで再開しようとした場合に、別の内容と取り違えないようにする
+        this.idPrefix = Long.toString(clock.millis(), 36) + "-";
+
+        Gauge.builder(SUBSCRIBERS_GAUGE, subscribers, Set::size)
+                .description("オッズ配信の購読者数")
+                .register(meterRegistry);
+        this.overflows = Counter.builder(OVERFLOW_COUNTER)
+                .description("送信が追いつかず、未送信のイベントを破棄して送り直した回数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 取得したオッズの差分と、新たに検知した異常を配信します。
+     */
+    @EventListener
+    public void onOddsUpdated(OddsUpdatedEvent event) {
+        OddsSnapshot snapshot = event.snapshot();
+        OddsDeltaTracker.Delta delta = deltaTracker.next(snapshot, event.fetchedAt());
+        List<Message> messages = new ArrayList<>(2);
+        if (!delta.isEmpty()) {
+            OddsSnapshot changed = delta.keyframe() ? snapshot : OddsDeltaTracker.select(snapshot, delta.runners());
+            messages.add(new Message(0, ODDS_EVENT, snapshot.raceKey(), delta.keyframe(),
+                    jsonMapper.writeValueAsString(new OddsStreamDelta(snapshot.raceKey(), snapshot.raceName(),
+                            snapshot.postTime(), event.fetchedAt(), delta.keyframe(), changed.toOddsDataList()))));
+        }
+        List<AnomalyAlertDto> newAlerts = newAlerts(snapshot.raceKey(), event.alerts(), event.fetchedAt().toEpochMilli());
+        if (!newAlerts.isEmpty()) {
+            messages.add(new Message(0, ALERTS_EVENT, snapshot.raceKey(), false,
+                    jsonMapper.writeValueAsString(new OddsStreamAlerts(snapshot.raceKey(), snapshot.raceName(),
+                            event.fetchedAt(), newAlerts))));
+        }
+        if (!messages.isEmpty()) {
+            publish(messages);
+        }
+    }
+
+    /**
+     * 今回検知された異常のうち、前回の取得では検知されていなかったもの（馬番・検知タイプの組）を返し、
+     * 今回検知された異常を次回の比較の基準として記録します。
+     */
+    private List<AnomalyAlertDto> newAlerts(String raceKey, List<AnomalyAlertDto> alerts, long atMillis) {
+        firingAlerts.values().removeIf(firing -> atMillis - firing.atMillis() >= ALERT_RETENTION_MILLIS);
+        Set<String> keys = new HashSet<>();
+        for (AnomalyAlertDto alert : alerts) {
+            keys.add(alertKey(alert));
+        }
+        FiringAlerts previous = keys.isEmpty()
+                ? firingAlerts.remove(raceKey)
+                : firingAlerts.put(raceKey, new FiringAlerts(keys, atMillis));
+        if (previous == null) {
+            return alerts;
+        }
+        List<AnomalyAlertDto> fresh = new ArrayList<>();
+        for (AnomalyAlertDto alert : alerts) {
+            if (!previous.keys().contains(alertKey(alert))) {
+                fresh.add(alert);
+            }
+        }
+        return fresh;
+    }
+
+    private static String alertKey(AnomalyAlertDto alert) {
+        return alert.horseNumber() + '\u0000' + alert.alertType();
+    }
+
+    private synchronized void publish(List<Message> messages) {
+        for (Message message : messages) {
+            Message numbered = message.withSequence(++sequence);
+            replay.addLast(numbered);
+            if (replay.size() > properties.replaySize()) {
+                replay.removeFirst();
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(numbered);
+            }
+        }
+    }
+
+    /**
+     * 購読を開始します。送信は購読者ごとの仮想スレッドが行い、送信に失敗するか {@link Subscriber#close()} で終了します。
+     *
+     * @param lastEventId クライアントが最後に受信したイベントID（初回の接続はnull）。以降のイベントから送信する
+     * @param sink        イベントの送信先
+     * @return 購読者数が上限に達している場合はnull
+     */
+    public Subscriber subscribe(String lastEventId, Sink sink) {
+        if (!running || subscribers.size() >= properties.maxSubscribers()) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(sink);
+        synchronized (this) {
+            if (lastEventId == null || lastEventId.isBlank()) {
+                subscriber.lastSent = sequence;
+            } else {
+                // 解釈できないIDは再開できないため、履歴から送り直そうとしてリセットになる
+                subscriber.lastSent = parseSequence(lastEventId);
+                subscriber.lagging = true;
+            }
+            subscribers.add(subscriber);
+        }
+        Thread.ofVirtual()
+                .name("odds-stream-" + subscriberIds.incrementAndGet())
+                .start(() -> runWriter(subscriber));
+        return subscriber;
+    }
+
+    /** 接続中の購読者数 */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /** 全購読者の接続を終了します。 */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        subscribers.forEach(Subscriber::close);
+    }
+
+    private void runWriter(Subscriber subscriber) {
+        long heartbeatNanos = properties.heartbeatInterval().toNanos();
+        try {
+            // 接続直後に応答を確定させ、クライアントに接続の確立を通知する
+            subscriber.sink.heartbeat();
+            while (running) {
+                Pending pending = subscriber.take(heartbeatNanos);
+                if (pending == null) {
+                    return;
+                }
+                List<Message> batch = pending.messages();
+                if (pending.catchUp()) {
+                    batch = since(subscriber.lastSent);
+                    if (batch == null) {
+                        sendReset(subscriber);
+                        continue;
+                    }
+                }
+                if (batch.isEmpty()) {
+                    subscriber.sink.heartbeat();
+                    continue;
+                }
+                for (Message message : batch) {
+                    // 履歴から送り直した後のキューには送信済みのイベントが残っている
+                    if (message.sequence() > subscriber.lastSent) {
+                        subscriber.sink.send(eventId(message.sequence()), message.name(), message.data());
+                        subscriber.lastSent = message.sequence();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("オッズ配信の購読者が切断されました: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscribers.remove(subscriber);
+            subscriber.close();
+            subscriber.sink.close();
+        }
+    }
+
+    private void sendReset(Subscriber subscriber) throws IOException {
+        long latest;
+        synchronized (this) {
+            latest = sequence;
+        }
+        subscriber.sink.send(eventId(latest), RESET_EVENT, "{}");
+        subscriber.lastSent = latest;
+    }
+
+    /**
+     * 指定したイベントより後のイベントを履歴から返します。
+     *
+     * @return 履歴に残っていない場合（古すぎる、または再起動前のイベントID）はnull
+     */
+    private synchronized List<Message> since(long lastSent) {
+        if (lastSent == sequence) {
+            return List.of();
+        }
+        if (lastSent < 0 || lastSent > sequence || replay.isEmpty() || replay.peekFirst().sequence() > lastSent + 1) {
+            return null;
+        }
+        List<Message> missed = new ArrayList<>((int) (sequence - lastSent));
+        Iterator<Message> it = replay.descendingIterator();
+        while (it.hasNext()) {
+            Message message = it.next();
+            if (message.sequence() <= lastSent) {
+                break;
+            }
+            missed.add(message);
+        }
+        return missed.reversed();
+    }
+
+    private String eventId(long sequence) {
+        return idPrefix + sequence;
+    }
+
+    private long parseSequence(String eventId) {
+        if (!eventId.startsWith(idPrefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(idPrefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * イベントの送信先（SSEの接続など）。送信は購読者ごとに1つのスレッドからのみ呼び出される。
+     */
+    public interface Sink {
+
+        /** イベントを送信します。 */
+        void send(String id, String name, String data) throws IOException;
+
+        /** 接続を維持するためのコメントを送信します。 */
+        void heartbeat() throws IOException;
+
+        /** 接続を終了します。 */
+        void close();
+    }
+
+    /**
+     * 配信するイベント。
+     *
+     * @param sequence 連番（イベントIDに使用）
+     * @param name     イベント名
+     * @param raceKey  レースのキー
+     * @param keyframe trueの場合、レースの全馬のオッズ
+     * @param data     JSON
+     */
+    record Message(long sequence, String name, String raceKey, boolean keyframe, String data) {
+
+        Message withSequence(long sequence) {
+            return new Message(sequence, name, raceKey, keyframe, data);
+        }
+    }
+
+    /**
+     * 購読者のキューから取り出した未送信のイベント。
+     *
+     * @param catchUp  trueの場合、キューが上限を超えたため履歴から送り直す
+     * @param messages 未送信のイベント（待ち時間内になければ空）
+     */
+    private record Pending(boolean catchUp, List<Message> messages) {
+    }
+
+    /**
+     * レースの前回の取得で検知されていた異常。
+     *
+     * @param keys     馬番と検知タイプの組
+     * @param atMillis 取得時刻
+     */
+    private record FiringAlerts(Set<String> keys, long atMillis) {
+    }
+
+    /** 購読者。未送信のイベントのキューと、送信済みの位置を保持する。 */
+    public final class Subscriber {
+
+        private final Sink sink;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition ready = lock.newCondition();
+        // 以下は lock で排他制御する
+        private final ArrayDeque<Message> queue = new ArrayDeque<>();
+        private boolean lagging;
+        private boolean closed;
+        /** 最後に送信したイベントの連番（送信スレッドのみが更新する） */
+        private long lastSent;
+
+        private Subscriber(Sink sink) {
+            this.sink = sink;
+        }
+
+        private void offer(Message message) {
+            lock.lock();
+            try {
+                if (closed || lagging) {
+                    // 送り直す場合は履歴から読むため、キューへは入れない
+                    return;
+                }
+                if (message.keyframe()) {
+                    queue.removeIf(queued -> queued.name().equals(ODDS_EVENT)
+                            && queued.raceKey().equals(message.raceKey()));
+                }
+                if (queue.size() >= properties.subscriberBufferSize()) {
+                    queue.clear();
+                    lagging = true;
+                    overflows.increment();
+                } else {
+                    queue.addLast(message);
+                }
+                ready.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 未送信のイベントを待ち受けて取り出します。
+         *
+         * @return 終了した場合はnull
+         */
+        private Pending take(long timeoutNanos) throws InterruptedException {
+            lock.lock();
+            try {
+                long remaining = timeoutNanos;
+                while (!closed && !lagging && queue.isEmpty() && remaining > 0) {
+                    remaining = ready.awaitNanos(remaining);
+                }
+                if (closed) {
+                    return null;
+                }
+                if (lagging) {
+                    lagging = false;
+                    return new Pending(true, List.of());
+                }
+                List<Message> batch = new ArrayList<>(queue);
+                queue.clear();
+                return new Pending(false, batch);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** 購読を終了します（接続の切断・タイムアウト時など）。 */
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                queue.clear();
+                ready.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
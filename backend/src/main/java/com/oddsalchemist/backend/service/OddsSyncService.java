@@ -1,85 +1,155 @@
 package com.oddsalchemist.backend.service;
 
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
 import com.oddsalchemist.backend.dto.AnomalyAlertDto;
-import com.oddsalchemist.backend.dto.OddsData;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.dto.SyncResult;
 import com.oddsalchemist.backend.parser.RaceOddsParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 @Service
 public class OddsSyncService {
 
     private static final Logger logger = LoggerFactory.getLogger(OddsSyncService.class);
     private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+    /** H列: 全馬を書き込んだ取得（キーフレーム）の行 */
+    static final String KEYFRAME_MARKER = "全馬";
+    /** H列: 前回書き込み時からオッズが変化した馬のみを書き込んだ取得（差分）の行 */
+    static final String DELTA_MARKER = "差分";
 
     private final OddsScrapingService scrapingService;
     private final RaceOddsParser parser;
-    private final GoogleSheetsService sheetsService;
+    private final OddsStore oddsStore;
+    /** スプレッドシート連携が無効（odds.sheets.enabled=false）の場合は空 */
+    private final Optional<SheetsWriteBuffer> sheetsWriter;
+    private final SheetsShardRouter shardRouter;
     private final OddsAnomalyDetector anomalyDetector;
-
-    public OddsSyncService(OddsScrapingService scrapingService, RaceOddsParser parser,
-                           GoogleSheetsService sheetsService, OddsAnomalyDetector anomalyDetector) {
+    private final OddsSnapshotCache snapshotCache;
+    /** スプレッドシートへ書き込む馬（前回書き込み時から変化した馬）の判定 */
+    private final OddsDeltaTracker sheetsDelta;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+
+    public OddsSyncService(OddsScrapingService scrapingService, RaceOddsParser parser, OddsStore oddsStore,
+                           Optional<SheetsWriteBuffer> sheetsWriter, SheetsShardRouter shardRouter,
+                           OddsAnomalyDetector anomalyDetector, OddsSnapshotCache snapshotCache,
+                           OddsDeltaProperties deltaProperties, ApplicationEventPublisher eventPublisher, Clock clock) {
         this.scrapingService = scrapingService;
         this.parser = parser;
-        this.sheetsService = sheetsService;
+        this.oddsStore = oddsStore;
+        this.sheetsWriter = sheetsWriter;
+        this.shardRouter = shardRouter;
         this.anomalyDetector = anomalyDetector;
+        this.snapshotCache = snapshotCache;
+        this.sheetsDelta = new OddsDeltaTracker(deltaProperties);
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
     }
 
     /**
-     * 対象URLからオッズを取得し、スプレッドシートへ追記します。
-     * @return スプレッドシートに書き込んだデータ件数
+     * 対象URLからオッズを取得し、オッズストアへ保存したうえでスプレッドシートへ追記します。
+     * スプレッドシートの書き込み先は、range のシートから開催日・レースごとのシートへ振り分けます（{@link SheetsShardRouter}）。
+     * 保存後に {@link OddsUpdatedEvent} を発行し、最新オッズのキャッシュ（{@link LatestOddsCache}）などへ通知します。
+     * 前回処理時からページ（オッズテーブル）に変化がない場合は、パース・異常検知・書き込みをすべてスキップします。
+     * 直前の取得から有効期間内の場合（{@link OddsSnapshotCache}）は、ページの取得も行わず、
+     * その取得で保存したデータ件数と検知した異常を返します。
+     * @return 処理結果（保存したデータ件数と検知した異常、または未変更によるスキップ）
      */
-    public int fetchAndSaveOdds(String targetUrl, String range) throws IOException {
+    public SyncResult fetchAndSaveOdds(String targetUrl, String range) throws IOException {
         logger.info("Start fetching odds from URL: {}", targetUrl);
 
-        // 1. HTMLの取得
-        String html = scrapingService.fetchHtml(targetUrl);
+        // 1. HTMLの取得（有効期間内に取得済みの場合は省略し、それ以外は条件付きリクエスト）
+        OddsSnapshotCache.Entry cached = snapshotCache.get(targetUrl, clock.instant());
+        if (cached != null) {
+            logger.info("有効期間内に取得済みのため、その取得結果を返します。URL: {}, 取得時刻: {}",
+                    targetUrl, cached.fetchedAt());
+            return SyncResult.saved(cached.snapshot().size(), cached.alerts());
+        }
+        FetchedPage page = scrapingService.fetchPage(targetUrl);
+        if (!page.changed()) {
+            logger.info("オッズに変化がないため処理をスキップします。URL: {}", targetUrl);
+            snapshotCache.refresh(targetUrl, clock.instant());
+            return SyncResult.skippedUnchanged();
+        }
 
-        // 2. データのパース
-        List<OddsData> oddsList = parser.parse(html);
+        // 2. データのパース（レスポンスボディから直接、列指向のスナップショットを構築する）
+        OddsSnapshot snapshot = parser.parseSnapshot(page.openStream(), page.charset(), targetUrl);
 
-        if (oddsList.isEmpty()) {
+        if (snapshot.isEmpty()) {
             logger.warn("No odds data found. URL: {}", targetUrl);
-            return 0; // 変更点: 0件であることをコントローラーに伝える
+            return SyncResult.saved(0); // 0件であることをコントローラーに伝える
         }
 
         // 3. 異常検知を実行
-        List<AnomalyAlertDto> alerts = anomalyDetector.detect(oddsList);
+        List<AnomalyAlertDto> alerts = anomalyDetector.detect(snapshot);
         logger.info("異常検知完了: アラート件数={}", alerts.size());
 
-        // 4. スプレッドシート用の2次元配列に変換
-        List<List<Object>> values = convertToSheetData(oddsList);
+        // 4. オッズストアへ保存（履歴の保存先。失敗時は処理済みにせず次回再処理させる）
+        Instant fetchedAt = clock.instant();
+        oddsStore.append(snapshot, fetchedAt);
+
+        // 5. スプレッドシートへ書き込み（下流の連携先のため、失敗してもオッズストアへの保存は取り消さない）
+        //    差分モードでは前回書き込み時からオッズが変化した馬の行のみを書き込み、H列で全馬の行と区別する
+        //    （ある時点の出走馬は、直前の「全馬」の行にそれ以降の「差分」の行を重ねて求める）
+        if (sheetsWriter.isPresent()) {
+            OddsDeltaTracker.Delta delta = sheetsDelta.next(snapshot, fetchedAt);
+            if (delta.isEmpty()) {
+                logger.info("オッズが変化した馬がないため、スプレッドシートへの書き込みをスキップします。URL: {}", targetUrl);
+            } else {
+                List<List<Object>> values = convertToSheetData(snapshot, delta.runners(), delta.keyframe(), fetchedAt);
+                String shardRange = shardRouter.route(range, snapshot, fetchedAt);
+                try {
+                    sheetsWriter.get().submit(shardRange, values);
+                    logger.info("Submitted {} rows to spreadsheet writer. (range={}, keyframe={})",
+                            values.size(), shardRange, delta.keyframe());
+                } catch (IOException e) {
+                    // 書き込めなかった差分を基準にしないよう、次回は全馬を書き込む
+                    sheetsDelta.forget(snapshot.raceKey());
+                    logger.error("スプレッドシートへの書き込みに失敗しました。URL: {}", targetUrl, e);
+                }
+            }
+        }
+
+        // 6. 最新オッズの更新を通知（参照APIのキャッシュなど）
+        eventPublisher.publishEvent(new OddsUpdatedEvent(fetchedAt, snapshot, alerts));
 
-        // 5. スプレッドシートへ書き込み
-        sheetsService.appendData(range, values);
-        logger.info("Successfully saved {} rows to spreadsheet.", values.size());
+        // 7. 保存が成功した場合のみ処理済みとして記録し、有効期間内の取得ではこのオッズと異常を返す
+        scrapingService.markProcessed(page);
+        snapshotCache.put(targetUrl, snapshot, alerts, fetchedAt);
 
-        return values.size(); // 変更点: 保存した件数を返す
+        return SyncResult.saved(snapshot.size(), alerts);
     }
 
-    private List<List<Object>> convertToSheetData(List<OddsData> oddsList) {
-        List<List<Object>> values = new ArrayList<>();
-        String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMATTER);
-
-        for (OddsData odds : oddsList) {
-            List<Object> row = new ArrayList<>();
-            row.add(timestamp);                                       // A列: タイムスタンプ
-            row.add(odds.raceName());                                  // B列: レース名
-            row.add(odds.horseNumber());                               // C列: 馬番
-            row.add(odds.horseName());                                 // D列: 馬名
-            row.add(Objects.toString(odds.winOdds(), ""));            // E列: 単勝オッズ
-            row.add(Objects.toString(odds.placeOddsMin(), ""));       // F列: 複勝オッズ（下限）
-            row.add(Objects.toString(odds.placeOddsMax(), ""));       // G列: 複勝オッズ（上限）
+    private List<List<Object>> convertToSheetData(OddsSnapshot snapshot, int[] runners, boolean keyframe,
+                                                  Instant fetchedAt) {
+        List<List<Object>> values = new ArrayList<>(runners.length);
+        String timestamp = LocalDateTime.ofInstant(fetchedAt, clock.getZone()).format(TIMESTAMP_FORMATTER);
+
+        for (int i : runners) {
+            List<Object> row = new ArrayList<>(8);
+            row.add(timestamp);                                          // A列: タイムスタンプ
+            row.add(snapshot.raceName());                                 // B列: レース名
+            row.add(snapshot.horseNumber(i));                             // C列: 馬番
+            row.add(snapshot.horseName(i));                               // D列: 馬名
+            row.add(Objects.toString(snapshot.winOdds(i), ""));          // E列: 単勝オッズ
+            row.add(Objects.toString(snapshot.placeOddsMin(i), ""));     // F列: 複勝オッズ（下限）
+            row.add(Objects.toString(snapshot.placeOddsMax(i), ""));     // G列: 複勝オッズ（上限）
+            row.add(keyframe ? KEYFRAME_MARKER : DELTA_MARKER);           // H列: 全馬 / 差分
             values.add(row);
         }
         return values;
     }
-}
\ No newline at end of file
+}
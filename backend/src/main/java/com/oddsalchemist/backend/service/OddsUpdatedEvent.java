@@ -0,0 +1,21 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 1レース分のオッズを取得し、オッズストアへ保存したことを通知するイベント。
+ * 取得したページに変化がなかった場合は発行しない。
+ *
+ * @param fetchedAt 取得時刻
+ * @param snapshot  取得したオッズ
+ * @param alerts    今回の取得で検知した異常
+ */
+public record OddsUpdatedEvent(
+        Instant fetchedAt,
+        OddsSnapshot snapshot,
+        List<AnomalyAlertDto> alerts
+) {}
@@ -0,0 +1,110 @@
+package com.oddsalchemist.backend.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 監視中のレースに小さな整数IDを割り当てるレジストリ。
+ * 検知処理の状態は表示名の文字列ではなく、レースIDと馬番を詰めたlong型のキーで管理する。
+ * レースはOddsSnapshot.raceKey()（取得元URL、不明な場合はレース名）で識別するため、
+ * 開催場が異なる同名レースも別のレースとして扱われる。
+ */
+@Component
+public class RaceRegistry {
+
+    /** 馬番として扱える最大値（キーの下位32ビットに格納） */
+    static final int MAX_HORSE_NUMBER = 0xFFFF;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    /** 次に割り当てるID（1始まり。キー 0 を空きスロットとして使うため0は使わない） */
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * レースのIDを返します。未登録のレースには新しいIDを割り当てます。
+     *
+     * @param raceKey レースの識別キー（取得元URLまたはレース名）
+     */
+    public int idOf(String raceKey) {
+        Integer id = ids.get(raceKey);
+        if (id != null) {
+            return id;
+        }
+        return ids.computeIfAbsent(raceKey, k -> nextId.getAndIncrement());
+    }
+
+    /**
+     * 登録済みのレースのIDを返します（未登録の場合も新しいIDは割り当てません）。
+     *
+     * @return レースID。未登録の場合は0
+     */
+    public int find(String raceKey) {
+        Integer id = ids.get(raceKey);
+        return id != null ? id : 0;
+    }
+
+    /**
+     * レースの登録を解除します（終了したレースの状態を破棄する際に使用）。
+     * 解除後に同じレースが再び登録された場合は、新しいIDが割り当てられます。
+     *
+     * @param raceKey レースの識別キー
+     * @param raceId  解除するID（既に別のIDで再登録されている場合は何もしない）
+     */
+    public void remove(String raceKey, int raceId) {
+        ids.remove(raceKey, raceId);
+    }
+
+    /** 登録済みのレース数 */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * レースIDと馬番から、馬を一意に識別するキーを生成します。
+     * 上位32ビットにレースID、下位32ビットに馬番を格納します。
+     *
+     * @return キー。馬番が1〜{@value #MAX_HORSE_NUMBER}の数字でない場合は0
+     */
+    public static long horseKey(int raceId, String horseNumber) {
+        return horseKey(raceId, parseHorseNumber(horseNumber));
+    }
+
+    /**
+     * レースIDと数値の馬番から、馬を一意に識別するキーを生成します。
+     *
+     * @return キー。馬番が1〜{@value #MAX_HORSE_NUMBER}でない場合は0
+     */
+    public static long horseKey(int raceId, int horseNumber) {
+        if (horseNumber <= 0 || horseNumber > MAX_HORSE_NUMBER) {
+            return 0;
+        }
+        return ((long) raceId << 32) | horseNumber;
+    }
+
+    /** キーからレースIDを取り出します。 */
+    public static int raceIdOf(long horseKey) {
+        return (int) (horseKey >>> 32);
+    }
+
+    /** キーから馬番を取り出します。 */
+    public static int horseNumberOf(long horseKey) {
+        return (int) horseKey;
+    }
+
+    private static int parseHorseNumber(String horseNumber) {
+        int len = horseNumber.length();
+        if (len == 0 || len > 5) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = horseNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n <= MAX_HORSE_NUMBER ? n : -1;
+    }
+}
@@ -0,0 +1,119 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.SheetsShardProperties;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Pattern;
+
+/**
+ * スプレッドシートへの書き込み先を、開催日またはレースごとのシート（タブ）に振り分けるルーター。
+ * 1つのシートに全期間の行が溜まると追記・参照が遅くなるため、書き込み先を分割する。
+ * <p>
+ * 振り分け先のシート名は「接頭辞 + 開催日（yyyy-MM-dd）」または「接頭辞 + 開催日 + レースのキー」とし、
+ * 列の指定（A:H など）は元のレンジのものを引き継ぐ。開催場が異なる同名レースを同じシートに混ぜないよう、
+ * レースごとのシートはレース名ではなくレースのキー（{@link OddsSnapshot#raceKey()}、取得元URLのスキームを
+ * 除いたもの）で分ける。開催日は発走時刻（不明な場合は取得時刻）の日付とする。
+ * 存在しないシートは書き込み時に作成される（{@link GoogleSheetsService}）。
+ */
+@Component
+public class SheetsShardRouter {
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    /** シート名の長さの上限 */
+    private static final int MAX_TITLE_LENGTH = 100;
+    private static final Pattern URL_SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://");
+
+    private final SheetsShardProperties properties;
+    private final ZoneId zone;
+
+    public SheetsShardRouter(SheetsShardProperties properties, Clock clock) {
+        this.properties = properties;
+        this.zone = clock.getZone();
+    }
+
+    /**
+     * 書き込み先のレンジを返します。
+     *
+     * @param range     振り分け前のレンジ（例: シート1!A:H）
+     * @param fetchedAt 取得時刻
+     */
+    public String route(String range, OddsSnapshot snapshot, Instant fetchedAt) {
+        if (properties.strategy() == SheetsShardProperties.Strategy.NONE) {
+            return range;
+        }
+        Instant raceTime = snapshot.postTime() != null ? snapshot.postTime() : fetchedAt;
+        String title = truncate(replaceInvalidChars(
+                properties.tabPrefix() + LocalDate.ofInstant(raceTime, zone).format(DAY_FORMATTER)));
+        if (properties.strategy() == SheetsShardProperties.Strategy.RACE) {
+            title = raceTitle(title, snapshot.raceKey());
+        }
+        return toRange(title, columnsOf(range));
+    }
+
+    /**
+     * 開催日のシート名にレースのキーを付け加えます。長さの上限を超える場合は、レースを識別する部分
+     * （URLの末尾）が残るようキーの先頭側を切り詰める。
+     */
+    private static String raceTitle(String dayTitle, String raceKey) {
+        String key = replaceInvalidChars(URL_SCHEME.matcher(raceKey).replaceFirst(""));
+        int room = MAX_TITLE_LENGTH - dayTitle.length() - 1;
+        if (room <= 0) {
+            return dayTitle;
+        }
+        if (key.length() > room) {
+            key = key.substring(key.length() - room);
+        }
+        return dayTitle + " " + key;
+    }
+
+    /**
+     * A1表記のレンジからシート名を取り出します（例: 'シート 1'!A:H → シート 1）。
+     */
+    static String sheetTitleOf(String range) {
+        if (range.startsWith("'")) {
+            StringBuilder title = new StringBuilder();
+            for (int i = 1; i < range.length(); i++) {
+                char c = range.charAt(i);
+                if (c == '\'') {
+                    if (i + 1 < range.length() && range.charAt(i + 1) == '\'') {
+                        title.append(c);
+                        i++;
+                        continue;
+                    }
+                    break;
+                }
+                title.append(c);
+            }
+            return title.toString();
+        }
+        int separator = range.lastIndexOf('!');
+        return separator >= 0 ? range.substring(0, separator) : range;
+    }
+
+    /** シート名と列の指定からA1表記のレンジを組み立てます（シート名は引用符で囲む）。 */
+    static String toRange(String title, String columns) {
+        String quoted = "'" + title.replace("'", "''") + "'";
+        return columns.isEmpty() ? quoted : quoted + "!" + columns;
+    }
+
+    private static String columnsOf(String range) {
+        int separator = range.lastIndexOf('!');
+        return separator >= 0 ? range.substring(separator + 1) : "";
+    }
+
+    /** シート名に使用できない文字を置き換えます。 */
+    private static String replaceInvalidChars(String title) {
+        return title.replaceAll("[\\[\\]*?/\\\\:]", "_").strip();
+    }
+
+    /** シート名を長さの上限に収めます。 */
+    private static String truncate(String title) {
+        return title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title;
+    }
+}
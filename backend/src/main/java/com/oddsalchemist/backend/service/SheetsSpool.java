@@ -0,0 +1,424 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.SheetsWriteProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * スプレッドシートへ送信する前の書き込みを、ローカルのセグメント分割された追記専用ログに永続化するスプール。
+ * Sheets APIの障害中もスクレイピング結果を失わず、復旧後に受け付け順で送信できるようにする。
+ * <p>
+ * 書き込みは「長さ(int)・CRC32(int)・本体」のフレームとして現在のセグメントファイル末尾に追記する。
+ * 送信が完了した位置はカーソルファイルに記録し、カーソルより前のセグメントは削除する。
+ * 起動時はカーソル位置から末尾までを検証し、書き込み途中で停止したフレームは切り捨てる。
+ * <p>
+ * 追記は複数スレッドから呼び出せるが、読み出し（{@link #read}・{@link #commit}）は1スレッドから行うこと。
+ */
+final class SheetsSpool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SheetsSpool.class);
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CURSOR_FILE = "cursor";
+    /** フレームヘッダー（長さ + CRC32）のバイト数 */
+    private static final int HEADER_BYTES = 8;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final SheetsWriteProperties.Fsync fsync;
+    private final long fsyncIntervalNanos;
+
+    // 以下は this で排他制御する
+    private FileChannel writeChannel;
+    private long writeSegment;
+    private long writeOffset;
+    private long cursorSegment;
+    private long cursorOffset;
+    private long pendingRows;
+    private long pendingBytes;
+    private boolean unsynced;
+    private long lastSyncNanos;
+
+    SheetsSpool(SheetsWriteProperties.Spool settings) throws IOException {
+        this.dir = Path.of(settings.path());
+        this.segmentBytes = settings.segmentSize().toBytes();
+        this.maxBytes = settings.maxSize().toBytes();
+        this.fsync = settings.fsync();
+        this.fsyncIntervalNanos = settings.fsyncInterval().toNanos();
+        open();
+    }
+
+    /**
+     * 書き込みをスプールに追記します。
+     *
+     * @throws IOException 未送信の書き込みが上限を超えた場合、またはファイルへの書き込みに失敗した場合
+     */
+    void append(String range, List<List<Object>> rows) throws IOException {
+        byte[] payload = encode(range, rows);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        synchronized (this) {
+            if (pendingBytes + frame.remaining() > maxBytes) {
+                throw new IOException("スプールの未送信データが上限を超えています: " + pendingBytes + "バイト");
+            }
+            if (writeOffset > 0 && writeOffset + frame.remaining() > segmentBytes) {
+                roll();
+            }
+            // 位置指定で書き込み、失敗時は次の追記で同じ位置から上書きさせる
+            long position = writeOffset;
+            while (frame.hasRemaining()) {
+                position += writeChannel.write(frame, position);
+            }
+            writeOffset = position;
+            pendingRows += rows.size();
+            pendingBytes += HEADER_BYTES + payload.length;
+            unsynced = true;
+            if (fsync == SheetsWriteProperties.Fsync.ALWAYS) {
+                sync();
+            } else {
+                syncIfDue();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * 未送信の書き込みが追記されるまで待機します。
+     *
+     * @return 未送信の書き込みがある場合true
+     */
+    synchronized boolean awaitPending(long timeoutMillis) throws InterruptedException {
+        if (pendingRows == 0 && timeoutMillis > 0) {
+            wait(timeoutMillis);
+        }
+        try {
+            syncIfDue();
+        } catch (IOException e) {
+            logger.warn("スプールの同期に失敗しました: {}", dir, e);
+        }
+        return pendingRows > 0;
+    }
+
+    /**
+     * カーソル位置から連続した書き込みを読み出し、書き込み先レンジごとに受け付け順でまとめます。カーソルは進めません。
+     * 読み出した範囲の全レンジの送信が完了してからカーソルを進めること。
+     *
+     * @param maxRows   1レンジあたりの行数の上限（各レンジの先頭の書き込みは上限を超えても読み出す）
+     * @param maxRanges 1回に読み出すレンジの数の上限
+     * @return 読み出した書き込み。未送信の書き込みがない場合はnull
+     */
+    Batch read(int maxRows, int maxRanges) throws IOException {
+        long segment;
+        long offset;
+        long endSegment;
+        long endOffset;
+        synchronized (this) {
+            segment = cursorSegment;
+            offset = cursorOffset;
+            endSegment = writeSegment;
+            endOffset = writeOffset;
+        }
+
+        Map<String, List<List<Object>>> rowsByRange = new LinkedHashMap<>();
+        long bytes = 0;
+        boolean full = false;
+        while (true) {
+            long limit = segment == endSegment ? endOffset : Files.size(segmentPath(segment));
+            if (offset < limit) {
+                // セグメントごとにチャネルを1度だけ開き、連続するフレームを読み出す
+                try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                    while (offset < limit) {
+                        Frame frame = readFrame(channel, offset, limit);
+                        if (frame == null) {
+                            throw new IOException("スプールのフレームが壊れています: セグメント=" + segment + ", 位置=" + offset);
+                        }
+                        List<List<Object>> rows = rowsByRange.get(frame.range());
+                        if (rows == null ? rowsByRange.size() >= maxRanges : rows.size() + frame.rows().size() > maxRows) {
+                            full = true;
+                            break;
+                        }
+                        rowsByRange.computeIfAbsent(frame.range(), range -> new ArrayList<>()).addAll(frame.rows());
+                        bytes += frame.bytes();
+                        offset += frame.bytes();
+                    }
+                }
+            }
+            if (full || segment >= endSegment) {
+                break;
+            }
+            segment++;
+            offset = 0;
+        }
+        if (rowsByRange.isEmpty()) {
+            return null;
+        }
+        List<Chunk> chunks = rowsByRange.entrySet().stream()
+                .map(entry -> new Chunk(entry.getKey(), entry.getValue()))
+                .toList();
+        return new Batch(chunks, segment, offset, bytes);
+    }
+
+    /**
+     * 送信が完了した書き込みの末尾までカーソルを進め、カーソルより前のセグメントを削除します。
+     */
+    synchronized void commit(Batch batch) throws IOException {
+        cursorSegment = batch.endSegment();
+        cursorOffset = batch.endOffset();
+        pendingRows -= batch.rowCount();
+        pendingBytes -= batch.bytes();
+        writeCursor();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                long segment = segmentIdOf(file);
+                if (segment >= 0 && segment < cursorSegment) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /** 未送信の行数 */
+    synchronized long pendingRows() {
+        return pendingRows;
+    }
+
+    /** 未送信の書き込みのバイト数 */
+    synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writeChannel.isOpen()) {
+            sync();
+            writeChannel.close();
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(dir);
+        Path cursorFile = dir.resolve(CURSOR_FILE);
+        List<Long> segments = listSegments();
+        if (Files.isRegularFile(cursorFile)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(cursorFile))) {
+                cursorSegment = in.readLong();
+                cursorOffset = in.readLong();
+            }
+        } else if (!segments.isEmpty()) {
+            cursorSegment = segments.get(0);
+        }
+        if (!segments.contains(cursorSegment)) {
+            cursorOffset = 0;
+        }
+
+        // カーソル位置から末尾までを検証し、未送信の件数を数える。壊れたフレーム以降は切り捨てる
+        writeSegment = cursorSegment;
+        writeOffset = cursorOffset;
+        for (long segment : segments) {
+            if (segment < cursorSegment) {
+                Files.deleteIfExists(segmentPath(segment));
+                continue;
+            }
+            long offset = segment == cursorSegment ? cursorOffset : 0;
+            try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                Frame frame;
+                while (offset < size && (frame = readFrame(channel, offset, size)) != null) {
+                    pendingRows += frame.rows().size();
+                    pendingBytes += frame.bytes();
+                    offset += frame.bytes();
+                }
+                if (offset < size) {
+                    logger.warn("スプールの末尾に不完全な書き込みがあるため切り捨てます: セグメント={}, 位置={}, 切り捨て={}バイト",
+                            segment, offset, size - offset);
+                    channel.truncate(offset);
+                }
+            }
+            writeSegment = segment;
+            writeOffset = offset;
+        }
+        writeChannel = FileChannel.open(segmentPath(writeSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lastSyncNanos = System.nanoTime();
+        if (pendingRows > 0) {
+            logger.info("スプールに未送信の書き込みがあります。順に再送します: {}行, {}バイト", pendingRows, pendingBytes);
+        }
+    }
+
+    private void roll() throws IOException {
+        sync();
+        writeChannel.close();
+        writeSegment++;
+        writeOffset = 0;
+        writeChannel = FileChannel.open(segmentPath(writeSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private void syncIfDue() throws IOException {
+        if (unsynced && fsync == SheetsWriteProperties.Fsync.INTERVAL
+                && System.nanoTime() - lastSyncNanos >= fsyncIntervalNanos) {
+            sync();
+        }
+    }
+
+    private void sync() throws IOException {
+        if (unsynced && fsync != SheetsWriteProperties.Fsync.NONE) {
+            writeChannel.force(false);
+        }
+        unsynced = false;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    /** カーソルを一時ファイルに書いてから置き換える（書き込み途中で停止しても前回のカーソルが残る） */
+    private void writeCursor() throws IOException {
+        Path temp = dir.resolve(CURSOR_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2).putLong(cursorSegment).putLong(cursorOffset).flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        try {
+            Files.move(temp, dir.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, dir.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 開いたセグメントの指定位置のフレームを読み出します。
+     *
+     * @return フレーム。長さが範囲外・CRCが一致しない場合はnull
+     */
+    private static Frame readFrame(FileChannel channel, long offset, long limit) throws IOException {
+        if (limit - offset < HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, offset);
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length <= 0 || length > limit - offset - HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, offset + HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        return decode(payload.array(), HEADER_BYTES + length);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("スプールのセグメントが途中で終わっています");
+            }
+        }
+    }
+
+    /** 本体の形式: レンジ(UTF)・行数(int)・行ごとに セル数(int)・セルの文字列(UTF) */
+    private static byte[] encode(String range, List<List<Object>> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + rows.size() * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(range);
+        out.writeInt(rows.size());
+        for (List<Object> row : rows) {
+            out.writeInt(row.size());
+            for (Object cell : row) {
+                out.writeUTF(cell == null ? "" : cell.toString());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Frame decode(byte[] payload, int frameBytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String range = in.readUTF();
+        int rowCount = in.readInt();
+        List<List<Object>> rows = new ArrayList<>(rowCount);
+        for (int r = 0; r < rowCount; r++) {
+            int cells = in.readInt();
+            List<Object> row = new ArrayList<>(cells);
+            for (int c = 0; c < cells; c++) {
+                row.add(in.readUTF());
+            }
+            rows.add(row);
+        }
+        return new Frame(range, rows, frameBytes);
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(SheetsSpool::segmentIdOf).filter(id -> id >= 0).sorted().toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentIdOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 読み出した書き込み。
+     *
+     * @param chunks     書き込み先レンジごとの行（最初に受け付けたレンジの順）
+     * @param endSegment 末尾の書き込みの直後の位置（セグメント番号）
+     * @param endOffset  末尾の書き込みの直後の位置（セグメント内のバイト位置）
+     * @param bytes      読み出したフレームの合計バイト数
+     */
+    record Batch(List<Chunk> chunks, long endSegment, long endOffset, long bytes) {
+
+        int rowCount() {
+            return chunks.stream().mapToInt(chunk -> chunk.rows().size()).sum();
+        }
+    }
+
+    /** 1つの書き込み先レンジへ送信する行（受け付け順） */
+    record Chunk(String range, List<List<Object>> rows) {
+    }
+
+    private record Frame(String range, List<List<Object>> rows, int bytes) {
+    }
+}
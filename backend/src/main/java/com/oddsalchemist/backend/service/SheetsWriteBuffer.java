@@ -0,0 +1,266 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.SheetsWriteProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * スプレッドシートへの書き込みを非同期にまとめて送信する書き込みバッファ（write-behind）。
+ * スクレイピング処理はローカルのスプール（{@link SheetsSpool}）に追記した時点で戻り、
+ * Sheets APIの応答待ちや障害がスクレイピングに影響しない。
+ * <p>
+ * 送信スレッドは最初の書き込みを受け付けてから flush-window の間待ち、その間にスプールへ追記された
+ * 全レースの行を書き込み先のシートごとに1回の追記リクエストへまとめる。書き込み先が異なるリクエストは
+ * 同時に送信する（{@link SheetsShardRouter}）。送信回数は {@link GoogleSheetsService} のトークンバケットで
+ * requests-per-minute 以下に抑え、書き込みクォータの枯渇を防ぐ。
+ * <p>
+ * 送信に成功した位置までスプールのカーソルを進めるため、Sheets APIの障害中や再起動をまたいでも
+ * 書き込みは失われず受け付け順に送信される。送信に失敗した場合は間隔を空けながら成功するまで再送する。
+ * ただし Sheets API の追記は冪等ではないため、配信は at-least-once となる。追記に成功してから
+ * カーソルを記録するまでの間に停止した場合や、応答がタイムアウトしたが実際には追記されていた場合は、
+ * 同じ行が再送されてシートに重複して残る（タイムスタンプ・レース名・馬番の組で重複を判別できる）。
+ * 未送信の書き込みがスプールの上限を超えた場合は、書き込みを失敗として扱う。
+ * <p>
+ * odds.sheets.enabled=false の場合は登録されず、オッズはオッズストア（{@link OddsStore}）にのみ保存される。
+ */
+@Component
+@ConditionalOnProperty(prefix = "odds.sheets", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SheetsWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SheetsWriteBuffer.class);
+
+    static final String QUEUE_DEPTH_GAUGE = "sheets.write.queue.depth";
+    static final String SPOOL_BYTES_GAUGE = "sheets.write.spool.bytes";
+    static final String ROWS_COUNTER = "sheets.write.rows";
+    static final String REJECTED_COUNTER = "sheets.write.rejected";
+    static final String REQUEST_TIMER = "sheets.write.request";
+
+    /** 送信失敗時の再送間隔の上限 */
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final GoogleSheetsService sheetsService;
+    private final SheetsWriteProperties properties;
+    /** 非同期モードでのみ使用する */
+    private final SheetsSpool spool;
+
+    private final Counter writtenRows;
+    private final Counter rejected;
+    private final Timer requestTimer;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    // 以下は送信スレッドのみが使用する
+    /** 一部のレンジのみ送信に成功した読み出し。残りのレンジの送信が完了するまで再送する */
+    private SheetsSpool.Batch inFlight;
+    private final Set<String> sentRanges = new HashSet<>();
+
+    public SheetsWriteBuffer(GoogleSheetsService sheetsService, SheetsWriteProperties properties,
+                             MeterRegistry meterRegistry) throws IOException {
+        this.sheetsService = sheetsService;
+        this.properties = properties;
+        this.spool = properties.async() ? new SheetsSpool(properties.spool()) : null;
+
+        Gauge.builder(QUEUE_DEPTH_GAUGE, this, SheetsWriteBuffer::pendingRows)
+                .description("スプレッドシートへの送信待ちの行数")
+                .baseUnit("rows")
+                .register(meterRegistry);
+        Gauge.builder(SPOOL_BYTES_GAUGE, this, buffer -> buffer.spool != null ? buffer.spool.pendingBytes() : 0)
+                .description("スプールに保持している送信待ちの書き込みのバイト数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.writtenRows = Counter.builder(ROWS_COUNTER).tag("result", "written").register(meterRegistry);
+        this.rejected = Counter.builder(REJECTED_COUNTER)
+                .description("スプールが上限に達したため受け付けられなかった書き込みの数")
+                .register(meterRegistry);
+        this.requestTimer = Timer.builder(REQUEST_TIMER)
+                .description("Sheets APIへの追記リクエストの所要時間")
+                .register(meterRegistry);
+    }
+
+    /** 非同期モードの場合、送信スレッドを開始します（前回の未送信分も送信します）。 */
+    @PostConstruct
+    public void start() {
+        if (spool == null) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofVirtual().name("sheets-writer").start(this::runFlushLoop);
+    }
+
+    /**
+     * 送信スレッドを停止し、スプールを閉じます。
+     * 送信スレッドは送信回数の上限による待機や送信中でも中断し、中断された送信を含め
+     * 未送信の書き込みはスプールに残り、次回の起動時に送信されます。
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(properties.flushWindow().plusSeconds(30).toMillis());
+        }
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    /**
+     * 書き込みを受け付けます。非同期モードではスプールに追記して即座に戻り、送信は送信スレッドが行います。
+     *
+     * @throws IOException 同期モードで送信に失敗した場合、またはスプールへの追記に失敗した場合
+     */
+    public void submit(String range, List<List<Object>> rows) throws IOException {
+        if (spool == null) {
+            sheetsService.appendData(range, rows);
+            return;
+        }
+        try {
+            spool.append(range, rows);
+        } catch (IOException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /** 送信待ちの行数 */
+    long pendingRows() {
+        return spool != null ? spool.pendingRows() : 0;
+    }
+
+    private void runFlushLoop() {
+        long windowMillis = properties.flushWindow().toMillis();
+        long backoffMillis = 0;
+        while (running) {
+            try {
+                if (!spool.awaitPending(windowMillis)) {
+                    continue;
+                }
+                // 最初の書き込みから flush-window の間に追記された書き込みを1回の送信にまとめる
+                // （障害復旧後などで1回に送れる行数以上が溜まっている場合は待たない）
+                if (backoffMillis == 0 && spool.pendingRows() < properties.maxRowsPerRequest()) {
+                    Thread.sleep(windowMillis);
+                }
+                flush();
+                backoffMillis = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException | RuntimeException e) {
+                if (!running) {
+                    break; // 停止による送信の中断
+                }
+                backoffMillis = Math.min(Math.max(backoffMillis * 2, 1_000), MAX_BACKOFF_MILLIS);
+                logger.warn("スプレッドシートへの書き込みに失敗しました。{}ms後に再送します: 送信待ち={}行",
+                        backoffMillis, spool.pendingRows(), e);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * スプールの先頭から書き込みを読み出し、書き込み先レンジごとにまとめて同時に送信し、
+     * 全レンジの送信が完了した位置までカーソルを進めます。
+     *
+     * @return 送信した行数
+     * @throws IOException 送信に失敗した場合（カーソルは進めず、次回は送信に失敗したレンジから再送する）
+     */
+    int flush() throws IOException, InterruptedException {
+        SheetsSpool.Batch batch = inFlight;
+        if (batch == null) {
+            batch = spool.read(properties.maxRowsPerRequest(), properties.maxConcurrentRequests());
+            sentRanges.clear();
+        }
+        if (batch == null) {
+            return 0;
+        }
+        List<SheetsSpool.Chunk> unsent = batch.chunks().stream()
+                .filter(chunk -> !sentRanges.contains(chunk.range()))
+                .toList();
+        IOException failure = unsent.size() == 1 ? sendOne(unsent.get(0)) : sendConcurrently(unsent);
+        if (failure != null) {
+            // 1レンジも送信できていない場合は、次回新たに追記された書き込みと合わせて読み出し直す
+            inFlight = sentRanges.isEmpty() ? null : batch;
+            throw failure;
+        }
+        inFlight = null;
+        spool.commit(batch);
+        logger.info("スプレッドシートへまとめて書き込みました: シート数={}, 行数={}, 送信待ち={}行",
+                batch.chunks().size(), batch.rowCount(), spool.pendingRows());
+        return batch.rowCount();
+    }
+
+    /** @return 送信に失敗した場合の例外。成功した場合はnull */
+    private IOException sendOne(SheetsSpool.Chunk chunk) {
+        try {
+            send(chunk);
+            sentRanges.add(chunk.range());
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    /** @return 送信に失敗したレンジがある場合、最初の例外（他の失敗は抑制された例外として付加する）。全て成功した場合はnull */
+    private IOException sendConcurrently(List<SheetsSpool.Chunk> chunks) throws InterruptedException {
+        IOException failure = null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(chunks.size());
+            for (SheetsSpool.Chunk chunk : chunks) {
+                futures.add(executor.submit(() -> {
+                    send(chunk);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < chunks.size(); i++) {
+                try {
+                    futures.get(i).get();
+                    sentRanges.add(chunks.get(i).range());
+                } catch (ExecutionException e) {
+                    IOException cause = e.getCause() instanceof IOException io
+                            ? io : new IOException("スプレッドシートへの書き込みに失敗しました", e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+        }
+        return failure;
+    }
+
+    private void send(SheetsSpool.Chunk chunk) throws IOException {
+        long startNanos = System.nanoTime();
+        try {
+            sheetsService.appendData(chunk.range(), chunk.rows());
+        } finally {
+            requestTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+        writtenRows.increment(chunk.rows().size());
+    }
+}
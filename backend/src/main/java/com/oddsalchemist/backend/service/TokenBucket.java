@@ -0,0 +1,58 @@
+package com.oddsalchemist.backend.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一定レートで補充されるトークンバケット。
+ * トークンが不足している場合は、次のトークンが補充されるまで呼び出し元を待機させる。
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final double maxPermits;
+
+    private double storedPermits;
+    private long nextFreeNanos;
+
+    /**
+     * @param permitsPerSecond 1秒あたりに補充されるトークン数
+     * @param burst            貯められる最大トークン数
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.maxPermits = Math.max(1, burst);
+        this.storedPermits = this.maxPermits;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * トークンを1つ取得します。必要に応じて補充されるまで待機します。
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve(System.nanoTime());
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * トークンを1つ予約し、利用可能になるまでの待機時間（ナノ秒）を返します。
+     */
+    synchronized long reserve(long nowNanos) {
+        if (nowNanos > nextFreeNanos) {
+            storedPermits = Math.min(maxPermits, storedPermits + (double) (nowNanos - nextFreeNanos) / intervalNanos);
+            nextFreeNanos = nowNanos;
+        }
+        if (storedPermits >= 1) {
+            storedPermits -= 1;
+            return 0;
+        }
+        // 不足分のトークンが補充される時刻まで後ろ倒しで予約する
+        nextFreeNanos += (long) ((1 - storedPermits) * intervalNanos);
+        storedPermits = 0;
+        return nextFreeNanos - nowNanos;
+    }
+}
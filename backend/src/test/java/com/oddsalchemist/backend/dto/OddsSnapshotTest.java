@@ -0,0 +1,87 @@
+package com.oddsalchemist.backend.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OddsSnapshotTest {
+
+    private static final String RACE = "第1回東京1レース";
+
+    @Test
+    void builder_固定小数点で追加したオッズを列ごとに取り出せること() {
+        OddsSnapshot snapshot = OddsSnapshot.builder(RACE, 2)
+                .add("1", "キタサンブラック", 25, 12, 15)
+                .add("2", "イクイノックス", 18, 11, 13)
+                .build();
+
+        assertThat(snapshot.raceName()).isEqualTo(RACE);
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.horseNumber(1)).isEqualTo("2");
+        assertThat(snapshot.horseName(1)).isEqualTo("イクイノックス");
+        assertThat(snapshot.winOddsFixed(0)).isEqualTo(25);
+        assertThat(snapshot.winOdds(0)).isEqualTo(2.5);
+        assertThat(snapshot.placeOddsMin(0)).isEqualTo(1.2);
+        assertThat(snapshot.placeOddsMax(0)).isEqualTo(1.5);
+    }
+
+    @Test
+    void builder_負の値は未設定として扱われること() {
+        OddsSnapshot snapshot = OddsSnapshot.builder(RACE, 1)
+                .add("3", "タイトルホルダー", -1, -1, -1)
+                .build();
+
+        assertThat(snapshot.hasWinOdds(0)).isFalse();
+        assertThat(snapshot.hasPlaceOdds(0)).isFalse();
+        assertThat(snapshot.toOddsData(0))
+                .isEqualTo(new OddsData(RACE, "3", "タイトルホルダー", null, null, null));
+    }
+
+    @Test
+    void builder_想定頭数を超えて追加できること() {
+        OddsSnapshot.Builder builder = OddsSnapshot.builder(RACE, 1);
+        for (int i = 1; i <= 28; i++) {
+            builder.add(String.valueOf(i), "馬" + i, i * 10, i % 2 == 0 ? -1 : 15, 20);
+        }
+
+        OddsSnapshot snapshot = builder.build();
+
+        assertThat(snapshot.size()).isEqualTo(28);
+        assertThat(snapshot.winOdds(27)).isEqualTo(28.0);
+        // 未設定ビットが64ビットの境界をまたいでも正しく保持されること
+        assertThat(snapshot.hasPlaceOdds(26)).isTrue();
+        assertThat(snapshot.hasPlaceOdds(27)).isFalse();
+    }
+
+    @Test
+    void of_OddsDataリストと相互に変換できること() {
+        List<OddsData> oddsList = List.of(
+                new OddsData(RACE, "1", "キタサンブラック", 2.5, 1.2, 1.5),
+                new OddsData(RACE, "2", "オッズ未定馬", null, null, null),
+                new OddsData(RACE, "12", "大穴馬", 123.4, 20.1, 35.6)
+        );
+
+        OddsSnapshot snapshot = OddsSnapshot.of(oddsList);
+
+        assertThat(snapshot.toOddsDataList()).isEqualTo(oddsList);
+    }
+
+    @Test
+    void toDouble_文字列をparseDoubleした値と一致すること() {
+        for (int fixed = 0; fixed <= 99999; fixed++) {
+            String text = (fixed / 10) + "." + (fixed % 10);
+            assertThat(OddsSnapshot.toDouble(fixed)).isEqualTo(Double.parseDouble(text));
+        }
+    }
+
+    @Test
+    void horseNumber_範囲外のインデックスは例外になること() {
+        OddsSnapshot snapshot = OddsSnapshot.empty(RACE);
+
+        assertThat(snapshot.isEmpty()).isTrue();
+        assertThatThrownBy(() -> snapshot.horseNumber(0)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+}
@@ -0,0 +1,71 @@
+package com.oddsalchemist.backend.parser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OddsNumberDecoderTest {
+
+    @Test
+    void parseOdds_単勝形式を固定小数点に変換できること() {
+        assertThat(OddsNumberDecoder.parseOdds("2.5")).isEqualTo(25);
+        assertThat(OddsNumberDecoder.parseOdds(" 123.4\n")).isEqualTo(1234);
+        assertThat(OddsNumberDecoder.parseOdds("10")).isEqualTo(100);
+        assertThat(OddsNumberDecoder.parseOdds("0.0")).isEqualTo(0);
+    }
+
+    @Test
+    void parseOdds_整数部または小数部を省略した形式も解釈できること() {
+        // Double.parseDouble で解釈していた頃と同じ値になること
+        assertThat(OddsNumberDecoder.parseOdds("2.")).isEqualTo(20);
+        assertThat(OddsNumberDecoder.parseOdds(".5")).isEqualTo(5);
+        assertThat(OddsNumberDecoder.parseOdds(" .96 ")).isEqualTo(10);
+    }
+
+    @Test
+    void parseOdds_小数第2位以降は四捨五入されること() {
+        assertThat(OddsNumberDecoder.parseOdds("12.34")).isEqualTo(123);
+        assertThat(OddsNumberDecoder.parseOdds("12.35")).isEqualTo(124);
+        assertThat(OddsNumberDecoder.parseOdds("1.96")).isEqualTo(20);
+    }
+
+    @Test
+    void parseOdds_数値でない場合はINVALIDが返ること() {
+        assertThat(OddsNumberDecoder.parseOdds("---")).isEqualTo(OddsNumberDecoder.INVALID);
+        assertThat(OddsNumberDecoder.parseOdds("")).isEqualTo(OddsNumberDecoder.INVALID);
+        assertThat(OddsNumberDecoder.parseOdds("取消")).isEqualTo(OddsNumberDecoder.INVALID);
+        assertThat(OddsNumberDecoder.parseOdds("1,234.5")).isEqualTo(OddsNumberDecoder.INVALID);
+        assertThat(OddsNumberDecoder.parseOdds(".")).isEqualTo(OddsNumberDecoder.INVALID);
+        assertThat(OddsNumberDecoder.parseOdds("2.5.")).isEqualTo(OddsNumberDecoder.INVALID);
+        assertThat(OddsNumberDecoder.parseOdds("1.2 - 1.5")).isEqualTo(OddsNumberDecoder.INVALID);
+    }
+
+    @Test
+    void parseRange_複勝形式の下限と上限を取り出せること() {
+        long range = OddsNumberDecoder.parseRange("1.7 - 2.4");
+
+        assertThat(OddsNumberDecoder.rangeMin(range)).isEqualTo(17);
+        assertThat(OddsNumberDecoder.rangeMax(range)).isEqualTo(24);
+
+        long noSpace = OddsNumberDecoder.parseRange("11.1-13.3");
+        assertThat(OddsNumberDecoder.rangeMin(noSpace)).isEqualTo(111);
+        assertThat(OddsNumberDecoder.rangeMax(noSpace)).isEqualTo(133);
+    }
+
+    @Test
+    void parseRange_前後に余分な文字があっても範囲を見つけられること() {
+        long range = OddsNumberDecoder.parseRange("複勝 1.2.3 - 4.5 倍");
+
+        // 正規表現の find と同様、最初に範囲として成立する位置（"2.3 - 4.5"）を採用する
+        assertThat(OddsNumberDecoder.rangeMin(range)).isEqualTo(23);
+        assertThat(OddsNumberDecoder.rangeMax(range)).isEqualTo(45);
+    }
+
+    @Test
+    void parseRange_範囲形式でない場合はINVALID_RANGEが返ること() {
+        assertThat(OddsNumberDecoder.parseRange("")).isEqualTo(OddsNumberDecoder.INVALID_RANGE);
+        assertThat(OddsNumberDecoder.parseRange("---")).isEqualTo(OddsNumberDecoder.INVALID_RANGE);
+        assertThat(OddsNumberDecoder.parseRange("2.5")).isEqualTo(OddsNumberDecoder.INVALID_RANGE);
+        assertThat(OddsNumberDecoder.parseRange("1 - 2")).isEqualTo(OddsNumberDecoder.INVALID_RANGE);
+    }
+}
@@ -1,10 +1,18 @@
 package com.oddsalchemist.backend.parser;
 
 import com.oddsalchemist.backend.dto.OddsData;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -60,6 +68,62 @@ class RaceOddsParserTest {
             """.formatted(frameNum, frameNum, horseNum, name, win, place);
     }
 
+    // 枠番=3, 馬番=5 のように異なる行
+    private static final String DIFFERENT_BRACKET_ROW = """
+        <tr class="hr-tableValue__row">
+          <td class="hr-tableValue__data hr-tableValue__data--number">
+            <span class="hr-icon__bracketNum hr-icon__bracketNum--3">3</span>
+          </td>
+          <td class="hr-tableValue__data hr-tableValue__data--number">5</td>
+          <td class="hr-tableValue__data hr-tableValue__data--horse">
+            <a href="/keiba/directory/horse/dummy/">テスト馬</a>
+          </td>
+          <td class="hr-tableValue__data hr-tableValue__data--odds"><span>10.5</span></td>
+          <td class="hr-tableValue__data hr-tableValue__data--odds"><span>3.2 - 4.5</span></td>
+        </tr>
+        """;
+
+    // オッズが未定の行
+    private static final String UNDECIDED_ODDS_ROW = """
+        <tr class="hr-tableValue__row">
+          <td class="hr-tableValue__data hr-tableValue__data--number">
+            <span class="hr-icon__bracketNum hr-icon__bracketNum--1">1</span>
+          </td>
+          <td class="hr-tableValue__data hr-tableValue__data--number">3</td>
+          <td class="hr-tableValue__data hr-tableValue__data--horse">
+            <a href="/keiba/directory/horse/dummy/">タイトルホルダー</a>
+          </td>
+          <td class="hr-tableValue__data hr-tableValue__data--odds">---</td>
+          <td class="hr-tableValue__data hr-tableValue__data--odds"></td>
+        </tr>
+        """;
+
+    // h2がなくtitleタグのみにレース名があるページ
+    private static final String TITLE_ONLY_HTML = """
+        <html>
+          <head>
+            <title>競馬 - 有馬記念 オッズ - スポーツナビ</title>
+          </head>
+          <body>
+            <table class="hr-tableValue">
+              <tbody>
+                <tr class="hr-tableValue__row">
+                  <td class="hr-tableValue__data hr-tableValue__data--number">
+                    <span class="hr-icon__bracketNum hr-icon__bracketNum--1">1</span>
+                  </td>
+                  <td class="hr-tableValue__data hr-tableValue__data--number">1</td>
+                  <td class="hr-tableValue__data hr-tableValue__data--horse">
+                    <a href="/keiba/directory/horse/dummy/">テスト馬</a>
+                  </td>
+                  <td class="hr-tableValue__data hr-tableValue__data--odds"><span>5.0</span></td>
+                  <td class="hr-tableValue__data hr-tableValue__data--odds"><span>1.5 - 2.0</span></td>
+                </tr>
+              </tbody>
+            </table>
+          </body>
+        </html>
+        """;
+
     @BeforeEach
     void setUp() {
         parser = new RaceOddsParser();
@@ -94,20 +158,7 @@ class RaceOddsParserTest {
 
     @Test
     void parse_枠番が馬番と混同されないこと() {
-        // 枠番=3, 馬番=5 のように異なる場合
-        String rows = """
-            <tr class="hr-tableValue__row">
-              <td class="hr-tableValue__data hr-tableValue__data--number">
-                <span class="hr-icon__bracketNum hr-icon__bracketNum--3">3</span>
-              </td>
-              <td class="hr-tableValue__data hr-tableValue__data--number">5</td>
-              <td class="hr-tableValue__data hr-tableValue__data--horse">
-                <a href="/keiba/directory/horse/dummy/">テスト馬</a>
-              </td>
-              <td class="hr-tableValue__data hr-tableValue__data--odds"><span>10.5</span></td>
-              <td class="hr-tableValue__data hr-tableValue__data--odds"><span>3.2 - 4.5</span></td>
-            </tr>
-            """;
+        String rows = DIFFERENT_BRACKET_ROW;
         String html = buildHtml("大阪杯", rows);
 
         List<OddsData> result = parser.parse(html);
@@ -123,19 +174,7 @@ class RaceOddsParserTest {
 
     @Test
     void parse_オッズが未定の場合でもパースを継続できること() {
-        String rows = """
-            <tr class="hr-tableValue__row">
-              <td class="hr-tableValue__data hr-tableValue__data--number">
-                <span class="hr-icon__bracketNum hr-icon__bracketNum--1">1</span>
-              </td>
-              <td class="hr-tableValue__data hr-tableValue__data--number">3</td>
-              <td class="hr-tableValue__data hr-tableValue__data--horse">
-                <a href="/keiba/directory/horse/dummy/">タイトルホルダー</a>
-              </td>
-              <td class="hr-tableValue__data hr-tableValue__data--odds">---</td>
-              <td class="hr-tableValue__data hr-tableValue__data--odds"></td>
-            </tr>
-            """;
+        String rows = UNDECIDED_ODDS_ROW;
         String html = buildHtml("阪神大賞典", rows);
 
         List<OddsData> result = parser.parse(html);
@@ -161,34 +200,87 @@ class RaceOddsParserTest {
 
     @Test
     void parse_h2がない場合はtitleタグからレース名を抽出すること() {
-        String html = """
-            <html>
-              <head>
-                <title>競馬 - 有馬記念 オッズ - スポーツナビ</title>
-              </head>
-              <body>
-                <table class="hr-tableValue">
-                  <tbody>
-                    <tr class="hr-tableValue__row">
-                      <td class="hr-tableValue__data hr-tableValue__data--number">
-                        <span class="hr-icon__bracketNum hr-icon__bracketNum--1">1</span>
-                      </td>
-                      <td class="hr-tableValue__data hr-tableValue__data--number">1</td>
-                      <td class="hr-tableValue__data hr-tableValue__data--horse">
-                        <a href="/keiba/directory/horse/dummy/">テスト馬</a>
-                      </td>
-                      <td class="hr-tableValue__data hr-tableValue__data--odds"><span>5.0</span></td>
-                      <td class="hr-tableValue__data hr-tableValue__data--odds"><span>1.5 - 2.0</span></td>
-                    </tr>
-                  </tbody>
-                </table>
-              </body>
-            </html>
-            """;
+        String html = TITLE_ONLY_HTML;
 
         List<OddsData> result = parser.parse(html);
 
         assertThat(result).hasSize(1);
         assertThat(result.get(0).raceName()).isEqualTo("有馬記念");
     }
+
+    @Test
+    void parse_レスポンスボディのストリームから直接パースできること() throws IOException {
+        String rows = horseRow(1, 1, "キタサンブラック", "2.5", "1.2 - 1.5")
+                    + horseRow(2, 2, "イクイノックス", "1.8", "1.1-1.3");
+        String html = buildHtml("中山記念", rows);
+
+        List<OddsData> fromStream = parser.parse(
+                new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), "UTF-8", "https://example.com/race");
+
+        assertThat(fromStream).isEqualTo(parser.parse(html));
+    }
+
+    /** 開催情報（発走時刻）を含むページ */
+    private static String withRaceDate(String html, String raceDate) {
+        return html.replace("<h2 class=\"hr-predictRaceInfo__title\">",
+                "<p class=\"hr-predictRaceInfo__date\">" + raceDate + "</p>\n<h2 class=\"hr-predictRaceInfo__title\">");
+    }
+
+    @Test
+    void parseSnapshot_開催情報から発走時刻を日本時間として抽出すること() {
+        String html = withRaceDate(buildHtml("天皇賞（秋）", horseRow(1, 1, "テスト馬", "5.0", "1.5 - 2.0")),
+                "2024年10月27日（日） 4回東京9日 11R 15:40発走");
+
+        OddsSnapshot snapshot = parser.parseSnapshot(html);
+
+        assertThat(snapshot.postTime()).isEqualTo(Instant.parse("2024-10-27T06:40:00Z"));
+        assertThat(parser.parseDom(html).postTime()).isEqualTo(snapshot.postTime());
+    }
+
+    @Test
+    void findPostTime_発走時刻が見つからないか不正な場合はnullを返すこと() {
+        assertThat(RaceOddsParser.findPostTime("2024年10月27日（日） 4回東京9日 11R")).isNull();
+        assertThat(RaceOddsParser.findPostTime("15:40発走")).isNull();
+        assertThat(RaceOddsParser.findPostTime("2024年2月30日（金） 11R 15:40発走")).isNull();
+        assertThat(parser.parseSnapshot(buildHtml("中山記念", "")).postTime()).isNull();
+    }
+
+    static Stream<String> fixtures() {
+        return Stream.of(
+                buildHtml("中山記念", horseRow(1, 1, "キタサンブラック", "2.5", "1.2 - 1.5")
+                        + horseRow(2, 2, "イクイノックス", "1.8", "1.1-1.3")),
+                buildHtml("大阪杯", DIFFERENT_BRACKET_ROW),
+                buildHtml("阪神大賞典", UNDECIDED_ODDS_ROW),
+                buildHtml("テストレース", ""),
+                buildHtml("", horseRow(1, 1, "テスト馬", "5.0", "1.5 - 2.0")),
+                buildHtml("天皇賞&lt;秋&gt;", horseRow(3, 6, "A&amp;B", "&nbsp;12.3 ", "3.2&nbsp;-&nbsp;4.5")),
+                withRaceDate(buildHtml("天皇賞（秋）", horseRow(1, 1, "テスト馬", "5.0", "1.5 - 2.0")),
+                        "2024年10月27日（日） 4回東京9日 11R 15:40発走"),
+                TITLE_ONLY_HTML);
+    }
+
+    @ParameterizedTest
+    @MethodSource("fixtures")
+    void parseStreaming_DOMパーサーと同じ結果になること(String html) {
+        OddsSnapshot streaming = parser.parseStreaming(html);
+
+        assertThat(streaming).isNotNull();
+        assertThat(streaming).isEqualTo(parser.parseDom(html));
+    }
+
+    @Test
+    void parse_想定外の構造の場合はDOMパーサーにフォールバックすること() {
+        // 馬番セルの閉じタグが欠けている（DOMでは暗黙に閉じられる）
+        String rows = horseRow(1, 1, "キタサンブラック", "2.5", "1.2 - 1.5")
+                .replace("--number\">1</td>", "--number\">1");
+        String html = buildHtml("中山記念", rows);
+
+        assertThat(parser.parseStreaming(html)).isNull();
+
+        List<OddsData> result = parser.parse(html);
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).horseNumber()).isEqualTo("1");
+        assertThat(result.get(0).horseName()).isEqualTo("キタサンブラック");
+        assertThat(result.get(0).winOdds()).isEqualTo(2.5);
+    }
 }
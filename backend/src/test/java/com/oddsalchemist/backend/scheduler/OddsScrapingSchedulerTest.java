@@ -1,11 +1,14 @@
 package com.oddsalchemist.backend.scheduler;
 
 import com.oddsalchemist.backend.config.ScrapingProperties;
+import com.oddsalchemist.backend.dto.SyncResult;
+import com.oddsalchemist.backend.service.OddsFetchJobService;
 import com.oddsalchemist.backend.service.OddsSyncService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.time.Clock;
 import java.util.List;
 
 import static org.mockito.Mockito.*;
@@ -13,11 +16,13 @@ import static org.mockito.Mockito.*;
 class OddsScrapingSchedulerTest {
 
     private OddsSyncService oddsSyncService;
+    private OddsFetchJobService fetchJobService;
     private OddsScrapingScheduler scheduler;
 
     @BeforeEach
     void setUp() {
         oddsSyncService = mock(OddsSyncService.class);
+        fetchJobService = new OddsFetchJobService(oddsSyncService, Clock.systemUTC());
     }
 
     @Test
@@ -25,12 +30,14 @@ class OddsScrapingSchedulerTest {
         ScrapingProperties props = new ScrapingProperties(
                 "0 */5 * * * *",
                 "シート1!A:G",
-                List.of("https://example.com/race/1", "https://example.com/race/2")
+                List.of("https://example.com/race/1", "https://example.com/race/2"),
+                null,
+                null
         );
-        scheduler = new OddsScrapingScheduler(oddsSyncService, props);
+        scheduler = new OddsScrapingScheduler(fetchJobService, props);
 
-        when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/1", "シート1!A:G")).thenReturn(10);
-        when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/2", "シート1!A:G")).thenReturn(8);
+        when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/1", "シート1!A:G")).thenReturn(SyncResult.saved(10));
+        when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/2", "シート1!A:G")).thenReturn(SyncResult.saved(8));
 
         scheduler.scrapeAllTargets();
 
@@ -43,14 +50,16 @@ class OddsScrapingSchedulerTest {
         ScrapingProperties props = new ScrapingProperties(
                 "0 */5 * * * *",
                 "シート1!A:G",
-                List.of("https://example.com/race/fail", "https://example.com/race/ok")
+                List.of("https://example.com/race/fail", "https://example.com/race/ok"),
+                null,
+                null
         );
-        scheduler = new OddsScrapingScheduler(oddsSyncService, props);
+        scheduler = new OddsScrapingScheduler(fetchJobService, props);
 
         when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/fail", "シート1!A:G"))
                 .thenThrow(new IOException("接続タイムアウト"));
         when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/ok", "シート1!A:G"))
-                .thenReturn(5);
+                .thenReturn(SyncResult.saved(5));
 
         // 例外がスローされないこと（システムを止めない）
         scheduler.scrapeAllTargets();
@@ -64,12 +73,38 @@ class OddsScrapingSchedulerTest {
         ScrapingProperties props = new ScrapingProperties(
                 "0 */5 * * * *",
                 "シート1!A:G",
-                List.of()
+                List.of(),
+                null,
+                null
         );
-        scheduler = new OddsScrapingScheduler(oddsSyncService, props);
+        scheduler = new OddsScrapingScheduler(fetchJobService, props);
 
         scheduler.scrapeAllTargets();
 
         verifyNoInteractions(oddsSyncService);
     }
+
+    @Test
+    void scrapeAllTargets_並列モードで全URLを処理し1件の失敗が他に影響しないこと() throws Exception {
+        ScrapingProperties props = new ScrapingProperties(
+                "0 */5 * * * *",
+                "シート1!A:G",
+                List.of("https://example.com/race/1", "https://example.com/race/fail", "https://example.com/race/3"),
+                new ScrapingProperties.Concurrency(true, 2, 10.0, 2),
+                null
+        );
+        scheduler = new OddsScrapingScheduler(fetchJobService, props);
+
+        when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/1", "シート1!A:G")).thenReturn(SyncResult.saved(10));
+        when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/fail", "シート1!A:G"))
+                .thenThrow(new IOException("接続タイムアウト"));
+        when(oddsSyncService.fetchAndSaveOdds("https://example.com/race/3", "シート1!A:G")).thenReturn(SyncResult.saved(8));
+
+        // 例外がスローされず、全URLの処理完了を待ってから戻ること
+        scheduler.scrapeAllTargets();
+
+        verify(oddsSyncService).fetchAndSaveOdds("https://example.com/race/1", "シート1!A:G");
+        verify(oddsSyncService).fetchAndSaveOdds("https://example.com/race/fail", "シート1!A:G");
+        verify(oddsSyncService).fetchAndSaveOdds("https://example.com/race/3", "シート1!A:G");
+    }
 }
@@ -0,0 +1,201 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.DetectorProperties;
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DetectorCheckpointStoreTest {
+
+    private static final String TOKYO = "https://example.com/race/tokyo11";
+    private static final String KYOTO = "https://example.com/race/kyoto11";
+
+    @TempDir
+    Path tempDir;
+
+    private final MutableClock clock = new MutableClock();
+    private DetectorProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new DetectorProperties(null, 0, null, Duration.ofHours(1), null, null,
+                new DetectorProperties.Checkpoint(true, tempDir.resolve("checkpoint.bin").toString(), null));
+    }
+
+    private OddsAnomalyDetector newDetector() {
+        return new OddsAnomalyDetector(new RaceRegistry(), properties, clock, new SimpleMeterRegistry());
+    }
+
+    private static OddsSnapshot race(String url, int horse5WinOdds, Instant postTime) {
+        return OddsSnapshot.builder("第1回東京11レース", url, 4)
+                .postTime(postTime)
+                .add("1", "馬A", 15, 11, 13)
+                .add("2", "馬B", 20, 12, 15)
+                .add("3", "馬C", 30, 14, 20)
+                .add("5", "急増馬", horse5WinOdds, 20, 30)
+                .build();
+    }
+
+    @Test
+    void restore_書き出した履歴を再起動後に読み込み初回から検知できること() throws IOException {
+        OddsAnomalyDetector before = newDetector();
+        before.detect(race(TOKYO, 200, null));
+        new DetectorCheckpointStore(before, properties, clock).save();
+
+        // 再起動: レースIDの採番が変わっても履歴を引き継げる
+        OddsAnomalyDetector after = newDetector();
+        after.detect(race(KYOTO, 100, null));
+        clock.advance(Duration.ofMinutes(5));
+        new DetectorCheckpointStore(after, properties, clock).restore();
+
+        List<AnomalyAlertDto> alerts = after.detect(race(TOKYO, 50, null));
+        assertThat(alerts).extracting(AnomalyAlertDto::horseNumber).containsExactly("5");
+        assertThat(alerts.get(0).value()).isCloseTo(0.15, org.assertj.core.data.Offset.offset(1e-9));
+    }
+
+    @Test
+    void restore_発走済みのレースは読み捨てること() throws IOException {
+        OddsAnomalyDetector before = newDetector();
+        before.detect(race(TOKYO, 200, clock.instant().plus(Duration.ofMinutes(10))));
+        before.detect(race(KYOTO, 200, null));
+        new DetectorCheckpointStore(before, properties, clock).save();
+
+        clock.advance(Duration.ofMinutes(15));
+        OddsAnomalyDetector after = newDetector();
+        new DetectorCheckpointStore(after, properties, clock).restore();
+
+        // 京都のみ復元される（東京は発走済み）
+        assertThat(after.detect(race(KYOTO, 50, null))).hasSize(1);
+        assertThat(after.detect(race(TOKYO, 50, null))).isEmpty();
+    }
+
+    @Test
+    void restore_書き出しからidleTtl以上経過したファイルは読み込まないこと() throws IOException {
+        OddsAnomalyDetector before = newDetector();
+        before.detect(race(TOKYO, 200, null));
+        new DetectorCheckpointStore(before, properties, clock).save();
+
+        clock.advance(Duration.ofHours(1));
+        OddsAnomalyDetector after = newDetector();
+        new DetectorCheckpointStore(after, properties, clock).restore();
+
+        assertThat(after.detect(race(TOKYO, 50, null))).isEmpty();
+    }
+
+    @Test
+    void restore_壊れたファイルの場合は空の状態で起動すること() throws IOException {
+        Path file = Path.of(properties.checkpoint().path());
+        OddsAnomalyDetector before = newDetector();
+        before.detect(race(TOKYO, 200, null));
+        new DetectorCheckpointStore(before, properties, clock).save();
+        // 途中で切れたファイル
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 6));
+
+        OddsAnomalyDetector after = newDetector();
+        new DetectorCheckpointStore(after, properties, clock).restore();
+
+        assertThat(after.detect(race(TOKYO, 50, null))).isEmpty();
+    }
+
+    @Test
+    void restore_長さが不正なレースを含む場合は途中までのレースも反映せず空の状態で起動すること() throws IOException {
+        Path file = Path.of(properties.checkpoint().path());
+        writeCheckpoint(file, false);
+        OddsAnomalyDetector valid = newDetector();
+        new DetectorCheckpointStore(valid, properties, clock).restore();
+        // 長さが正しい場合は1レース目が復元される
+        assertThat(valid.detect(race(TOKYO, 50, null))).hasSize(1);
+
+        // CRCは一致するが、2レース目のキー長が残りのバイト数を超えるファイル
+        writeCheckpoint(file, true);
+        OddsAnomalyDetector after = newDetector();
+        new DetectorCheckpointStore(after, properties, clock).restore();
+
+        assertThat(after.detect(race(TOKYO, 50, null))).isEmpty();
+    }
+
+    /** 東京の急増馬の履歴1件と、必要に応じてキー長が壊れた2レース目を含むチェックポイントを書き出す */
+    private void writeCheckpoint(Path file, boolean corruptSecondRace) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(DetectorCheckpointStore.MAGIC);
+        out.writeInt(DetectorCheckpointStore.VERSION);
+        out.writeLong(clock.millis());
+        out.writeInt(corruptSecondRace ? 2 : 1);
+        byte[] key = TOKYO.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(key.length);
+        out.write(key);
+        out.writeLong(Long.MAX_VALUE);
+        out.writeLong(clock.millis());
+        out.writeInt(1);
+        out.writeInt(5);
+        out.writeInt(1);
+        out.writeLong(clock.millis());
+        out.writeInt(200);
+        if (corruptSecondRace) {
+            out.writeInt(Integer.MAX_VALUE);
+            out.write(new byte[32]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt(out.size());
+        out.writeInt((int) crc.getValue());
+        Files.write(file, bytes.toByteArray());
+    }
+
+    @Test
+    void checkpoint_無効の場合はファイルを書き出さないこと() {
+        DetectorProperties disabled = new DetectorProperties(null, 0, null, null, null, null,
+                new DetectorProperties.Checkpoint(false, tempDir.resolve("checkpoint.bin").toString(), null));
+        OddsAnomalyDetector detector = new OddsAnomalyDetector(
+                new RaceRegistry(), disabled, clock, new SimpleMeterRegistry());
+        detector.detect(race(TOKYO, 200, null));
+
+        new DetectorCheckpointStore(detector, disabled, clock).checkpoint();
+
+        assertThat(tempDir.resolve("checkpoint.bin")).doesNotExist();
+    }
+
+    /** テストから時刻を進められるClock */
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-10-17T06:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.ScrapingProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HostThrottleTest {
+
+    private static HostThrottle throttle(int maxPerHost, double requestsPerSecond, int burst) {
+        return new HostThrottle(new ScrapingProperties(
+                "0 */5 * * * *",
+                "シート1!A:G",
+                List.of(),
+                new ScrapingProperties.Concurrency(true, maxPerHost, requestsPerSecond, burst),
+                null));
+    }
+
+    @Test
+    void acquire_同一ホストの同時実行数が上限を超えないこと() throws Exception {
+        HostThrottle throttle = throttle(2, 1000.0, 100);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    try (HostThrottle.Permit permit = throttle.acquire("https://example.com/race/" + done.getCount())) {
+                        int now = running.incrementAndGet();
+                        maxRunning.accumulateAndGet(now, Math::max);
+                        Thread.sleep(20);
+                        running.decrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                    return null;
+                });
+            }
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(2);
+    }
+
+    @Test
+    void acquire_別ホストの上限は互いに影響しないこと() throws Exception {
+        HostThrottle throttle = throttle(1, 1000.0, 100);
+
+        try (HostThrottle.Permit first = throttle.acquire("https://a.example.com/race/1")) {
+            // 別ホストであれば、a.example.comの枠が埋まっていても即座に取得できる
+            try (HostThrottle.Permit second = throttle.acquire("https://b.example.com/race/1")) {
+                assertThat(second).isNotNull();
+            }
+        }
+    }
+
+    @Test
+    void hostOf_URLからホスト名を取り出すこと() {
+        assertThat(HostThrottle.hostOf("https://sports.yahoo.co.jp/keiba/race/odds/tfw/2606020211"))
+                .isEqualTo("sports.yahoo.co.jp");
+        assertThat(HostThrottle.hostOf("not a url")).isEqualTo("not a url");
+    }
+
+    @Test
+    void tokenBucket_バースト分を使い切ると補充間隔ぶん待機させること() {
+        // 10件/秒 → 補充間隔100ms、バースト2
+        TokenBucket bucket = new TokenBucket(10.0, 2);
+        long now = System.nanoTime();
+
+        assertThat(bucket.reserve(now)).isZero();
+        assertThat(bucket.reserve(now)).isZero();
+        assertThat(bucket.reserve(now)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(bucket.reserve(now)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+
+        // 十分な時間が経過すればバースト上限まで補充される
+        long later = now + TimeUnit.SECONDS.toNanos(10);
+        assertThat(bucket.reserve(later)).isZero();
+        assertThat(bucket.reserve(later)).isZero();
+        assertThat(bucket.reserve(later)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+}
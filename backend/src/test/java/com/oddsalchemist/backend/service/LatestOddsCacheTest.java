@@ -0,0 +1,90 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatestOddsCacheTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-17T01:00:00Z");
+    private static final String URL = "https://example.com/race/tokyo11";
+
+    private LatestOddsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new LatestOddsCache(new JsonMapper(), Clock.fixed(NOW, ZoneId.of("Asia/Tokyo")));
+    }
+
+    private static OddsUpdatedEvent event(String url, int winOdds, Instant fetchedAt, AnomalyAlertDto... alerts) {
+        OddsSnapshot snapshot = OddsSnapshot.builder("第1回東京11レース", url, 1)
+                .add("1", "キタサンブラック", winOdds, 12, 15)
+                .build();
+        return new OddsUpdatedEvent(fetchedAt, snapshot, List.of(alerts));
+    }
+
+    @Test
+    void race_更新されたレースの最新のオッズと異常を返すこと() {
+        cache.onOddsUpdated(event(URL, 25, NOW, new AnomalyAlertDto("1", "キタサンブラック", "支持率急増", 0.1)));
+
+        LatestOddsCache.Entry entry = cache.race(URL);
+
+        assertThat(entry).isNotNull();
+        String json = new String(entry.body(), StandardCharsets.UTF_8);
+        assertThat(json).contains("キタサンブラック").contains("支持率急増");
+        assertThat(cache.race("https://example.com/race/unknown")).isNull();
+    }
+
+    @Test
+    void onOddsUpdated_更新のたびにレースと一覧のETagが変わること() {
+        LatestOddsCache.Entry emptyIndex = cache.index();
+        cache.onOddsUpdated(event(URL, 25, NOW));
+        LatestOddsCache.Entry first = cache.race(URL);
+        LatestOddsCache.Entry firstIndex = cache.index();
+
+        cache.onOddsUpdated(event(URL, 23, NOW.plusSeconds(60)));
+
+        assertThat(firstIndex.etag()).isNotEqualTo(emptyIndex.etag());
+        assertThat(cache.race(URL).etag()).isNotEqualTo(first.etag());
+        assertThat(cache.index().etag()).isNotEqualTo(firstIndex.etag());
+        assertThat(new String(cache.index().body(), StandardCharsets.UTF_8)).contains(URL);
+    }
+
+    @Test
+    void matches_IfNoneMatchの値とETagを比較すること() {
+        cache.onOddsUpdated(event(URL, 25, NOW));
+        LatestOddsCache.Entry entry = cache.race(URL);
+
+        assertThat(entry.matches(entry.etag())).isTrue();
+        assertThat(entry.matches("W/" + entry.etag())).isTrue();
+        assertThat(entry.matches("\"other\", " + entry.etag())).isTrue();
+        assertThat(entry.matches("*")).isTrue();
+        assertThat(entry.matches("\"other\"")).isFalse();
+        assertThat(entry.matches(null)).isFalse();
+    }
+
+    @Test
+    void expire_保持期間を過ぎたレースを破棄すること() {
+        String other = "https://example.com/race/kyoto11";
+        cache.onOddsUpdated(event(URL, 25, NOW));
+        cache.onOddsUpdated(event(other, 25, NOW.plus(LatestOddsCache.RETENTION)));
+        String indexEtag = cache.index().etag();
+
+        int removed = cache.expire(NOW.plus(LatestOddsCache.RETENTION).plusSeconds(1));
+
+        assertThat(removed).isEqualTo(1);
+        assertThat(cache.race(URL)).isNull();
+        assertThat(cache.race(other)).isNotNull();
+        assertThat(cache.index().etag()).isNotEqualTo(indexEtag);
+    }
+}
@@ -1,13 +1,24 @@
 package com.oddsalchemist.backend.service;
 
+import com.oddsalchemist.backend.config.DetectorProperties;
 import com.oddsalchemist.backend.dto.AnomalyAlertDto;
 import com.oddsalchemist.backend.dto.OddsData;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * OddsAnomalyDetector の単体テスト。
@@ -16,13 +27,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 class OddsAnomalyDetectorTest {
 
     private OddsAnomalyDetector detector;
+    private final MutableClock clock = new MutableClock();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     // テスト用のレース名定数
     private static final String RACE = "第1回東京1レース";
 
     @BeforeEach
     void setUp() {
-        detector = new OddsAnomalyDetector();
+        detector = new OddsAnomalyDetector(new RaceRegistry(), DetectorProperties.defaults(), clock, meterRegistry);
     }
 
     // ===== ロジックA: 支持率急増検知 =====
@@ -114,7 +127,7 @@ class OddsAnomalyDetectorTest {
     }
 
     @Test
-    void detect_支持率計算の精度_BigDecimalで閾値ちょうど0_02を正確に判定すること() {
+    void detect_支持率計算の精度_閾値0_02を正確に判定すること() {
         // 1/5.0 - 1/50.0 = 0.2 - 0.02 = 0.18 >= 0.02 → アラート
         // 1/10.0 - 1/11.0 ≈ 0.1 - 0.0909 = 0.009 < 0.02 → アラートなし
         detector.detect(List.of(
@@ -137,6 +150,125 @@ class OddsAnomalyDetectorTest {
         assertThat(alerts).extracting(AnomalyAlertDto::horseNumber).doesNotContain("6");
     }
 
+    @Test
+    void isSupportRateSurge_閾値ちょうどの増加は急増と判定されること() {
+        // 1/10.0 - 1/12.5 = 0.1 - 0.08 = 0.02（ちょうど閾値）
+        assertThat(OddsAnomalyDetector.isSupportRateSurge(100, 125)).isTrue();
+        // 1/10.0 - 1/12.4 ≈ 0.0194 < 0.02
+        assertThat(OddsAnomalyDetector.isSupportRateSurge(100, 124)).isFalse();
+        // オッズが上がった（支持率が下がった）場合は急増ではない
+        assertThat(OddsAnomalyDetector.isSupportRateSurge(125, 100)).isFalse();
+        assertThat(OddsAnomalyDetector.supportRateIncrease(100, 125)).isEqualTo(0.02);
+    }
+
+    @Test
+    void isSupportRateSurge_オッズの全範囲でBigDecimalによる判定と一致すること() {
+        // オッズ1.0〜9999.9（固定小数点10〜99999）の逆数を従来と同じ方法（小数点以下10桁、HALF_UP）で事前計算する
+        int min = 10;
+        int max = 99_999;
+        BigDecimal[] reciprocals = new BigDecimal[max + 1];
+        for (int v = min; v <= max; v++) {
+            reciprocals[v] = BigDecimal.ONE.divide(BigDecimal.valueOf(v, 1), 10, RoundingMode.HALF_UP);
+        }
+        BigDecimal threshold = new BigDecimal("0.02");
+
+        // 直近オッズ50.0以上では 1/C <= 0.02 のため急増になり得ない。それ未満は全組み合わせを、以上は間引いて比較する
+        for (int current = min; current <= max; current += current < 500 ? 1 : 97) {
+            BigDecimal currentRate = reciprocals[current];
+            for (int previous = min; previous <= max; previous++) {
+                boolean expected = currentRate.subtract(reciprocals[previous]).compareTo(threshold) >= 0;
+                if (OddsAnomalyDetector.isSupportRateSurge(current, previous) != expected) {
+                    throw new AssertionError("判定不一致: current=" + current + ", previous=" + previous);
+                }
+            }
+        }
+    }
+
+    // ===== ロジックA: 時間窓での支持率急増検知 =====
+
+    /** 5分ごとに単勝10.0 → 9.0 → 8.0 → 7.5 と緩やかに売れていく（1回ごとの増加はいずれも0.02未満） */
+    private List<AnomalyAlertDto> pollSteadyInflow(OddsAnomalyDetector target) {
+        List<AnomalyAlertDto> all = new ArrayList<>();
+        for (double win : new double[]{10.0, 9.0, 8.0, 7.5}) {
+            all.addAll(target.detect(List.of(
+                    odds("1", "人気馬A", 1.5, 1.1, 1.3),
+                    odds("2", "人気馬B", 2.0, 1.2, 1.5),
+                    odds("3", "人気馬C", 3.0, 1.4, 2.0),
+                    odds("5", "チェック馬X", win, 3.0, 5.0)
+            )));
+            clock.advance(Duration.ofMinutes(5));
+        }
+        return all;
+    }
+
+    @Test
+    void detect_前回比較では緩やかな資金流入はアラートが発生しないこと() {
+        assertThat(pollSteadyInflow(detector)).isEmpty();
+    }
+
+    @Test
+    void detect_時間窓内の累積で支持率が2パーセント以上増えた場合にアラートが発生すること() {
+        OddsAnomalyDetector windowed = new OddsAnomalyDetector(
+                new RaceRegistry(), new DetectorProperties(Duration.ofMinutes(15), 16, null, null, null, null, null), clock, new SimpleMeterRegistry());
+
+        List<AnomalyAlertDto> alerts = pollSteadyInflow(windowed);
+
+        // 10分後: 1/8.0 - 1/10.0 = 0.025 → アラート
+        assertThat(alerts).extracting(AnomalyAlertDto::horseNumber).contains("5");
+        assertThat(alerts.get(0).value()).isCloseTo(0.025, org.assertj.core.data.Offset.offset(1e-9));
+    }
+
+    @Test
+    void detect_時間窓より古い履歴とは比較せず前回取得時と比較すること() {
+        OddsAnomalyDetector windowed = new OddsAnomalyDetector(
+                new RaceRegistry(), new DetectorProperties(Duration.ofMinutes(15), 16, null, null, null, null, null), clock, new SimpleMeterRegistry());
+        windowed.detect(List.of(odds("5", "チェック馬X", 10.0, 3.0, 5.0)));
+        clock.advance(Duration.ofMinutes(20));
+        windowed.detect(List.of(odds("5", "チェック馬X", 9.0, 3.0, 5.0)));
+        clock.advance(Duration.ofMinutes(20));
+
+        // 20分前（9.0）との比較: 1/8.0 - 1/9.0 ≈ 0.0139 → アラートなし（40分前の10.0とは比較しない）
+        List<AnomalyAlertDto> alerts = windowed.detect(List.of(
+                odds("1", "人気馬A", 1.5, 1.1, 1.3),
+                odds("2", "人気馬B", 2.0, 1.2, 1.5),
+                odds("3", "人気馬C", 3.0, 1.4, 2.0),
+                odds("5", "チェック馬X", 8.0, 3.0, 5.0)
+        ));
+
+        assertThat(alerts).isEmpty();
+    }
+
+    @Test
+    void detect_時間窓内で急増が続いている間は同じ馬のアラートを繰り返さないこと() {
+        OddsAnomalyDetector windowed = new OddsAnomalyDetector(
+                new RaceRegistry(), new DetectorProperties(Duration.ofMinutes(15), 16, null, null, null, null, null), clock, new SimpleMeterRegistry());
+        List<List<AnomalyAlertDto>> polls = new ArrayList<>();
+        // 10.0 → 5.0 に下がった後、窓内に10.0が残っている間は条件を満たし続ける。
+        // 20.0 まで戻ると条件を満たさなくなり、再び 5.0 へ下がると新たな急増として通知する
+        for (double win : new double[]{10.0, 5.0, 5.0, 5.0, 20.0, 5.0}) {
+            polls.add(windowed.detect(List.of(
+                    odds("1", "人気馬A", 1.5, 1.1, 1.3),
+                    odds("2", "人気馬B", 2.0, 1.2, 1.5),
+                    odds("3", "人気馬C", 3.0, 1.4, 2.0),
+                    odds("5", "チェック馬X", win, 3.0, 5.0)
+            )));
+            clock.advance(Duration.ofMinutes(5));
+        }
+
+        assertThat(polls).extracting(List::size).containsExactly(0, 1, 0, 0, 0, 1);
+        assertThat(windowed.getLatestAlerts()).extracting(AnomalyAlertDto::horseNumber).containsExactly("5");
+    }
+
+    @Test
+    void DetectorProperties_履歴のサンプル数が時間窓を覆えない場合はエラーとなること() {
+        assertThatThrownBy(() -> new DetectorProperties(
+                Duration.ofMinutes(15), 2, Duration.ofMinutes(5), null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("history-size");
+        assertThat(new DetectorProperties(Duration.ofMinutes(15), 3, Duration.ofMinutes(5), null, null, null, null)
+                .historySize()).isEqualTo(3);
+    }
+
     // ===== ロジックB: 単複オッズ順位乖離検知 =====
 
     @Test
@@ -262,8 +394,185 @@ class OddsAnomalyDetectorTest {
         assertThat(latest).extracting(AnomalyAlertDto::horseNumber).contains("5");
     }
 
+    @Test
+    void getLatestAlerts_別レースの検知で他レースの最新アラートが消えないこと() {
+        String tokyo = "https://example.com/race/tokyo11";
+        String kyoto = "https://example.com/race/kyoto11";
+        detector.detect(surgeRace(tokyo, 200));
+        detector.detect(surgeRace(tokyo, 50)); // 東京で支持率急増
+        detector.detect(surgeRace(kyoto, 200)); // 京都は初回のためアラートなし
+
+        assertThat(detector.getLatestAlertsByRace()).containsOnlyKeys(tokyo, kyoto);
+        assertThat(detector.getLatestAlertsByRace().get(tokyo)).extracting(AnomalyAlertDto::horseNumber)
+                .containsExactly("5");
+        assertThat(detector.getLatestAlertsByRace().get(kyoto)).isEmpty();
+        assertThat(detector.getLatestAlerts()).extracting(AnomalyAlertDto::horseNumber).containsExactly("5");
+    }
+
+    // ===== レースのライフサイクル =====
+
+    @Test
+    void detect_発走時刻を過ぎたレースは終了し確定オッズを保持して検知しないこと() {
+        String race = "https://example.com/race/tokyo11";
+        Instant postTime = clock.instant().plus(Duration.ofMinutes(10));
+        detector.detect(surgeRace(race, 200, postTime));
+        assertThat(detector.getFinalOdds(race)).isNull();
+
+        clock.advance(Duration.ofMinutes(15));
+        OddsSnapshot finalOdds = surgeRace(race, 50, postTime);
+        List<AnomalyAlertDto> alerts = detector.detect(finalOdds);
+
+        // 発走後は支持率急増があっても検知しない
+        assertThat(alerts).isEmpty();
+        assertThat(detector.getFinalOdds(race)).isSameAs(finalOdds);
+
+        // 終了後の取得で確定オッズが上書きされないこと
+        clock.advance(Duration.ofMinutes(5));
+        assertThat(detector.detect(surgeRace(race, 30, postTime))).isEmpty();
+        assertThat(detector.getFinalOdds(race)).isSameAs(finalOdds);
+        assertThat(meterRegistry.get(OddsAnomalyDetector.RACES_GAUGE).tag("state", "closed").gauge().value())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void expireRaces_無通信のレースを終了し保持期間の経過後に状態を破棄すること() {
+        RaceRegistry registry = new RaceRegistry();
+        SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+        OddsAnomalyDetector target = new OddsAnomalyDetector(registry,
+                new DetectorProperties(null, 0, null, Duration.ofMinutes(30), Duration.ofHours(1), null, null), clock, metrics);
+        String race = "https://example.com/race/tokyo11";
+        target.detect(surgeRace(race, 200, null));
+        target.detect(surgeRace(race, 50, null));
+        assertThat(target.getLatestAlertsByRace()).containsKey(race);
+        assertThat(metrics.get(OddsAnomalyDetector.RACES_GAUGE).tag("state", "active").gauge().value())
+                .isEqualTo(1.0);
+        assertThat(metrics.get(OddsAnomalyDetector.RETAINED_BYTES_GAUGE).gauge().value()).isPositive();
+
+        // idle-ttl 経過 → 終了（確定オッズのみ保持）
+        clock.advance(Duration.ofMinutes(30));
+        target.expireRaces();
+        assertThat(target.getFinalOdds(race)).isNotNull();
+        assertThat(metrics.get(OddsAnomalyDetector.RACES_GAUGE).tag("state", "active").gauge().value())
+                .isZero();
+
+        // closed-retention 経過 → 破棄
+        clock.advance(Duration.ofHours(1));
+        target.expireRaces();
+        assertThat(target.getFinalOdds(race)).isNull();
+        assertThat(target.getLatestAlertsByRace()).doesNotContainKey(race);
+        assertThat(registry.size()).isZero();
+        assertThat(metrics.get(OddsAnomalyDetector.RACES_GAUGE).tag("state", "closed").gauge().value())
+                .isZero();
+        assertThat(metrics.get(OddsAnomalyDetector.RETAINED_BYTES_GAUGE).gauge().value()).isZero();
+    }
+
+    @Test
+    void detect_無通信で終了したレースの取得が発走前に再開された場合は履歴を作り直して検知すること() {
+        OddsAnomalyDetector target = new OddsAnomalyDetector(new RaceRegistry(),
+                new DetectorProperties(null, 0, null, Duration.ofMinutes(30), null, null, null), clock, new SimpleMeterRegistry());
+        String race = "https://example.com/race/tokyo11";
+        target.detect(surgeRace(race, 200, null));
+        clock.advance(Duration.ofMinutes(30));
+        target.expireRaces();
+
+        // 終了前の履歴は破棄されているため、再開直後は比較対象がない
+        assertThat(target.detect(surgeRace(race, 50, null))).isEmpty();
+        assertThat(target.getFinalOdds(race)).isNull();
+        assertThat(target.detect(surgeRace(race, 30, null))).extracting(AnomalyAlertDto::horseNumber)
+                .containsExactly("5");
+    }
+
+    // ===== 列指向スナップショットでの検知 =====
+
+    @Test
+    void detect_スナップショットを渡した場合も同じアラートが発生すること() {
+        // 1回目: 単勝20.0（固定小数点で200）
+        detector.detect(OddsSnapshot.builder(RACE, 4)
+                .add("1", "馬A", 15, 11, 13)
+                .add("2", "馬B", 20, 12, 15)
+                .add("3", "馬C", 30, 14, 20)
+                .add("5", "急増馬", 200, 40, 80)
+                .build());
+
+        // 2回目: 単勝5.0 → 支持率増加 = 0.2 - 0.05 = 0.15
+        List<AnomalyAlertDto> alerts = detector.detect(OddsSnapshot.builder(RACE, 4)
+                .add("1", "馬A", 15, 11, 13)
+                .add("2", "馬B", 20, 12, 15)
+                .add("3", "馬C", 30, 14, 20)
+                .add("5", "急増馬", 50, 20, 30)
+                .build());
+
+        assertThat(alerts).hasSize(1);
+        assertThat(alerts.get(0).horseNumber()).isEqualTo("5");
+        assertThat(alerts.get(0).alertType()).isEqualTo("支持率急増");
+        assertThat(alerts.get(0).value()).isCloseTo(0.15, org.assertj.core.data.Offset.offset(1e-9));
+        assertThat(detector.getLatestAlerts()).isEqualTo(alerts);
+    }
+
+    @Test
+    void detect_同名レースでも取得元URLが異なれば前回データを共有しないこと() {
+        String tokyo = "https://example.com/race/tokyo11";
+        String kyoto = "https://example.com/race/kyoto11";
+        // 東京: 単勝20.0 を記録
+        detector.detect(OddsSnapshot.builder(RACE, tokyo, 4)
+                .add("1", "馬A", 15, 11, 13)
+                .add("2", "馬B", 20, 12, 15)
+                .add("3", "馬C", 30, 14, 20)
+                .add("5", "東京の5番", 200, 40, 80)
+                .build());
+
+        // 京都の同名レース: 5番が単勝5.0でも、東京の前回データとは比較されない
+        List<AnomalyAlertDto> alerts = detector.detect(OddsSnapshot.builder(RACE, kyoto, 4)
+                .add("1", "馬A", 15, 11, 13)
+                .add("2", "馬B", 20, 12, 15)
+                .add("3", "馬C", 30, 14, 20)
+                .add("5", "京都の5番", 50, 20, 30)
+                .build());
+
+        assertThat(alerts).isEmpty();
+    }
+
     // ===== ヘルパーメソッド =====
 
+    /** 上位3頭と、単勝オッズ（オッズ×10）を指定した5番からなるレース */
+    private OddsSnapshot surgeRace(String url, int horse5WinOdds) {
+        return surgeRace(url, horse5WinOdds, null);
+    }
+
+    private OddsSnapshot surgeRace(String url, int horse5WinOdds, Instant postTime) {
+        return OddsSnapshot.builder(RACE, url, 4)
+                .postTime(postTime)
+                .add("1", "馬A", 15, 11, 13)
+                .add("2", "馬B", 20, 12, 15)
+                .add("3", "馬C", 30, 14, 20)
+                .add("5", "急増馬", horse5WinOdds, 20, 30)
+                .build();
+    }
+
+    /** テストから時刻を進められるClock */
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-10-17T06:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
     private OddsData odds(String number, String name, double win, double placeMin, double placeMax) {
         return new OddsData(RACE, number, name, win, placeMin, placeMax);
     }
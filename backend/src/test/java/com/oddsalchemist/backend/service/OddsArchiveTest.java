@@ -0,0 +1,149 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.dto.StoredOdds;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OddsArchiveTest {
+
+    private static final Instant T0 = Instant.parse("2026-10-17T01:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    /** 2レースを1分ごとに取得した履歴（途中で取消による頭数の変化、未設定のオッズを含む） */
+    private static List<StoredOdds> history(int cycles) {
+        List<StoredOdds> history = new ArrayList<>();
+        for (String url : List.of("https://example.com/race/tokyo11", "https://example.com/race/kyoto11")) {
+            for (int c = 0; c < cycles; c++) {
+                OddsSnapshot.Builder builder = OddsSnapshot.builder("第1回東京11レース", url, 3)
+                        .postTime(Instant.parse("2026-10-17T06:40:00Z"))
+                        .add("1", "馬A", 30 - c % 5, 11, 13)
+                        .add("2", "馬B", 200 + c, -1, -1);
+                if (c < cycles / 2) {
+                    builder.add("3", "馬C", 55, 20, 31);
+                }
+                history.add(new StoredOdds(T0.plusSeconds(60L * c), builder.build()));
+            }
+        }
+        return history;
+    }
+
+    private Path writeArchive(List<StoredOdds> history, int blockBytes) throws IOException {
+        Path file = tempDir.resolve("odds.oaa");
+        try (OddsArchiveWriter writer = new OddsArchiveWriter(Files.newOutputStream(file), blockBytes)) {
+            for (StoredOdds stored : history) {
+                writer.write(stored);
+            }
+        }
+        return file;
+    }
+
+    private static List<StoredOdds> readAll(OddsArchiveReader.Cursor cursor) throws IOException {
+        List<StoredOdds> result = new ArrayList<>();
+        while (cursor.next()) {
+            result.add(cursor.toStoredOdds());
+        }
+        return result;
+    }
+
+    @Test
+    void cursor_書き込んだ取得結果を書き込み順に復元すること() throws IOException {
+        List<StoredOdds> history = history(40);
+        // 小さなブロックで複数ブロックに分割させる
+        Path file = writeArchive(history, 512);
+
+        try (OddsArchiveReader reader = new OddsArchiveReader(file)) {
+            assertThat(reader.blockCount()).isGreaterThan(1);
+            assertThat(reader.snapshotCount()).isEqualTo(history.size());
+            try (OddsArchiveReader.Cursor cursor = reader.cursor()) {
+                assertThat(readAll(cursor)).isEqualTo(history);
+            }
+        }
+    }
+
+    @Test
+    void cursor_取得時刻の範囲内の取得結果のみを返すこと() throws IOException {
+        List<StoredOdds> history = history(40);
+        Path file = writeArchive(history, 512);
+
+        try (OddsArchiveReader reader = new OddsArchiveReader(file);
+             OddsArchiveReader.Cursor cursor = reader.cursor(
+                     T0.plusSeconds(600).toEpochMilli(), T0.plusSeconds(660).toEpochMilli())) {
+
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.raceKey()).isEqualTo("https://example.com/race/tokyo11");
+            assertThat(cursor.fetchedAtMillis()).isEqualTo(T0.plusSeconds(600).toEpochMilli());
+            assertThat(cursor.size()).isEqualTo(3);
+            assertThat(cursor.winOddsFixed(0)).isEqualTo(30);
+            assertThat(cursor.placeOddsMinFixed(1)).isEqualTo(-1);
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.raceKey()).isEqualTo("https://example.com/race/kyoto11");
+            assertThat(cursor.next()).isFalse();
+        }
+    }
+
+    @Test
+    void writer_同じ内容の繰り返しを元の文字列より小さく符号化すること() throws IOException {
+        List<StoredOdds> history = history(1000);
+        Path file = writeArchive(history, OddsArchiveWriter.DEFAULT_BLOCK_BYTES);
+
+        // 1頭あたり（時刻・レース名・馬番・馬名・オッズ3つ）のスプレッドシートの行と比べて十分小さいこと
+        long rows = history.stream().mapToLong(stored -> stored.snapshot().size()).sum();
+        assertThat(Files.size(file)).isLessThan(rows * 2);
+    }
+
+    @Test
+    void open_書き込みが完了していないファイルは例外をスローすること() throws IOException {
+        Path file = tempDir.resolve("partial.oaa");
+        OddsArchiveWriter writer = new OddsArchiveWriter(Files.newOutputStream(file), 512);
+        for (StoredOdds stored : history(40)) {
+            writer.write(stored);
+        }
+
+        // finishせずに停止した場合（索引が書き込まれていない）
+        assertThatThrownBy(() -> new OddsArchiveReader(file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void next_ブロックが壊れている場合は例外をスローすること() throws IOException {
+        Path file = writeArchive(history(40), 512);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // 先頭ブロックの本体を書き換える
+            channel.write(ByteBuffer.wrap(new byte[]{0x55, 0x55, 0x55, 0x55}), 24);
+        }
+
+        try (OddsArchiveReader reader = new OddsArchiveReader(file);
+             OddsArchiveReader.Cursor cursor = reader.cursor()) {
+            assertThatThrownBy(cursor::next).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void close_読み出しの途中で閉じたカーソルは以降読み出せないこと() throws IOException {
+        Path file = writeArchive(history(40), 512);
+
+        try (OddsArchiveReader reader = new OddsArchiveReader(file)) {
+            OddsArchiveReader.Cursor cursor = reader.cursor();
+            assertThat(cursor.next()).isTrue();
+            cursor.close();
+            cursor.close();
+
+            assertThatThrownBy(cursor::next).isInstanceOf(IllegalStateException.class);
+        }
+    }
+}
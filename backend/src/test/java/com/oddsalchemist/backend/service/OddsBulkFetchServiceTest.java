@@ -0,0 +1,167 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.ScrapingProperties;
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.SyncResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class OddsBulkFetchServiceTest {
+
+    private static final String RANGE = "シート1!A:G";
+    private static final String FAST = "https://example.com/race/1";
+    private static final String SLOW = "https://example.com/race/2";
+    private static final String FAIL = "https://example.com/race/fail";
+
+    private OddsSyncService oddsSyncService;
+    private OddsFetchJobService fetchJobService;
+
+    @BeforeEach
+    void setUp() {
+        oddsSyncService = mock(OddsSyncService.class);
+        fetchJobService = new OddsFetchJobService(oddsSyncService, Clock.systemUTC());
+    }
+
+    @AfterEach
+    void tearDown() {
+        fetchJobService.shutdown();
+    }
+
+    private OddsBulkFetchService newService(boolean concurrent) {
+        ScrapingProperties props = new ScrapingProperties("0 */5 * * * *", RANGE, List.of(),
+                new ScrapingProperties.Concurrency(concurrent, 4, 10.0, 4), null);
+        return new OddsBulkFetchService(fetchJobService, props, new JsonMapper());
+    }
+
+    /** 送信した行を記録する送信先 */
+    private static class RecordingSink implements OddsBulkFetchService.Sink {
+
+        final LinkedBlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(byte[] line) throws IOException {
+            String text = new String(line, StandardCharsets.UTF_8);
+            assertThat(text).endsWith("\n");
+            lines.add(text.strip());
+        }
+
+        List<String> lines() {
+            return List.copyOf(lines);
+        }
+    }
+
+    @Test
+    void fetchAll_完了したレースから順に1行ずつ書き出すこと() throws Exception {
+        CountDownLatch fastWritten = new CountDownLatch(1);
+        when(oddsSyncService.fetchAndSaveOdds(FAST, RANGE)).thenReturn(SyncResult.saved(10,
+                List.of(new AnomalyAlertDto("3", "キタサンブラック", "支持率急増", 0.08))));
+        when(oddsSyncService.fetchAndSaveOdds(SLOW, RANGE)).thenAnswer(invocation -> {
+            // 先に完了したレースの結果が書き出されるまで完了しない
+            fastWritten.await(5, TimeUnit.SECONDS);
+            return SyncResult.saved(8);
+        });
+        when(oddsSyncService.fetchAndSaveOdds(FAIL, RANGE)).thenThrow(new IOException("接続タイムアウト"));
+        RecordingSink sink = new RecordingSink() {
+            @Override
+            public void send(byte[] line) throws IOException {
+                super.send(line);
+                if (new String(line, StandardCharsets.UTF_8).contains(FAST)) {
+                    fastWritten.countDown();
+                }
+            }
+        };
+
+        int written = newService(true).fetchAll(List.of(SLOW, FAST, FAIL), RANGE, sink);
+
+        assertThat(written).isEqualTo(3);
+        List<String> lines = sink.lines();
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(2)).contains(SLOW);
+        assertThat(lines).filteredOn(line -> line.contains(FAST)).singleElement()
+                .satisfies(line -> assertThat(line).contains("SUCCEEDED").contains("支持率急増"));
+        assertThat(lines).filteredOn(line -> line.contains(FAIL)).singleElement()
+                .satisfies(line -> assertThat(line).contains("FAILED").contains("接続タイムアウト"));
+    }
+
+    @Test
+    void fetchAll_最も遅いレースの完了を待たずに先に完了したレースの結果を送信すること() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(oddsSyncService.fetchAndSaveOdds(FAST, RANGE)).thenReturn(SyncResult.saved(10));
+        when(oddsSyncService.fetchAndSaveOdds(SLOW, RANGE)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return SyncResult.saved(8);
+        });
+        RecordingSink sink = new RecordingSink();
+        CompletableFuture<Integer> bulk = CompletableFuture.supplyAsync(() -> {
+            try {
+                return newService(true).fetchAll(List.of(SLOW, FAST), RANGE, sink);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // 遅いレースが完了していない間に、1行目が送信されていること
+        String first = sink.lines.poll(5, TimeUnit.SECONDS);
+        assertThat(first).contains(FAST);
+        assertThat(release.getCount()).isEqualTo(1);
+        assertThat(bulk).isNotDone();
+
+        release.countDown();
+        assertThat(bulk.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+        assertThat(sink.lines.poll()).contains(SLOW);
+    }
+
+    @Test
+    void fetchAll_並列モードが無効の場合は順番に取得して書き出すこと() throws Exception {
+        when(oddsSyncService.fetchAndSaveOdds(FAST, RANGE)).thenReturn(SyncResult.saved(10));
+        when(oddsSyncService.fetchAndSaveOdds(SLOW, RANGE)).thenReturn(SyncResult.skippedUnchanged());
+        RecordingSink sink = new RecordingSink();
+
+        newService(false).fetchAll(List.of(SLOW, FAST), RANGE, sink);
+
+        List<String> lines = sink.lines();
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).contains(SLOW).contains("保存をスキップしました");
+        assertThat(lines.get(1)).contains(FAST).contains("10件のオッズデータを保存しました。");
+    }
+
+    @Test
+    void fetchAll_書き込みに失敗しても開始した取得は最後まで実行すること() throws Exception {
+        when(oddsSyncService.fetchAndSaveOdds(anyString(), eq(RANGE))).thenReturn(SyncResult.saved(10));
+        OddsBulkFetchService.Sink broken = line -> {
+            throw new IOException("クライアントが切断しました");
+        };
+
+        assertThatThrownBy(() -> newService(true).fetchAll(List.of(FAST, SLOW, FAIL), RANGE, broken))
+                .isInstanceOf(IOException.class);
+
+        verify(oddsSyncService).fetchAndSaveOdds(FAST, RANGE);
+        verify(oddsSyncService).fetchAndSaveOdds(SLOW, RANGE);
+        verify(oddsSyncService).fetchAndSaveOdds(FAIL, RANGE);
+    }
+
+    @Test
+    void timeoutFor_件数とホストあたりのレートから応答の上限時間を決めること() {
+        // 100件 ÷ 10件/秒 = 10秒、同時実行数4で25回分の応答待ち（5秒）、余裕30秒
+        assertThat(newService(true).timeoutFor(100)).isEqualTo(Duration.ofSeconds(10 + 25 * 5 + 30));
+        // 順番に取得する場合は1件ごとに応答待ちを見込む
+        assertThat(newService(false).timeoutFor(100)).isEqualTo(Duration.ofSeconds(10 + 100 * 5 + 30));
+    }
+}
@@ -0,0 +1,92 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OddsDeltaTrackerTest {
+
+    private static final String URL = "https://example.com/race/tokyo11";
+    private static final Instant T0 = Instant.parse("2026-10-17T01:00:00Z");
+
+    private static OddsSnapshot race(int horse1WinOdds, int horse2WinOdds) {
+        return OddsSnapshot.builder("第1回東京11レース", URL, 2)
+                .add("1", "馬A", horse1WinOdds, 11, 13)
+                .add("2", "馬B", horse2WinOdds, -1, -1)
+                .build();
+    }
+
+    @Test
+    void next_初回はキーフレーム_以降はオッズが変化した馬のみを返すこと() {
+        OddsDeltaTracker tracker = new OddsDeltaTracker(new OddsDeltaProperties(true, 12, null));
+
+        OddsDeltaTracker.Delta first = tracker.next(race(30, 200), T0);
+        OddsDeltaTracker.Delta second = tracker.next(race(30, 180), T0.plusSeconds(60));
+        OddsDeltaTracker.Delta third = tracker.next(race(30, 180), T0.plusSeconds(120));
+
+        assertThat(first.keyframe()).isTrue();
+        assertThat(first.runners()).containsExactly(0, 1);
+        assertThat(second.keyframe()).isFalse();
+        assertThat(second.runners()).containsExactly(1);
+        assertThat(third.isEmpty()).isTrue();
+    }
+
+    @Test
+    void next_差分の回数または経過時間が上限に達するとキーフレームを返すこと() {
+        OddsDeltaTracker tracker = new OddsDeltaTracker(new OddsDeltaProperties(true, 2, Duration.ofMinutes(10)));
+
+        tracker.next(race(30, 200), T0);
+        assertThat(tracker.next(race(31, 200), T0.plusSeconds(60)).keyframe()).isFalse();
+        // 変化のない回は差分の回数に数えない
+        assertThat(tracker.next(race(31, 200), T0.plusSeconds(120)).keyframe()).isFalse();
+        assertThat(tracker.next(race(32, 200), T0.plusSeconds(180)).keyframe()).isFalse();
+        assertThat(tracker.next(race(33, 200), T0.plusSeconds(240)).keyframe()).isTrue();
+
+        // 前回のキーフレームから10分経過
+        assertThat(tracker.next(race(34, 200), T0.plusSeconds(240 + 600)).keyframe()).isTrue();
+    }
+
+    @Test
+    void next_馬が消えた場合と状態を破棄した場合はキーフレームを返すこと() {
+        OddsDeltaTracker tracker = new OddsDeltaTracker(new OddsDeltaProperties(true, 12, null));
+        tracker.next(race(30, 200), T0);
+
+        OddsSnapshot scratched = OddsSnapshot.builder("第1回東京11レース", URL, 1)
+                .add("1", "馬A", 30, 11, 13)
+                .build();
+        assertThat(tracker.next(scratched, T0.plusSeconds(60)).keyframe()).isTrue();
+
+        tracker.forget(scratched.raceKey());
+        assertThat(tracker.size()).isZero();
+        assertThat(tracker.next(scratched, T0.plusSeconds(120)).keyframe()).isTrue();
+    }
+
+    @Test
+    void next_差分モードが無効の場合は常にキーフレームを返すこと() {
+        OddsDeltaTracker tracker = new OddsDeltaTracker(OddsDeltaProperties.disabled());
+
+        tracker.next(race(30, 200), T0);
+
+        assertThat(tracker.next(race(30, 200), T0.plusSeconds(60)).runners()).containsExactly(0, 1);
+        assertThat(tracker.size()).isZero();
+    }
+
+    @Test
+    void apply_差分を適用した全馬のオッズを返すこと() {
+        OddsSnapshot base = race(30, 200);
+        OddsSnapshot current = race(30, 180);
+        OddsDeltaTracker tracker = new OddsDeltaTracker(new OddsDeltaProperties(true, 12, null));
+        tracker.next(base, T0);
+        OddsDeltaTracker.Delta delta = tracker.next(current, T0.plusSeconds(60));
+
+        OddsSnapshot changes = OddsDeltaTracker.select(current, delta.runners());
+
+        assertThat(changes.size()).isEqualTo(1);
+        assertThat(OddsDeltaTracker.apply(base, changes)).isEqualTo(current);
+    }
+}
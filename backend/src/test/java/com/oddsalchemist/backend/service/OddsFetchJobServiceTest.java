@@ -0,0 +1,206 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.FetchJobStatus;
+import com.oddsalchemist.backend.dto.SyncResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class OddsFetchJobServiceTest {
+
+    private static final String URL = "https://example.com/race/tokyo11";
+    private static final String RANGE = "シート1!A:G";
+
+    private OddsSyncService oddsSyncService;
+    private OddsFetchJobService service;
+
+    @BeforeEach
+    void setUp() {
+        oddsSyncService = mock(OddsSyncService.class);
+        service = new OddsFetchJobService(oddsSyncService,
+                Clock.fixed(Instant.parse("2026-10-17T01:00:00Z"), ZoneId.of("Asia/Tokyo")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    /** 解放されるまで取得を終えないようにする */
+    private CountDownLatch blockFetch(String url, SyncResult result) throws IOException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(oddsSyncService.fetchAndSaveOdds(url, RANGE)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return result;
+        });
+        return release;
+    }
+
+    /** ジョブが指定した状態になるまで待つ */
+    private FetchJobStatus awaitStatus(String jobId, String status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        FetchJobStatus job = service.find(jobId);
+        while (!job.status().equals(status) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = service.find(jobId);
+        }
+        assertThat(job.status()).isEqualTo(status);
+        return job;
+    }
+
+    @Test
+    void submit_完了を待たずに実行中のジョブを返し完了後は結果を参照できること() throws Exception {
+        CountDownLatch release = blockFetch(URL, SyncResult.saved(12));
+
+        FetchJobStatus job = service.submit(URL, RANGE);
+
+        assertThat(job.status()).isEqualTo("RUNNING");
+        assertThat(job.trigger()).isEqualTo("MANUAL");
+        release.countDown();
+        FetchJobStatus done = awaitStatus(job.jobId(), "SUCCEEDED");
+        assertThat(done.savedCount()).isEqualTo(12);
+        assertThat(done.message()).isEqualTo("12件のオッズデータを保存しました。");
+        assertThat(done.finishedAt()).isNotNull();
+    }
+
+    @Test
+    void submit_同じURLのジョブが実行中の場合は合流し取得は1回のみであること() throws Exception {
+        CountDownLatch release = blockFetch(URL, SyncResult.saved(12));
+
+        FetchJobStatus first = service.submit(URL, RANGE);
+        FetchJobStatus second = service.submit(URL, RANGE);
+        release.countDown();
+
+        assertThat(second.jobId()).isEqualTo(first.jobId());
+        awaitStatus(first.jobId(), "SUCCEEDED");
+        verify(oddsSyncService, times(1)).fetchAndSaveOdds(URL, RANGE);
+
+        // 完了後の取得は新しいジョブになること
+        assertThat(service.submit(URL, RANGE).jobId()).isNotEqualTo(first.jobId());
+    }
+
+    @Test
+    void fetch_手動取得が実行中の場合はそのジョブの結果を待って返すこと() throws Exception {
+        CountDownLatch release = blockFetch(URL, SyncResult.saved(12));
+        service.submit(URL, RANGE);
+
+        CompletableFuture<SyncResult> scheduled = new CompletableFuture<>();
+        Thread scheduler = new Thread(() -> {
+            try {
+                scheduled.complete(service.fetch(URL, RANGE));
+            } catch (Exception e) {
+                scheduled.completeExceptionally(e);
+            }
+        });
+        scheduler.start();
+        // 実行中のジョブの完了待ち（自身で取得している場合は TIMED_WAITING になる）に入るまで待つ
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertThat(scheduled.get(5, TimeUnit.SECONDS).savedCount()).isEqualTo(12);
+        verify(oddsSyncService, times(1)).fetchAndSaveOdds(URL, RANGE);
+    }
+
+    @Test
+    void submit_定期実行中の場合はそのジョブに合流すること() throws Exception {
+        CountDownLatch release = blockFetch(URL, SyncResult.saved(12));
+        CompletableFuture<SyncResult> scheduled = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.fetch(URL, RANGE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        verify(oddsSyncService, timeout(5000)).fetchAndSaveOdds(URL, RANGE);
+
+        FetchJobStatus manual = service.submit(URL, RANGE);
+        release.countDown();
+
+        assertThat(manual.trigger()).isEqualTo("SCHEDULED");
+        assertThat(scheduled.get(5, TimeUnit.SECONDS).savedCount()).isEqualTo(12);
+        verify(oddsSyncService, times(1)).fetchAndSaveOdds(URL, RANGE);
+    }
+
+    @Test
+    void submit_取得に失敗した場合はジョブを失敗として記録すること() throws Exception {
+        when(oddsSyncService.fetchAndSaveOdds(URL, RANGE)).thenThrow(new IOException("接続タイムアウト"));
+
+        FetchJobStatus job = service.submit(URL, RANGE);
+
+        assertThat(awaitStatus(job.jobId(), "FAILED").message()).isEqualTo("エラーが発生しました: 接続タイムアウト");
+    }
+
+    @Test
+    void fetch_取得に失敗した場合は例外をスローすること() throws Exception {
+        when(oddsSyncService.fetchAndSaveOdds(URL, RANGE)).thenThrow(new IOException("接続タイムアウト"));
+
+        assertThatThrownBy(() -> service.fetch(URL, RANGE))
+                .isInstanceOf(IOException.class)
+                .hasMessage("接続タイムアウト");
+    }
+
+    @Test
+    void run_完了まで待って検知した異常を含む状態を返し失敗時も例外をスローしないこと() throws Exception {
+        when(oddsSyncService.fetchAndSaveOdds(URL, RANGE)).thenReturn(SyncResult.saved(12,
+                List.of(new AnomalyAlertDto("3", "キタサンブラック", "支持率急増", 0.08))));
+        String failing = "https://example.com/race/fail";
+        when(oddsSyncService.fetchAndSaveOdds(failing, RANGE)).thenThrow(new IOException("接続タイムアウト"));
+
+        FetchJobStatus done = service.run(URL, RANGE);
+        FetchJobStatus failed = service.run(failing, RANGE);
+
+        assertThat(done.status()).isEqualTo("SUCCEEDED");
+        assertThat(done.trigger()).isEqualTo("MANUAL");
+        assertThat(done.alerts()).extracting(AnomalyAlertDto::horseNumber).containsExactly("3");
+        assertThat(failed.status()).isEqualTo("FAILED");
+        assertThat(failed.alerts()).isEmpty();
+    }
+
+    @Test
+    void submit_取得中にErrorが発生した場合もジョブを失敗として終え合流した取得を待たせないこと() throws Exception {
+        when(oddsSyncService.fetchAndSaveOdds(URL, RANGE))
+                .thenThrow(new StackOverflowError("stack overflow"))
+                .thenReturn(SyncResult.saved(12));
+
+        FetchJobStatus job = service.submit(URL, RANGE);
+
+        assertThat(awaitStatus(job.jobId(), "FAILED").message()).isEqualTo("エラーが発生しました: stack overflow");
+        // 実行中のジョブとして残らず、次の取得は新しいジョブとして実行されること
+        assertThat(service.fetch(URL, RANGE).savedCount()).isEqualTo(12);
+    }
+
+    @Test
+    void submit_シャットダウン後はジョブを失敗として返し次の取得を妨げないこと() throws Exception {
+        when(oddsSyncService.fetchAndSaveOdds(URL, RANGE)).thenReturn(SyncResult.saved(12));
+        service.shutdown();
+
+        FetchJobStatus job = service.submit(URL, RANGE);
+
+        assertThat(job.status()).isEqualTo("FAILED");
+        assertThat(job.message()).isEqualTo("エラーが発生しました: シャットダウン中のため取得ジョブを開始できません");
+        assertThat(service.find(job.jobId()).status()).isEqualTo("FAILED");
+        assertThat(service.fetch(URL, RANGE).savedCount()).isEqualTo(12);
+    }
+
+    @Test
+    void find_存在しないジョブIDの場合はnullを返すこと() {
+        assertThat(service.find("unknown")).isNull();
+    }
+}
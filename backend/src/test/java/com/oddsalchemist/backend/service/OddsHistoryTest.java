@@ -0,0 +1,95 @@
+package com.oddsalchemist.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OddsHistoryTest {
+
+    private static final long HORSE = RaceRegistry.horseKey(1, "5");
+    private static final long OTHER = RaceRegistry.horseKey(1, "6");
+
+    @Test
+    void latest_最後に記録したオッズが返ること() {
+        OddsHistory history = new OddsHistory(4, 1);
+        assertThat(history.latest(HORSE)).isEqualTo(OddsHistory.NO_VALUE);
+
+        history.record(HORSE, 1_000, 100);
+        history.record(HORSE, 2_000, 90);
+
+        assertThat(history.latest(HORSE)).isEqualTo(90);
+        assertThat(history.latest(OTHER)).isEqualTo(OddsHistory.NO_VALUE);
+    }
+
+    @Test
+    void maxSince_指定時刻より後のサンプルの最大オッズが返ること() {
+        OddsHistory history = new OddsHistory(8, 1);
+        history.record(HORSE, 1_000, 120);
+        history.record(HORSE, 2_000, 100);
+        history.record(HORSE, 3_000, 110);
+        history.record(HORSE, 4_000, 80);
+
+        assertThat(history.maxSince(HORSE, 0)).isEqualTo(120);
+        // 1000 は範囲外（since より後のみ対象）
+        assertThat(history.maxSince(HORSE, 1_000)).isEqualTo(110);
+        assertThat(history.maxSince(HORSE, 3_000)).isEqualTo(80);
+        assertThat(history.maxSince(HORSE, 4_000)).isEqualTo(OddsHistory.NO_VALUE);
+    }
+
+    @Test
+    void record_容量を超えると古いサンプルから上書きされること() {
+        OddsHistory history = new OddsHistory(3, 1);
+        history.record(HORSE, 1_000, 500);
+        history.record(HORSE, 2_000, 100);
+        history.record(HORSE, 3_000, 110);
+        history.record(HORSE, 4_000, 120);
+
+        // 最も古い 500 は上書き済み
+        assertThat(history.maxSince(HORSE, 0)).isEqualTo(120);
+        assertThat(history.latest(HORSE)).isEqualTo(120);
+    }
+
+    @Test
+    void record_馬ごとに独立した履歴を保持し容量を自動で拡張すること() {
+        OddsHistory history = new OddsHistory(2, 1);
+        for (int number = 1; number <= 20; number++) {
+            long key = RaceRegistry.horseKey(3, String.valueOf(number));
+            history.record(key, 1_000, number * 10);
+            history.record(key, 2_000, number * 10 + 1);
+        }
+
+        assertThat(history.horseCount()).isEqualTo(20);
+        for (int number = 1; number <= 20; number++) {
+            long key = RaceRegistry.horseKey(3, String.valueOf(number));
+            assertThat(history.latest(key)).isEqualTo(number * 10 + 1);
+            assertThat(history.maxSince(key, 0)).isEqualTo(number * 10 + 1);
+        }
+    }
+
+    @Test
+    void readFrom_書き出した履歴を別のレースIDで読み込めること() throws IOException {
+        OddsHistory history = new OddsHistory(3, 1);
+        history.record(HORSE, 1_000, 500);
+        history.record(HORSE, 2_000, 100);
+        history.record(HORSE, 3_000, 110);
+        history.record(HORSE, 4_000, 120);
+        history.record(OTHER, 4_000, 300);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        history.writeTo(new DataOutputStream(bytes));
+        OddsHistory restored = new OddsHistory(3, 1);
+        restored.readFrom(ByteBuffer.wrap(bytes.toByteArray()), 7);
+
+        long horse = RaceRegistry.horseKey(7, "5");
+        assertThat(restored.horseCount()).isEqualTo(2);
+        assertThat(restored.latest(horse)).isEqualTo(120);
+        assertThat(restored.maxSince(horse, 0)).isEqualTo(120);
+        assertThat(restored.maxSince(horse, 3_000)).isEqualTo(120);
+        assertThat(restored.latest(RaceRegistry.horseKey(7, "6"))).isEqualTo(300);
+    }
+}
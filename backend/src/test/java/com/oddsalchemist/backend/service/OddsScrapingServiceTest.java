@@ -1,77 +1,192 @@
 package com.oddsalchemist.backend.service;
 
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import com.oddsalchemist.backend.config.ScrapingProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.MockedStatic;
-import org.mockito.Mockito;
-import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.*;
 
-@ExtendWith(MockitoExtension.class)
 class OddsScrapingServiceTest {
 
-    private final OddsScrapingService oddsScrapingService = new OddsScrapingService();
+    private static final String TABLE = """
+            <table class="hr-tableValue"><tbody>
+              <tr class="hr-tableValue__row"><td>1</td><td>2.5</td></tr>
+            </tbody></table>
+            """;
 
-    @Test
-    @DisplayName("正常系: 指定したURLからHTMLを取得し、タイトルがログ出力されること")
-    void fetchHtml_Success() throws IOException {
-        String url = "https://db.netkeiba.com/";
-        String expectedTitle = "テスト用タイトル";
-        // テスト用の静的HTMLを作成し、Documentオブジェクトに変換
-        String html = "<html><head><title>" + expectedTitle + "</title></head><body></body></html>";
-        Document document = Jsoup.parse(html);
-
-        // Jsoup.connect などの static メソッドをモック化
-        try (MockedStatic<Jsoup> jsoupMock = Mockito.mockStatic(Jsoup.class)) {
-            Connection connectionMock = mock(Connection.class);
-
-            // Jsoup.connect(url) が呼ばれたら connectionMock を返す
-            jsoupMock.when(() -> Jsoup.connect(url)).thenReturn(connectionMock);
-            // チェーンメソッドのモック化
-            when(connectionMock.userAgent(anyString())).thenReturn(connectionMock);
-            when(connectionMock.timeout(anyInt())).thenReturn(connectionMock);
-            
-            // connectionMock.get() が呼ばれたら用意した document を返す
-            when(connectionMock.get()).thenReturn(document);
-
-            // テスト実行
-            String result = oddsScrapingService.fetchHtml(url);
-
-            // 検証: Jsoup.connect と .get() が正しく呼び出されたか
-            assertEquals(document.html(), result);
-            jsoupMock.verify(() -> Jsoup.connect(url), times(1));
-            verify(connectionMock).userAgent(anyString());
-            verify(connectionMock).timeout(anyInt());
-            verify(connectionMock, times(1)).get();
+    private HttpServer server;
+    private String baseUrl;
+    private SimpleMeterRegistry meterRegistry;
+    private OddsScrapingService oddsScrapingService;
+
+    /** テスト用サーバーが受け取った直近のリクエスト */
+    private final AtomicReference<HttpExchange> lastExchange = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        ScrapingProperties properties = new ScrapingProperties(
+                "0 */5 * * * *", "シート1!A:G", List.of(), null,
+                new ScrapingProperties.Http(Duration.ofSeconds(1), Duration.ofSeconds(2), "OddsAlchemistTest"));
+        meterRegistry = new SimpleMeterRegistry();
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(properties.http().connectTimeout()).build();
+        oddsScrapingService = new OddsScrapingService(
+                new HostThrottle(properties), httpClient, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /** 指定パスに固定レスポンスを返すハンドラーを登録します。 */
+    private void respond(String path, int status, String body, String... headers) {
+        server.createContext(path, exchange -> {
+            lastExchange.set(exchange);
+            for (int i = 0; i + 1 < headers.length; i += 2) {
+                exchange.getResponseHeaders().add(headers[i], headers[i + 1]);
+            }
+            byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+            if ("gzip".equals(exchange.getResponseHeaders().getFirst("Content-Encoding"))) {
+                bytes = gzip(bytes);
+            }
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(bytes);
         }
+        return buffer.toByteArray();
+    }
+
+    @Test
+    @DisplayName("正常系: gzip圧縮されたHTMLを展開して取得し、変更ありの結果が返ること")
+    void fetchPage_Success() throws IOException {
+        String html = "<html><head><title>テスト用タイトル</title></head><body>" + TABLE + "</body></html>";
+        respond("/race", 200, html,
+                "Content-Type", "text/html; charset=UTF-8",
+                "Content-Encoding", "gzip",
+                "ETag", "\"v1\"");
+
+        FetchedPage page = oddsScrapingService.fetchPage(baseUrl + "/race");
+
+        assertTrue(page.changed());
+        assertEquals(html, new String(page.body(), StandardCharsets.UTF_8));
+        assertEquals("UTF-8", page.charset());
+        assertEquals("\"v1\"", page.etag());
+        // 設定したUser-Agentと圧縮の受け入れを送っていること、初回は条件付きヘッダーを送らないこと
+        HttpExchange exchange = lastExchange.get();
+        assertEquals("OddsAlchemistTest", exchange.getRequestHeaders().getFirst("User-Agent"));
+        assertTrue(exchange.getRequestHeaders().getFirst("Accept-Encoding").contains("gzip"));
+        assertNull(exchange.getRequestHeaders().getFirst("If-None-Match"));
+    }
+
+    @Test
+    @DisplayName("正常系: 処理済みのETagで条件付きリクエストを送り、304なら未変更の結果が返ること")
+    void fetchPage_NotModified() throws IOException {
+        String url = baseUrl + "/race";
+        respond("/race", 304, null);
+        oddsScrapingService.markProcessed(new FetchedPage(url, new byte[0], null, true,
+                "\"v1\"", "Sat, 17 Oct 2026 06:00:00 GMT", "hash"));
+
+        FetchedPage page = oddsScrapingService.fetchPage(url);
+
+        assertFalse(page.changed());
+        assertNull(page.body());
+        HttpExchange exchange = lastExchange.get();
+        assertEquals("\"v1\"", exchange.getRequestHeaders().getFirst("If-None-Match"));
+        assertEquals("Sat, 17 Oct 2026 06:00:00 GMT", exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+    }
+
+    @Test
+    @DisplayName("正常系: オッズテーブルが処理済みの内容と同じなら未変更の結果が返ること")
+    void fetchPage_SameOddsTable() throws IOException {
+        String url = baseUrl + "/race";
+        String processedHtml = "<html><body><p>10:00更新</p>" + TABLE + "</body></html>";
+        String currentHtml = "<html><body><p>10:05更新</p>" + TABLE + "</body></html>";
+        respond("/race", 200, currentHtml);
+        byte[] processedBody = processedHtml.getBytes(StandardCharsets.UTF_8);
+        oddsScrapingService.markProcessed(new FetchedPage(url, processedBody, null, true,
+                null, null, OddsScrapingService.hashOddsTable(processedBody)));
+
+        FetchedPage page = oddsScrapingService.fetchPage(url);
+
+        // テーブル外の変化は無視される
+        assertFalse(page.changed());
+    }
+
+    @Test
+    @DisplayName("正常系: script内に行のマーカーがあってもオッズテーブルの変化を検出すること")
+    void hashOddsTable_IgnoresMarkerInScript() {
+        String script = "<script>function hrOnLoad() { var rows = document.querySelectorAll(\"tr.hr-tableValue__row\");"
+                + " return rows.length > 0 && \"<table>\"; }</script>";
+        String before = "<html><head>" + script + "</head><body>" + TABLE + "</body></html>";
+        String after = "<html><head>" + script + "</head><body>" + TABLE.replace("2.5", "2.4") + "</body></html>";
+        String adChanged = "<html><head>" + script + "</head><body><p>広告</p>" + TABLE + "</body></html>";
+
+        String hash = OddsScrapingService.hashOddsTable(before.getBytes(StandardCharsets.UTF_8));
+
+        // テーブル内のオッズの変化は検出し、テーブル外の変化は無視する
+        assertNotEquals(hash, OddsScrapingService.hashOddsTable(after.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(hash, OddsScrapingService.hashOddsTable(adChanged.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("正常系: 取得ごとにレイテンシがメトリクスに記録されること")
+    void fetchPage_RecordsLatency() throws IOException {
+        respond("/race", 200, "<html></html>");
+
+        oddsScrapingService.fetchPage(baseUrl + "/race");
+        oddsScrapingService.fetchPage(baseUrl + "/race");
+
+        long count = meterRegistry.get(OddsScrapingService.FETCH_TIMER)
+                .tag("host", "127.0.0.1")
+                .tag("status", "200")
+                .timer()
+                .count();
+        assertEquals(2, count);
     }
 
     @Test
     @DisplayName("異常系: 通信エラー発生時にIOExceptionがスローされること")
-    void fetchHtml_Failure() throws IOException {
-        String url = "https://error-url.com/";
+    void fetchPage_Failure() {
+        // 停止済みのポートへ接続する
+        server.stop(0);
 
-        try (MockedStatic<Jsoup> jsoupMock = Mockito.mockStatic(Jsoup.class)) {
-            Connection connectionMock = mock(Connection.class);
+        assertThrows(IOException.class, () -> oddsScrapingService.fetchPage(baseUrl + "/race"));
+    }
 
-            jsoupMock.when(() -> Jsoup.connect(url)).thenReturn(connectionMock);
-            when(connectionMock.userAgent(anyString())).thenReturn(connectionMock);
-            when(connectionMock.timeout(anyInt())).thenReturn(connectionMock);
-            
-            // .get() で IOException をスローするように設定
-            when(connectionMock.get()).thenThrow(new IOException("Connection timed out"));
+    @Test
+    @DisplayName("異常系: 4xx/5xxの応答時にIOExceptionがスローされること")
+    void fetchPage_HttpError() {
+        respond("/missing", 404, "not found");
 
-            // テスト実行と検証
-            assertThrows(IOException.class, () -> oddsScrapingService.fetchHtml(url));
-        }
+        IOException e = assertThrows(IOException.class, () -> oddsScrapingService.fetchPage(baseUrl + "/missing"));
+        assertEquals("HTTPエラー応答を受信しました: ステータス=404, URL=" + baseUrl + "/missing", e.getMessage());
     }
-}
\ No newline at end of file
+}
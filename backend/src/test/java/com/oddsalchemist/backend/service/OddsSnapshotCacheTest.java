@@ -0,0 +1,95 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.SnapshotCacheProperties;
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OddsSnapshotCacheTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-17T01:00:00Z");
+    private static final String TOKYO = "https://example.com/race/tokyo11";
+    private static final String KYOTO = "https://example.com/race/kyoto11";
+    private static final String NIIGATA = "https://example.com/race/niigata11";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OddsSnapshotCache newCache(Duration ttl, int maxEntries) {
+        return new OddsSnapshotCache(new SnapshotCacheProperties(ttl, maxEntries), meterRegistry);
+    }
+
+    private static OddsSnapshot snapshot(String url) {
+        return OddsSnapshot.builder("第1回東京11レース", url, 1)
+                .add("1", "キタサンブラック", 25, 12, 15)
+                .build();
+    }
+
+    private double count(String name, String tag, String value) {
+        return meterRegistry.get(name).tag(tag, value).counter().count();
+    }
+
+    @Test
+    void get_有効期間内は保持したオッズを返し期限を過ぎると破棄すること() {
+        OddsSnapshotCache cache = newCache(Duration.ofSeconds(30), 16);
+        OddsSnapshot snapshot = snapshot(TOKYO);
+        cache.put(TOKYO, snapshot, List.of(), NOW);
+
+        assertThat(cache.get(TOKYO, NOW.plusSeconds(29)).snapshot()).isSameAs(snapshot);
+        assertThat(cache.get(TOKYO, NOW.plusSeconds(30))).isNull();
+        assertThat(cache.size()).isZero();
+
+        assertThat(count(OddsSnapshotCache.REQUESTS_COUNTER, "result", "hit")).isEqualTo(1);
+        assertThat(count(OddsSnapshotCache.REQUESTS_COUNTER, "result", "miss")).isEqualTo(1);
+        assertThat(count(OddsSnapshotCache.EVICTIONS_COUNTER, "cause", "expired")).isEqualTo(1);
+    }
+
+    @Test
+    void refresh_変化がないことを確認した時刻から有効期間を延長すること() {
+        OddsSnapshotCache cache = newCache(Duration.ofSeconds(30), 16);
+        cache.put(TOKYO, snapshot(TOKYO), List.of(new AnomalyAlertDto("1", "キタサンブラック", "支持率急増", 0.1)), NOW);
+
+        cache.refresh(TOKYO, NOW.plusSeconds(20));
+        // 保持していないURLは何もしない
+        cache.refresh(KYOTO, NOW.plusSeconds(20));
+
+        OddsSnapshotCache.Entry entry = cache.get(TOKYO, NOW.plusSeconds(40));
+        assertThat(entry).isNotNull();
+        assertThat(entry.fetchedAt()).isEqualTo(NOW);
+        assertThat(entry.alerts()).extracting(AnomalyAlertDto::horseNumber).containsExactly("1");
+        assertThat(cache.get(KYOTO, NOW.plusSeconds(40))).isNull();
+    }
+
+    @Test
+    void put_上限を超えた場合は最も長く参照されていないURLから破棄すること() {
+        OddsSnapshotCache cache = newCache(Duration.ofSeconds(30), 2);
+        cache.put(TOKYO, snapshot(TOKYO), List.of(), NOW);
+        cache.put(KYOTO, snapshot(KYOTO), List.of(), NOW);
+        // 東京を参照し、京都を最も長く参照されていないURLにする
+        cache.get(TOKYO, NOW);
+
+        cache.put(NIIGATA, snapshot(NIIGATA), List.of(), NOW);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(KYOTO, NOW)).isNull();
+        assertThat(cache.get(TOKYO, NOW)).isNotNull();
+        assertThat(cache.get(NIIGATA, NOW)).isNotNull();
+        assertThat(count(OddsSnapshotCache.EVICTIONS_COUNTER, "cause", "size")).isEqualTo(1);
+    }
+
+    @Test
+    void get_有効期間が0の場合はキャッシュしないこと() {
+        OddsSnapshotCache cache = newCache(Duration.ZERO, 16);
+        cache.put(TOKYO, snapshot(TOKYO), List.of(), NOW);
+
+        assertThat(cache.enabled()).isFalse();
+        assertThat(cache.get(TOKYO, NOW)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,182 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
+import com.oddsalchemist.backend.config.OddsStoreProperties;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.dto.StoredOdds;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OddsStoreTest {
+
+    private static final String TOKYO = "https://example.com/race/tokyo11";
+    private static final String KYOTO = "https://example.com/race/kyoto11";
+    private static final Instant T0 = Instant.parse("2026-10-17T01:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    private OddsStore openStore(long segmentBytes) throws IOException {
+        return openStore(segmentBytes, new OddsDeltaProperties(true, 3, null));
+    }
+
+    private OddsStore openStore(long segmentBytes, OddsDeltaProperties delta) throws IOException {
+        return new OddsStore(new OddsStoreProperties(tempDir.toString(), DataSize.ofBytes(segmentBytes), null), delta);
+    }
+
+    private OddsStore openStore(long segmentBytes, Duration retention) throws IOException {
+        return new OddsStore(new OddsStoreProperties(tempDir.toString(), DataSize.ofBytes(segmentBytes), retention),
+                new OddsDeltaProperties(true, 3, null));
+    }
+
+    private static OddsSnapshot race(String url, int horse1WinOdds) {
+        return race("第1回東京11レース", url, horse1WinOdds);
+    }
+
+    private static OddsSnapshot race(String raceName, String url, int horse1WinOdds) {
+        return OddsSnapshot.builder(raceName, url, 2)
+                .postTime(Instant.parse("2026-10-17T06:40:00Z"))
+                .add("1", "馬A", horse1WinOdds, 11, 13)
+                .add("2", "馬B", 200, -1, -1)
+                .build();
+    }
+
+    @Test
+    void query_時間範囲内の取得結果を取得時刻の昇順で返すこと() throws IOException {
+        OddsStore store = openStore(1 << 20);
+        for (int i = 0; i < 5; i++) {
+            store.append(race(TOKYO, 30 + i), T0.plusSeconds(60L * i));
+            store.append(race(KYOTO, 90), T0.plusSeconds(60L * i));
+        }
+
+        // [1分後, 3分後) の2件
+        List<StoredOdds> history = store.query(TOKYO,
+                T0.plusSeconds(60).toEpochMilli(), T0.plusSeconds(180).toEpochMilli());
+
+        assertThat(history).extracting(StoredOdds::fetchedAt)
+                .containsExactly(T0.plusSeconds(60), T0.plusSeconds(120));
+        assertThat(history.get(0).snapshot()).isEqualTo(race(TOKYO, 31));
+        assertThat(store.query("https://example.com/unknown", Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void query_差分レコードを直前のキーフレームから復元し各時点の全馬のオッズを返すこと() throws IOException {
+        OddsStore deltaStore = openStore(1 << 20);
+        List<OddsSnapshot> appended = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // 奇数回は変化なし（空の差分）
+            OddsSnapshot snapshot = race(TOKYO, 30 + i / 2);
+            appended.add(snapshot);
+            deltaStore.append(snapshot, T0.plusSeconds(60L * i));
+        }
+
+        // キーフレームの途中から始まる範囲でも、全馬のオッズが復元されること
+        List<StoredOdds> history = deltaStore.query(TOKYO,
+                T0.plusSeconds(300).toEpochMilli(), Long.MAX_VALUE);
+        assertThat(history).extracting(StoredOdds::snapshot).containsExactlyElementsOf(appended.subList(5, 10));
+
+        // 差分モードを使わないストアと同じ結果になること
+        OddsStore fullStore = new OddsStore(new OddsStoreProperties(tempDir.resolve("full").toString(),
+                DataSize.ofBytes(1 << 20), null), OddsDeltaProperties.disabled());
+        for (int i = 0; i < appended.size(); i++) {
+            fullStore.append(appended.get(i), T0.plusSeconds(60L * i));
+        }
+        assertThat(deltaStore.query(TOKYO, Long.MIN_VALUE, Long.MAX_VALUE))
+                .isEqualTo(fullStore.query(TOKYO, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    void queryHorse_指定した馬のオッズのみを返すこと() throws IOException {
+        OddsStore store = openStore(1 << 20);
+        store.append(race(TOKYO, 30), T0);
+        store.append(race(TOKYO, 25), T0.plusSeconds(60));
+
+        List<StoredOdds> history = store.queryHorse(TOKYO, "2", Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertThat(history).hasSize(2);
+        OddsSnapshot horse = history.get(1).snapshot();
+        assertThat(horse.size()).isEqualTo(1);
+        assertThat(horse.horseName(0)).isEqualTo("馬B");
+        assertThat(horse.winOdds(0)).isEqualTo(20.0);
+        assertThat(horse.placeOddsMin(0)).isNull();
+        assertThat(store.queryHorse(TOKYO, "9", Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void open_再起動後にセグメントを走査して索引を再構築すること() throws IOException {
+        // 小さなセグメントで複数ファイルに分割させる
+        OddsStore before = openStore(512);
+        for (int i = 0; i < 10; i++) {
+            before.append(race(TOKYO, 30 + i), T0.plusSeconds(60L * i));
+        }
+        before.flush();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files.count()).isGreaterThan(1);
+        }
+
+        OddsStore after = openStore(512);
+        assertThat(after.snapshotCount()).isEqualTo(10);
+        assertThat(after.raceKeys()).containsExactly(TOKYO);
+        after.append(race(TOKYO, 50), T0.plusSeconds(600));
+
+        List<StoredOdds> history = after.query(TOKYO, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(history).hasSize(11);
+        assertThat(history.get(9).snapshot()).isEqualTo(race(TOKYO, 39));
+        assertThat(history.get(10).snapshot()).isEqualTo(race(TOKYO, 50));
+    }
+
+    @Test
+    void query_レース名が変わる前の取得結果は保存した時点のレース名で返すこと() throws IOException {
+        OddsStore before = openStore(1 << 20);
+        before.append(race("第1回東京11レース", TOKYO, 30), T0);
+        before.append(race("天皇賞（秋）", TOKYO, 28), T0.plusSeconds(60));
+        before.flush();
+
+        for (OddsStore store : List.of(before, openStore(1 << 20))) {
+            List<StoredOdds> history = store.query(TOKYO, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertThat(history).extracting(stored -> stored.snapshot().raceName())
+                    .containsExactly("第1回東京11レース", "天皇賞（秋）");
+        }
+    }
+
+    @Test
+    void append_保持期間を過ぎたセグメントを削除し再起動後も残りの取得結果を参照できること() throws IOException {
+        OddsStore before = openStore(1024, Duration.ofHours(1));
+        List<OddsSnapshot> appended = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            OddsSnapshot snapshot = race(TOKYO, 30 + i);
+            appended.add(snapshot);
+            before.append(snapshot, T0.plusSeconds(600L * i));
+        }
+        before.flush();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files.map(file -> file.getFileName().toString())).doesNotContain("0000000000.seg");
+        }
+
+        // 再起動時は、書き込み中に次のセグメントへ切り替えるまで残っていた古いセグメントも削除する
+        OddsStore after = openStore(1024, Duration.ofHours(1));
+        assertThat(after.raceKeys()).containsExactly(TOKYO);
+        for (OddsStore store : List.of(before, after)) {
+            List<StoredOdds> history = store.query(TOKYO, Long.MIN_VALUE, Long.MAX_VALUE);
+            // 保持期間（最新から1時間）内の7件は残り、それより古い取得結果の一部はセグメントごと削除される
+            assertThat(history.size()).isBetween(7, 39);
+            assertThat(store.snapshotCount()).isEqualTo(history.size());
+            // 残った範囲はキーフレームから始まり、全馬のオッズを復元できること
+            assertThat(history).extracting(StoredOdds::snapshot)
+                    .containsExactlyElementsOf(appended.subList(40 - history.size(), 40));
+            assertThat(history.get(history.size() - 1).fetchedAt()).isEqualTo(T0.plusSeconds(600L * 39));
+        }
+    }
+}
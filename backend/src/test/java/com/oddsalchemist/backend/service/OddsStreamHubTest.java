@@ -0,0 +1,216 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
+import com.oddsalchemist.backend.config.OddsStreamProperties;
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OddsStreamHubTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-17T01:00:00Z");
+    private static final String URL = "https://example.com/race/tokyo11";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OddsStreamHub hub;
+
+    @AfterEach
+    void tearDown() {
+        if (hub != null) {
+            hub.stop();
+        }
+    }
+
+    private OddsStreamHub newHub(int bufferSize, int replaySize, Instant bootTime) {
+        return new OddsStreamHub(new OddsStreamProperties(bufferSize, replaySize, Duration.ofSeconds(30), null, 10),
+                new OddsDeltaProperties(true, 12, null), new JsonMapper(), meterRegistry,
+                Clock.fixed(bootTime, ZoneId.of("Asia/Tokyo")));
+    }
+
+    private static OddsUpdatedEvent event(int winOdds1, int winOdds2, int cycle, AnomalyAlertDto... alerts) {
+        OddsSnapshot snapshot = OddsSnapshot.builder("第1回東京11レース", URL, 2)
+                .add("1", "キタサンブラック", winOdds1, 12, 15)
+                .add("2", "サトノダイヤモンド", winOdds2, 15, 20)
+                .build();
+        return new OddsUpdatedEvent(NOW.plusSeconds(60L * cycle), snapshot, List.of(alerts));
+    }
+
+    /** 送信したイベントを記録する送信先 */
+    private static class RecordingSink implements OddsStreamHub.Sink {
+
+        final LinkedBlockingQueue<String[]> events = new LinkedBlockingQueue<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void send(String id, String name, String data) {
+            events.add(new String[]{id, name, data});
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        String[] next() throws InterruptedException {
+            return events.poll(5, TimeUnit.SECONDS);
+        }
+
+        List<String[]> next(int count) throws InterruptedException {
+            List<String[]> result = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String[] event = next();
+                assertThat(event).as("%d件目のイベント", i + 1).isNotNull();
+                result.add(event);
+            }
+            return result;
+        }
+    }
+
+    @Test
+    void onOddsUpdated_購読者へ全馬の後に変化した馬のみと異常を配信すること() throws Exception {
+        hub = newHub(16, 64, NOW);
+        RecordingSink sink = new RecordingSink();
+        hub.subscribe(null, sink);
+
+        hub.onOddsUpdated(event(25, 40, 0));
+        hub.onOddsUpdated(event(25, 36, 1, new AnomalyAlertDto("2", "サトノダイヤモンド", "支持率急増", 0.05)));
+        // オッズに変化がなく異常もない場合は配信しない
+        hub.onOddsUpdated(event(25, 36, 2));
+        hub.onOddsUpdated(event(23, 36, 3));
+
+        List<String[]> events = sink.next(4);
+        assertThat(events).extracting(e -> e[1])
+                .containsExactly(OddsStreamHub.ODDS_EVENT, OddsStreamHub.ODDS_EVENT,
+                        OddsStreamHub.ALERTS_EVENT, OddsStreamHub.ODDS_EVENT);
+        assertThat(events.get(0)[2]).contains("キタサンブラック").contains("サトノダイヤモンド");
+        assertThat(events.get(1)[2]).contains("サトノダイヤモンド").doesNotContain("キタサンブラック");
+        assertThat(events.get(2)[2]).contains("支持率急増");
+        assertThat(events.get(3)[2]).contains("キタサンブラック").doesNotContain("サトノダイヤモンド");
+        assertThat(sink.events).isEmpty();
+    }
+
+    @Test
+    void onOddsUpdated_検知が続いている異常は再配信せず新たに検知した異常のみを配信すること() throws Exception {
+        hub = newHub(16, 64, NOW);
+        RecordingSink sink = new RecordingSink();
+        hub.subscribe(null, sink);
+        AnomalyAlertDto surge = new AnomalyAlertDto("2", "サトノダイヤモンド", "支持率急増", 0.05);
+        AnomalyAlertDto divergence = new AnomalyAlertDto("1", "キタサンブラック", "順位乖離", 3);
+
+        hub.onOddsUpdated(event(25, 40, 0, surge));
+        // 同じ異常が検知され続けている
+        hub.onOddsUpdated(event(25, 40, 1, surge));
+        hub.onOddsUpdated(event(25, 40, 2, surge, divergence));
+
+        List<String[]> events = sink.next(3);
+        assertThat(events).extracting(e -> e[1])
+                .containsExactly(OddsStreamHub.ODDS_EVENT, OddsStreamHub.ALERTS_EVENT, OddsStreamHub.ALERTS_EVENT);
+        assertThat(events.get(1)[2]).contains("支持率急増");
+        assertThat(events.get(2)[2]).contains("順位乖離").doesNotContain("支持率急増");
+        assertThat(sink.events).isEmpty();
+    }
+
+    @Test
+    void subscribe_LastEventIDの次のイベントから送信すること() throws Exception {
+        hub = newHub(16, 64, NOW);
+        RecordingSink first = new RecordingSink();
+        OddsStreamHub.Subscriber subscriber = hub.subscribe(null, first);
+        hub.onOddsUpdated(event(25, 40, 0));
+        String lastEventId = first.next()[0];
+        subscriber.close();
+        assertThat(first.closed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 切断中の更新
+        hub.onOddsUpdated(event(24, 40, 1));
+        hub.onOddsUpdated(event(23, 40, 2));
+
+        RecordingSink resumed = new RecordingSink();
+        hub.subscribe(lastEventId, resumed);
+
+        List<String[]> events = resumed.next(2);
+        assertThat(events).extracting(e -> e[1]).containsOnly(OddsStreamHub.ODDS_EVENT);
+        assertThat(events.get(0)[2]).contains("2.4");
+        assertThat(events.get(1)[2]).contains("2.3");
+        assertThat(events.get(0)[0]).isNotEqualTo(lastEventId);
+    }
+
+    @Test
+    void subscribe_再起動前のイベントIDの場合はリセットを送信すること() throws Exception {
+        OddsStreamHub before = newHub(16, 64, NOW);
+        RecordingSink first = new RecordingSink();
+        before.subscribe(null, first);
+        before.onOddsUpdated(event(25, 40, 0));
+        String lastEventId = first.next()[0];
+        before.stop();
+
+        hub = newHub(16, 64, NOW.plusSeconds(3600));
+        hub.onOddsUpdated(event(25, 40, 1));
+        RecordingSink resumed = new RecordingSink();
+        hub.subscribe(lastEventId, resumed);
+
+        assertThat(resumed.next()[1]).isEqualTo(OddsStreamHub.RESET_EVENT);
+        // リセット以降のイベントは続けて受信できること
+        hub.onOddsUpdated(event(24, 40, 2));
+        String[] next = resumed.next();
+        assertThat(next[1]).isEqualTo(OddsStreamHub.ODDS_EVENT);
+        assertThat(next[2]).contains("2.4");
+    }
+
+    @Test
+    void offer_キューが上限を超えた場合は履歴から欠けなく送り直すこと() throws Exception {
+        hub = newHub(2, 64, NOW);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink() {
+            @Override
+            public void heartbeat() {
+                try {
+                    // 送信が詰まった状態を再現する
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        hub.subscribe(null, slow);
+
+        for (int cycle = 0; cycle < 10; cycle++) {
+            hub.onOddsUpdated(event(25, 40 + cycle, cycle));
+        }
+        release.countDown();
+
+        List<String[]> events = slow.next(10);
+        assertThat(events).extracting(e -> e[2]).allMatch(data -> data.contains("サトノダイヤモンド"));
+        assertThat(events.get(9)[2]).contains("4.9");
+        assertThat(meterRegistry.get(OddsStreamHub.OVERFLOW_COUNTER).counter().count()).isPositive();
+    }
+
+    @Test
+    void subscribe_購読者数が上限に達している場合はnullを返すこと() {
+        hub = newHub(16, 64, NOW);
+        for (int i = 0; i < 10; i++) {
+            assertThat(hub.subscribe(null, new RecordingSink())).isNotNull();
+        }
+
+        assertThat(hub.subscribe(null, new RecordingSink())).isNull();
+        assertThat(hub.subscriberCount()).isEqualTo(10);
+    }
+}
@@ -1,65 +1,246 @@
 package com.oddsalchemist.backend.service;
 
+import com.oddsalchemist.backend.config.OddsDeltaProperties;
+import com.oddsalchemist.backend.config.SheetsShardProperties;
+import com.oddsalchemist.backend.config.SnapshotCacheProperties;
+import com.oddsalchemist.backend.dto.AnomalyAlertDto;
 import com.oddsalchemist.backend.dto.OddsData;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import com.oddsalchemist.backend.dto.SyncResult;
 import com.oddsalchemist.backend.parser.RaceOddsParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 class OddsSyncServiceTest {
 
     private OddsScrapingService scrapingService;
     private RaceOddsParser parser;
-    private GoogleSheetsService sheetsService;
+    private OddsStore oddsStore;
+    private SheetsWriteBuffer sheetsWriter;
     private OddsAnomalyDetector anomalyDetector;
+    private ApplicationEventPublisher eventPublisher;
+    private OddsSnapshotCache snapshotCache;
     private OddsSyncService service;
 
+    private static final Instant NOW = Instant.parse("2026-10-17T01:00:00Z");
+    private final Clock clock = Clock.fixed(NOW, ZoneId.of("Asia/Tokyo"));
+
     @BeforeEach
     void setUp() {
         scrapingService = mock(OddsScrapingService.class);
         parser = mock(RaceOddsParser.class);
-        sheetsService = mock(GoogleSheetsService.class);
+        oddsStore = mock(OddsStore.class);
+        sheetsWriter = mock(SheetsWriteBuffer.class);
         anomalyDetector = mock(OddsAnomalyDetector.class);
-        when(anomalyDetector.detect(any())).thenReturn(List.of());
-        service = new OddsSyncService(scrapingService, parser, sheetsService, anomalyDetector);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        snapshotCache = new OddsSnapshotCache(SnapshotCacheProperties.disabled(), new SimpleMeterRegistry());
+        when(anomalyDetector.detect(any(OddsSnapshot.class))).thenReturn(List.of());
+        service = newService(new SheetsShardProperties(SheetsShardProperties.Strategy.NONE, null));
+    }
+
+    private OddsSyncService newService(SheetsShardProperties shardProperties) {
+        return new OddsSyncService(scrapingService, parser, oddsStore, Optional.of(sheetsWriter),
+                new SheetsShardRouter(shardProperties, clock), anomalyDetector, snapshotCache,
+                new OddsDeltaProperties(true, 12, null), eventPublisher, clock);
     }
 
     @Test
     void fetchAndSaveOdds_正常に連携処理が実行されること() throws Exception {
         String url = "https://example.com/race";
         String range = "シート1!A:F";
-        String dummyHtml = "<html>dummy</html>";
+        FetchedPage page = new FetchedPage(url, "<html>dummy</html>".getBytes(StandardCharsets.UTF_8),
+                "UTF-8", true, "\"v1\"", null, "hash");
 
-        when(scrapingService.fetchHtml(url)).thenReturn(dummyHtml);
-        when(parser.parse(dummyHtml)).thenReturn(List.of(
+        when(scrapingService.fetchPage(url)).thenReturn(page);
+        when(parser.parseSnapshot(any(InputStream.class), eq("UTF-8"), eq(url))).thenReturn(OddsSnapshot.of(List.of(
                 new OddsData("第1回東京1レース", "1", "キタサンブラック", 2.5, 1.2, 1.5)
-        ));
+        )));
 
         service.fetchAndSaveOdds(url, range);
 
-        verify(scrapingService).fetchHtml(url);
-        verify(parser).parse(dummyHtml);
+        verify(scrapingService).fetchPage(url);
+        verify(parser).parseSnapshot(any(InputStream.class), eq("UTF-8"), eq(url));
 
         @SuppressWarnings("unchecked")
         ArgumentCaptor<List<List<Object>>> captor = ArgumentCaptor.forClass(List.class);
-        verify(sheetsService).appendData(eq(range), captor.capture());
+        verify(sheetsWriter).submit(eq(range), captor.capture());
 
         List<List<Object>> savedValues = captor.getValue();
         assertThat(savedValues).hasSize(1);
 
         List<Object> row = savedValues.get(0);
+        assertThat(row.get(0)).isEqualTo("2026/10/17 10:00:00"); // A列: 取得時刻
         assertThat(row.get(1)).isEqualTo("第1回東京1レース"); // B列: レース名
         assertThat(row.get(2)).isEqualTo("1");               // C列: 馬番
         assertThat(row.get(3)).isEqualTo("キタサンブラック"); // D列: 馬名
+        assertThat(row.get(4)).isEqualTo("2.5");             // E列: 単勝オッズ
+        assertThat(row.get(5)).isEqualTo("1.2");             // F列: 複勝オッズ（下限）
+        assertThat(row.get(6)).isEqualTo("1.5");             // G列: 複勝オッズ（上限）
+        assertThat(row.get(7)).isEqualTo(OddsSyncService.KEYFRAME_MARKER); // H列: 全馬の行
+
+        // 異常検知が呼び出され、オッズストアへ保存されていること
+        verify(anomalyDetector).detect(any(OddsSnapshot.class));
+        verify(oddsStore).append(any(OddsSnapshot.class), eq(NOW));
+        // 最新オッズのキャッシュへ更新が通知されること
+        ArgumentCaptor<OddsUpdatedEvent> eventCaptor = ArgumentCaptor.forClass(OddsUpdatedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().fetchedAt()).isEqualTo(NOW);
+        assertThat(eventCaptor.getValue().snapshot().raceName()).isEqualTo("第1回東京1レース");
+        // 全処理の成功後に処理済みとして記録されること
+        verify(scrapingService).markProcessed(page);
+    }
+
+    @Test
+    void fetchAndSaveOdds_ページに変化がない場合はパース以降の処理をスキップすること() throws Exception {
+        String url = "https://example.com/race";
+        when(scrapingService.fetchPage(url)).thenReturn(FetchedPage.unchanged(url));
+
+        SyncResult result = service.fetchAndSaveOdds(url, "シート1!A:H");
+
+        assertThat(result.unchanged()).isTrue();
+        assertThat(result.savedCount()).isZero();
+        verifyNoInteractions(parser, anomalyDetector, oddsStore, sheetsWriter, eventPublisher);
+    }
+
+    @Test
+    void fetchAndSaveOdds_オッズストアへの保存に失敗した場合は処理済みとして記録しないこと() throws Exception {
+        String url = "https://example.com/race";
+        String range = "シート1!A:H";
+        stubPage(url);
+        doThrow(new IOException("disk full")).when(oddsStore).append(any(), any());
+
+        assertThatThrownBy(() -> service.fetchAndSaveOdds(url, range)).isInstanceOf(IOException.class);
+
+        // 次回の取得で再処理されるよう、処理済みにはしない
+        verify(scrapingService, never()).markProcessed(any());
+        verifyNoInteractions(sheetsWriter, eventPublisher);
+    }
+
+    @Test
+    void fetchAndSaveOdds_スプレッドシートへの書き込みに失敗してもオッズストアへの保存は成功として扱うこと() throws Exception {
+        String url = "https://example.com/race";
+        String range = "シート1!A:H";
+        FetchedPage page = stubPage(url);
+        doThrow(new IOException("spool full")).when(sheetsWriter).submit(eq(range), any());
+
+        SyncResult result = service.fetchAndSaveOdds(url, range);
+
+        assertThat(result.savedCount()).isEqualTo(1);
+        verify(oddsStore).append(any(OddsSnapshot.class), eq(NOW));
+        verify(scrapingService).markProcessed(page);
+    }
+
+    @Test
+    void fetchAndSaveOdds_スプレッドシート連携が無効の場合はオッズストアにのみ保存すること() throws Exception {
+        String url = "https://example.com/race";
+        FetchedPage page = stubPage(url);
+        service = new OddsSyncService(scrapingService, parser, oddsStore, Optional.empty(),
+                new SheetsShardRouter(new SheetsShardProperties(null, null), clock), anomalyDetector, snapshotCache,
+                OddsDeltaProperties.disabled(), eventPublisher, clock);
+
+        SyncResult result = service.fetchAndSaveOdds(url, "シート1!A:H");
 
-        // 異常検知が呼び出されていること
-        verify(anomalyDetector).detect(any());
+        assertThat(result.savedCount()).isEqualTo(1);
+        verify(oddsStore).append(any(OddsSnapshot.class), eq(NOW));
+        verify(scrapingService).markProcessed(page);
+        verifyNoInteractions(sheetsWriter);
+    }
+
+    @Test
+    void fetchAndSaveOdds_差分モードではオッズが変化した馬の行のみをスプレッドシートへ書き込むこと() throws Exception {
+        String url = "https://example.com/race";
+        String range = "シート1!A:H";
+        when(scrapingService.fetchPage(url)).thenReturn(new FetchedPage(url, "<html>dummy</html>".getBytes(StandardCharsets.UTF_8),
+                null, true, null, null, "hash"));
+        when(parser.parseSnapshot(any(InputStream.class), isNull(), eq(url)))
+                .thenReturn(OddsSnapshot.of(List.of(
+                        new OddsData("第1回東京1レース", "1", "キタサンブラック", 2.5, 1.2, 1.5),
+                        new OddsData("第1回東京1レース", "2", "サトノダイヤモンド", 4.0, 1.5, 2.0))))
+                .thenReturn(OddsSnapshot.of(List.of(
+                        new OddsData("第1回東京1レース", "1", "キタサンブラック", 2.5, 1.2, 1.5),
+                        new OddsData("第1回東京1レース", "2", "サトノダイヤモンド", 3.6, 1.5, 2.0))))
+                .thenReturn(OddsSnapshot.of(List.of(
+                        new OddsData("第1回東京1レース", "1", "キタサンブラック", 2.5, 1.2, 1.5),
+                        new OddsData("第1回東京1レース", "2", "サトノダイヤモンド", 3.6, 1.5, 2.0))));
+
+        service.fetchAndSaveOdds(url, range);
+        service.fetchAndSaveOdds(url, range);
+        service.fetchAndSaveOdds(url, range);
+
+        // 1回目は全馬、2回目は単勝オッズが変化した馬2のみ、3回目は変化がないため書き込まない
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<List<Object>>> captor = ArgumentCaptor.forClass(List.class);
+        verify(sheetsWriter, times(2)).submit(eq(range), captor.capture());
+        // H列で全馬の行と差分の行を区別できること
+        assertThat(captor.getAllValues().get(0)).hasSize(2)
+                .allSatisfy(row -> assertThat(row.get(7)).isEqualTo(OddsSyncService.KEYFRAME_MARKER));
+        assertThat(captor.getAllValues().get(1)).singleElement()
+                .satisfies(row -> assertThat(row).containsExactly("2026/10/17 10:00:00", "第1回東京1レース",
+                        "2", "サトノダイヤモンド", "3.6", "1.5", "2.0", OddsSyncService.DELTA_MARKER));
+        // オッズストアへは毎回保存すること
+        verify(oddsStore, times(3)).append(any(OddsSnapshot.class), eq(NOW));
+    }
+
+    @Test
+    void fetchAndSaveOdds_開催日ごとのシートへ振り分けて書き込むこと() throws Exception {
+        String url = "https://example.com/race";
+        stubPage(url);
+        service = newService(new SheetsShardProperties(SheetsShardProperties.Strategy.DAY, "オッズ_"));
+
+        service.fetchAndSaveOdds(url, "シート1!A:H");
+
+        verify(sheetsWriter).submit(eq("'オッズ_2026-10-17'!A:H"), any());
+    }
+
+    @Test
+    void fetchAndSaveOdds_有効期間内の同じURLの取得はページを取得せず直前の取得結果を返すこと() throws Exception {
+        String url = "https://example.com/race";
+        stubPage(url);
+        AnomalyAlertDto alert = new AnomalyAlertDto("1", "キタサンブラック", "支持率急増", 0.1);
+        when(anomalyDetector.detect(any(OddsSnapshot.class))).thenReturn(List.of(alert));
+        snapshotCache = new OddsSnapshotCache(new SnapshotCacheProperties(Duration.ofSeconds(30), 16),
+                new SimpleMeterRegistry());
+        service = newService(new SheetsShardProperties(SheetsShardProperties.Strategy.NONE, null));
+
+        SyncResult first = service.fetchAndSaveOdds(url, "シート1!A:H");
+        SyncResult second = service.fetchAndSaveOdds(url, "シート1!A:H");
+
+        assertThat(first.savedCount()).isEqualTo(1);
+        assertThat(second.unchanged()).isFalse();
+        assertThat(second.savedCount()).isEqualTo(1);
+        assertThat(second.alerts()).containsExactly(alert);
+        verify(scrapingService, times(1)).fetchPage(url);
+        verify(oddsStore, times(1)).append(any(OddsSnapshot.class), eq(NOW));
+        verify(anomalyDetector, times(1)).detect(any(OddsSnapshot.class));
+    }
+
+    private FetchedPage stubPage(String url) throws IOException {
+        FetchedPage page = new FetchedPage(url, "<html>dummy</html>".getBytes(StandardCharsets.UTF_8),
+                null, true, null, null, "hash");
+        when(scrapingService.fetchPage(url)).thenReturn(page);
+        when(parser.parseSnapshot(any(InputStream.class), isNull(), eq(url))).thenReturn(OddsSnapshot.of(List.of(
+                new OddsData("第1回東京1レース", "1", "キタサンブラック", 2.5, 1.2, 1.5)
+        )));
+        return page;
     }
-}
\ No newline at end of file
+}
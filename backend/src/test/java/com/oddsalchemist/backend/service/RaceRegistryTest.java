@@ -0,0 +1,86 @@
+package com.oddsalchemist.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RaceRegistryTest {
+
+    @Test
+    void idOf_同じレースには同じIDを異なるレースには異なるIDを割り当てること() {
+        RaceRegistry registry = new RaceRegistry();
+
+        int tokyo = registry.idOf("https://example.com/race/tokyo11");
+        int kyoto = registry.idOf("https://example.com/race/kyoto11");
+
+        assertThat(tokyo).isPositive();
+        assertThat(kyoto).isNotEqualTo(tokyo);
+        assertThat(registry.idOf("https://example.com/race/tokyo11")).isEqualTo(tokyo);
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    @Test
+    void remove_登録を解除すると再登録時に新しいIDが割り当てられること() {
+        RaceRegistry registry = new RaceRegistry();
+        String race = "https://example.com/race/tokyo11";
+        int first = registry.idOf(race);
+
+        // 別のIDを指定した解除は無視される
+        registry.remove(race, first + 1);
+        assertThat(registry.find(race)).isEqualTo(first);
+
+        registry.remove(race, first);
+        assertThat(registry.find(race)).isZero();
+        assertThat(registry.size()).isZero();
+        assertThat(registry.idOf(race)).isNotEqualTo(first);
+    }
+
+    @Test
+    void horseKey_レースIDと馬番を1つのlong値に詰めること() {
+        long key = RaceRegistry.horseKey(7, "12");
+
+        assertThat(RaceRegistry.raceIdOf(key)).isEqualTo(7);
+        assertThat(key).isNotEqualTo(RaceRegistry.horseKey(7, "13"));
+        assertThat(key).isNotEqualTo(RaceRegistry.horseKey(8, "12"));
+    }
+
+    @Test
+    void horseKey_数字でない馬番は0を返すこと() {
+        assertThat(RaceRegistry.horseKey(1, "")).isZero();
+        assertThat(RaceRegistry.horseKey(1, "取消")).isZero();
+        assertThat(RaceRegistry.horseKey(1, "0")).isZero();
+        assertThat(RaceRegistry.horseKey(1, "999999")).isZero();
+    }
+
+    @Test
+    void LongIntHashMap_拡張と上書きを繰り返してもHashMapと同じ内容になること() {
+        // 初期容量を小さくして拡張と衝突時の探索（表の末尾からの折り返しを含む）を通す
+        LongIntHashMap map = new LongIntHashMap(1);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            long key = RaceRegistry.horseKey(1 + random.nextInt(400), String.valueOf(1 + random.nextInt(18)));
+            int value = random.nextInt(10_000);
+            map.put(key, value);
+            expected.put(key, value);
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key, -1)).isEqualTo(value));
+        assertThat(map.get(RaceRegistry.horseKey(999, "1"), -1)).isEqualTo(-1);
+    }
+
+    @Test
+    void LongIntHashMap_キー0は使用できないこと() {
+        LongIntHashMap map = new LongIntHashMap();
+
+        assertThatThrownBy(() -> map.put(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(map.get(0, -1)).isEqualTo(-1);
+    }
+}
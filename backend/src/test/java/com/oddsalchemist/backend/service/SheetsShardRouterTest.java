@@ -0,0 +1,74 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.SheetsShardProperties;
+import com.oddsalchemist.backend.dto.OddsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SheetsShardRouterTest {
+
+    private static final String RANGE = "シート1!A:G";
+    // 日本時間では 2026-10-18 00:30（UTCでは前日）
+    private static final Instant FETCHED_AT = Instant.parse("2026-10-17T15:30:00Z");
+    private final Clock clock = Clock.fixed(FETCHED_AT, ZoneId.of("Asia/Tokyo"));
+
+    private static OddsSnapshot race(String raceName, Instant postTime) {
+        return OddsSnapshot.builder(raceName, "https://example.com/race/tokyo11", 1)
+                .postTime(postTime)
+                .add("1", "馬A", 30, 11, 13)
+                .build();
+    }
+
+    private SheetsShardRouter router(SheetsShardProperties.Strategy strategy) {
+        return new SheetsShardRouter(new SheetsShardProperties(strategy, "odds "), clock);
+    }
+
+    @Test
+    void route_開催日ごとのシートへ振り分けること() {
+        String range = router(SheetsShardProperties.Strategy.DAY)
+                .route(RANGE, race("第1回東京11レース", null), FETCHED_AT);
+
+        // 発走時刻が不明な場合は取得時刻の日付（日本時間）とする
+        assertThat(range).isEqualTo("'odds 2026-10-18'!A:G");
+    }
+
+    @Test
+    void route_レースごとのシートへ発走日とレースのキーで振り分けること() {
+        String range = router(SheetsShardProperties.Strategy.RACE)
+                .route(RANGE, race("第1回東京11レース [G1]", Instant.parse("2026-10-18T06:40:00Z")), FETCHED_AT);
+
+        // URLのスキームは除き、シート名に使えない文字は置き換えること
+        assertThat(range).isEqualTo("'odds 2026-10-18 example.com_race_tokyo11'!A:G");
+        assertThat(SheetsShardRouter.sheetTitleOf(range)).isEqualTo("odds 2026-10-18 example.com_race_tokyo11");
+    }
+
+    @Test
+    void route_開催場が異なる同名レースは別のシートへ振り分けること() {
+        SheetsShardRouter router = router(SheetsShardProperties.Strategy.RACE);
+        OddsSnapshot tokyo = OddsSnapshot.builder("11R", "https://example.com/race/tokyo11", 1)
+                .add("1", "馬A", 30, 11, 13).build();
+        OddsSnapshot kyoto = OddsSnapshot.builder("11R", "https://example.com/race/kyoto11", 1)
+                .add("1", "馬A", 30, 11, 13).build();
+
+        assertThat(router.route(RANGE, tokyo, FETCHED_AT)).isNotEqualTo(router.route(RANGE, kyoto, FETCHED_AT));
+    }
+
+    @Test
+    void route_振り分けない設定の場合は指定されたレンジを返すこと() {
+        assertThat(router(SheetsShardProperties.Strategy.NONE).route(RANGE, race("R", null), FETCHED_AT))
+                .isEqualTo(RANGE);
+    }
+
+    @Test
+    void sheetTitleOf_A1表記のレンジからシート名を取り出すこと() {
+        assertThat(SheetsShardRouter.sheetTitleOf("シート1!A:G")).isEqualTo("シート1");
+        assertThat(SheetsShardRouter.sheetTitleOf("'馬''s odds'!A1:G")).isEqualTo("馬's odds");
+        assertThat(SheetsShardRouter.sheetTitleOf("シート1")).isEqualTo("シート1");
+        assertThat(SheetsShardRouter.toRange("馬's odds", "A:G")).isEqualTo("'馬''s odds'!A:G");
+    }
+}
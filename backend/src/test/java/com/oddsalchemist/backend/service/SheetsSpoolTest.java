@@ -0,0 +1,133 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.SheetsWriteProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SheetsSpoolTest {
+
+    private static final String RANGE = "シート1!A:G";
+
+    @TempDir
+    Path tempDir;
+
+    private SheetsSpool openSpool(long segmentBytes) throws IOException {
+        return new SheetsSpool(new SheetsWriteProperties.Spool(tempDir.toString(),
+                DataSize.ofBytes(segmentBytes), null, SheetsWriteProperties.Fsync.ALWAYS, null));
+    }
+
+    private static List<List<Object>> rows(String raceName, int count) {
+        return IntStream.rangeClosed(1, count)
+                .<List<Object>>mapToObj(i -> List.of("2026/10/17 10:00:00", raceName, String.valueOf(i)))
+                .toList();
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".log")).sorted().toList();
+        }
+    }
+
+    @Test
+    void read_追記した書き込みを受け付け順に読み出せること() throws IOException {
+        try (SheetsSpool spool = openSpool(1 << 20)) {
+            spool.append(RANGE, rows("東京11R", 2));
+            spool.append(RANGE, rows("京都11R", 1));
+
+            SheetsSpool.Batch batch = spool.read(100, 1);
+
+            assertThat(batch.chunks()).singleElement().extracting(SheetsSpool.Chunk::range).isEqualTo(RANGE);
+            assertThat(batch.chunks().get(0).rows()).containsExactly(
+                    List.of("2026/10/17 10:00:00", "東京11R", "1"),
+                    List.of("2026/10/17 10:00:00", "東京11R", "2"),
+                    List.of("2026/10/17 10:00:00", "京都11R", "1"));
+            // commitするまでカーソルは進まない
+            assertThat(spool.read(100, 1).rowCount()).isEqualTo(3);
+            spool.commit(batch);
+            assertThat(spool.read(100, 1)).isNull();
+            assertThat(spool.pendingRows()).isZero();
+        }
+    }
+
+    @Test
+    void read_行数の上限で区切って読み出すこと() throws IOException {
+        try (SheetsSpool spool = openSpool(1 << 20)) {
+            spool.append(RANGE, rows("東京11R", 2));
+            spool.append(RANGE, rows("京都11R", 2));
+
+            SheetsSpool.Batch first = spool.read(3, 1);
+            assertThat(first.rowCount()).isEqualTo(2);
+            spool.commit(first);
+            assertThat(spool.read(3, 1).chunks().get(0).rows()).extracting(row -> row.get(1)).containsOnly("京都11R");
+        }
+    }
+
+    @Test
+    void read_書き込み先レンジごとに受け付け順でまとめて読み出すこと() throws IOException {
+        try (SheetsSpool spool = openSpool(1 << 20)) {
+            spool.append("'2026-10-17'!A:G", rows("東京11R", 1));
+            spool.append("'2026-10-18'!A:G", rows("京都11R", 1));
+            spool.append("'2026-10-17'!A:G", rows("東京12R", 1));
+            spool.append("'2026-10-19'!A:G", rows("新潟11R", 1));
+
+            // レンジの数の上限（2）に達したところで区切る
+            SheetsSpool.Batch batch = spool.read(100, 2);
+
+            assertThat(batch.chunks()).extracting(SheetsSpool.Chunk::range)
+                    .containsExactly("'2026-10-17'!A:G", "'2026-10-18'!A:G");
+            assertThat(batch.chunks().get(0).rows()).extracting(row -> row.get(1))
+                    .containsExactly("東京11R", "東京12R");
+            spool.commit(batch);
+            assertThat(spool.pendingRows()).isEqualTo(1);
+            assertThat(spool.read(100, 2).chunks()).extracting(SheetsSpool.Chunk::range)
+                    .containsExactly("'2026-10-19'!A:G");
+        }
+    }
+
+    @Test
+    void commit_送信済みのセグメントを削除すること() throws IOException {
+        try (SheetsSpool spool = openSpool(128)) {
+            for (int i = 0; i < 6; i++) {
+                spool.append(RANGE, rows("東京" + i + "R", 1));
+            }
+            assertThat(segmentFiles().size()).isGreaterThan(1);
+
+            SheetsSpool.Batch batch = spool.read(100, 1);
+            assertThat(batch.rowCount()).isEqualTo(6);
+            spool.commit(batch);
+
+            assertThat(segmentFiles()).hasSize(1);
+        }
+    }
+
+    @Test
+    void open_再起動後はカーソル位置から読み出し書き込み途中のフレームを切り捨てること() throws IOException {
+        try (SheetsSpool spool = openSpool(1 << 20)) {
+            spool.append(RANGE, rows("東京11R", 1));
+            spool.commit(spool.read(100, 1));
+            spool.append(RANGE, rows("京都11R", 2));
+        }
+        // 書き込み途中で停止した不完全なフレーム
+        Path segment = tempDir.resolve(segmentFiles().get(segmentFiles().size() - 1));
+        Files.write(segment, new byte[]{0, 0, 0, 64, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (SheetsSpool spool = openSpool(1 << 20)) {
+            assertThat(spool.pendingRows()).isEqualTo(2);
+            spool.append(RANGE, rows("阪神11R", 1));
+
+            assertThat(spool.read(100, 1).chunks().get(0).rows()).extracting(row -> row.get(1))
+                    .containsExactly("京都11R", "京都11R", "阪神11R");
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.oddsalchemist.backend.service;
+
+import com.oddsalchemist.backend.config.SheetsWriteProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SheetsWriteBufferTest {
+
+    private static final String RANGE = "シート1!A:G";
+
+    @TempDir
+    Path tempDir;
+
+    private GoogleSheetsService sheetsService;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        sheetsService = mock(GoogleSheetsService.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    /** 送信スレッドを開始せず、flushを直接呼び出して検証するためのバッファ */
+    private SheetsWriteBuffer newBuffer(DataSize maxSize) throws IOException {
+        SheetsWriteProperties properties = new SheetsWriteProperties(true, Duration.ZERO, 60_000, 0, 0,
+                new SheetsWriteProperties.Spool(tempDir.toString(), null, maxSize,
+                        SheetsWriteProperties.Fsync.NONE, null));
+        return new SheetsWriteBuffer(sheetsService, properties, meterRegistry);
+    }
+
+    private static List<List<Object>> rows(String raceName, int count) {
+        return IntStream.rangeClosed(1, count)
+                .<List<Object>>mapToObj(i -> List.of("2026/10/17 10:00:00", raceName, String.valueOf(i)))
+                .toList();
+    }
+
+    @Test
+    void flush_複数レースの書き込みを1回の追記にまとめること() throws Exception {
+        SheetsWriteBuffer buffer = newBuffer(null);
+        buffer.submit(RANGE, rows("東京11R", 2));
+        buffer.submit(RANGE, rows("京都11R", 3));
+
+        // 送信前はスプレッドシートへの書き込みが発生しないこと
+        verifyNoInteractions(sheetsService);
+        assertThat(buffer.pendingRows()).isEqualTo(5);
+
+        assertThat(buffer.flush()).isEqualTo(5);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<List<Object>>> captor = ArgumentCaptor.forClass(List.class);
+        verify(sheetsService).appendData(eq(RANGE), captor.capture());
+        // 受け付け順に連結されること
+        assertThat(captor.getValue()).extracting(row -> row.get(1))
+                .containsExactly("東京11R", "東京11R", "京都11R", "京都11R", "京都11R");
+        assertThat(buffer.pendingRows()).isZero();
+        assertThat(meterRegistry.get(SheetsWriteBuffer.ROWS_COUNTER).tag("result", "written").counter().count())
+                .isEqualTo(5);
+    }
+
+    @Test
+    void flush_書き込み先レンジごとにまとめて送信すること() throws Exception {
+        SheetsWriteBuffer buffer = newBuffer(null);
+        buffer.submit(RANGE, rows("東京11R", 1));
+        buffer.submit("シート2!A:G", rows("京都11R", 1));
+        buffer.submit(RANGE, rows("東京12R", 1));
+
+        assertThat(buffer.flush()).isEqualTo(3);
+        assertThat(buffer.flush()).isZero();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<List<Object>>> captor = ArgumentCaptor.forClass(List.class);
+        verify(sheetsService).appendData(eq(RANGE), captor.capture());
+        assertThat(captor.getValue()).extracting(row -> row.get(1)).containsExactly("東京11R", "東京12R");
+        verify(sheetsService).appendData(eq("シート2!A:G"), any());
+    }
+
+    @Test
+    void flush_一部のレンジの送信に失敗した場合は失敗したレンジのみを再送すること() throws Exception {
+        SheetsWriteBuffer buffer = newBuffer(null);
+        doThrow(new IOException("quota exceeded")).doNothing().when(sheetsService).appendData(eq("シート2!A:G"), any());
+        buffer.submit(RANGE, rows("東京11R", 1));
+        buffer.submit("シート2!A:G", rows("京都11R", 2));
+
+        assertThatThrownBy(buffer::flush).isInstanceOf(IOException.class);
+        // 送信に成功したレンジがあってもカーソルは進めない
+        assertThat(buffer.pendingRows()).isEqualTo(3);
+
+        assertThat(buffer.flush()).isEqualTo(3);
+        assertThat(buffer.pendingRows()).isZero();
+        verify(sheetsService, times(1)).appendData(eq(RANGE), any());
+        verify(sheetsService, times(2)).appendData(eq("シート2!A:G"), any());
+    }
+
+    @Test
+    void flush_送信に失敗した書き込みは破棄せず次回同じ内容で再送すること() throws Exception {
+        SheetsWriteBuffer buffer = newBuffer(null);
+        doThrow(new IOException("quota exceeded")).doNothing().when(sheetsService).appendData(eq(RANGE), any());
+        buffer.submit(RANGE, rows("東京11R", 2));
+
+        assertThatThrownBy(buffer::flush).isInstanceOf(IOException.class);
+        assertThat(buffer.pendingRows()).isEqualTo(2);
+
+        buffer.submit(RANGE, rows("京都11R", 1));
+        assertThat(buffer.flush()).isEqualTo(3);
+        assertThat(buffer.pendingRows()).isZero();
+        verify(sheetsService, times(2)).appendData(eq(RANGE), any());
+    }
+
+    @Test
+    void flush_再起動後に未送信の書き込みを送信すること() throws Exception {
+        SheetsWriteBuffer before = newBuffer(null);
+        before.submit(RANGE, rows("東京11R", 2));
+        before.stop();
+
+        SheetsWriteBuffer after = newBuffer(null);
+        assertThat(after.pendingRows()).isEqualTo(2);
+        assertThat(after.flush()).isEqualTo(2);
+        verify(sheetsService).appendData(eq(RANGE), any());
+    }
+
+    @Test
+    void stop_送信待ちの送信スレッドを中断して停止し未送信の書き込みを残すこと() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            try {
+                // 送信回数の上限による待機を模す
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return null;
+        }).when(sheetsService).appendData(any(), any());
+        SheetsWriteBuffer before = newBuffer(null);
+        before.start();
+        before.submit(RANGE, rows("東京11R", 2));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long startNanos = System.nanoTime();
+        before.stop();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(5));
+        assertThat(newBuffer(null).pendingRows()).isEqualTo(2);
+    }
+
+    @Test
+    void submit_スプールが上限に達した場合は例外をスローすること() throws Exception {
+        SheetsWriteBuffer buffer = newBuffer(DataSize.ofBytes(100));
+        buffer.submit(RANGE, rows("東京11R", 1));
+
+        assertThatThrownBy(() -> buffer.submit(RANGE, rows("京都11R", 2))).isInstanceOf(IOException.class);
+
+        assertThat(buffer.pendingRows()).isEqualTo(1);
+        assertThat(meterRegistry.get(SheetsWriteBuffer.REJECTED_COUNTER).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_同期モードの場合はその場で送信すること() throws Exception {
+        SheetsWriteBuffer buffer = new SheetsWriteBuffer(sheetsService,
+                new SheetsWriteProperties(false, null, 0, 0, 0, null), meterRegistry);
+        List<List<Object>> rows = rows("東京11R", 1);
+
+        buffer.submit(RANGE, rows);
+
+        verify(sheetsService).appendData(RANGE, rows);
+        assertThat(buffer.pendingRows()).isZero();
+    }
+}
@@ -2,6 +2,36 @@
 
 import { useState } from 'react';
 
+// GET /api/odds/fetch/{jobId} が返す取得ジョブの状態
+type FetchJob = {
+  jobId: string;
+  status: 'RUNNING' | 'SUCCEEDED' | 'FAILED';
+  message: string;
+  alerts?: { horseNumber: string; horseName: string; alertType: string }[];
+};
+
+// ジョブの完了を確認する間隔と、確認を打ち切るまでの回数（約2分）
+const POLL_INTERVAL_MS = 1000;
+const MAX_POLLS = 120;
+
+const sleep = (ms: number) => new Promise((resolve) => setTimeout(resolve, ms));
+
+// 取得ジョブが完了（SUCCEEDED / FAILED）するまで状態を確認する
+async function waitForJob(jobUrl: string): Promise<FetchJob> {
+  for (let i = 0; i < MAX_POLLS; i++) {
+    await sleep(POLL_INTERVAL_MS);
+    const response = await fetch(jobUrl);
+    if (!response.ok) {
+      throw new Error(`ジョブの状態を取得できませんでした (HTTP ${response.status})`);
+    }
+    const job: FetchJob = await response.json();
+    if (job.status !== 'RUNNING') {
+      return job;
+    }
+  }
+  throw new Error('取得の完了を確認できませんでした。時間をおいて再度お試しください');
+}
+
 export default function Home() {
   const [url, setUrl] = useState('');
   const [status, setStatus] = useState<{ type: 'info' | 'success' | 'error'; message: string } | null>(null);
@@ -31,7 +61,22 @@ export default function Home() {
         throw new Error(data.message || '通信エラーが発生しました');
       }
 
-      setStatus({ type: 'success', message: `成功: ${data.message}` });
+      // 取得は非同期のジョブとして実行されるため、Locationヘッダーのジョブの完了を待つ
+      setStatus({ type: 'info', message: 'オッズを取得しています...' });
+      const location = response.headers.get('Location') ?? `/api/odds/fetch/${data.jobId}`;
+      let job: FetchJob = data;
+      if (job.status === 'RUNNING') {
+        job = await waitForJob(new URL(location, apiBaseUrl).toString());
+      }
+
+      if (job.status === 'FAILED') {
+        throw new Error(job.message);
+      }
+      const alertCount = job.alerts?.length ?? 0;
+      setStatus({
+        type: 'success',
+        message: alertCount > 0 ? `成功: ${job.message}（異常を${alertCount}件検知しました）` : `成功: ${job.message}`,
+      });
       setUrl('');
     } catch (error) {
       const errorMessage = error instanceof Error ? error.message : '予期せぬエラーが発生しました';